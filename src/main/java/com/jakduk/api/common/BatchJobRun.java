@@ -0,0 +1,161 @@
+package com.jakduk.api.common;
+
+import com.jakduk.api.exception.ServiceError;
+import com.jakduk.api.exception.ServiceException;
+import com.jakduk.api.model.db.JobCheckpoint;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 관리자가 시작, 멈춤, 이어하기를 하는 배치 작업의 실행 상태.
+ *
+ * 작업은 서버마다 하나만 전용 스레드에서 돈다. 도는 중인지는 {metricName}.running 으로,
+ * 문서마다의 결과는 {metricName}{result=success|failure|skipped} 로 센다.
+ */
+public class BatchJobRun {
+
+	private final AtomicBoolean running = new AtomicBoolean(false);
+	private final ExecutorService runner;
+
+	private volatile Boolean stopRequested = false;
+
+	// 이 서버에서 마지막으로 돌린 작업. 없으면 저장된 진행 위치를 보여준다.
+	private volatile JobCheckpoint checkpoint;
+	private volatile Long runStartedMillis = 0L;
+	private volatile Long runFinishedMillis = 0L;
+	private volatile Long processedAtRunStart = 0L;
+
+	private final Counter successCounter;
+	private final Counter failureCounter;
+	private final Counter skippedCounter;
+
+	/**
+	 * @param threadNamePrefix 작업을 돌리는 스레드 이름
+	 * @param metricName 작업 지표 이름
+	 * @param description running 지표 설명
+	 */
+	public BatchJobRun(String threadNamePrefix, String metricName, String description, MeterRegistry meterRegistry) {
+		this.runner = Executors.newSingleThreadExecutor(new CustomizableThreadFactory(threadNamePrefix));
+
+		Gauge.builder(metricName + ".running", running, flag -> flag.get() ? 1 : 0)
+				.description(description)
+				.register(meterRegistry);
+
+		this.successCounter = Counter.builder(metricName)
+				.tag("result", "success")
+				.register(meterRegistry);
+
+		this.failureCounter = Counter.builder(metricName)
+				.tag("result", "failure")
+				.register(meterRegistry);
+
+		this.skippedCounter = Counter.builder(metricName)
+				.tag("result", "skipped")
+				.register(meterRegistry);
+	}
+
+	/**
+	 * 이 서버에서 작업을 돌릴 자리를 잡는다. 이미 돌고 있으면 BATCH_JOB_ALREADY_RUNNING.
+	 */
+	public void acquire() {
+		if (! running.compareAndSet(false, true))
+			throw new ServiceException(ServiceError.BATCH_JOB_ALREADY_RUNNING);
+	}
+
+	/**
+	 * 작업을 시작하지 못했을 때 잡은 자리를 놓는다.
+	 */
+	public void release() {
+		running.set(false);
+	}
+
+	/**
+	 * acquire 한 뒤에 부른다. task 가 끝나면 자리를 놓는다.
+	 *
+	 * @param jobCheckpoint RUNNING 으로 저장한 진행 위치
+	 * @param processed 이어서 하기 전까지 처리한 수. 처리 속도는 이번에 처리한 것만 센다
+	 */
+	public void launch(JobCheckpoint jobCheckpoint, Long processed, Runnable task) {
+		try {
+			stopRequested = false;
+
+			processedAtRunStart = processed;
+			runStartedMillis = System.currentTimeMillis();
+			runFinishedMillis = 0L;
+
+			checkpoint = jobCheckpoint;
+
+			runner.execute(() -> {
+				try {
+					task.run();
+				} finally {
+					runFinishedMillis = System.currentTimeMillis();
+					running.set(false);
+				}
+			});
+
+		} catch (RuntimeException e) {
+			running.set(false);
+			throw e;
+		}
+	}
+
+	/**
+	 * 지금 처리 중인 묶음까지만 하고 멈추도록 한다.
+	 */
+	public void stop() {
+		stopRequested = true;
+	}
+
+	public Boolean isStopRequested() {
+		return stopRequested;
+	}
+
+	public JobCheckpoint getCheckpoint() {
+		return checkpoint;
+	}
+
+	/**
+	 * 이번에 시작한 뒤로 초당 처리한 수. 끝났으면 끝난 때까지로 센다.
+	 *
+	 * @param processed 지금까지 처리한 수
+	 */
+	public Double getThroughput(Long processed) {
+		long finished = runFinishedMillis > 0 ? runFinishedMillis : System.currentTimeMillis();
+		long elapsedMillis = Math.max(finished - runStartedMillis, 1L);
+
+		return (processed - processedAtRunStart) * 1000D / elapsedMillis;
+	}
+
+	public Counter getSuccessCounter() {
+		return successCounter;
+	}
+
+	public Counter getFailureCounter() {
+		return failureCounter;
+	}
+
+	public Counter getSkippedCounter() {
+		return skippedCounter;
+	}
+
+	/**
+	 * 멈추도록 하고, 처리 중인 묶음이 끝나고 진행 위치가 저장될 때까지 30초 기다린다.
+	 *
+	 * @return 기다리는 동안 끝났는지
+	 */
+	public Boolean shutdown() throws InterruptedException {
+		stopRequested = true;
+		runner.shutdown();
+
+		return runner.awaitTermination(30, TimeUnit.SECONDS);
+	}
+
+}
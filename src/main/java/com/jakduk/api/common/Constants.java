@@ -39,6 +39,7 @@ public class Constants {
 	public final static Integer GALLERY_SIZE = 24;
 	public final static Integer BOARD_TOP_LIMIT = 3;
 	public final static Integer ARTICLE_SHORT_CONTENT_LENGTH = 100;
+	public final static Integer ARTICLE_COUNTERS_MISMATCHED_SEQS_LIMIT = 100;
 
 	/**
 	 * Social 프로바이더 종류.
@@ -82,6 +83,11 @@ public class Constants {
 	public final static Integer USER_SMALL_PICTURE_SIZE_WIDTH = 50;
 	public final static Integer USER_SMALL_PICTURE_SIZE_HEIGHT = 50;
 
+	/**
+	 * 반응형 사진의 가로 길이 단계. 요청한 가로 길이는 이 중 크거나 같은 첫 단계로 올림한다.
+	 */
+	public final static int[] GALLERY_VARIANT_WIDTHS = {320, 640, 960, 1280, 1920};
+
 	/**
 	 * 사진 상태값.
 	 */
@@ -171,6 +177,14 @@ public class Constants {
 		LT
 	}
 
+	/**
+	 * 커서 방식 목록의 방향
+	 */
+	public enum CURSOR_DIRECTION {
+		NEXT, // 기준보다 오래된 글
+		PREV // 기준보다 최근 글
+	}
+
 	/**
 	 * mongoDB collection 이름
 	 */
@@ -232,4 +246,14 @@ public class Constants {
 		EDIT
 	}
 
+	/**
+	 * 배치 작업 상태
+	 */
+	public enum BATCH_JOB_STATUS {
+		RUNNING,
+		STOPPED, // 멈춤 요청, 서버 종료로 멈춤. 이어서 할 수 있다
+		COMPLETED,
+		FAILED
+	}
+
 }
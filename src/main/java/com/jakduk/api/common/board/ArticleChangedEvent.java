@@ -0,0 +1,57 @@
+package com.jakduk.api.common.board;
+
+import com.jakduk.api.common.Constants;
+
+/**
+ * 게시판 글 목록에 영향을 주는 글의 변경
+ */
+
+public class ArticleChangedEvent {
+
+	public enum TYPE {
+		CREATE, // 새 글. 목록이 밀린다.
+		EDIT, // 글 고침. 말머리가 바뀌면 목록이 바뀐다.
+		DELETE, // 글 지움. 목록이 당겨진다.
+		NOTICE, // 공지 켜고 끔. 게시판의 모든 목록에 나온다.
+		COMMENT, // 댓글수 변경
+		FEELING // 감정수 변경
+	}
+
+	private TYPE type;
+	private Constants.BOARD_TYPE board;
+	private String articleId;
+	private String category; // 말머리
+	private String previousCategory; // 고치기 전 말머리
+
+	public ArticleChangedEvent(TYPE type, Constants.BOARD_TYPE board, String articleId, String category, String previousCategory) {
+		this.type = type;
+		this.board = board;
+		this.articleId = articleId;
+		this.category = category;
+		this.previousCategory = previousCategory;
+	}
+
+	public ArticleChangedEvent(TYPE type, Constants.BOARD_TYPE board, String articleId, String category) {
+		this(type, board, articleId, category, category);
+	}
+
+	public TYPE getType() {
+		return type;
+	}
+
+	public Constants.BOARD_TYPE getBoard() {
+		return board;
+	}
+
+	public String getArticleId() {
+		return articleId;
+	}
+
+	public String getCategory() {
+		return category;
+	}
+
+	public String getPreviousCategory() {
+		return previousCategory;
+	}
+}
@@ -0,0 +1,141 @@
+package com.jakduk.api.common.board;
+
+import com.jakduk.api.common.util.MongoBulkUtils;
+import com.jakduk.api.model.db.Article;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 게시물 읽음 수 누적기.
+ *
+ * 글 보기 마다 문서 전체를 저장하지 않고 글 seq 별로 메모리에 누적한 뒤, 주기적으로 한번의 bulkWrite($inc) 로 반영한다.
+ * ConcurrentHashMap 의 bin 단위 잠금으로 글 별 증가가 서로 경합하지 않는다.
+ */
+
+@Component
+public class ArticleViewsAccumulator {
+
+	private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+	private final Map<Integer, Long> pendingViews = new ConcurrentHashMap<>();
+	private final AtomicLong pendingCount = new AtomicLong();
+
+	private final MongoTemplate mongoTemplate;
+	private final Counter flushedCounter;
+
+	@Autowired
+	public ArticleViewsAccumulator(MongoTemplate mongoTemplate, MeterRegistry meterRegistry) {
+		this.mongoTemplate = mongoTemplate;
+
+		Gauge.builder("jakduk.article.views.pending", pendingCount, AtomicLong::get)
+				.description("DB에 반영되지 않은 읽음 수")
+				.register(meterRegistry);
+
+		this.flushedCounter = Counter.builder("jakduk.article.views.flushed")
+				.description("DB에 반영한 읽음 수")
+				.register(meterRegistry);
+	}
+
+	/**
+	 * 읽음 수 1 증가
+	 *
+	 * @param seq 글 seq
+	 */
+	public void increase(Integer seq) {
+		pendingViews.merge(seq, 1L, Long::sum);
+		pendingCount.incrementAndGet();
+	}
+
+	/**
+	 * 아직 반영되지 않은 읽음 수
+	 */
+	public Long getPendingCount() {
+		return pendingCount.get();
+	}
+
+	/**
+	 * 누적된 읽음 수를 DB에 반영한다.
+	 */
+	@Scheduled(fixedDelayString = "${jakduk.article-views.flush-interval-millis:10000}")
+	public synchronized void flush() {
+		if (pendingViews.isEmpty())
+			return;
+
+		// 글 별로 원자적으로 떼어낸다. 떼어낸 이후의 증가는 다음 반영 때 처리된다.
+		Map<Integer, Long> drained = new HashMap<>();
+
+		pendingViews.keySet().forEach(seq -> {
+			Long views = pendingViews.remove(seq);
+
+			if (views != null)
+				drained.put(seq, views);
+		});
+
+		if (drained.isEmpty())
+			return;
+
+		long total = drained.values().stream().mapToLong(Long::longValue).sum();
+
+		// bulk 요청의 순서로 실패한 글을 찾는다.
+		List<Integer> seqs = new ArrayList<>(drained.keySet());
+
+		BulkOperations bulkOperations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Article.class);
+
+		seqs.forEach(seq ->
+				bulkOperations.updateOne(new Query(Criteria.where("seq").is(seq)), new Update().inc("views", drained.get(seq))));
+
+		try {
+			bulkOperations.execute();
+
+			pendingCount.addAndGet(-total);
+			flushedCounter.increment(total);
+
+			log.debug("article views flushed. articles={}, views={}", drained.size(), total);
+
+		} catch (RuntimeException e) {
+			// 실패한 증가분은 버리지 않고 다음 반영 때 다시 시도한다. 반영된 것까지 되돌리면 두번 더해진다.
+			Set<Integer> failedIndexes = MongoBulkUtils.getFailedIndexes(e);
+			long failed = 0L;
+
+			for (int i = 0; i < seqs.size(); i++) {
+				if (Objects.isNull(failedIndexes) || failedIndexes.contains(i)) {
+					Long views = drained.get(seqs.get(i));
+					pendingViews.merge(seqs.get(i), views, Long::sum);
+					failed += views;
+				}
+			}
+
+			pendingCount.addAndGet(-(total - failed));
+			flushedCounter.increment(total - failed);
+
+			log.warn("failed to flush article views. articles=" + drained.size() + ", views=" + total + ", failed=" + failed, e);
+		}
+	}
+
+	@PreDestroy
+	public void destroy() {
+		this.flush();
+	}
+
+}
@@ -0,0 +1,307 @@
+package com.jakduk.api.common.board;
+
+import com.jakduk.api.common.Constants;
+import com.jakduk.api.common.board.category.BoardCategoryGenerator;
+import com.jakduk.api.configuration.JakdukProperties;
+import com.jakduk.api.restcontroller.vo.board.GetArticle;
+import com.jakduk.api.restcontroller.vo.board.GetArticlesResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.commons.lang3.BooleanUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 게시판 글 목록 앞 페이지들의 응답 캐시.
+ *
+ * (게시판, 말머리, 언어, 페이지, 크기) 별로 짧은 시간 동안 보관하고, ArticleChangedEvent 를 받아 영향 받는 목록만 지운다.
+ * 글이 바뀔 때마다 세대를 올려서, 읽는 동안 글이 바뀐 목록은 담지 않는다.
+ *
+ * 요청 값으로 키를 만드니, 있는 말머리와 정해둔 크기만 담는다. maxEntries 를 넘으면 가장 오래 안 쓴 것부터 버리고,
+ * 만료된 것은 ttlSeconds 마다 쓸어낸다.
+ */
+
+@Component
+public class BoardArticlesCache {
+
+	private static final String ALL_CATEGORY = "ALL";
+
+	private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+	// 접근 순서로 정렬해서 맨 앞이 가장 오래 안 쓴 것
+	private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+	private final Map<String, TotalElements> totals = new ConcurrentHashMap<>();
+	private final AtomicLong generation = new AtomicLong();
+
+	private final JakdukProperties.BoardCache boardCacheProperties;
+	private final Counter hitCounter;
+	private final Counter missCounter;
+
+	@Autowired
+	public BoardArticlesCache(JakdukProperties.BoardCache boardCacheProperties, MeterRegistry meterRegistry) {
+		this.boardCacheProperties = boardCacheProperties;
+
+		this.hitCounter = Counter.builder("jakduk.board.articles.cache")
+				.tag("result", "hit")
+				.register(meterRegistry);
+
+		this.missCounter = Counter.builder("jakduk.board.articles.cache")
+				.tag("result", "miss")
+				.register(meterRegistry);
+
+		Gauge.builder("jakduk.board.articles.cache.size", this, BoardArticlesCache::size)
+				.register(meterRegistry);
+	}
+
+	/**
+	 * 캐시된 글 목록. 캐시 대상이 아니거나 없으면 null
+	 */
+	public GetArticlesResponse get(Constants.BOARD_TYPE board, String categoryCode, Locale locale, Integer page, Integer size) {
+		if (! this.isCacheable(page))
+			return null;
+
+		Key key = new Key(board, categoryCode, locale, page, size);
+		Entry entry;
+
+		synchronized (entries) {
+			entry = entries.get(key);
+
+			if (Objects.nonNull(entry) && entry.isExpired()) {
+				entries.remove(key);
+				entry = null;
+			}
+		}
+
+		if (Objects.isNull(entry)) {
+			missCounter.increment();
+			return null;
+		}
+
+		hitCounter.increment();
+		return entry.response;
+	}
+
+	/**
+	 * 읽기 전에 받아두고 put 에 넘긴다.
+	 */
+	public Long getGeneration() {
+		return generation.get();
+	}
+
+	/**
+	 * @param generation 읽기 전에 getGeneration 으로 받은 세대
+	 */
+	public void put(Constants.BOARD_TYPE board, String categoryCode, Locale locale, Integer page, Integer size,
+					Long generation, GetArticlesResponse response) {
+
+		if (! this.isCacheable(page) || ! this.isCacheable(board, categoryCode, size))
+			return;
+
+		// 목록에 있는 글 ID. 글이 바뀌면 이 글을 담은 목록만 지운다.
+		Set<String> articleIds = Stream.of(response.getArticles(), response.getNotices())
+				.filter(Objects::nonNull)
+				.flatMap(List::stream)
+				.map(GetArticle::getId)
+				.collect(Collectors.toSet());
+
+		long expireAt = System.currentTimeMillis() + boardCacheProperties.getTtlSeconds() * 1000L;
+
+		Key key = new Key(board, categoryCode, locale, page, size);
+		Entry entry = new Entry(response, articleIds, expireAt);
+
+		synchronized (entries) {
+			entries.put(key, entry);
+
+			Iterator<Entry> eldest = entries.values().iterator();
+
+			while (eldest.hasNext() && entries.size() > boardCacheProperties.getMaxEntries()) {
+				eldest.next();
+				eldest.remove();
+			}
+		}
+
+		// 읽는 동안 글이 바뀌었으면 지우기를 지나쳤을 수 있으니 담은 것을 다시 뺀다. 담은 뒤에 바뀐 것은 지우기가 뺀다.
+		if (generation != this.generation.get()) {
+			synchronized (entries) {
+				entries.remove(key, entry);
+			}
+		}
+	}
+
+	/**
+	 * 대략의 전체 글 수. 매 요청마다 count 를 하지 않도록 잠시 보관한다.
+	 *
+	 * @param category 말머리 (null 이면 게시판 전체)
+	 * @param counter 보관된 값이 없거나 오래됐을 때 세는 방법
+	 */
+	public Long getTotalElements(Constants.BOARD_TYPE board, String category, Supplier<Long> counter) {
+		String key = board.name() + ":" + category;
+		TotalElements total = totals.get(key);
+
+		if (Objects.isNull(total) || total.isExpired()) {
+			total = new TotalElements(counter.get(), System.currentTimeMillis() + boardCacheProperties.getTotalTtlSeconds() * 1000L);
+
+			// 없는 말머리로 키가 늘지 않게 한다.
+			if (this.isCategory(board, Objects.isNull(category) ? ALL_CATEGORY : category))
+				totals.put(key, total);
+		}
+
+		return total.count;
+	}
+
+	public Integer size() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	/**
+	 * 만료된 목록을 쓸어낸다. 다시 읽지 않는 키도 남지 않게 한다.
+	 */
+	@Scheduled(fixedDelayString = "#{${jakduk.board-cache.ttl-seconds:30} * 1000}")
+	public void evictExpired() {
+		synchronized (entries) {
+			entries.values().removeIf(Entry::isExpired);
+		}
+
+		totals.values().removeIf(TotalElements::isExpired);
+	}
+
+	@EventListener
+	public void onArticleChanged(ArticleChangedEvent event) {
+		generation.incrementAndGet();
+
+		Predicate<Key> sameBoard = key -> key.board.equals(event.getBoard());
+		Predicate<Key> shiftedCategory = key -> ALL_CATEGORY.equals(key.category)
+				|| Objects.equals(key.category, event.getCategory())
+				|| Objects.equals(key.category, event.getPreviousCategory());
+
+		switch (event.getType()) {
+			// 글이 밀리거나 당겨지니 해당 말머리의 목록 모두
+			case CREATE:
+			case DELETE:
+				this.evict(sameBoard.and(shiftedCategory), event.getArticleId());
+				break;
+			// 말머리가 바뀌면 양쪽 말머리의 목록 모두
+			case EDIT:
+				if (! Objects.equals(event.getCategory(), event.getPreviousCategory()))
+					this.evict(sameBoard.and(shiftedCategory), event.getArticleId());
+				else
+					this.evict(key -> false, event.getArticleId());
+				break;
+			// 공지는 게시판을 가리지 않고 모든 목록에 나온다
+			case NOTICE:
+				this.evict(key -> true, event.getArticleId());
+				break;
+			// 이 글을 담은 목록만
+			case COMMENT:
+			case FEELING:
+				this.evict(key -> false, event.getArticleId());
+				break;
+		}
+	}
+
+	private void evict(Predicate<Key> keyPredicate, String articleId) {
+		int before;
+		int after;
+
+		synchronized (entries) {
+			before = entries.size();
+
+			entries.entrySet().removeIf(entry -> keyPredicate.test(entry.getKey())
+					|| (Objects.nonNull(articleId) && entry.getValue().articleIds.contains(articleId)));
+
+			after = entries.size();
+		}
+
+		if (log.isDebugEnabled())
+			log.debug("board articles cache evicted. articleId={}, evicted={}", articleId, before - after);
+	}
+
+	private Boolean isCacheable(Integer page) {
+		return BooleanUtils.isTrue(boardCacheProperties.getEnable()) && page <= boardCacheProperties.getPages();
+	}
+
+	private Boolean isCacheable(Constants.BOARD_TYPE board, String categoryCode, Integer size) {
+		return boardCacheProperties.getSizes().contains(size) && this.isCategory(board, categoryCode);
+	}
+
+	private Boolean isCategory(Constants.BOARD_TYPE board, String categoryCode) {
+		return ALL_CATEGORY.equals(categoryCode) || BoardCategoryGenerator.getCategories(board, Locale.ROOT).stream()
+				.anyMatch(boardCategory -> boardCategory.getCode().equals(categoryCode));
+	}
+
+	private static class Key {
+		private final Constants.BOARD_TYPE board;
+		private final String category;
+		private final String locale;
+		private final Integer page;
+		private final Integer size;
+
+		Key(Constants.BOARD_TYPE board, String category, Locale locale, Integer page, Integer size) {
+			this.board = board;
+			this.category = category;
+			this.locale = Objects.nonNull(locale) ? locale.getLanguage() : null;
+			this.page = page;
+			this.size = size;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) return true;
+			if (o == null || getClass() != o.getClass()) return false;
+			Key key = (Key) o;
+			return board == key.board && Objects.equals(category, key.category) && Objects.equals(locale, key.locale)
+					&& Objects.equals(page, key.page) && Objects.equals(size, key.size);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(board, category, locale, page, size);
+		}
+	}
+
+	private static class TotalElements {
+		private final Long count;
+		private final long expireAt;
+
+		TotalElements(Long count, long expireAt) {
+			this.count = count;
+			this.expireAt = expireAt;
+		}
+
+		boolean isExpired() {
+			return System.currentTimeMillis() > expireAt;
+		}
+	}
+
+	private static class Entry {
+		private final GetArticlesResponse response;
+		private final Set<String> articleIds;
+		private final long expireAt;
+
+		Entry(GetArticlesResponse response, Set<String> articleIds, long expireAt) {
+			this.response = response;
+			this.articleIds = articleIds;
+			this.expireAt = expireAt;
+		}
+
+		boolean isExpired() {
+			return System.currentTimeMillis() > expireAt;
+		}
+	}
+
+}
@@ -0,0 +1,320 @@
+package com.jakduk.api.common.elasticsearch;
+
+import com.jakduk.api.configuration.JakdukProperties;
+import com.jakduk.api.configuration.rabbitmq.RabbitMQ;
+import com.rabbitmq.client.Channel;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.DocWriteResponse;
+import org.elasticsearch.action.bulk.*;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.unit.ByteSizeUnit;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.rest.RestStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.core.AmqpTemplate;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.retry.MessageRecoverer;
+import org.springframework.amqp.rabbit.retry.RepublishMessageRecoverer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * RabbitMQ 로 받은 색인, 삭제 요청을 BulkProcessor 로 모아서 Elasticsearch 에 보낸다.
+ *
+ * 메시지는 bulk 응답에서 자기 항목이 성공한 뒤에 ack 한다. 실패한 항목과 bulk 요청 자체가 실패한 메시지는
+ * 원인을 헤더에 담아 dead letter 큐로 옮긴다. 묶음으로 받은 메시지는 안에 든 메시지가 모두 끝나야 ack 한다.
+ * 그 전에 서버가 꺼지면 ack 하지 않은 메시지는 다시 받는다.
+ *
+ * 메시지 하나로 요청을 여럿(재색인 중인 새 인덱스로 보내는 복사본) 만들었으면, 여럿이 실패해도 dead letter 큐로는 한번만 옮긴다.
+ * ack, nack 은 여러 bulk 응답 스레드에서 같은 채널로 하니 채널마다 차례로 한다.
+ */
+
+@Component
+public class ElasticsearchBulkIndexer {
+
+    private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+    private final String QUEUE_ELASTICSEARCH = "elasticsearch";
+
+    private final BulkProcessor bulkProcessor;
+    private final MessageRecoverer deadLetterRecoverer;
+
+    private final Map<Long, Timer.Sample> bulkSamples = new ConcurrentHashMap<>();
+
+    private final MeterRegistry meterRegistry;
+    private final Timer bulkSuccessTimer;
+    private final Timer bulkFailureTimer;
+    private final Timer latencyTimer;
+    private final Counter successCounter;
+    private final Counter failureCounter;
+
+    @Autowired
+    public ElasticsearchBulkIndexer(Client client, AmqpTemplate amqpTemplate,
+                                    JakdukProperties.Elasticsearch elasticsearchProperties,
+                                    JakdukProperties.Rabbitmq rabbitmqProperties,
+                                    MeterRegistry meterRegistry) {
+
+        RabbitMQ elasticsearchQueue = rabbitmqProperties.getQueues().get(QUEUE_ELASTICSEARCH);
+
+        this.deadLetterRecoverer = new RepublishMessageRecoverer(amqpTemplate, "", elasticsearchQueue.getDeadLetterQueueName());
+
+        this.bulkProcessor = BulkProcessor.builder(client::bulk, new BulkListener())
+                .setBulkActions(elasticsearchProperties.getBulkActions())
+                .setBulkSize(new ByteSizeValue(elasticsearchProperties.getBulkSizeMb(), ByteSizeUnit.MB))
+                .setConcurrentRequests(elasticsearchProperties.getBulkConcurrentRequests())
+                .setFlushInterval(TimeValue.timeValueSeconds(elasticsearchProperties.getBulkFlushIntervalSeconds()))
+                .setBackoffPolicy(BackoffPolicy.exponentialBackoff())
+                .build();
+
+        this.meterRegistry = meterRegistry;
+
+        this.bulkSuccessTimer = Timer.builder("jakduk.elasticsearch.bulk")
+                .description("bulk 요청 한번에 걸린 시간")
+                .tag("result", "success")
+                .register(meterRegistry);
+
+        this.bulkFailureTimer = Timer.builder("jakduk.elasticsearch.bulk")
+                .description("bulk 요청 한번에 걸린 시간")
+                .tag("result", "failure")
+                .register(meterRegistry);
+
+        this.latencyTimer = Timer.builder("jakduk.elasticsearch.indexing.latency")
+                .description("메시지를 받고 색인해서 ack 하기까지 걸린 시간")
+                .register(meterRegistry);
+
+        this.successCounter = Counter.builder("jakduk.elasticsearch.indexing")
+                .tag("result", "success")
+                .register(meterRegistry);
+
+        this.failureCounter = Counter.builder("jakduk.elasticsearch.indexing")
+                .tag("result", "failure")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 받은 AMQP 메시지 하나. 안에 든 메시지가 모두 색인되거나 dead letter 큐로 옮겨지면 한번 ack 한다.
+     * 본문이 빈 묶음처럼 기다릴 결과가 없으면 다시 받아도 할 일이 없으니 바로 ack 한다.
+     *
+     * @param messages 묶음으로 받았으면 안에 든 요청 수, 아니면 1
+     */
+    public Delivery newDelivery(Channel channel, long deliveryTag, int messages) {
+        if (messages > 0)
+            return new Delivery(channel, deliveryTag, messages);
+
+        log.warn("nothing to index in message. it is acked right away. deliveryTag={}", deliveryTag);
+
+        Delivery delivery = new Delivery(channel, deliveryTag, 1);
+        delivery.done();
+
+        return delivery;
+    }
+
+    /**
+     * 색인, 삭제 요청을 bulk 에 넣는다. 동시에 보내는 bulk 가 꽉 차 있으면 자리가 날 때까지 기다린다.
+     *
+     * @param request 메시지로 만든 색인, 삭제 요청
+     * @param message 요청을 만든 메시지. 실패하면 이 메시지만 dead letter 큐로 옮긴다
+     */
+    public void add(DocWriteRequest<?> request, Message message, Delivery delivery) {
+        this.add(Collections.singletonList(request), message, delivery);
+    }
+
+    /**
+     * 메시지 하나로 만든 요청들을 bulk 에 넣는다. 요청마다 Delivery 의 남은 수를 하나씩 줄인다.
+     *
+     * @param requests 메시지로 만든 색인, 삭제 요청들
+     * @param message 요청을 만든 메시지. 요청이 여럿 실패해도 dead letter 큐로는 한번만 옮긴다
+     */
+    public void add(List<DocWriteRequest<?>> requests, Message message, Delivery delivery) {
+        AtomicBoolean deadLettered = new AtomicBoolean(false);
+
+        for (DocWriteRequest<?> request : requests)
+            bulkProcessor.add(request, new Item(message, delivery, deadLettered));
+    }
+
+    /**
+     * 색인 요청으로 만들 수 없는 메시지를 바로 dead letter 큐로 옮긴다.
+     */
+    public void deadLetter(Message message, Delivery delivery, Throwable cause) {
+        this.deadLetter(new Item(message, delivery, new AtomicBoolean(false)), cause);
+    }
+
+    /**
+     * 모아둔 요청을 바로 보낸다.
+     */
+    public void flush() {
+        bulkProcessor.flush();
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        if (! bulkProcessor.awaitClose(30, TimeUnit.SECONDS))
+            log.warn("elasticsearch bulk requests are not completed. unacked messages will be redelivered.");
+    }
+
+    private void ack(Item item) {
+        item.stopped(latencyTimer);
+        successCounter.increment();
+
+        item.delivery.done();
+    }
+
+    private void deadLetter(Item item, Throwable cause) {
+        item.stopped(latencyTimer);
+
+        // 같은 메시지로 만든 다른 요청이 이미 옮겼다.
+        if (! item.deadLettered.compareAndSet(false, true)) {
+            item.delivery.done();
+            return;
+        }
+
+        failureCounter.increment();
+
+        try {
+            deadLetterRecoverer.recover(item.message, cause);
+            item.delivery.done();
+
+        } catch (AmqpException e) {
+            log.error("failed to move message to dead letter queue. deliveryTag={}", item.delivery.deliveryTag, e);
+            item.delivery.requeue();
+        }
+    }
+
+    private class BulkListener implements BulkProcessor.Listener {
+
+        @Override
+        public void beforeBulk(long executionId, BulkRequest request) {
+            bulkSamples.put(executionId, Timer.start(meterRegistry));
+        }
+
+        @Override
+        public void afterBulk(long executionId, BulkRequest request, BulkResponse response) {
+            this.stopSample(executionId, bulkSuccessTimer);
+
+            List<Object> payloads = request.payloads();
+
+            // 응답 항목은 요청 순서와 같다.
+            for (BulkItemResponse item : response.getItems()) {
+                Item payload = (Item) payloads.get(item.getItemId());
+
+                if (item.isFailed() && item.getOpType() == DocWriteRequest.OpType.UPDATE
+                        && item.getFailure().getStatus() == RestStatus.NOT_FOUND) {
+                    // 그 사이에 지워졌거나 재색인으로 아직 옮기지 않은 문서. 옮길 때 새 값을 읽는다.
+                    log.info("{} id {} is not found. so can't update it!", item.getType(), item.getId());
+
+                    ack(payload);
+                } else if (item.isFailed() && item.getOpType() != DocWriteRequest.OpType.UPDATE
+                        && item.getFailure().getStatus() == RestStatus.CONFLICT) {
+                    // 재색인 중인 새 인덱스에 더 나중에 읽은 내용이 이미 있다. external version 으로 쓰는 복사본만 충돌한다.
+                    log.info("{} id {} has newer version in {}. so skip it!", item.getType(), item.getId(), item.getIndex());
+
+                    ack(payload);
+                } else if (item.isFailed()) {
+                    log.warn("failed to {} document. index={}, type={}, id={}, cause={}", item.getOpType(),
+                            item.getIndex(), item.getType(), item.getId(), item.getFailureMessage());
+
+                    deadLetter(payload, item.getFailure().getCause());
+                } else {
+                    if (item.getResponse().getResult() == DocWriteResponse.Result.NOT_FOUND)
+                        log.info("{} id {} is not found. so can't delete it!", item.getType(), item.getId());
+
+                    ack(payload);
+                }
+            }
+        }
+
+        @Override
+        public void afterBulk(long executionId, BulkRequest request, Throwable failure) {
+            this.stopSample(executionId, bulkFailureTimer);
+
+            log.error("failed to execute bulk request. actions={}", request.numberOfActions(), failure);
+
+            request.payloads().forEach(payload -> deadLetter((Item) payload, failure));
+        }
+
+        private void stopSample(long executionId, Timer timer) {
+            Timer.Sample sample = bulkSamples.remove(executionId);
+
+            if (sample != null)
+                sample.stop(timer);
+        }
+    }
+
+    /**
+     * 받은 AMQP 메시지 하나와 아직 결과가 나오지 않은 메시지 수
+     */
+    public class Delivery {
+        private final Channel channel;
+        private final long deliveryTag;
+        private final AtomicInteger remaining;
+        private final AtomicBoolean requeued = new AtomicBoolean(false);
+
+        private Delivery(Channel channel, long deliveryTag, int messages) {
+            this.channel = channel;
+            this.deliveryTag = deliveryTag;
+            this.remaining = new AtomicInteger(messages);
+        }
+
+        private void done() {
+            if (remaining.decrementAndGet() != 0 || requeued.get())
+                return;
+
+            // Channel 은 여러 스레드에서 함께 쓰면 안 된다.
+            synchronized (channel) {
+                try {
+                    channel.basicAck(deliveryTag, false);
+                } catch (IOException e) {
+                    log.warn("failed to ack message. deliveryTag={}, cause={}", deliveryTag, e.toString());
+                }
+            }
+        }
+
+        // dead letter 큐로 옮기지도 못했으면 묶음 전체를 다시 받는다.
+        private void requeue() {
+            if (! requeued.compareAndSet(false, true))
+                return;
+
+            synchronized (channel) {
+                try {
+                    channel.basicNack(deliveryTag, false, true);
+                } catch (IOException ignored) {
+                    // 채널이 닫혔으면 다시 받는다.
+                }
+            }
+        }
+    }
+
+    private static class Item {
+        private final Message message;
+        private final Delivery delivery;
+        private final AtomicBoolean deadLettered; // 같은 메시지로 만든 요청끼리 함께 쓴다
+        private final long receivedNanos = System.nanoTime();
+
+        Item(Message message, Delivery delivery, AtomicBoolean deadLettered) {
+            this.message = message;
+            this.delivery = delivery;
+            this.deadLettered = deadLettered;
+        }
+
+        void stopped(Timer timer) {
+            timer.record(System.nanoTime() - receivedNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+}
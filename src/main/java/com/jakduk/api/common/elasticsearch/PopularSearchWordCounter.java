@@ -0,0 +1,304 @@
+package com.jakduk.api.common.elasticsearch;
+
+import com.jakduk.api.common.util.MongoBulkUtils;
+import com.jakduk.api.configuration.JakdukProperties;
+import com.jakduk.api.model.db.SearchWordCount;
+import com.jakduk.api.model.elasticsearch.EsTermsBucket;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * 인기 검색어 카운터.
+ *
+ * 검색할 때마다 (날짜, 검색어) 별로 메모리에 세고, 주기적으로 SearchWordCount 에 한번의 bulkWrite($inc) 로 더한 뒤
+ * windowDays 동안의 날짜별 상위 검색어를 다시 읽어 순위를 매겨둔다. 여러 서버가 센 것도 DB 에서 합쳐진다.
+ * 인기 검색어는 매겨둔 순위를 그대로 돌려주고, 검색어 문서는 그대로 ES 에 쌓는다.
+ *
+ * 배포 전의 검색 수는 DB 에 없으므로, 처음 순위를 매기기 전에 ES 의 날짜별 검색 수로 DB 를 채운다.
+ * 채우지 못했거나 DB 에서 한번도 읽지 못했으면 순위를 매기지 않고, 인기 검색어는 ES 로 센다.
+ */
+
+@Component
+public class PopularSearchWordCounter {
+
+	private static final String ID_SEPARATOR = "|";
+
+	private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+	// 날짜|검색어 -> DB 에 더하지 않은 검색 수
+	private final Map<String, Long> pendingCounts = new ConcurrentHashMap<>();
+	private final AtomicLong pendingCount = new AtomicLong();
+
+	// 날짜 -> 검색어 -> DB 에서 읽은 검색 수
+	private Map<LocalDate, Map<String, Long>> storedCounts = new HashMap<>();
+
+	// ES 의 검색 수로 DB 를 채웠는지, DB 에서 한번이라도 읽었는지. snapshot 에서만 쓴다.
+	private Boolean seeded = false;
+	private Boolean loaded = false;
+
+	// 매겨둔 순위와 그 순위가 세는 첫 날짜. 한번도 읽지 못했으면 null
+	private volatile Ranking ranking;
+
+	private final MongoTemplate mongoTemplate;
+	private final SearchWordHistory searchWordHistory;
+	private final JakdukProperties.PopularSearchWords popularSearchWordsProperties;
+	private final Counter flushedCounter;
+
+	@Autowired
+	public PopularSearchWordCounter(MongoTemplate mongoTemplate, SearchWordHistory searchWordHistory,
+									JakdukProperties.PopularSearchWords popularSearchWordsProperties, MeterRegistry meterRegistry) {
+
+		this.mongoTemplate = mongoTemplate;
+		this.searchWordHistory = searchWordHistory;
+		this.popularSearchWordsProperties = popularSearchWordsProperties;
+
+		Gauge.builder("jakduk.search.words.pending", pendingCount, AtomicLong::get)
+				.description("DB에 더하지 않은 검색 수")
+				.register(meterRegistry);
+
+		this.flushedCounter = Counter.builder("jakduk.search.words.flushed")
+				.description("DB에 더한 검색 수")
+				.register(meterRegistry);
+	}
+
+	/**
+	 * 오늘 검색 수 1 증가
+	 */
+	public void increase(String word) {
+		if (StringUtils.isBlank(word))
+			return;
+
+		pendingCounts.merge(LocalDate.now() + ID_SEPARATOR + word, 1L, Long::sum);
+		pendingCount.incrementAndGet();
+	}
+
+	/**
+	 * 매겨둔 인기 검색어. 아직 순위가 없거나, 세는 기간이 다르거나, topK 보다 많이 달라면 null
+	 *
+	 * @param gteDate 이 날짜부터 센다
+	 */
+	public List<EsTermsBucket> getPopularWords(LocalDate gteDate, Integer size) {
+		Ranking current = ranking;
+
+		if (Objects.isNull(current) || ! current.from.equals(gteDate) || size > popularSearchWordsProperties.getTopK())
+			return null;
+
+		return current.words.subList(0, Math.min(size, current.words.size()));
+	}
+
+	/**
+	 * 매겨둔 인기 검색어 topK 개. 아직 순위가 없으면 빈 목록
+	 */
+	public List<EsTermsBucket> getPopularWords() {
+		Ranking current = ranking;
+
+		return Objects.nonNull(current) ? current.words : Collections.emptyList();
+	}
+
+	/**
+	 * 센 것을 DB 에 더하고, 기간 안의 날짜별 검색 수를 다시 읽어 순위를 매긴다.
+	 */
+	@Scheduled(fixedDelayString = "${jakduk.popular-search-words.snapshot-interval-millis:10000}")
+	public synchronized void snapshot() {
+		this.flush();
+
+		LocalDate today = LocalDate.now();
+		LocalDate from = today.minusDays(popularSearchWordsProperties.getWindowDays());
+
+		if (! seeded) {
+			try {
+				this.seed(from);
+				seeded = true;
+
+			} catch (RuntimeException e) {
+				log.warn("failed to seed search word counts from elasticsearch.", e);
+				return;
+			}
+		}
+
+		try {
+			storedCounts = this.load(from, today);
+			loaded = true;
+			mongoTemplate.remove(new Query(Criteria.where("day").lt(from.toString())), SearchWordCount.class);
+
+		} catch (RuntimeException e) {
+			// 읽지 못하면 예전에 읽은 것에 이번에 센 것을 더해서 순위를 매긴다.
+			log.warn("failed to load search word counts.", e);
+		}
+
+		// 이 서버가 센 것만으로는 순위를 매기지 않는다.
+		if (! loaded)
+			return;
+
+		ranking = new Ranking(from, this.rank(from));
+	}
+
+	@PreDestroy
+	public void destroy() {
+		this.flush();
+	}
+
+	private void flush() {
+		if (pendingCounts.isEmpty())
+			return;
+
+		// 검색어 별로 원자적으로 떼어낸다. 떼어낸 이후의 증가는 다음 번에 더한다.
+		Map<String, Long> drained = new HashMap<>();
+
+		pendingCounts.keySet().forEach(id -> {
+			Long count = pendingCounts.remove(id);
+
+			if (count != null)
+				drained.put(id, count);
+		});
+
+		if (drained.isEmpty())
+			return;
+
+		long total = drained.values().stream().mapToLong(Long::longValue).sum();
+
+		// bulk 요청의 순서로 실패한 검색어를 찾는다.
+		List<String> ids = new ArrayList<>(drained.keySet());
+
+		BulkOperations bulkOperations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, SearchWordCount.class);
+
+		ids.forEach(id ->
+				bulkOperations.upsert(new Query(Criteria.where("_id").is(id)), new Update()
+						.setOnInsert("day", StringUtils.substringBefore(id, ID_SEPARATOR))
+						.setOnInsert("word", StringUtils.substringAfter(id, ID_SEPARATOR))
+						.inc("count", drained.get(id))));
+
+		try {
+			bulkOperations.execute();
+
+			pendingCount.addAndGet(-total);
+			flushedCounter.increment(total);
+
+			log.debug("search word counts flushed. words={}, count={}", drained.size(), total);
+
+		} catch (RuntimeException e) {
+			// 더하지 못한 것은 버리지 않고 다음 번에 다시 더한다. 더해진 것까지 되돌리면 두번 세어진다.
+			Set<Integer> failedIndexes = MongoBulkUtils.getFailedIndexes(e);
+			long failed = 0L;
+
+			for (int i = 0; i < ids.size(); i++) {
+				if (Objects.isNull(failedIndexes) || failedIndexes.contains(i)) {
+					Long count = drained.get(ids.get(i));
+					pendingCounts.merge(ids.get(i), count, Long::sum);
+					failed += count;
+				}
+			}
+
+			pendingCount.addAndGet(-(total - failed));
+			flushedCounter.increment(total - failed);
+
+			log.warn("failed to flush search word counts. words=" + drained.size() + ", count=" + total + ", failed=" + failed, e);
+		}
+	}
+
+	/**
+	 * ES 의 날짜별 검색 수를 DB 에 넣는다. ES 에는 모든 검색이 쌓이므로 DB 보다 적지 않다.
+	 * $max 로 넣어서 여러 서버가 함께 채우거나 다시 시작해도 두번 세지 않는다.
+	 */
+	private void seed(LocalDate from) {
+		Map<LocalDate, Map<String, Long>> counts = searchWordHistory.countByDay(from, popularSearchWordsProperties.getMaxWordsPerDay());
+
+		if (counts.isEmpty())
+			return;
+
+		BulkOperations bulkOperations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, SearchWordCount.class);
+
+		counts.forEach((day, words) -> words.forEach((word, count) ->
+				bulkOperations.upsert(new Query(Criteria.where("_id").is(day + ID_SEPARATOR + word)), new Update()
+						.setOnInsert("day", day.toString())
+						.setOnInsert("word", word)
+						.max("count", count))));
+
+		bulkOperations.execute();
+
+		log.info("search word counts seeded from elasticsearch. days={}", counts.size());
+	}
+
+	private Map<LocalDate, Map<String, Long>> load(LocalDate from, LocalDate to) {
+		Map<LocalDate, Map<String, Long>> counts = new HashMap<>();
+
+		for (LocalDate day = from; ! day.isAfter(to); day = day.plusDays(1)) {
+			Query query = new Query(Criteria.where("day").is(day.toString()))
+					.with(new Sort(Sort.Direction.DESC, "count"))
+					.limit(popularSearchWordsProperties.getMaxWordsPerDay());
+
+			query.fields().include("word").include("count");
+
+			Map<String, Long> words = mongoTemplate.find(query, SearchWordCount.class).stream()
+					.collect(Collectors.toMap(SearchWordCount::getWord, SearchWordCount::getCount, Long::sum));
+
+			if (! words.isEmpty())
+				counts.put(day, words);
+		}
+
+		return counts;
+	}
+
+	// DB 에서 읽은 것과 아직 더하지 않은 것을 합쳐서 topK 개를 많이 찾은 순으로 고른다.
+	private List<EsTermsBucket> rank(LocalDate from) {
+		Map<String, Long> totals = new HashMap<>();
+
+		storedCounts.forEach((day, words) -> {
+			if (! day.isBefore(from))
+				words.forEach((word, count) -> totals.merge(word, count, Long::sum));
+		});
+
+		pendingCounts.forEach((id, count) -> {
+			if (! LocalDate.parse(StringUtils.substringBefore(id, ID_SEPARATOR)).isBefore(from))
+				totals.merge(StringUtils.substringAfter(id, ID_SEPARATOR), count, Long::sum);
+		});
+
+		Comparator<Map.Entry<String, Long>> byCount = Map.Entry.<String, Long>comparingByValue()
+				.thenComparing(Map.Entry.<String, Long>comparingByKey().reversed());
+
+		PriorityQueue<Map.Entry<String, Long>> top = new PriorityQueue<>(byCount);
+
+		for (Map.Entry<String, Long> entry : totals.entrySet()) {
+			top.offer(entry);
+
+			if (top.size() > popularSearchWordsProperties.getTopK())
+				top.poll();
+		}
+
+		return top.stream()
+				.sorted(byCount.reversed())
+				.map(entry -> new EsTermsBucket(entry.getKey(), entry.getValue()))
+				.collect(Collectors.collectingAndThen(Collectors.toList(), Collections::unmodifiableList));
+	}
+
+	private static class Ranking {
+		private final LocalDate from;
+		private final List<EsTermsBucket> words;
+
+		Ranking(LocalDate from, List<EsTermsBucket> words) {
+			this.from = from;
+			this.words = words;
+		}
+	}
+
+}
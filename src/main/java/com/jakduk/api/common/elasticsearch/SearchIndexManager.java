@@ -0,0 +1,160 @@
+package com.jakduk.api.common.elasticsearch;
+
+import com.carrotsearch.hppc.cursors.ObjectObjectCursor;
+import com.jakduk.api.exception.ServiceError;
+import com.jakduk.api.exception.ServiceException;
+import org.elasticsearch.action.admin.indices.alias.IndicesAliasesRequestBuilder;
+import org.elasticsearch.action.admin.indices.create.CreateIndexRequestBuilder;
+import org.elasticsearch.action.admin.indices.get.GetIndexResponse;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.client.IndicesAdminClient;
+import org.elasticsearch.cluster.metadata.IndexMetaData;
+import org.elasticsearch.cluster.metadata.MappingMetaData;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.index.IndexNotFoundException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+/**
+ * 재색인할 새 인덱스를 만들고, 다 채우면 alias 를 옮긴다.
+ *
+ * 매핑은 이 저장소에 없으므로 alias 가 지금 가리키는 인덱스의 settings, mappings 를 그대로 옮겨 만든다.
+ */
+
+@Component
+public class SearchIndexManager {
+
+    private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+    private final String SETTING_REFRESH_INTERVAL = "index.refresh_interval";
+
+    // 인덱스를 만들 때 ES 가 정하는 값이라 옮기지 않는다.
+    private final List<String> PRIVATE_SETTINGS = Arrays.asList("index.uuid", "index.creation_date", "index.provided_name",
+            "index.version.", "index.resize.", "index.routing.allocation.initial_recovery", "index.shrink.");
+
+    private final DateTimeFormatter VERSION_FORMATTER = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
+
+    private final Client client;
+
+    @Autowired
+    public SearchIndexManager(Client client) {
+        this.client = client;
+    }
+
+    /**
+     * alias 가 가리키는 인덱스와 같은 settings, mappings 로 alias_yyyyMMddHHmmss 인덱스를 만든다.
+     * 채우는 동안은 refresh 와 replica 를 꺼서 bulk 를 빨리 받게 한다.
+     *
+     * @param alias 검색이 쓰는 이름. 아직 alias 가 아니고 인덱스 이름이어도 된다
+     * @return 만든 인덱스 이름
+     */
+    public String createVersionedIndex(String alias) {
+        GetIndexResponse current = this.getIndex(alias);
+        String sourceIndex = current.indices()[0];
+        String index = alias + "_" + LocalDateTime.now().format(VERSION_FORMATTER);
+
+        Settings settings = Settings.builder()
+                .put(current.getSettings().get(sourceIndex).filter(key -> PRIVATE_SETTINGS.stream().noneMatch(key::startsWith)))
+                .put(SETTING_REFRESH_INTERVAL, "-1")
+                .put(IndexMetaData.SETTING_NUMBER_OF_REPLICAS, 0)
+                .build();
+
+        CreateIndexRequestBuilder createIndex = client.admin().indices().prepareCreate(index).setSettings(settings);
+
+        for (ObjectObjectCursor<String, MappingMetaData> mapping : current.getMappings().get(sourceIndex))
+            createIndex.addMapping(mapping.key, mapping.value.sourceAsMap());
+
+        createIndex.get();
+
+        log.info("elasticsearch index created. index={}, copied from={}", index, sourceIndex);
+
+        return index;
+    }
+
+    public Boolean exists(String index) {
+        return client.admin().indices().prepareExists(index).get().isExists();
+    }
+
+    /**
+     * 이름이 alias 가 아니고 인덱스 자체인지. alias 를 쓰기 전에 만든 인덱스가 그렇다.
+     */
+    public Boolean isIndex(String name) {
+        return Arrays.asList(this.getIndex(name).indices()).contains(name);
+    }
+
+    /**
+     * 다 채운 인덱스의 refresh 와 replica 를 alias 가 가리키는 인덱스와 같게 되돌리고 refresh 한다.
+     */
+    public void finishLoading(String alias, String index) {
+        IndicesAdminClient indices = client.admin().indices();
+        GetIndexResponse current = this.getIndex(alias);
+
+        Settings.Builder settings = Settings.builder().putNull(SETTING_REFRESH_INTERVAL);
+
+        Arrays.stream(current.indices())
+                .filter(currentIndex -> ! currentIndex.equals(index))
+                .findFirst()
+                .map(currentIndex -> current.getSettings().get(currentIndex))
+                .ifPresent(currentSettings -> {
+                    settings.put(SETTING_REFRESH_INTERVAL, currentSettings.get(SETTING_REFRESH_INTERVAL));
+                    settings.put(IndexMetaData.SETTING_NUMBER_OF_REPLICAS, currentSettings.get(IndexMetaData.SETTING_NUMBER_OF_REPLICAS));
+                });
+
+        indices.prepareUpdateSettings(index).setSettings(settings).get();
+        indices.prepareRefresh(index).get();
+    }
+
+    /**
+     * alias 를 index 로 한번에 옮긴다. alias 가 가리키던 인덱스는 되돌릴 수 있게 남겨둔다.
+     *
+     * 다만 alias 와 같은 이름의 인덱스가 있으면 그 이름을 alias 로 써야 하므로 같은 요청에서 지운다.
+     * 처음 alias 로 바꿀 때만 생기며, 지운 인덱스로는 되돌릴 수 없다. 되돌리려면 다시 재색인해야 한다.
+     *
+     * @return alias 가 가리키던 인덱스
+     */
+    public List<String> swapAlias(String alias, String index) {
+        List<String> previousIndices = Arrays.stream(this.getIndex(alias).indices())
+                .filter(currentIndex -> ! currentIndex.equals(index))
+                .collect(Collectors.toList());
+
+        IndicesAliasesRequestBuilder aliases = client.admin().indices().prepareAliases();
+
+        for (String previousIndex : previousIndices) {
+            if (previousIndex.equals(alias)) {
+                log.warn("elasticsearch index {} is deleted to be replaced with an alias. it can't be restored.", previousIndex);
+                aliases.removeIndex(previousIndex);
+            } else
+                aliases.removeAlias(previousIndex, alias);
+        }
+
+        aliases.addAlias(index, alias).get();
+
+        log.info("elasticsearch alias swapped. alias={}, index={}, previous={}", alias, index, previousIndices);
+
+        return previousIndices;
+    }
+
+    private GetIndexResponse getIndex(String alias) {
+        try {
+            GetIndexResponse response = client.admin().indices().prepareGetIndex().addIndices(alias).get();
+
+            if (Objects.isNull(response.indices()) || response.indices().length == 0)
+                throw new ServiceException(ServiceError.ELASTICSEARCH_NOT_FOUND_INDEX);
+
+            return response;
+
+        } catch (IndexNotFoundException e) {
+            throw new ServiceException(ServiceError.ELASTICSEARCH_NOT_FOUND_INDEX, e);
+        }
+    }
+
+}
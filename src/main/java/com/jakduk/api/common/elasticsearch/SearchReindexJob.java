@@ -0,0 +1,670 @@
+package com.jakduk.api.common.elasticsearch;
+
+import com.jakduk.api.common.BatchJobRun;
+import com.jakduk.api.common.Constants;
+import com.jakduk.api.common.util.JakdukUtils;
+import com.jakduk.api.configuration.JakdukProperties;
+import com.jakduk.api.exception.ServiceError;
+import com.jakduk.api.exception.ServiceException;
+import com.jakduk.api.model.db.Article;
+import com.jakduk.api.model.db.ArticleComment;
+import com.jakduk.api.model.db.Gallery;
+import com.jakduk.api.model.db.JobCheckpoint;
+import com.jakduk.api.model.elasticsearch.EsArticle;
+import com.jakduk.api.model.elasticsearch.EsComment;
+import com.jakduk.api.model.elasticsearch.EsGallery;
+import com.jakduk.api.model.elasticsearch.EsParentArticle;
+import com.jakduk.api.repository.JobCheckpointRepository;
+import com.jakduk.api.repository.article.ArticleCommentRepository;
+import com.jakduk.api.repository.article.ArticleRepository;
+import com.jakduk.api.repository.gallery.GalleryRepository;
+import com.jakduk.api.restcontroller.vo.admin.SearchReindexResponse;
+import com.jakduk.api.service.SearchService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.bson.types.ObjectId;
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.delete.DeleteRequest;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.update.UpdateRequest;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.index.VersionType;
+import org.elasticsearch.rest.RestStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
+
+/**
+ * 몽고의 글, 댓글, 사진을 새 인덱스에 다시 색인하고 alias 를 옮기는 배치 작업.
+ *
+ * 원본마다 _id 순으로 batchSize 개씩 읽어 bulk 로 보내고, 한 묶음이 끝날 때마다 마지막 _id 를 원본별 진행 위치로 저장한다.
+ * 세 원본은 동시에 읽고, 초당 색인 수는 모두 합쳐서 maxDocumentsPerSecond 를 넘지 않는다.
+ * 모두 끝나면 새 인덱스의 refresh, replica 를 되돌리고 alias 를 한번에 옮긴다. 멈추거나 서버가 꺼져도 이어서 할 수 있다.
+ *
+ * 재색인이 끝나기 전까지 RabbitMQ 로 들어온 변경은 ElasticsearchListener 가 새 인덱스에도 쓴다.
+ * 모든 서버가 새 인덱스를 알아챌 때까지 기다린 뒤에 읽기 시작한다.
+ *
+ * 새 인덱스에는 external version 으로 쓴다. 재색인은 몽고에서 읽기 전의 시각, 들어온 변경은 요청으로 바꾼 시각을 version 으로 하므로
+ * 읽은 뒤에 들어온 변경(삭제 포함)을 예전 내용으로 덮어쓰지 않는다. 서버 사이의 시계 차이보다 가까이 붙은 변경은 순서가 바뀔 수 있다.
+ */
+
+@Component
+public class SearchReindexJob {
+
+	public final static String JOB_NAME = "searchReindex";
+
+	private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+	private final Client client;
+	private final SearchIndexManager searchIndexManager;
+	private final SearchService searchService;
+	private final ArticleRepository articleRepository;
+	private final ArticleCommentRepository articleCommentRepository;
+	private final GalleryRepository galleryRepository;
+	private final JobCheckpointRepository jobCheckpointRepository;
+	private final JakdukProperties.Elasticsearch elasticsearchProperties;
+	private final JakdukProperties.SearchReindex searchReindexProperties;
+
+	private final BatchJobRun jobRun;
+	private final ExecutorService sourcePool;
+
+	// 이 서버에서 마지막으로 돌린 작업의 원본별 진행 위치
+	private volatile Map<Source, JobCheckpoint> sourceCheckpoints = new EnumMap<>(Source.class);
+
+	// 끝나지 않은 재색인의 alias -> 새 인덱스. 들어온 변경을 새 인덱스에도 쓴다.
+	private volatile Map<String, String> reindexTargets = Collections.emptyMap();
+
+	// 다음 문서를 보낼 수 있는 시각. 모든 원본이 나눠 쓴다.
+	private long nextPermitNanos = 0L;
+
+	@Autowired
+	public SearchReindexJob(Client client, SearchIndexManager searchIndexManager, SearchService searchService,
+							ArticleRepository articleRepository, ArticleCommentRepository articleCommentRepository,
+							GalleryRepository galleryRepository, JobCheckpointRepository jobCheckpointRepository,
+							JakdukProperties.Elasticsearch elasticsearchProperties,
+							JakdukProperties.SearchReindex searchReindexProperties,
+							MeterRegistry meterRegistry) {
+
+		this.client = client;
+		this.searchIndexManager = searchIndexManager;
+		this.searchService = searchService;
+		this.articleRepository = articleRepository;
+		this.articleCommentRepository = articleCommentRepository;
+		this.galleryRepository = galleryRepository;
+		this.jobCheckpointRepository = jobCheckpointRepository;
+		this.elasticsearchProperties = elasticsearchProperties;
+		this.searchReindexProperties = searchReindexProperties;
+
+		this.jobRun = new BatchJobRun("search-reindex-", "jakduk.search.reindex", "검색 재색인 작업이 도는 중이면 1", meterRegistry);
+		this.sourcePool = Executors.newFixedThreadPool(Source.values().length, new CustomizableThreadFactory("search-reindex-source-"));
+	}
+
+	/**
+	 * 새 인덱스를 만들고 처음부터 다시 색인한다. 저장된 진행 위치는 버린다.
+	 *
+	 * 검색이 쓰는 이름이 아직 alias 가 아니고 인덱스 자체이면, 다 채운 뒤 alias 를 만들면서 그 인덱스를 지운다.
+	 * 되돌릴 수 없는 한번뿐인 옮기기라서 migrateIndex 를 켜야만 시작한다.
+	 *
+	 * @param migrateIndex 인덱스를 지우고 alias 로 바꾸는 것을 허락한다
+	 */
+	public SearchReindexResponse start(Boolean migrateIndex) {
+		// 동시에 시작해도 새 인덱스는 한번만 만든다.
+		jobRun.acquire();
+
+		try {
+			for (String alias : this.getAliases()) {
+				if (! searchIndexManager.isIndex(alias))
+					continue;
+
+				if (! Boolean.TRUE.equals(migrateIndex))
+					throw new ServiceException(ServiceError.ELASTICSEARCH_INDEX_NOT_ALIAS);
+
+				log.warn("elasticsearch index {} will be replaced with an alias when search reindex job is completed.", alias);
+			}
+
+			Map<String, String> targets = new HashMap<>();
+			Date now = new Date();
+
+			JobCheckpoint jobCheckpoint = this.newCheckpoint(JOB_NAME, null, now);
+			Map<Source, JobCheckpoint> checkpoints = new EnumMap<>(Source.class);
+
+			for (Source source : Source.values()) {
+				String alias = this.getAlias(source);
+				String target = targets.computeIfAbsent(alias, searchIndexManager::createVersionedIndex);
+
+				checkpoints.put(source, this.newCheckpoint(source.getJobName(), target, now));
+			}
+
+			return this.launch(jobCheckpoint, checkpoints);
+
+		} catch (RuntimeException e) {
+			jobRun.release();
+			throw e;
+		}
+	}
+
+	/**
+	 * 원본별로 저장된 진행 위치 다음부터 이어서 색인한다. 다 끝난 원본은 건너뛴다.
+	 */
+	public SearchReindexResponse resume() {
+		jobRun.acquire();
+
+		try {
+			JobCheckpoint jobCheckpoint = jobCheckpointRepository.findById(JOB_NAME)
+					.orElseThrow(() -> new ServiceException(ServiceError.NOT_FOUND));
+
+			Map<Source, JobCheckpoint> checkpoints = new EnumMap<>(Source.class);
+
+			for (Source source : Source.values()) {
+				JobCheckpoint sourceCheckpoint = jobCheckpointRepository.findById(source.getJobName())
+						.orElseThrow(() -> new ServiceException(ServiceError.NOT_FOUND));
+
+				if (! searchIndexManager.exists(sourceCheckpoint.getTarget()))
+					throw new ServiceException(ServiceError.ELASTICSEARCH_NOT_FOUND_INDEX);
+
+				checkpoints.put(source, sourceCheckpoint);
+			}
+
+			return this.launch(jobCheckpoint, checkpoints);
+
+		} catch (RuntimeException e) {
+			jobRun.release();
+			throw e;
+		}
+	}
+
+	/**
+	 * 지금 보내는 묶음까지만 하고 멈춘다.
+	 */
+	public SearchReindexResponse stop() {
+		jobRun.stop();
+
+		return this.getStatus();
+	}
+
+	public SearchReindexResponse getStatus() {
+		JobCheckpoint jobCheckpoint = jobRun.getCheckpoint();
+		Map<Source, JobCheckpoint> checkpoints = sourceCheckpoints;
+
+		// 다른 서버에서 도는 중이거나 돌다가 꺼졌으면 RUNNING 으로 남아 있다.
+		if (Objects.isNull(jobCheckpoint)) {
+			Optional<JobCheckpoint> saved = jobCheckpointRepository.findById(JOB_NAME);
+
+			if (! saved.isPresent())
+				return new SearchReindexResponse();
+
+			checkpoints = new EnumMap<>(Source.class);
+
+			for (Source source : Source.values()) {
+				Optional<JobCheckpoint> sourceCheckpoint = jobCheckpointRepository.findById(source.getJobName());
+
+				if (sourceCheckpoint.isPresent())
+					checkpoints.put(source, sourceCheckpoint.get());
+			}
+
+			return new SearchReindexResponse(saved.get().getStatus(), this.getSources(checkpoints), null,
+					saved.get().getStartedAt(), saved.get().getUpdatedAt());
+		}
+
+		long processed = checkpoints.values().stream().mapToLong(JobCheckpoint::getProcessed).sum();
+
+		return new SearchReindexResponse(jobCheckpoint.getStatus(), this.getSources(checkpoints), jobRun.getThroughput(processed),
+				jobCheckpoint.getStartedAt(), jobCheckpoint.getUpdatedAt());
+	}
+
+	/**
+	 * 끝나지 않은 재색인이 있으면 들어온 색인, 삭제, 수정 요청을 새 인덱스에도 보내도록 복사한다.
+	 * 색인, 삭제는 지금 시각을 external version 으로 한다. 수정은 external version 을 쓸 수 없어 그대로 보낸다.
+	 *
+	 * @param request alias 로 보내는 요청
+	 * @return 새 인덱스로 보낼 요청. 재색인 중이 아니면 null
+	 */
+	public DocWriteRequest<?> copyToReindexing(DocWriteRequest<?> request) {
+		String target = reindexTargets.get(request.index());
+
+		if (Objects.isNull(target))
+			return null;
+
+		if (request instanceof IndexRequest) {
+			IndexRequest indexRequest = (IndexRequest) request;
+
+			return new IndexRequest(target, indexRequest.type(), indexRequest.id())
+					.source(indexRequest.source(), indexRequest.getContentType())
+					.routing(indexRequest.routing())
+					.parent(indexRequest.parent())
+					.versionType(VersionType.EXTERNAL)
+					.version(System.currentTimeMillis());
+		}
+
+		if (request instanceof DeleteRequest) {
+			DeleteRequest deleteRequest = (DeleteRequest) request;
+
+			return new DeleteRequest(target, deleteRequest.type(), deleteRequest.id())
+					.routing(deleteRequest.routing())
+					.parent(deleteRequest.parent())
+					.versionType(VersionType.EXTERNAL)
+					.version(System.currentTimeMillis());
+		}
+
+		if (request instanceof UpdateRequest) {
+			UpdateRequest updateRequest = (UpdateRequest) request;
+
+			return new UpdateRequest(target, updateRequest.type(), updateRequest.id())
+					.script(updateRequest.script())
+					.routing(updateRequest.routing())
+					.parent(updateRequest.parent());
+		}
+
+		return null;
+	}
+
+	/**
+	 * 다른 서버가 시작하거나 끝낸 재색인을 알아챈다.
+	 */
+	@Scheduled(fixedDelayString = "${jakduk.search-reindex.targets-refresh-millis:10000}")
+	public void refreshReindexTargets() {
+		try {
+			Optional<JobCheckpoint> jobCheckpoint = jobCheckpointRepository.findById(JOB_NAME);
+
+			if (! jobCheckpoint.isPresent() || jobCheckpoint.get().getStatus() == Constants.BATCH_JOB_STATUS.COMPLETED) {
+				reindexTargets = Collections.emptyMap();
+				return;
+			}
+
+			Map<String, String> targets = new HashMap<>();
+
+			for (Source source : Source.values()) {
+				jobCheckpointRepository.findById(source.getJobName())
+						.ifPresent(sourceCheckpoint -> targets.put(this.getAlias(source), sourceCheckpoint.getTarget()));
+			}
+
+			reindexTargets = Collections.unmodifiableMap(targets);
+
+		} catch (RuntimeException e) {
+			log.warn("failed to refresh search reindex targets. cause={}", e.toString());
+		}
+	}
+
+	@PreDestroy
+	public void shutdown() throws InterruptedException {
+		if (! jobRun.shutdown())
+			log.warn("search reindex job did not terminate.");
+
+		sourcePool.shutdown();
+	}
+
+	// jobRun 을 acquire 한 뒤에 부른다.
+	private SearchReindexResponse launch(JobCheckpoint jobCheckpoint, Map<Source, JobCheckpoint> checkpoints) {
+		try {
+			jobCheckpoint.setStatus(Constants.BATCH_JOB_STATUS.RUNNING);
+			jobCheckpoint.setUpdatedAt(new Date());
+
+			for (JobCheckpoint sourceCheckpoint : checkpoints.values()) {
+				if (sourceCheckpoint.getStatus() != Constants.BATCH_JOB_STATUS.COMPLETED)
+					sourceCheckpoint.setStatus(Constants.BATCH_JOB_STATUS.RUNNING);
+
+				jobCheckpointRepository.save(sourceCheckpoint);
+			}
+
+			jobCheckpointRepository.save(jobCheckpoint);
+
+			sourceCheckpoints = checkpoints;
+
+			Map<String, String> targets = new HashMap<>();
+			checkpoints.forEach((source, sourceCheckpoint) -> targets.put(this.getAlias(source), sourceCheckpoint.getTarget()));
+			reindexTargets = Collections.unmodifiableMap(targets);
+
+		} catch (RuntimeException e) {
+			jobRun.release();
+			throw e;
+		}
+
+		jobRun.launch(jobCheckpoint, checkpoints.values().stream().mapToLong(JobCheckpoint::getProcessed).sum(),
+				() -> this.run(jobCheckpoint, checkpoints));
+
+		log.info("search reindex job started. checkpoint={}", jobCheckpoint);
+
+		return this.getStatus();
+	}
+
+	private void run(JobCheckpoint jobCheckpoint, Map<Source, JobCheckpoint> checkpoints) {
+		Constants.BATCH_JOB_STATUS status = Constants.BATCH_JOB_STATUS.FAILED;
+
+		try {
+			this.awaitTargetsRefreshed();
+
+			List<Future<Constants.BATCH_JOB_STATUS>> futures = new ArrayList<>();
+
+			checkpoints.forEach((source, sourceCheckpoint) -> futures.add(sourcePool.submit(() -> this.reindex(source, sourceCheckpoint))));
+
+			Set<Constants.BATCH_JOB_STATUS> statuses = EnumSet.noneOf(Constants.BATCH_JOB_STATUS.class);
+
+			for (Future<Constants.BATCH_JOB_STATUS> future : futures)
+				statuses.add(future.get());
+
+			if (statuses.contains(Constants.BATCH_JOB_STATUS.FAILED)) {
+				status = Constants.BATCH_JOB_STATUS.FAILED;
+			} else if (statuses.contains(Constants.BATCH_JOB_STATUS.STOPPED)) {
+				status = Constants.BATCH_JOB_STATUS.STOPPED;
+			} else {
+				this.swapAliases(checkpoints);
+				reindexTargets = Collections.emptyMap();
+				status = Constants.BATCH_JOB_STATUS.COMPLETED;
+			}
+
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			status = Constants.BATCH_JOB_STATUS.STOPPED;
+		} catch (ExecutionException | RuntimeException e) {
+			log.error("search reindex job failed.", e);
+		} finally {
+			try {
+				jobCheckpoint.setStatus(status);
+				jobCheckpoint.setProcessed(checkpoints.values().stream().mapToLong(JobCheckpoint::getProcessed).sum());
+				jobCheckpoint.setFailed(checkpoints.values().stream().mapToLong(JobCheckpoint::getFailed).sum());
+				jobCheckpoint.setSkipped(checkpoints.values().stream().mapToLong(JobCheckpoint::getSkipped).sum());
+				jobCheckpoint.setUpdatedAt(new Date());
+				jobCheckpointRepository.save(jobCheckpoint);
+			} catch (RuntimeException e) {
+				log.error("failed to save search reindex checkpoint.", e);
+			}
+
+			log.info("search reindex job finished. status={}, checkpoint={}", status, jobCheckpoint);
+		}
+	}
+
+	/**
+	 * 다른 서버는 targetsRefreshMillis 마다 재색인 대상을 읽으므로, 읽는 중이던 것까지 끝나도록 두 주기를 기다린다.
+	 * 그 뒤에 요청으로 바꾸는 변경은 모두 새 인덱스에도 쓰이므로, 몽고에서 읽은 뒤의 변경을 놓치지 않는다.
+	 */
+	private void awaitTargetsRefreshed() throws InterruptedException {
+		long deadline = System.currentTimeMillis() + searchReindexProperties.getTargetsRefreshMillis() * 2;
+
+		while (! jobRun.isStopRequested() && System.currentTimeMillis() < deadline)
+			Thread.sleep(Math.min(100L, Math.max(deadline - System.currentTimeMillis(), 1L)));
+	}
+
+	/**
+	 * 원본 하나를 끝까지 색인한다.
+	 *
+	 * @return 이 원본의 마지막 상태
+	 */
+	private Constants.BATCH_JOB_STATUS reindex(Source source, JobCheckpoint sourceCheckpoint) {
+		if (sourceCheckpoint.getStatus() == Constants.BATCH_JOB_STATUS.COMPLETED)
+			return Constants.BATCH_JOB_STATUS.COMPLETED;
+
+		ObjectId lastId = Objects.nonNull(sourceCheckpoint.getLastId()) ? new ObjectId(sourceCheckpoint.getLastId()) : null;
+		Constants.BATCH_JOB_STATUS status = Constants.BATCH_JOB_STATUS.FAILED;
+
+		try {
+			while (true) {
+				if (jobRun.isStopRequested()) {
+					status = Constants.BATCH_JOB_STATUS.STOPPED;
+					break;
+				}
+
+				// 읽기 전의 시각. 이 뒤에 들어온 변경은 더 큰 version 이다.
+				long version = System.currentTimeMillis();
+				List<IndexRequest> requests = this.read(source, lastId, searchReindexProperties.getBatchSize());
+
+				if (requests.isEmpty()) {
+					status = Constants.BATCH_JOB_STATUS.COMPLETED;
+					break;
+				}
+
+				this.throttle(requests.size());
+				this.bulk(requests, version, sourceCheckpoint);
+
+				lastId = new ObjectId(requests.get(requests.size() - 1).id());
+				this.saveCheckpoint(sourceCheckpoint, lastId, Constants.BATCH_JOB_STATUS.RUNNING);
+			}
+
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			status = Constants.BATCH_JOB_STATUS.STOPPED;
+		} catch (RuntimeException e) {
+			log.error("search reindex failed. source=" + source + ", lastId=" + lastId, e);
+		} finally {
+			try {
+				this.saveCheckpoint(sourceCheckpoint, lastId, status);
+			} catch (RuntimeException e) {
+				log.error("failed to save search reindex checkpoint. source=" + source + ", lastId=" + lastId, e);
+			}
+		}
+
+		return status;
+	}
+
+	/**
+	 * 읽은 뒤에 들어온 변경이 먼저 쓰거나 지운 문서는 version 이 충돌하므로 건너뛴다.
+	 * 지운 문서의 version 은 index.gc_deletes(기본 60초) 동안 남으므로, 읽은 뒤 그 안에 보내야 한다.
+	 */
+	private void bulk(List<IndexRequest> requests, long version, JobCheckpoint sourceCheckpoint) {
+		BulkRequest bulkRequest = new BulkRequest();
+		requests.forEach(request -> bulkRequest.add(request.index(sourceCheckpoint.getTarget())
+				.versionType(VersionType.EXTERNAL)
+				.version(version)));
+
+		BulkResponse bulkResponse = client.bulk(bulkRequest)
+				.actionGet(TimeValue.timeValueSeconds(searchReindexProperties.getBulkTimeoutSeconds()));
+
+		long processed = 0, failed = 0, skipped = 0;
+
+		for (BulkItemResponse item : bulkResponse.getItems()) {
+			if (! item.isFailed()) {
+				processed++;
+			} else if (item.getFailure().getStatus() == RestStatus.CONFLICT) {
+				skipped++;
+			} else {
+				failed++;
+				log.warn("failed to reindex document. index={}, type={}, id={}, cause={}", item.getIndex(), item.getType(),
+						item.getId(), item.getFailureMessage());
+			}
+		}
+
+		sourceCheckpoint.setProcessed(sourceCheckpoint.getProcessed() + processed);
+		sourceCheckpoint.setFailed(sourceCheckpoint.getFailed() + failed);
+		sourceCheckpoint.setSkipped(sourceCheckpoint.getSkipped() + skipped);
+
+		jobRun.getSuccessCounter().increment(processed);
+		jobRun.getFailureCounter().increment(failed);
+		jobRun.getSkippedCounter().increment(skipped);
+	}
+
+	private List<IndexRequest> read(Source source, ObjectId lastId, Integer limit) {
+		switch (source) {
+			case ARTICLE: {
+				List<Article> articles = articleRepository.findPostsGreaterThanId(lastId, limit);
+				Map<String, List<String>> galleryIds = this.getGalleryIds(articles.stream()
+						.filter(article -> Boolean.TRUE.equals(article.getLinkedGallery()))
+						.map(Article::getId)
+						.collect(Collectors.toList()), Constants.GALLERY_FROM_TYPE.ARTICLE);
+
+				return articles.stream()
+						.map(article -> {
+							EsArticle esArticle = new EsArticle();
+							esArticle.setId(article.getId());
+							esArticle.setSeq(article.getSeq());
+							esArticle.setBoard(article.getBoard());
+							esArticle.setCategory(article.getCategory());
+							esArticle.setWriter(article.getWriter());
+							esArticle.setSubject(JakdukUtils.stripHtmlTag(article.getSubject()));
+							esArticle.setContent(JakdukUtils.stripHtmlTag(article.getContent()));
+							esArticle.setGalleries(galleryIds.get(article.getId()));
+
+							return searchService.getArticleIndexRequest(esArticle);
+						})
+						.collect(Collectors.toList());
+			}
+			case COMMENT: {
+				List<ArticleComment> comments = articleCommentRepository.findCommentsGreaterThanId(lastId, limit);
+				Map<String, List<String>> galleryIds = this.getGalleryIds(comments.stream()
+						.filter(comment -> Boolean.TRUE.equals(comment.getLinkedGallery()))
+						.map(ArticleComment::getId)
+						.collect(Collectors.toList()), Constants.GALLERY_FROM_TYPE.ARTICLE_COMMENT);
+				Map<String, EsParentArticle> parents = this.getParentArticles(comments);
+
+				return comments.stream()
+						.map(comment -> {
+							EsComment esComment = new EsComment();
+							esComment.setId(comment.getId());
+							esComment.setArticle(parents.get(comment.getArticle().getId()));
+							esComment.setWriter(comment.getWriter());
+							esComment.setContent(JakdukUtils.stripHtmlTag(comment.getContent()));
+							esComment.setGalleries(galleryIds.get(comment.getId()));
+
+							return searchService.getCommentIndexRequest(esComment);
+						})
+						.collect(Collectors.toList());
+			}
+			case GALLERY: {
+				return galleryRepository.findEnabledByIdGreaterThan(lastId, limit).stream()
+						.map(gallery -> {
+							EsGallery esGallery = new EsGallery();
+							esGallery.setId(gallery.getId());
+							esGallery.setWriter(gallery.getWriter());
+							esGallery.setName(gallery.getName());
+
+							return searchService.getGalleryIndexRequest(esGallery);
+						})
+						.collect(Collectors.toList());
+			}
+			default:
+				throw new IllegalArgumentException("unknown source " + source);
+		}
+	}
+
+	// 아이템 ID -> 엮인 사진 ID. 묶음마다 한번에 읽는다.
+	// 댓글에는 글 제목이 없어서 글에서 읽는다. 글이 없어졌으면 댓글이 가진 것만 넣는다.
+	private Map<String, EsParentArticle> getParentArticles(List<ArticleComment> comments) {
+		Map<String, EsParentArticle> parents = new HashMap<>();
+
+		comments.forEach(comment -> parents.computeIfAbsent(comment.getArticle().getId(), articleId -> {
+			EsParentArticle esParentArticle = new EsParentArticle();
+			esParentArticle.setId(articleId);
+			esParentArticle.setSeq(comment.getArticle().getSeq());
+			esParentArticle.setBoard(comment.getArticle().getBoard());
+			return esParentArticle;
+		}));
+
+		if (parents.isEmpty())
+			return parents;
+
+		for (Article article : articleRepository.findParentsByIdIn(new ArrayList<>(parents.keySet()))) {
+			EsParentArticle esParentArticle = parents.get(article.getId());
+			esParentArticle.setCategory(article.getCategory());
+
+			if (Objects.nonNull(article.getSubject()))
+				esParentArticle.setSubject(JakdukUtils.stripHtmlTag(article.getSubject()));
+		}
+
+		return parents;
+	}
+
+	private Map<String, List<String>> getGalleryIds(List<String> itemIds, Constants.GALLERY_FROM_TYPE fromType) {
+		if (itemIds.isEmpty())
+			return Collections.emptyMap();
+
+		Set<String> wanted = new HashSet<>(itemIds);
+		Map<String, List<String>> galleryIds = new HashMap<>();
+
+		List<Gallery> galleries = galleryRepository.findByItemIdsAndFromType(
+				itemIds.stream().map(ObjectId::new).collect(Collectors.toList()), fromType);
+
+		for (Gallery gallery : galleries) {
+			gallery.getLinkedItems().stream()
+					.filter(linkedItem -> linkedItem.getFrom() == fromType && wanted.contains(linkedItem.getId()))
+					.forEach(linkedItem -> galleryIds.computeIfAbsent(linkedItem.getId(), id -> new ArrayList<>()).add(gallery.getId()));
+		}
+
+		return galleryIds;
+	}
+
+	private void swapAliases(Map<Source, JobCheckpoint> checkpoints) {
+		Map<String, String> targets = new LinkedHashMap<>();
+		checkpoints.forEach((source, sourceCheckpoint) -> targets.put(this.getAlias(source), sourceCheckpoint.getTarget()));
+
+		targets.forEach(searchIndexManager::finishLoading);
+		targets.forEach(searchIndexManager::swapAlias);
+	}
+
+	// documents 개를 보낼 차례가 될 때까지 기다린다.
+	private void throttle(Integer documents) throws InterruptedException {
+		Integer maxDocumentsPerSecond = searchReindexProperties.getMaxDocumentsPerSecond();
+
+		if (Objects.isNull(maxDocumentsPerSecond) || maxDocumentsPerSecond <= 0)
+			return;
+
+		long waitNanos;
+
+		synchronized (this) {
+			long now = System.nanoTime();
+			long start = Math.max(now, nextPermitNanos);
+			nextPermitNanos = start + documents * TimeUnit.SECONDS.toNanos(1) / maxDocumentsPerSecond;
+			waitNanos = start - now;
+		}
+
+		if (waitNanos > 0)
+			TimeUnit.NANOSECONDS.sleep(waitNanos);
+	}
+
+	private String getAlias(Source source) {
+		return source == Source.GALLERY ? elasticsearchProperties.getIndexGallery() : elasticsearchProperties.getIndexBoard();
+	}
+
+	private Set<String> getAliases() {
+		return Arrays.stream(Source.values())
+				.map(this::getAlias)
+				.collect(Collectors.toCollection(LinkedHashSet::new));
+	}
+
+	private List<SearchReindexResponse.Source> getSources(Map<Source, JobCheckpoint> checkpoints) {
+		List<SearchReindexResponse.Source> sources = new ArrayList<>();
+
+		checkpoints.forEach((source, sourceCheckpoint) -> sources.add(new SearchReindexResponse.Source(source.name().toLowerCase(),
+				sourceCheckpoint.getStatus(), sourceCheckpoint.getTarget(), sourceCheckpoint.getLastId(),
+				sourceCheckpoint.getProcessed(), sourceCheckpoint.getFailed(), sourceCheckpoint.getSkipped())));
+
+		return sources;
+	}
+
+	private JobCheckpoint newCheckpoint(String jobName, String target, Date startedAt) {
+		JobCheckpoint jobCheckpoint = new JobCheckpoint();
+		jobCheckpoint.setId(jobName);
+		jobCheckpoint.setTarget(target);
+		jobCheckpoint.setProcessed(0L);
+		jobCheckpoint.setFailed(0L);
+		jobCheckpoint.setSkipped(0L);
+		jobCheckpoint.setStartedAt(startedAt);
+
+		return jobCheckpoint;
+	}
+
+	private void saveCheckpoint(JobCheckpoint sourceCheckpoint, ObjectId lastId, Constants.BATCH_JOB_STATUS status) {
+		sourceCheckpoint.setLastId(Objects.nonNull(lastId) ? lastId.toString() : null);
+		sourceCheckpoint.setStatus(status);
+		sourceCheckpoint.setUpdatedAt(new Date());
+
+		jobCheckpointRepository.save(sourceCheckpoint);
+	}
+
+	private enum Source {
+		ARTICLE, COMMENT, GALLERY;
+
+		String getJobName() {
+			return JOB_NAME + "." + this.name().toLowerCase();
+		}
+	}
+
+}
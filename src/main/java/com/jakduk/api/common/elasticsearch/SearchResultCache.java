@@ -0,0 +1,310 @@
+package com.jakduk.api.common.elasticsearch;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.jakduk.api.common.Constants;
+import com.jakduk.api.common.util.ObjectMapperUtils;
+import com.jakduk.api.configuration.JakdukProperties;
+import com.jakduk.api.restcontroller.vo.search.SearchUnifiedResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.commons.lang3.BooleanUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.core.AmqpTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 통합 검색 응답 캐시.
+ *
+ * (정규화한 검색어, 검색 범위, from, size, 하이라이트 태그) 별로 ttlSeconds 동안 보관하고, maxEntries, maxSizeMb 를 넘으면
+ * 가장 오래 안 쓴 것부터 버린다.
+ * 게시판이나 사진첩 인덱스에 색인할 때마다 세대를 올려서, 그 전 세대에 찾은 결과는 모두 버린 것으로 본다.
+ * 색인은 한 서버의 ElasticsearchListener 만 받으므로, 세대를 올린 것을 fanout exchange 로 모든 서버에 알린다.
+ *
+ * 응답은 JSON 으로 담아두고 꺼낼 때마다 새 객체로 읽는다. 꺼낸 쪽이 고쳐도 캐시는 바뀌지 않는다.
+ */
+
+@Component
+public class SearchResultCache {
+
+	private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+	// 접근 순서로 정렬해서 맨 앞이 가장 오래 안 쓴 것
+	private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+	private long sizeBytes = 0L;
+
+	private final AtomicLong generation = new AtomicLong();
+	private volatile long invalidatedAt = 0L;
+
+	private final JakdukProperties.SearchCache searchCacheProperties;
+	private final JakdukProperties.Elasticsearch elasticsearchProperties;
+	private final JakdukProperties.Rabbitmq rabbitmqProperties;
+	private final AmqpTemplate amqpTemplate;
+	private final Counter hitCounter;
+	private final Counter missCounter;
+
+	@Autowired
+	public SearchResultCache(JakdukProperties.SearchCache searchCacheProperties,
+							 JakdukProperties.Elasticsearch elasticsearchProperties, JakdukProperties.Rabbitmq rabbitmqProperties,
+							 AmqpTemplate amqpTemplate, MeterRegistry meterRegistry) {
+
+		this.searchCacheProperties = searchCacheProperties;
+		this.elasticsearchProperties = elasticsearchProperties;
+		this.rabbitmqProperties = rabbitmqProperties;
+		this.amqpTemplate = amqpTemplate;
+
+		this.hitCounter = Counter.builder("jakduk.search.cache")
+				.tag("result", "hit")
+				.register(meterRegistry);
+
+		this.missCounter = Counter.builder("jakduk.search.cache")
+				.tag("result", "miss")
+				.register(meterRegistry);
+
+		Gauge.builder("jakduk.search.cache.size", this, SearchResultCache::size)
+				.register(meterRegistry);
+
+		Gauge.builder("jakduk.search.cache.bytes", this, SearchResultCache::sizeBytes)
+				.description("담고 있는 응답을 JSON 으로 바꾼 크기의 합")
+				.register(meterRegistry);
+
+		Gauge.builder("jakduk.search.cache.hit.ratio", this, cache -> {
+			double requests = cache.hitCounter.count() + cache.missCounter.count();
+			return requests == 0 ? 0D : cache.hitCounter.count() / requests;
+		}).register(meterRegistry);
+	}
+
+	/**
+	 * 찾기 전에 받아두고 put 에 넘긴다. 찾는 동안 색인이 되면 그 결과는 담지 않는다.
+	 */
+	public Long getGeneration() {
+		return generation.get();
+	}
+
+	/**
+	 * 캐시된 검색 결과를 새 객체로 읽는다. took 은 캐시에서 꺼내는 데 걸린 시간이다. 꺼져 있거나 없으면 null
+	 */
+	public SearchUnifiedResponse get(String query, String include, Integer from, Integer size, String preTags, String postTags) {
+		if (! BooleanUtils.isTrue(searchCacheProperties.getEnable()))
+			return null;
+
+		long started = System.nanoTime();
+		Key key = new Key(query, include, from, size, preTags, postTags);
+		Entry entry;
+
+		synchronized (entries) {
+			entry = entries.get(key);
+
+			if (Objects.nonNull(entry) && (entry.isExpired() || entry.generation != generation.get())) {
+				this.remove(key);
+				entry = null;
+			}
+		}
+
+		if (Objects.isNull(entry)) {
+			missCounter.increment();
+			return null;
+		}
+
+		SearchUnifiedResponse response;
+
+		try {
+			response = ObjectMapperUtils.readValue(entry.json, SearchUnifiedResponse.class);
+		} catch (IOException e) {
+			log.warn("can't read cached search result. query={}, cause={}", query, e.toString());
+			missCounter.increment();
+			return null;
+		}
+
+		hitCounter.increment();
+
+		Long took = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+
+		if (Objects.nonNull(response.getArticleResult()))
+			response.getArticleResult().setTook(took);
+		if (Objects.nonNull(response.getCommentResult()))
+			response.getCommentResult().setTook(took);
+		if (Objects.nonNull(response.getGalleryResult()))
+			response.getGalleryResult().setTook(took);
+
+		return response;
+	}
+
+	/**
+	 * @param generation 찾기 전에 getGeneration 으로 받은 세대
+	 */
+	public void put(String query, String include, Integer from, Integer size, String preTags, String postTags,
+					Long generation, SearchUnifiedResponse response) {
+
+		if (! BooleanUtils.isTrue(searchCacheProperties.getEnable()))
+			return;
+
+		// 찾는 동안 색인이 됐거나, 색인한 것이 아직 검색에 보이지 않을 수 있는 때
+		if (generation != this.generation.get()
+				|| System.currentTimeMillis() - invalidatedAt < searchCacheProperties.getInvalidateGraceMillis())
+			return;
+
+		byte[] json;
+
+		try {
+			json = ObjectMapperUtils.getObjectMapper().writeValueAsBytes(response);
+		} catch (JsonProcessingException e) {
+			log.warn("can't measure search result. query={}, cause={}", query, e.toString());
+			return;
+		}
+
+		long bytes = json.length;
+		long maxBytes = searchCacheProperties.getMaxSizeMb() * 1024L * 1024L;
+
+		if (bytes > maxBytes)
+			return;
+
+		Key key = new Key(query, include, from, size, preTags, postTags);
+		Entry entry = new Entry(json, generation,
+				System.currentTimeMillis() + searchCacheProperties.getTtlSeconds() * 1000L);
+
+		synchronized (entries) {
+			this.remove(key);
+			entries.put(key, entry);
+			sizeBytes += bytes;
+
+			Iterator<Map.Entry<Key, Entry>> eldest = entries.entrySet().iterator();
+
+			while (eldest.hasNext() && (entries.size() > searchCacheProperties.getMaxEntries() || sizeBytes > maxBytes)) {
+				sizeBytes -= eldest.next().getValue().bytes;
+				eldest.remove();
+			}
+		}
+	}
+
+	/**
+	 * 게시판이나 사진첩 인덱스에 색인했으면 세대를 올리고 다른 서버에도 알린다. 예전 세대의 결과는 다음에 꺼낼 때 버린다.
+	 * 알리지 못하면 다른 서버의 결과는 ttlSeconds 가 지나야 버려진다.
+	 */
+	public void invalidate(String index) {
+		if (! this.isCachedIndex(index))
+			return;
+
+		this.increaseGeneration(index);
+
+		try {
+			amqpTemplate.convertAndSend(rabbitmqProperties.getSearchCacheExchangeName(), "", index);
+		} catch (AmqpException e) {
+			log.warn("failed to broadcast search result cache invalidation. index={}, cause={}", index, e.toString());
+		}
+	}
+
+	/**
+	 * 다른 서버가 알린 색인. 세대만 올린다. 이 서버가 알린 것도 받지만 세대가 한번 더 오를 뿐이다.
+	 */
+	public void onInvalidated(String index) {
+		if (this.isCachedIndex(index))
+			this.increaseGeneration(index);
+	}
+
+	private Boolean isCachedIndex(String index) {
+		return StringUtils.equalsAny(index, elasticsearchProperties.getIndexBoard(), elasticsearchProperties.getIndexGallery());
+	}
+
+	private void increaseGeneration(String index) {
+		invalidatedAt = System.currentTimeMillis();
+		long current = generation.incrementAndGet();
+
+		if (log.isDebugEnabled())
+			log.debug("search result cache invalidated. index={}, generation={}", index, current);
+	}
+
+	public Integer size() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	public Long sizeBytes() {
+		synchronized (entries) {
+			return sizeBytes;
+		}
+	}
+
+	private void remove(Key key) {
+		Entry removed = entries.remove(key);
+
+		if (Objects.nonNull(removed))
+			sizeBytes -= removed.bytes;
+	}
+
+	/**
+	 * 검색어는 유니코드 정규화(NFKC) 하고, 공백을 하나로 줄이고, 소문자로 바꾼다.
+	 * 검색 범위는 들어 있는 종류의 집합으로 본다. ARTICLE;COMMENT 와 COMMENT;ARTICLE 은 같다.
+	 */
+	static String normalizeQuery(String query) {
+		return StringUtils.normalizeSpace(Normalizer.normalize(StringUtils.defaultString(query), Normalizer.Form.NFKC))
+				.toLowerCase(Locale.ROOT);
+	}
+
+	private static class Key {
+		private final String query;
+		private final Set<Constants.SEARCH_INCLUDE_TYPE> include;
+		private final Integer from;
+		private final Integer size;
+		private final String preTags;
+		private final String postTags;
+
+		Key(String query, String include, Integer from, Integer size, String preTags, String postTags) {
+			this.query = normalizeQuery(query);
+			this.include = EnumSet.noneOf(Constants.SEARCH_INCLUDE_TYPE.class);
+			this.from = from;
+			this.size = size;
+			this.preTags = StringUtils.defaultString(preTags);
+			this.postTags = StringUtils.defaultString(postTags);
+
+			for (Constants.SEARCH_INCLUDE_TYPE type : Constants.SEARCH_INCLUDE_TYPE.values()) {
+				if (StringUtils.contains(include, type.name()))
+					this.include.add(type);
+			}
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) return true;
+			if (o == null || getClass() != o.getClass()) return false;
+			Key key = (Key) o;
+			return Objects.equals(query, key.query) && Objects.equals(include, key.include) && Objects.equals(from, key.from)
+					&& Objects.equals(size, key.size) && Objects.equals(preTags, key.preTags) && Objects.equals(postTags, key.postTags);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(query, include, from, size, preTags, postTags);
+		}
+	}
+
+	private static class Entry {
+		private final byte[] json;
+		private final long generation;
+		private final long bytes;
+		private final long expireAt;
+
+		Entry(byte[] json, long generation, long expireAt) {
+			this.json = json;
+			this.generation = generation;
+			this.bytes = json.length;
+			this.expireAt = expireAt;
+		}
+
+		boolean isExpired() {
+			return System.currentTimeMillis() > expireAt;
+		}
+	}
+
+}
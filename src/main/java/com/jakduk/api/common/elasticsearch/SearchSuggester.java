@@ -0,0 +1,549 @@
+package com.jakduk.api.common.elasticsearch;
+
+import com.jakduk.api.common.util.HangulUtils;
+import com.jakduk.api.common.util.JakdukUtils;
+import com.jakduk.api.configuration.JakdukProperties;
+import com.jakduk.api.model.db.Article;
+import com.jakduk.api.model.db.Gallery;
+import com.jakduk.api.model.elasticsearch.EsTermsBucket;
+import com.jakduk.api.repository.article.ArticleRepository;
+import com.jakduk.api.repository.gallery.GalleryRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.commons.lang3.StringUtils;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+/**
+ * 검색어 자동 완성.
+ *
+ * 글 제목, 사진 이름, 인기 검색어를 자모로 나눈 키의 radix trie 에 넣어서 '손흥', '손ㅎ', 'ㅅㅗㄴ' 모두 '손흥민' 을 찾는다.
+ * 노드마다 아래에서 가장 점수가 높은 maxSuggestions 개를 기억해두고, 그 아래가 바뀌면 잊는다.
+ * ElasticsearchListener 가 색인, 삭제할 때 바로 반영하고, 다른 서버가 받은 것은 주기적으로 전체를 다시 읽어 맞춘다.
+ */
+
+@Component
+public class SearchSuggester {
+
+	private static final String ARTICLE = "article:";
+	private static final String GALLERY = "gallery:";
+
+	private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+	private final ArticleRepository articleRepository;
+	private final GalleryRepository galleryRepository;
+	private final PopularSearchWordCounter popularSearchWordCounter;
+	private final JakdukProperties.SearchSuggest searchSuggestProperties;
+	private final Timer suggestTimer;
+
+	private volatile Trie trie;
+
+	@Autowired
+	public SearchSuggester(ArticleRepository articleRepository, GalleryRepository galleryRepository,
+						   PopularSearchWordCounter popularSearchWordCounter, JakdukProperties.SearchSuggest searchSuggestProperties,
+						   MeterRegistry meterRegistry) {
+
+		this.articleRepository = articleRepository;
+		this.galleryRepository = galleryRepository;
+		this.popularSearchWordCounter = popularSearchWordCounter;
+		this.searchSuggestProperties = searchSuggestProperties;
+		this.trie = this.newTrie();
+
+		Gauge.builder("jakduk.search.suggest.terms", this, suggester -> suggester.trie.size())
+				.description("자동 완성에 들어 있는 검색어 수")
+				.register(meterRegistry);
+
+		this.suggestTimer = Timer.builder("jakduk.search.suggest")
+				.description("자동 완성 한번에 걸린 시간")
+				.publishPercentileHistogram()
+				.register(meterRegistry);
+	}
+
+	/**
+	 * 글 제목, 사진 이름을 최신 순으로 maxTerms 까지 다시 읽는다.
+	 */
+	@Scheduled(fixedDelayString = "${jakduk.search-suggest.refresh-interval-millis:600000}")
+	public synchronized void refresh() {
+		long started = System.currentTimeMillis();
+		Trie newTrie = this.newTrie();
+		Integer limit = searchSuggestProperties.getLoadBatchSize();
+
+		ObjectId lastArticleId = null;
+		ObjectId lastGalleryId = null;
+		Boolean articlesLeft = true;
+		Boolean galleriesLeft = true;
+
+		// 한쪽이 maxTerms 를 다 채우지 않도록 번갈아 읽는다.
+		while ((articlesLeft || galleriesLeft) && ! newTrie.isFull()) {
+			if (articlesLeft) {
+				List<Article> articles = articleRepository.findSubjectsByIdLessThan(lastArticleId, limit);
+				articles.forEach(article -> newTrie.put(ARTICLE + article.getId(), stripSubject(article.getSubject())));
+
+				articlesLeft = articles.size() == limit;
+				lastArticleId = articles.isEmpty() ? null : new ObjectId(articles.get(articles.size() - 1).getId());
+			}
+
+			if (galleriesLeft) {
+				List<Gallery> galleries = galleryRepository.findEnabledNamesByIdLessThan(lastGalleryId, limit);
+				galleries.forEach(gallery -> newTrie.put(GALLERY + gallery.getId(), gallery.getName()));
+
+				galleriesLeft = galleries.size() == limit;
+				lastGalleryId = galleries.isEmpty() ? null : new ObjectId(galleries.get(galleries.size() - 1).getId());
+			}
+		}
+
+		newTrie.setPopularWords(this.getPopularWords());
+
+		// 읽는 동안 반영된 색인, 삭제는 다음 갱신 때 맞춰진다.
+		trie = newTrie;
+
+		log.info("search suggester refreshed. terms={}, elapsed={}ms", newTrie.size(), System.currentTimeMillis() - started);
+	}
+
+	/**
+	 * 인기 검색어의 점수를 다시 매긴다.
+	 */
+	@Scheduled(fixedDelayString = "${jakduk.search-suggest.popular-words-refresh-millis:60000}")
+	public void refreshPopularWords() {
+		trie.setPopularWords(this.getPopularWords());
+	}
+
+	/**
+	 * @param query 입력 중인 검색어. 음절, 자모 어느 쪽이든 된다
+	 * @param size 최대 개수. maxSuggestions 를 넘지 않는다
+	 * @return 점수가 높은 순의 검색어
+	 */
+	public List<String> suggest(String query, Integer size) {
+		long started = System.nanoTime();
+		String key = toKey(query);
+
+		List<String> suggestions = StringUtils.isBlank(key) ? Collections.emptyList()
+				: trie.suggest(key, Math.min(size, searchSuggestProperties.getMaxSuggestions()));
+
+		suggestTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+
+		return suggestions;
+	}
+
+	public void putArticle(String id, String subject) {
+		trie.put(ARTICLE + id, stripSubject(subject));
+	}
+
+	public void removeArticle(String id) {
+		trie.remove(ARTICLE + id);
+	}
+
+	public void putGallery(String id, String name) {
+		trie.put(GALLERY + id, name);
+	}
+
+	public void removeGallery(String id) {
+		trie.remove(GALLERY + id);
+	}
+
+	public Integer size() {
+		return trie.size();
+	}
+
+	// 입력한 검색어와 넣는 검색어를 같은 키로 만든다. 공백을 하나로 줄이고 소문자로 바꾼 뒤 자모로 나눈다.
+	private static String toKey(String text) {
+		return HangulUtils.decompose(StringUtils.normalizeSpace(StringUtils.defaultString(text)).toLowerCase(Locale.ROOT));
+	}
+
+	// 태그가 섞인 제목만 Jsoup 으로 읽는다.
+	private static String stripSubject(String subject) {
+		return StringUtils.containsAny(subject, '<', '&') ? JakdukUtils.stripHtmlTag(subject) : subject;
+	}
+
+	private Map<String, Long> getPopularWords() {
+		return popularSearchWordCounter.getPopularWords().stream()
+				.collect(Collectors.toMap(EsTermsBucket::getKey, EsTermsBucket::getCount, Long::sum));
+	}
+
+	private Trie newTrie() {
+		return new Trie(searchSuggestProperties.getMaxTerms(), searchSuggestProperties.getMaxTermLength(),
+				searchSuggestProperties.getMaxSuggestions());
+	}
+
+	/**
+	 * 자모 키의 radix trie. 쓰기는 write lock, 찾기는 read lock 으로 막는다.
+	 */
+	private static class Trie {
+
+		// 점수가 낮은 것이 앞. 점수가 같으면 짧은 것, 가나다 순으로 앞선 것이 위
+		private static final Comparator<Term> RANKING = Comparator.<Term>comparingLong(Term::getScore)
+				.thenComparing(Comparator.<Term>comparingInt(term -> term.text.length()).reversed())
+				.thenComparing(Comparator.<Term, String>comparing(term -> term.text).reversed());
+
+		private final Integer maxTerms;
+		private final Integer maxTermLength;
+		private final Integer maxSuggestions;
+
+		private final ReadWriteLock lock = new ReentrantReadWriteLock();
+		private final Node root = new Node("");
+		private final Map<String, Term> documents = new HashMap<>(); // 문서 -> 그 문서의 검색어
+		private final Set<Term> popularTerms = new HashSet<>();
+		private int size = 0;
+
+		Trie(Integer maxTerms, Integer maxTermLength, Integer maxSuggestions) {
+			this.maxTerms = maxTerms;
+			this.maxTermLength = maxTermLength;
+			this.maxSuggestions = maxSuggestions;
+		}
+
+		/**
+		 * 문서의 검색어를 넣는다. 같은 문서의 예전 검색어는 뺀다.
+		 */
+		void put(String document, String text) {
+			lock.writeLock().lock();
+
+			try {
+				Term previous = documents.remove(document);
+
+				if (Objects.nonNull(previous)) {
+					previous.documents--;
+					this.removeIfUnused(previous);
+				}
+
+				Term term = this.getOrCreate(text);
+
+				if (Objects.nonNull(term)) {
+					term.documents++;
+					documents.put(document, term);
+					this.invalidate(term.key);
+				}
+
+			} finally {
+				lock.writeLock().unlock();
+			}
+		}
+
+		void remove(String document) {
+			lock.writeLock().lock();
+
+			try {
+				Term term = documents.remove(document);
+
+				if (Objects.nonNull(term)) {
+					term.documents--;
+					this.removeIfUnused(term);
+				}
+
+			} finally {
+				lock.writeLock().unlock();
+			}
+		}
+
+		/**
+		 * 인기 검색어의 검색 수를 점수에 더한다. 이번에 없는 예전 인기 검색어는 0 으로 돌린다.
+		 * 대소문자, 공백만 다른 인기 검색어는 같은 검색어라 검색 수를 합친다.
+		 */
+		void setPopularWords(Map<String, Long> popularWords) {
+			lock.writeLock().lock();
+
+			try {
+				Set<String> popularKeys = popularWords.keySet().stream()
+						.map(SearchSuggester::toKey)
+						.collect(Collectors.toSet());
+
+				for (Term term : new ArrayList<>(popularTerms)) {
+					if (! popularKeys.contains(term.key)) {
+						term.popularity = 0L;
+						popularTerms.remove(term);
+						this.removeIfUnused(term);
+					}
+				}
+
+				Map<Term, Long> popularities = new HashMap<>();
+
+				popularWords.forEach((word, count) -> {
+					Term term = this.getOrCreate(word);
+
+					if (Objects.nonNull(term))
+						popularities.merge(term, count, Long::sum);
+				});
+
+				popularities.forEach((term, count) -> {
+					if (term.popularity == count)
+						return;
+
+					term.popularity = count;
+					popularTerms.add(term);
+					this.invalidate(term.key);
+				});
+
+			} finally {
+				lock.writeLock().unlock();
+			}
+		}
+
+		List<String> suggest(String prefix, Integer size) {
+			lock.readLock().lock();
+
+			try {
+				Node node = this.findPrefix(prefix);
+
+				if (Objects.isNull(node))
+					return Collections.emptyList();
+
+				return this.getTop(node).stream()
+						.limit(size)
+						.map(term -> term.text)
+						.collect(Collectors.toList());
+
+			} finally {
+				lock.readLock().unlock();
+			}
+		}
+
+		Boolean isFull() {
+			return this.size() >= maxTerms;
+		}
+
+		int size() {
+			lock.readLock().lock();
+
+			try {
+				return size;
+			} finally {
+				lock.readLock().unlock();
+			}
+		}
+
+		// 너무 길거나 비었거나, 새 검색어인데 가득 찼으면 null
+		private Term getOrCreate(String text) {
+			String normalized = StringUtils.normalizeSpace(text);
+
+			if (StringUtils.isEmpty(normalized) || normalized.length() > maxTermLength)
+				return null;
+
+			String key = toKey(normalized);
+			Node node = this.find(key);
+
+			if (Objects.nonNull(node) && Objects.nonNull(node.term))
+				return node.term;
+
+			if (size >= maxTerms)
+				return null;
+
+			node = this.insert(key);
+			node.term = new Term(normalized, key);
+			size++;
+
+			return node.term;
+		}
+
+		private void removeIfUnused(Term term) {
+			if (term.documents > 0 || term.popularity > 0) {
+				this.invalidate(term.key);
+				return;
+			}
+
+			Node node = this.find(term.key);
+
+			if (Objects.nonNull(node) && node.term == term) {
+				// 빈 노드는 다음 전체 갱신 때 없어진다.
+				node.term = null;
+				size--;
+			}
+
+			this.invalidate(term.key);
+		}
+
+		// key 까지 가는 길의 노드가 기억한 순위를 잊는다.
+		private void invalidate(String key) {
+			Node node = root;
+			int i = 0;
+
+			root.top = null;
+
+			while (i < key.length()) {
+				Node child = node.getChild(key.charAt(i));
+
+				if (Objects.isNull(child))
+					return;
+
+				child.top = null;
+				int common = commonPrefixLength(child.label, key, i);
+
+				if (common < child.label.length())
+					return;
+
+				node = child;
+				i += common;
+			}
+		}
+
+		private Node find(String key) {
+			return this.descend(key, false);
+		}
+
+		// 찾는 키가 노드 라벨 중간에서 끝나도 그 노드를 돌려준다.
+		private Node findPrefix(String prefix) {
+			return this.descend(prefix, true);
+		}
+
+		private Node descend(String key, Boolean prefix) {
+			Node node = root;
+			int i = 0;
+
+			while (i < key.length()) {
+				Node child = node.getChild(key.charAt(i));
+
+				if (Objects.isNull(child))
+					return null;
+
+				int common = commonPrefixLength(child.label, key, i);
+
+				if (i + common == key.length()) {
+					return common == child.label.length() || prefix ? child : null;
+				}
+
+				if (common < child.label.length())
+					return null;
+
+				node = child;
+				i += common;
+			}
+
+			return node;
+		}
+
+		private Node insert(String key) {
+			Node node = root;
+			int i = 0;
+
+			while (i < key.length()) {
+				Node child = node.getChild(key.charAt(i));
+
+				if (Objects.isNull(child)) {
+					Node leaf = new Node(key.substring(i));
+					node.addChild(leaf);
+					return leaf;
+				}
+
+				int common = commonPrefixLength(child.label, key, i);
+
+				// 라벨 중간에서 갈라지면 공통 부분으로 노드를 하나 끼운다.
+				if (common < child.label.length()) {
+					Node middle = new Node(child.label.substring(0, common));
+					node.replaceChild(child, middle);
+					child.label = child.label.substring(common);
+					middle.addChild(child);
+					child = middle;
+				}
+
+				node = child;
+				i += common;
+			}
+
+			return node;
+		}
+
+		private List<Term> getTop(Node node) {
+			List<Term> top = node.top;
+
+			if (Objects.nonNull(top))
+				return top;
+
+			PriorityQueue<Term> heap = new PriorityQueue<>(RANKING);
+			Deque<Node> stack = new ArrayDeque<>();
+			stack.push(node);
+
+			while (! stack.isEmpty()) {
+				Node current = stack.pop();
+
+				if (Objects.nonNull(current.term)) {
+					heap.offer(current.term);
+
+					if (heap.size() > maxSuggestions)
+						heap.poll();
+				}
+
+				for (Node child : current.children)
+					stack.push(child);
+			}
+
+			top = heap.stream()
+					.sorted(RANKING.reversed())
+					.collect(Collectors.collectingAndThen(Collectors.toList(), Collections::unmodifiableList));
+
+			// 읽는 쪽끼리는 같은 값을 넣으니 겹쳐도 된다. 바뀔 때는 write lock 으로 막혀 있다.
+			node.top = top;
+
+			return top;
+		}
+
+		private static int commonPrefixLength(String label, String key, int offset) {
+			int max = Math.min(label.length(), key.length() - offset);
+			int i = 0;
+
+			while (i < max && label.charAt(i) == key.charAt(offset + i))
+				i++;
+
+			return i;
+		}
+	}
+
+	private static class Node {
+		private static final Node[] NO_CHILDREN = new Node[0];
+
+		private String label; // 부모에서 이 노드까지의 자모
+		private Node[] children = NO_CHILDREN;
+		private Term term;
+		private volatile List<Term> top;
+
+		Node(String label) {
+			this.label = label;
+		}
+
+		Node getChild(char first) {
+			for (Node child : children) {
+				if (child.label.charAt(0) == first)
+					return child;
+			}
+
+			return null;
+		}
+
+		void addChild(Node child) {
+			children = Arrays.copyOf(children, children.length + 1);
+			children[children.length - 1] = child;
+		}
+
+		void replaceChild(Node child, Node replacement) {
+			for (int i = 0; i < children.length; i++) {
+				if (children[i] == child)
+					children[i] = replacement;
+			}
+		}
+	}
+
+	private static class Term {
+		private final String text; // 보여줄 검색어
+		private final String key; // 자모로 나눈 키
+		private int documents = 0; // 이 검색어가 제목, 이름인 문서 수
+		private long popularity = 0L; // 인기 검색어 검색 수
+
+		Term(String text, String key) {
+			this.text = text;
+			this.key = key;
+		}
+
+		long getScore() {
+			return documents + popularity;
+		}
+	}
+
+}
@@ -0,0 +1,89 @@
+package com.jakduk.api.common.elasticsearch;
+
+import com.jakduk.api.common.Constants;
+import com.jakduk.api.configuration.JakdukProperties;
+import org.elasticsearch.action.search.SearchRequestBuilder;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.search.aggregations.AggregationBuilders;
+import org.elasticsearch.search.aggregations.bucket.histogram.DateHistogramInterval;
+import org.elasticsearch.search.aggregations.bucket.histogram.Histogram;
+import org.elasticsearch.search.aggregations.bucket.terms.Terms;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * ES 에 쌓아둔 검색어 문서를 날짜별로 센다.
+ * PopularSearchWordCounter 가 처음 순위를 매기기 전에, 배포 전의 검색 수로 DB 를 채울 때 쓴다.
+ */
+
+@Component
+public class SearchWordHistory {
+
+	private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+	private final Client client;
+	private final JakdukProperties.Elasticsearch elasticsearchProperties;
+
+	@Autowired
+	public SearchWordHistory(Client client, JakdukProperties.Elasticsearch elasticsearchProperties) {
+		this.client = client;
+		this.elasticsearchProperties = elasticsearchProperties;
+	}
+
+	/**
+	 * 날짜 -> 검색어 -> 검색 수. 날짜마다 많이 찾은 size 개까지
+	 *
+	 * @param gteDate 이 날짜부터 센다
+	 */
+	public Map<LocalDate, Map<String, Long>> countByDay(LocalDate gteDate, Integer size) {
+
+		SearchRequestBuilder searchRequestBuilder = client.prepareSearch()
+				.setIndices(elasticsearchProperties.getIndexSearchWord())
+				.setTypes(Constants.ES_TYPE_SEARCH_WORD)
+				.setSize(0)
+				.setQuery(
+						QueryBuilders.rangeQuery("registerDate").gte(gteDate.toString())
+				)
+				.addAggregation(
+						AggregationBuilders
+								.dateHistogram("day_aggs")
+								.field("registerDate")
+								.dateHistogramInterval(DateHistogramInterval.DAY)
+								.format("yyyy-MM-dd")
+								.subAggregation(
+										AggregationBuilders
+												.terms("word_aggs")
+												.field("word")
+												.size(size)
+								)
+				);
+
+		log.debug("countByDay Query:\n{}", searchRequestBuilder);
+
+		SearchResponse searchResponse = searchRequestBuilder.execute().actionGet();
+		Histogram dayHistogram = searchResponse.getAggregations().get("day_aggs");
+
+		Map<LocalDate, Map<String, Long>> counts = new HashMap<>();
+
+		for (Histogram.Bucket dayBucket : dayHistogram.getBuckets()) {
+			Terms wordTerms = dayBucket.getAggregations().get("word_aggs");
+			Map<String, Long> words = new HashMap<>();
+
+			wordTerms.getBuckets().forEach(wordBucket -> words.put(wordBucket.getKeyAsString(), wordBucket.getDocCount()));
+
+			if (! words.isEmpty())
+				counts.put(LocalDate.parse(dayBucket.getKeyAsString()), words);
+		}
+
+		return counts;
+	}
+
+}
@@ -0,0 +1,75 @@
+package com.jakduk.api.common.gallery;
+
+import com.jakduk.api.configuration.JakdukProperties;
+import com.jakduk.api.model.db.Gallery;
+import org.apache.commons.lang3.StringUtils;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Objects;
+
+/**
+ * 사진의 원본, 썸네일 파일 경로.
+ *
+ * blob 이 있으면 ImageBlobStore 에서, 없으면 예전처럼 년/월/일 폴더의 {사진 ID}.{포맷} 에서 찾는다.
+ */
+
+@Component
+public class GalleryFileResolver {
+
+	public final static String THUMBNAIL = "thumbnail";
+
+	private final JakdukProperties.Storage storageProperties;
+	private final ImageBlobStore imageBlobStore;
+
+	@Autowired
+	public GalleryFileResolver(JakdukProperties.Storage storageProperties, ImageBlobStore imageBlobStore) {
+		this.storageProperties = storageProperties;
+		this.imageBlobStore = imageBlobStore;
+	}
+
+	/**
+	 * 사진 포맷.
+	 */
+	public static String getFormatName(String contentType) {
+		return StringUtils.split(contentType, "/")[1];
+	}
+
+	/**
+	 * 파일 이름에 쓰는 ID. blob 이면 blob ID, 아니면 사진 ID
+	 */
+	public static String getFileId(Gallery gallery) {
+		return Objects.nonNull(gallery.getBlobId()) ? gallery.getBlobId() : gallery.getId();
+	}
+
+	public Path getImageFilePath(Gallery gallery) {
+		if (Objects.nonNull(gallery.getBlobId()))
+			return imageBlobStore.getFilePath(gallery.getBlobId());
+
+		return this.getDatePath(storageProperties.getImagePath(), gallery.getId())
+				.resolve(gallery.getId() + "." + getFormatName(gallery.getContentType()));
+	}
+
+	public Path getThumbnailFilePath(Gallery gallery) {
+		String formatName = getFormatName(gallery.getContentType());
+
+		if (Objects.nonNull(gallery.getBlobId()))
+			return imageBlobStore.getDerivedFilePath(gallery.getBlobId(), THUMBNAIL, formatName);
+
+		return this.getDatePath(storageProperties.getThumbnailPath(), gallery.getId())
+				.resolve(gallery.getId() + "." + formatName);
+	}
+
+	private Path getDatePath(String rootPath, String id) {
+		LocalDate localDate = new ObjectId(id).getDate().toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
+
+		return Paths.get(rootPath, String.valueOf(localDate.getYear()), String.valueOf(localDate.getMonthValue()),
+				String.valueOf(localDate.getDayOfMonth()));
+	}
+
+}
@@ -0,0 +1,126 @@
+package com.jakduk.api.common.gallery;
+
+import com.jakduk.api.configuration.JakdukProperties;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.*;
+
+/**
+ * 사진 크기 줄이기, 썸네일 만들기 같은 CPU 작업을 요청 스레드 밖에서 처리하는 실행기.
+ *
+ * 스레드 수는 CPU 수, 대기열은 정해진 크기로 제한한다. 대기열이 꽉 차면 요청 스레드가 직접 처리해서(CallerRunsPolicy)
+ * 올리기 요청이 몰릴 때 자연스럽게 속도가 조절된다.
+ */
+
+@Component
+public class GalleryImageProcessor {
+
+	private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+	private final Map<String, Future<?>> pendingTasks = new ConcurrentHashMap<>();
+
+	private final JakdukProperties.GalleryImage galleryImageProperties;
+	private final ThreadPoolExecutor executor;
+	private final Timer successTimer;
+	private final Timer failureTimer;
+
+	@Autowired
+	public GalleryImageProcessor(JakdukProperties.GalleryImage galleryImageProperties, MeterRegistry meterRegistry) {
+		this.galleryImageProperties = galleryImageProperties;
+
+		int threads = galleryImageProperties.getThreads() > 0 ?
+				galleryImageProperties.getThreads() : Runtime.getRuntime().availableProcessors();
+
+		this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(galleryImageProperties.getQueueCapacity()),
+				new CustomizableThreadFactory("gallery-image-"),
+				new ThreadPoolExecutor.CallerRunsPolicy());
+
+		Gauge.builder("jakduk.gallery.image.queue", executor, pool -> pool.getQueue().size())
+				.description("처리를 기다리는 사진 수")
+				.register(meterRegistry);
+
+		Gauge.builder("jakduk.gallery.image.active", executor, ThreadPoolExecutor::getActiveCount)
+				.description("처리 중인 사진 수")
+				.register(meterRegistry);
+
+		this.successTimer = Timer.builder("jakduk.gallery.image.processing")
+				.tag("result", "success")
+				.register(meterRegistry);
+
+		this.failureTimer = Timer.builder("jakduk.gallery.image.processing")
+				.tag("result", "failure")
+				.register(meterRegistry);
+	}
+
+	/**
+	 * 사진 처리를 맡긴다. 대기열이 꽉 차 있으면 호출한 스레드에서 바로 처리한다.
+	 *
+	 * @param id 사진 ID
+	 * @param task 처리 작업
+	 */
+	public void submit(String id, Runnable task) {
+		FutureTask<Void> future = new FutureTask<Void>(() -> {
+			long started = System.nanoTime();
+
+			try {
+				task.run();
+				successTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+			} catch (RuntimeException e) {
+				failureTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+				log.error("failed to process gallery image. id=" + id, e);
+			}
+		}, null) {
+			@Override
+			protected void done() {
+				pendingTasks.remove(id, this);
+			}
+		};
+
+		pendingTasks.put(id, future);
+		executor.execute(future);
+	}
+
+	/**
+	 * 처리 중인 사진이면 끝날 때까지 잠시 기다린다.
+	 *
+	 * @param id 사진 ID
+	 */
+	public void await(String id) {
+		Future<?> future = pendingTasks.get(id);
+
+		if (Objects.isNull(future))
+			return;
+
+		try {
+			future.get(galleryImageProperties.getAwaitMillis(), TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException | TimeoutException e) {
+			log.warn("gallery image is not processed yet. id={}, cause={}", id, e.toString());
+		}
+	}
+
+	public Integer getQueueSize() {
+		return executor.getQueue().size();
+	}
+
+	@PreDestroy
+	public void shutdown() throws InterruptedException {
+		executor.shutdown();
+
+		if (! executor.awaitTermination(galleryImageProperties.getAwaitMillis(), TimeUnit.MILLISECONDS))
+			log.warn("gallery image processor did not terminate. remains={}", executor.getQueue().size());
+	}
+
+}
@@ -0,0 +1,116 @@
+package com.jakduk.api.common.gallery;
+
+import com.jakduk.api.common.Constants;
+import com.jakduk.api.repository.gallery.GalleryRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * 사진첩 보기의 앞, 뒤 사진을 찾기 위한 사용중(ENABLE) 사진 ID 의 정렬된 색인.
+ *
+ * 사진 ID(ObjectId) 순으로 정렬된 skip list 라서 앞, 뒤 k 장을 O(log n + k) 로 찾는다.
+ * 사진을 사용하거나 지울 때 바로 반영하고, 다른 서버에서 바뀐 것은 주기적으로 전체를 다시 읽어 맞춘다.
+ */
+
+@Component
+public class GallerySurroundingsIndex {
+
+	private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+	private final GalleryRepository galleryRepository;
+
+	private volatile NavigableSet<ObjectId> ids = new ConcurrentSkipListSet<>();
+	private volatile Boolean loaded = false;
+
+	@Autowired
+	public GallerySurroundingsIndex(GalleryRepository galleryRepository, MeterRegistry meterRegistry) {
+		this.galleryRepository = galleryRepository;
+
+		Gauge.builder("jakduk.gallery.surroundings.index.size", this, index -> index.ids.size())
+				.description("사진첩 보기 색인의 사진 수")
+				.register(meterRegistry);
+	}
+
+	/**
+	 * 사용중인 사진 ID 전체를 다시 읽는다.
+	 */
+	@Scheduled(fixedDelayString = "${jakduk.gallery-surroundings.refresh-interval-millis:600000}")
+	public synchronized void refresh() {
+		long started = System.currentTimeMillis();
+
+		NavigableSet<ObjectId> newIds = new ConcurrentSkipListSet<>(galleryRepository.findIdsByStatus(Constants.GALLERY_STATUS_TYPE.ENABLE));
+
+		// 읽는 동안 반영된 추가, 삭제는 다음 갱신 때 맞춰진다.
+		ids = newIds;
+		loaded = true;
+
+		log.info("gallery surroundings index refreshed. size={}, elapsed={}ms", newIds.size(), System.currentTimeMillis() - started);
+	}
+
+	/**
+	 * 사용중이 된 사진을 더한다.
+	 */
+	public void add(String id) {
+		ids.add(new ObjectId(id));
+	}
+
+	/**
+	 * 지워진 사진을 뺀다.
+	 */
+	public void remove(String id) {
+		ids.remove(new ObjectId(id));
+	}
+
+	/**
+	 * 보는 사진보다 최신인 사진 ID. 보는 사진에 가까운 순서.
+	 *
+	 * @param id 보는 사진 ID (색인에 없어도 된다)
+	 * @param limit 최대 개수
+	 */
+	public List<String> findNewerIds(String id, Integer limit) {
+		return this.take(this.getIds().tailSet(new ObjectId(id), false).iterator(), limit);
+	}
+
+	/**
+	 * 보는 사진보다 오래된 사진 ID. 보는 사진에 가까운 순서.
+	 *
+	 * @param id 보는 사진 ID (색인에 없어도 된다)
+	 * @param limit 최대 개수
+	 */
+	public List<String> findOlderIds(String id, Integer limit) {
+		return this.take(this.getIds().headSet(new ObjectId(id), false).descendingIterator(), limit);
+	}
+
+	public Integer size() {
+		return ids.size();
+	}
+
+	private NavigableSet<ObjectId> getIds() {
+		if (! loaded)
+			this.refresh();
+
+		return ids;
+	}
+
+	private List<String> take(Iterator<ObjectId> iterator, Integer limit) {
+		List<String> taken = new ArrayList<>();
+
+		while (iterator.hasNext() && taken.size() < limit)
+			taken.add(iterator.next().toString());
+
+		return taken;
+	}
+
+}
@@ -0,0 +1,220 @@
+package com.jakduk.api.common.gallery;
+
+import com.jakduk.api.common.Constants;
+import com.jakduk.api.configuration.JakdukProperties;
+import com.jakduk.api.exception.ServiceError;
+import com.jakduk.api.exception.ServiceException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import net.coobird.thumbnailator.Thumbnails;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 가로 길이 단계별 사진(variant)을 처음 요청될 때 만든다.
+ *
+ * 원본 옆(년/월/일 폴더)에 {id}-w{가로}.{포맷} 으로 저장하고, 같은 variant 를 동시에 요청하면 한번만 만들고 나머지는 기다린다.
+ * 원본이 단계보다 작거나 gif 이면 원본을 쓴다.
+ *
+ * 서로 다른 variant 를 한꺼번에 만드는 수는 사진 처리 스레드 수(jakduk.gallery-image.threads)로 제한한다.
+ * 차례를 awaitMillis 안에 얻지 못하면 만들지 않고 null 을 준다. 부르는 쪽은 원본을 주되 오래 캐시하지 않게 한다.
+ */
+
+@Component
+public class GalleryVariantGenerator {
+
+	private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+	private final Map<Path, CompletableFuture<Path>> inFlight = new ConcurrentHashMap<>();
+
+	private final JakdukProperties.GalleryImage galleryImageProperties;
+	private final Semaphore permits;
+
+	private final Counter generatedCounter;
+	private final Counter deduplicatedCounter;
+	private final Counter fallbackCounter;
+
+	@Autowired
+	public GalleryVariantGenerator(JakdukProperties.GalleryImage galleryImageProperties, MeterRegistry meterRegistry) {
+		this.galleryImageProperties = galleryImageProperties;
+		this.permits = new Semaphore(galleryImageProperties.getThreads() > 0 ?
+				galleryImageProperties.getThreads() : Runtime.getRuntime().availableProcessors());
+
+		this.generatedCounter = Counter.builder("jakduk.gallery.variant")
+				.tag("result", "generated")
+				.register(meterRegistry);
+
+		this.deduplicatedCounter = Counter.builder("jakduk.gallery.variant")
+				.tag("result", "deduplicated")
+				.register(meterRegistry);
+
+		this.fallbackCounter = Counter.builder("jakduk.gallery.variant")
+				.tag("result", "fallback")
+				.register(meterRegistry);
+	}
+
+	/**
+	 * 요청한 가로 길이를 단계로 올림한다. 가장 큰 단계보다 크면 가장 큰 단계.
+	 */
+	public static Integer toBucketWidth(Integer width) {
+		for (int bucketWidth : Constants.GALLERY_VARIANT_WIDTHS) {
+			if (width <= bucketWidth)
+				return bucketWidth;
+		}
+
+		return Constants.GALLERY_VARIANT_WIDTHS[Constants.GALLERY_VARIANT_WIDTHS.length - 1];
+	}
+
+	/**
+	 * variant 파일 경로
+	 */
+	public static Path getVariantFilePath(Path imageFilePath, String id, String formatName, Integer bucketWidth) {
+		return imageFilePath.resolveSibling(id + "-w" + bucketWidth + "." + formatName);
+	}
+
+	/**
+	 * 가로 길이 단계에 맞는 사진 파일. 없으면 만든다.
+	 *
+	 * @param imageFilePath 원본 파일
+	 * @param id 사진 ID
+	 * @param formatName 사진 포맷
+	 * @param bucketWidth 가로 길이 단계
+	 * @return variant 파일, 만들 필요가 없으면 원본 파일, 만들 차례를 얻지 못했으면 null
+	 */
+	public Path getVariant(Path imageFilePath, String id, String formatName, Integer bucketWidth) {
+
+		if ("gif".equals(formatName))
+			return imageFilePath;
+
+		Path variantFilePath = getVariantFilePath(imageFilePath, id, formatName, bucketWidth);
+
+		if (Files.exists(variantFilePath, LinkOption.NOFOLLOW_LINKS))
+			return variantFilePath;
+
+		CompletableFuture<Path> created = new CompletableFuture<>();
+		CompletableFuture<Path> existing = inFlight.putIfAbsent(variantFilePath, created);
+
+		// 다른 요청이 만드는 중이면 기다린다.
+		if (existing != null) {
+			deduplicatedCounter.increment();
+			return this.join(existing);
+		}
+
+		try {
+			created.complete(this.generateWithPermit(imageFilePath, variantFilePath, formatName, bucketWidth));
+		} catch (RuntimeException e) {
+			created.completeExceptionally(e);
+		} finally {
+			inFlight.remove(variantFilePath, created);
+		}
+
+		return this.join(created);
+	}
+
+	/**
+	 * 사진의 모든 variant 파일을 지운다.
+	 */
+	public void removeVariants(Path imageFilePath, String id, String formatName) {
+		for (int bucketWidth : Constants.GALLERY_VARIANT_WIDTHS) {
+			try {
+				Files.deleteIfExists(getVariantFilePath(imageFilePath, id, formatName, bucketWidth));
+			} catch (IOException e) {
+				log.warn("failed to delete gallery variant. id={}, width={}", id, bucketWidth);
+			}
+		}
+	}
+
+	// 만드는 수가 꽉 차 있으면 잠시 기다리고, 그래도 안 되면 null
+	private Path generateWithPermit(Path imageFilePath, Path variantFilePath, String formatName, Integer bucketWidth) {
+		try {
+			if (! permits.tryAcquire(galleryImageProperties.getAwaitMillis(), TimeUnit.MILLISECONDS)) {
+				fallbackCounter.increment();
+				return null;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			fallbackCounter.increment();
+			return null;
+		}
+
+		try {
+			return this.generate(imageFilePath, variantFilePath, formatName, bucketWidth);
+		} finally {
+			permits.release();
+		}
+	}
+
+	private Path generate(Path imageFilePath, Path variantFilePath, String formatName, Integer bucketWidth) {
+
+		try {
+			// 머리만 읽어 가로 길이를 본다. 원본이 더 작으면 늘리지 않는다.
+			if (this.readWidth(imageFilePath) <= bucketWidth)
+				return imageFilePath;
+
+			Path resizingFilePath = variantFilePath.resolveSibling(variantFilePath.getFileName() + ".resizing." + formatName);
+
+			Thumbnails.of(imageFilePath.toFile())
+					.width(bucketWidth)
+					.outputFormat(formatName)
+					.toFile(resizingFilePath.toFile());
+
+			// 다 쓴 뒤에 바꿔치기 해서, 읽는 쪽이 덜 쓰인 파일을 보지 않게 한다.
+			Files.move(resizingFilePath, variantFilePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+			generatedCounter.increment();
+
+			return variantFilePath;
+
+		} catch (IOException e) {
+			throw new ServiceException(ServiceError.GALLERY_IO_ERROR, e);
+		}
+	}
+
+	private Integer readWidth(Path imageFilePath) throws IOException {
+		try (ImageInputStream imageInputStream = ImageIO.createImageInputStream(imageFilePath.toFile())) {
+			Iterator<ImageReader> readers = ImageIO.getImageReaders(imageInputStream);
+
+			if (! readers.hasNext())
+				throw new ServiceException(ServiceError.GALLERY_IO_ERROR);
+
+			ImageReader reader = readers.next();
+
+			try {
+				reader.setInput(imageInputStream, true, true);
+				return reader.getWidth(0);
+			} finally {
+				reader.dispose();
+			}
+		}
+	}
+
+	private Path join(CompletableFuture<Path> future) {
+		try {
+			return future.join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+
+			throw e;
+		}
+	}
+
+}
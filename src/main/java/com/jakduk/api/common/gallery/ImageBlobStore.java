@@ -0,0 +1,186 @@
+package com.jakduk.api.common.gallery;
+
+import com.jakduk.api.common.util.FileUtils;
+import com.jakduk.api.configuration.JakdukProperties;
+import com.jakduk.api.exception.ServiceError;
+import com.jakduk.api.exception.ServiceException;
+import com.jakduk.api.model.db.ImageBlob;
+import com.jakduk.api.repository.blob.ImageBlobRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.Date;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 내용 해시(SHA-256)로 찾는 사진 파일 저장소.
+ *
+ * 같은 내용은 누가 몇번 올려도 {blobPath}/{해시 앞 2자}/{다음 2자}/{해시} 에 한번만 저장하고, 쓰는 Gallery, UserPicture 수를 센다.
+ * 썸네일, 단계별 사진 같은 파생 파일은 원본 옆에 {해시}-{이름}.{포맷} 으로 두고, 마지막 참조가 사라지면 함께 지운다.
+ *
+ * 여러 서버가 같은 해시를 함께 늘리고 줄일 수 있어서, 지울 때는 DB 에 지우는 중(deletingAt)으로 표시한 뒤 파일을 지운다.
+ * 지우는 중에 참조를 늘린 서버는 표시가 떨어질 때까지 기다렸다가 파일을 다시 쓴다.
+ */
+
+@Component
+public class ImageBlobStore {
+
+	// 다른 서버가 지우다가 꺼졌으면 이만큼 기다린 뒤에 표시를 떼고 다시 쓴다.
+	private static final long DELETING_TIMEOUT_MILLIS = 30000L;
+
+	private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+	private final ImageBlobRepository imageBlobRepository;
+	private final Path blobPath;
+
+	// 같은 해시의 참조 늘리기와 줄이기가 엇갈려, 막 다시 쓰이게 된 파일을 지우지 않도록 한다. 한 서버 안에서만 막는다.
+	private final Object[] locks = new Object[64];
+
+	@Autowired
+	public ImageBlobStore(ImageBlobRepository imageBlobRepository, JakdukProperties.Storage storageProperties) {
+		this.imageBlobRepository = imageBlobRepository;
+		this.blobPath = Paths.get(storageProperties.getBlobPath());
+
+		for (int i = 0; i < locks.length; i++)
+			locks[i] = new Object();
+	}
+
+	/**
+	 * 올린 내용을 흘려 쓸 임시 폴더. 저장소와 같은 파일 시스템이라 옮길 때 이름만 바뀐다.
+	 */
+	public Path getTempDirPath() {
+		return blobPath.resolve("tmp");
+	}
+
+	/**
+	 * 원본 파일 경로
+	 */
+	public Path getFilePath(String blobId) {
+		return blobPath.resolve(blobId.substring(0, 2)).resolve(blobId.substring(2, 4)).resolve(blobId);
+	}
+
+	/**
+	 * 원본 옆에 두는 파생 파일 경로
+	 *
+	 * @param name 파생 종류 (thumbnail, small 등)
+	 */
+	public Path getDerivedFilePath(String blobId, String name, String formatName) {
+		return getFilePath(blobId).resolveSibling(blobId + "-" + name + "." + formatName);
+	}
+
+	/**
+	 * 임시 파일로 받은 내용의 참조를 하나 늘린다. 처음 보는 내용이면 임시 파일을 저장소로 옮긴다.
+	 *
+	 * @param fileInfo 해시를 구한 임시 파일
+	 * @return 새로 저장했으면 true. 이미 있는 내용이면 false 이고 크기 줄이기, 썸네일 같은 작업을 다시 하지 않아도 된다
+	 */
+	public Boolean acquire(FileUtils.FileInfo fileInfo) {
+		String blobId = fileInfo.getHash();
+		ImageBlob imageBlob;
+
+		synchronized (this.getLock(blobId)) {
+			imageBlob = imageBlobRepository.increaseReferences(blobId, fileInfo.getContentType(), fileInfo.getContentLength());
+		}
+
+		// 다른 서버가 파일을 지우는 중이면 다 지울 때까지 기다린다. 늘린 참조가 있으니 문서는 남는다.
+		// 같은 줄의 다른 해시까지 막지 않도록 잠그지 않고 기다린다.
+		if (Objects.nonNull(imageBlob.getDeletingAt()))
+			this.awaitDeleted(blobId, imageBlob.getDeletingAt());
+
+		// 참조를 쥐고 있어서 다시 지우는 중이 되지는 않는다. 파일이 있는지만 잠그고 다시 본다.
+		synchronized (this.getLock(blobId)) {
+			Path filePath = this.getFilePath(blobId);
+
+			if (Files.exists(filePath, LinkOption.NOFOLLOW_LINKS))
+				return false;
+
+			try {
+				Files.createDirectories(filePath.getParent());
+				Files.move(fileInfo.getPath(), filePath, StandardCopyOption.ATOMIC_MOVE);
+
+				return true;
+
+			} catch (IOException e) {
+				imageBlobRepository.decreaseReferences(blobId);
+				throw new ServiceException(ServiceError.GALLERY_IO_ERROR, e);
+			}
+		}
+	}
+
+	/**
+	 * 참조를 하나 줄인다. 마지막 참조였으면 원본과 파생 파일을 모두 지운다.
+	 *
+	 * 지우는 중으로 표시한 뒤에 파일을 지우고, 그 사이 다시 참조되지 않았을 때만 문서를 지운다.
+	 * 다시 참조되었으면 표시만 떼고, 기다리던 쪽이 파일을 다시 쓴다.
+	 */
+	public void release(String blobId) {
+
+		synchronized (this.getLock(blobId)) {
+			ImageBlob imageBlob = imageBlobRepository.decreaseReferences(blobId);
+
+			if (Objects.isNull(imageBlob) || imageBlob.getReferences() > 0)
+				return;
+
+			if (! imageBlobRepository.markDeleting(blobId))
+				return;
+
+			try {
+				this.deleteFiles(blobId);
+			} finally {
+				if (! imageBlobRepository.deleteIfUnreferenced(blobId))
+					imageBlobRepository.unmarkDeleting(blobId);
+			}
+		}
+	}
+
+	private void deleteFiles(String blobId) {
+		Path dirPath = this.getFilePath(blobId).getParent();
+
+		if (Files.notExists(dirPath, LinkOption.NOFOLLOW_LINKS))
+			return;
+
+		try (DirectoryStream<Path> filePaths = Files.newDirectoryStream(dirPath, blobId + "*")) {
+			for (Path filePath : filePaths)
+				Files.deleteIfExists(filePath);
+		} catch (IOException e) {
+			log.warn("failed to delete blob files. blobId={}, cause={}", blobId, e.toString());
+		}
+	}
+
+	// 지우는 중 표시가 떨어질 때까지 기다린다. 너무 오래 걸리면 지우던 서버가 꺼진 것으로 보고 표시를 뗀다.
+	// 그때 남은 원본은 그대로 쓰고, 지워진 썸네일은 원본이 있어도 없으면 다시 만든다.
+	private void awaitDeleted(String blobId, Date deletingAt) {
+		long deadline = deletingAt.getTime() + DELETING_TIMEOUT_MILLIS;
+
+		try {
+			while (System.currentTimeMillis() < deadline) {
+				Optional<ImageBlob> imageBlob = imageBlobRepository.findById(blobId);
+
+				if (! imageBlob.isPresent() || Objects.isNull(imageBlob.get().getDeletingAt()))
+					return;
+
+				TimeUnit.MILLISECONDS.sleep(50);
+			}
+
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			imageBlobRepository.decreaseReferences(blobId);
+			throw new ServiceException(ServiceError.GALLERY_IO_ERROR, e);
+		}
+
+		log.warn("blob files were not deleted in time. blobId={}, deletingAt={}", blobId, deletingAt);
+
+		imageBlobRepository.unmarkDeleting(blobId);
+	}
+
+	private Object getLock(String blobId) {
+		return locks[Math.floorMod(blobId.hashCode(), locks.length)];
+	}
+
+}
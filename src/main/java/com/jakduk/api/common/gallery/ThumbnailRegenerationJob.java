@@ -0,0 +1,285 @@
+package com.jakduk.api.common.gallery;
+
+import com.jakduk.api.common.BatchJobRun;
+import com.jakduk.api.common.Constants;
+import com.jakduk.api.configuration.JakdukProperties;
+import com.jakduk.api.exception.ServiceError;
+import com.jakduk.api.exception.ServiceException;
+import com.jakduk.api.model.db.Gallery;
+import com.jakduk.api.model.db.JobCheckpoint;
+import com.jakduk.api.repository.JobCheckpointRepository;
+import com.jakduk.api.repository.gallery.GalleryRepository;
+import com.jakduk.api.restcontroller.vo.admin.ThumbnailRegenerationResponse;
+import io.micrometer.core.instrument.MeterRegistry;
+import net.coobird.thumbnailator.Thumbnails;
+import net.coobird.thumbnailator.geometry.Positions;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 모든 사진의 썸네일을 정해진 크기로 다시 만드는 배치 작업.
+ *
+ * 사진을 _id 순으로 batchSize 장씩 읽어 ForkJoinPool 에서 나눠 줄이고, 한 묶음이 끝날 때마다 마지막 _id 를 진행 위치로 저장한다.
+ * 멈추거나 서버가 꺼져도 저장된 진행 위치 다음부터 이어서 할 수 있다. 작업은 서버마다 하나만 돈다.
+ */
+
+@Component
+public class ThumbnailRegenerationJob {
+
+	public final static String JOB_NAME = "thumbnailRegeneration";
+
+	private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+	private final GalleryRepository galleryRepository;
+	private final JobCheckpointRepository jobCheckpointRepository;
+	private final GalleryFileResolver galleryFileResolver;
+	private final JakdukProperties.ThumbnailRegeneration thumbnailRegenerationProperties;
+
+	private final BatchJobRun jobRun;
+	private final ForkJoinPool resizePool;
+
+	private final AtomicLong processed = new AtomicLong();
+	private final AtomicLong failed = new AtomicLong();
+	private final AtomicLong skipped = new AtomicLong();
+
+	@Autowired
+	public ThumbnailRegenerationJob(GalleryRepository galleryRepository, JobCheckpointRepository jobCheckpointRepository,
+									GalleryFileResolver galleryFileResolver,
+									JakdukProperties.ThumbnailRegeneration thumbnailRegenerationProperties,
+									MeterRegistry meterRegistry) {
+
+		this.galleryRepository = galleryRepository;
+		this.jobCheckpointRepository = jobCheckpointRepository;
+		this.galleryFileResolver = galleryFileResolver;
+		this.thumbnailRegenerationProperties = thumbnailRegenerationProperties;
+
+		int parallelism = thumbnailRegenerationProperties.getParallelism() > 0 ?
+				thumbnailRegenerationProperties.getParallelism() : Runtime.getRuntime().availableProcessors();
+
+		this.jobRun = new BatchJobRun("thumbnail-regeneration-", "jakduk.thumbnail.regeneration",
+				"썸네일 다시 만들기 작업이 도는 중이면 1", meterRegistry);
+		this.resizePool = new ForkJoinPool(parallelism);
+	}
+
+	/**
+	 * 처음부터 다시 만든다. 저장된 진행 위치는 버린다.
+	 */
+	public ThumbnailRegenerationResponse start(Integer width, Integer height) {
+		JobCheckpoint jobCheckpoint = new JobCheckpoint();
+		jobCheckpoint.setId(JOB_NAME);
+		jobCheckpoint.setWidth(width);
+		jobCheckpoint.setHeight(height);
+		jobCheckpoint.setProcessed(0L);
+		jobCheckpoint.setFailed(0L);
+		jobCheckpoint.setSkipped(0L);
+		jobCheckpoint.setStartedAt(new Date());
+
+		return this.launch(jobCheckpoint);
+	}
+
+	/**
+	 * 저장된 진행 위치 다음부터 같은 크기로 이어서 만든다.
+	 */
+	public ThumbnailRegenerationResponse resume() {
+		JobCheckpoint jobCheckpoint = jobCheckpointRepository.findById(JOB_NAME)
+				.orElseThrow(() -> new ServiceException(ServiceError.NOT_FOUND));
+
+		return this.launch(jobCheckpoint);
+	}
+
+	/**
+	 * 지금 처리 중인 묶음까지만 하고 멈춘다.
+	 */
+	public ThumbnailRegenerationResponse stop() {
+		jobRun.stop();
+
+		return this.getStatus();
+	}
+
+	public ThumbnailRegenerationResponse getStatus() {
+		JobCheckpoint jobCheckpoint = jobRun.getCheckpoint();
+
+		// 다른 서버에서 도는 중이거나 돌다가 꺼졌으면 RUNNING 으로 남아 있다.
+		if (Objects.isNull(jobCheckpoint)) {
+			return jobCheckpointRepository.findById(JOB_NAME)
+					.map(saved -> new ThumbnailRegenerationResponse(saved.getStatus(), saved.getWidth(), saved.getHeight(),
+							saved.getLastId(), saved.getProcessed(), saved.getFailed(), saved.getSkipped(), null,
+							saved.getStartedAt(), saved.getUpdatedAt()))
+					.orElseGet(ThumbnailRegenerationResponse::new);
+		}
+
+		return new ThumbnailRegenerationResponse(jobCheckpoint.getStatus(), jobCheckpoint.getWidth(), jobCheckpoint.getHeight(),
+				jobCheckpoint.getLastId(), processed.get(), failed.get(), skipped.get(), jobRun.getThroughput(processed.get()),
+				jobCheckpoint.getStartedAt(), jobCheckpoint.getUpdatedAt());
+	}
+
+	/**
+	 * 사진 하나의 썸네일을 다시 만든다. 다 만든 뒤에 바꿔치기 해서, 읽는 쪽이 덜 쓰인 파일을 보지 않게 한다.
+	 *
+	 * @param gallery _id, contentType, blobId 가 있는 사진
+	 */
+	public void regenerate(Gallery gallery, Integer width, Integer height) {
+
+		String formatName = GalleryFileResolver.getFormatName(gallery.getContentType());
+
+		Path imageFilePath = galleryFileResolver.getImageFilePath(gallery);
+		Path thumbFilePath = galleryFileResolver.getThumbnailFilePath(gallery);
+
+		if (Files.notExists(imageFilePath, LinkOption.NOFOLLOW_LINKS))
+			throw new ServiceException(ServiceError.NOT_FOUND_GALLERY_FILE);
+
+		try {
+			if (Files.notExists(thumbFilePath.getParent(), LinkOption.NOFOLLOW_LINKS))
+				Files.createDirectories(thumbFilePath.getParent());
+
+			// 같은 blob 을 쓰는 사진끼리 겹치지 않게 사진 ID 로 만든다.
+			Path resizingFilePath = thumbFilePath.resolveSibling(gallery.getId() + "-resizing." + formatName);
+
+			Thumbnails.of(imageFilePath.toFile())
+					.size(width, height)
+					.crop(Positions.TOP_CENTER)
+					.outputFormat(formatName)
+					.toFile(resizingFilePath.toFile());
+
+			Files.move(resizingFilePath, thumbFilePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+		} catch (IOException e) {
+			throw new ServiceException(ServiceError.GALLERY_IO_ERROR, e);
+		}
+	}
+
+	@PreDestroy
+	public void shutdown() throws InterruptedException {
+		if (! jobRun.shutdown()) {
+			JobCheckpoint jobCheckpoint = jobRun.getCheckpoint();
+			log.warn("thumbnail regeneration job did not terminate. lastId={}", Objects.nonNull(jobCheckpoint) ? jobCheckpoint.getLastId() : null);
+		}
+
+		resizePool.shutdown();
+	}
+
+	private ThumbnailRegenerationResponse launch(JobCheckpoint jobCheckpoint) {
+		jobRun.acquire();
+
+		try {
+			processed.set(Objects.nonNull(jobCheckpoint.getProcessed()) ? jobCheckpoint.getProcessed() : 0L);
+			failed.set(Objects.nonNull(jobCheckpoint.getFailed()) ? jobCheckpoint.getFailed() : 0L);
+			skipped.set(Objects.nonNull(jobCheckpoint.getSkipped()) ? jobCheckpoint.getSkipped() : 0L);
+
+			jobCheckpoint.setStatus(Constants.BATCH_JOB_STATUS.RUNNING);
+			jobCheckpoint.setUpdatedAt(new Date());
+			jobCheckpointRepository.save(jobCheckpoint);
+
+		} catch (RuntimeException e) {
+			jobRun.release();
+			throw e;
+		}
+
+		jobRun.launch(jobCheckpoint, processed.get(), () -> this.run(jobCheckpoint));
+
+		log.info("thumbnail regeneration job started. checkpoint={}", jobCheckpoint);
+
+		return this.getStatus();
+	}
+
+	private void run(JobCheckpoint jobCheckpoint) {
+		ObjectId lastId = Objects.nonNull(jobCheckpoint.getLastId()) ? new ObjectId(jobCheckpoint.getLastId()) : null;
+		Constants.BATCH_JOB_STATUS status = Constants.BATCH_JOB_STATUS.FAILED;
+
+		try {
+			while (true) {
+				if (jobRun.isStopRequested()) {
+					status = Constants.BATCH_JOB_STATUS.STOPPED;
+					break;
+				}
+
+				List<Gallery> galleries = galleryRepository.findContentTypeByIdGreaterThan(lastId,
+						thumbnailRegenerationProperties.getBatchSize());
+
+				if (galleries.isEmpty()) {
+					status = Constants.BATCH_JOB_STATUS.COMPLETED;
+					break;
+				}
+
+				List<Callable<Void>> tasks = new ArrayList<>(galleries.size());
+
+				for (Gallery gallery : galleries) {
+					tasks.add(() -> {
+						this.regenerateQuietly(gallery, jobCheckpoint.getWidth(), jobCheckpoint.getHeight());
+						return null;
+					});
+				}
+
+				// 묶음이 다 끝나야 진행 위치를 옮긴다.
+				for (Future<Void> future : resizePool.invokeAll(tasks))
+					future.get();
+
+				lastId = new ObjectId(galleries.get(galleries.size() - 1).getId());
+				this.saveCheckpoint(jobCheckpoint, lastId, Constants.BATCH_JOB_STATUS.RUNNING);
+			}
+
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			status = Constants.BATCH_JOB_STATUS.STOPPED;
+		} catch (ExecutionException | RuntimeException e) {
+			log.error("thumbnail regeneration job failed. lastId=" + lastId, e);
+		} finally {
+			try {
+				this.saveCheckpoint(jobCheckpoint, lastId, status);
+			} catch (RuntimeException e) {
+				log.error("failed to save thumbnail regeneration checkpoint. lastId=" + lastId, e);
+			}
+
+			log.info("thumbnail regeneration job finished. status={}, processed={}, failed={}, skipped={}",
+					status, processed.get(), failed.get(), skipped.get());
+		}
+	}
+
+	private void regenerateQuietly(Gallery gallery, Integer width, Integer height) {
+		try {
+			this.regenerate(gallery, width, height);
+			processed.incrementAndGet();
+			jobRun.getSuccessCounter().increment();
+		} catch (ServiceException e) {
+			if (e.getServiceError() == ServiceError.NOT_FOUND_GALLERY_FILE) {
+				skipped.incrementAndGet();
+				jobRun.getSkippedCounter().increment();
+			} else {
+				this.recordFailure(gallery, e);
+			}
+		} catch (RuntimeException e) {
+			this.recordFailure(gallery, e);
+		}
+	}
+
+	private void recordFailure(Gallery gallery, RuntimeException e) {
+		failed.incrementAndGet();
+		jobRun.getFailureCounter().increment();
+		log.warn("failed to regenerate thumbnail. id={}, cause={}", gallery.getId(), e.toString());
+	}
+
+	private void saveCheckpoint(JobCheckpoint jobCheckpoint, ObjectId lastId, Constants.BATCH_JOB_STATUS status) {
+		jobCheckpoint.setLastId(Objects.nonNull(lastId) ? lastId.toString() : null);
+		jobCheckpoint.setStatus(status);
+		jobCheckpoint.setProcessed(processed.get());
+		jobCheckpoint.setFailed(failed.get());
+		jobCheckpoint.setSkipped(skipped.get());
+		jobCheckpoint.setUpdatedAt(new Date());
+
+		jobCheckpointRepository.save(jobCheckpoint);
+	}
+
+}
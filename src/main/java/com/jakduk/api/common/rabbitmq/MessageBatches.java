@@ -0,0 +1,72 @@
+package com.jakduk.api.common.rabbitmq;
+
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.core.MessagePropertiesBuilder;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 여러 메시지를 한 AMQP 메시지로 묶고, 다시 푼다.
+ *
+ * 묶음은 BatchingRabbitTemplate(SimpleBatchingStrategy) 와 같은 [4바이트 길이][본문] 이 이어진 형식이고,
+ * 같은 exchange, routing key 로 보내는 메시지만 묶는다.
+ * spring-amqp 2.1 컨테이너는 묶음을 풀어서 하나씩만 넘겨주므로, 묶음 단위로 처리하고 싶은 리스너가 직접 푼다.
+ */
+
+public class MessageBatches {
+
+    /**
+     * @param messages 같은 속성으로 보낼 메시지들. 속성은 첫 메시지의 것을 쓴다
+     * @return 하나면 그 메시지. 여럿이면 묶음 메시지
+     */
+    public static Message merge(List<Message> messages) {
+        if (messages.size() == 1)
+            return messages.get(0);
+
+        int length = messages.stream().mapToInt(message -> Integer.BYTES + message.getBody().length).sum();
+        ByteBuffer byteBuffer = ByteBuffer.allocate(length);
+
+        messages.forEach(message -> byteBuffer.putInt(message.getBody().length).put(message.getBody()));
+
+        MessageProperties messageProperties = MessagePropertiesBuilder.fromClonedProperties(messages.get(0).getMessageProperties())
+                .setHeader(MessageProperties.SPRING_BATCH_FORMAT, MessageProperties.BATCH_FORMAT_LENGTH_HEADER4)
+                .setContentLength(length)
+                .build();
+
+        return new Message(byteBuffer.array(), messageProperties);
+    }
+
+    /**
+     * @param message 받은 메시지
+     * @return 묶음이면 안에 든 메시지들. 묶음이 아니면 받은 메시지 하나
+     */
+    public static List<Message> split(Message message) {
+        MessageProperties messageProperties = message.getMessageProperties();
+
+        if (! MessageProperties.BATCH_FORMAT_LENGTH_HEADER4.equals(messageProperties.getHeaders().get(MessageProperties.SPRING_BATCH_FORMAT)))
+            return Collections.singletonList(message);
+
+        List<Message> messages = new ArrayList<>();
+        ByteBuffer byteBuffer = ByteBuffer.wrap(message.getBody());
+
+        while (byteBuffer.hasRemaining()) {
+            byte[] body = new byte[byteBuffer.getInt()];
+            byteBuffer.get(body);
+
+            // dead letter 로 옮길 때 헤더를 따로 붙일 수 있게 속성은 메시지마다 복사한다.
+            MessageProperties fragmentProperties = MessagePropertiesBuilder.fromClonedProperties(messageProperties)
+                    .removeHeader(MessageProperties.SPRING_BATCH_FORMAT)
+                    .setContentLength(body.length)
+                    .build();
+
+            messages.add(new Message(body, fragmentProperties));
+        }
+
+        return messages;
+    }
+
+}
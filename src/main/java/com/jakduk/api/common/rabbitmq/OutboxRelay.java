@@ -0,0 +1,250 @@
+package com.jakduk.api.common.rabbitmq;
+
+import com.jakduk.api.configuration.JakdukProperties;
+import com.jakduk.api.configuration.rabbitmq.RabbitMQ;
+import com.jakduk.api.model.db.OutboxEvent;
+import com.jakduk.api.repository.outbox.OutboxEventRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+
+/**
+ * outbox 에 쌓인 Elasticsearch 색인 이벤트를 RabbitMQ 로 보낸다.
+ *
+ * 같은 routing key 로 이어진 이벤트는 consumerBatchEnabled 이면 batchSize 개씩 한 메시지로 묶는다.
+ * 보낸 순서대로 publisher confirm 을 기다려서, 처음 실패한 묶음 앞까지만 outbox 에서 지운다.
+ * 실패한 묶음부터 뒤는 모두 다시 보낸다. 이미 받은 것을 한번 더 받을 수는 있어도 outbox 에서 가져간 순서는 뒤바뀌지 않는다.
+ * 가져가는 순서는 _id 순이라 여러 서버가 거의 같은 때에 만든 이벤트끼리는 만든 순서와 다를 수 있다.
+ * 맨 앞 묶음이 maxAttempts 번 실패하면 outbox 에 치워두고(parkedAt) 뒤의 이벤트를 보낸다.
+ * spring.rabbitmq.publisher-confirms 가 꺼져 있으면 confirm 이 오지 않아서 보내지 못한 것으로 본다.
+ */
+
+@Component
+public class OutboxRelay {
+
+    private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+    private final String QUEUE_ELASTICSEARCH = "elasticsearch";
+
+    // 서버마다 다른 이름으로 outbox 를 잡는다.
+    private final String owner = UUID.randomUUID().toString();
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final RabbitTemplate rabbitTemplate;
+    private final JakdukProperties.OutboxRelay outboxRelayProperties;
+    private final JakdukProperties.Rabbitmq rabbitmqProperties;
+
+    private final Counter publishedCounter;
+    private final Counter retriedCounter;
+    private final Counter parkedCounter;
+    private final Timer lagTimer;
+
+    @Autowired
+    public OutboxRelay(OutboxEventRepository outboxEventRepository, RabbitTemplate rabbitTemplate,
+                       JakdukProperties.OutboxRelay outboxRelayProperties, JakdukProperties.Rabbitmq rabbitmqProperties,
+                       MeterRegistry meterRegistry) {
+
+        this.outboxEventRepository = outboxEventRepository;
+        this.rabbitTemplate = rabbitTemplate;
+        this.outboxRelayProperties = outboxRelayProperties;
+        this.rabbitmqProperties = rabbitmqProperties;
+
+        this.publishedCounter = Counter.builder("jakduk.outbox.published")
+                .tag("result", "success")
+                .register(meterRegistry);
+
+        this.retriedCounter = Counter.builder("jakduk.outbox.published")
+                .tag("result", "retry")
+                .register(meterRegistry);
+
+        this.parkedCounter = Counter.builder("jakduk.outbox.published")
+                .tag("result", "parked")
+                .register(meterRegistry);
+
+        this.lagTimer = Timer.builder("jakduk.outbox.lag")
+                .description("outbox 에 쌓이고 broker 가 받기까지 걸린 시간")
+                .register(meterRegistry);
+    }
+
+    /**
+     * outbox 를 비운다. 가져온 이벤트가 batchSize 만큼 꽉 차 있으면 쉬지 않고 이어서 보낸다.
+     */
+    @Scheduled(fixedDelayString = "${jakduk.outbox-relay.interval-millis:500}")
+    public void relay() {
+        RabbitMQ elasticsearchQueue = rabbitmqProperties.getQueues().get(QUEUE_ELASTICSEARCH);
+
+        // 큐가 꺼져 있으면 켜질 때까지 outbox 에 남겨둔다.
+        if (! elasticsearchQueue.getEnabled())
+            return;
+
+        Integer batchSize = outboxRelayProperties.getBatchSize();
+        List<OutboxEvent> outboxEvents;
+
+        do {
+            outboxEvents = outboxEventRepository.claim(owner, batchSize, outboxRelayProperties.getLeaseSeconds());
+
+            if (outboxEvents.isEmpty() || ! this.publish(outboxEvents, elasticsearchQueue))
+                return;
+
+        } while (outboxEvents.size() == batchSize);
+    }
+
+    /**
+     * @return 모두 보냈으면 true
+     */
+    private boolean publish(List<OutboxEvent> outboxEvents, RabbitMQ elasticsearchQueue) {
+        List<List<OutboxEvent>> batches = this.toBatches(outboxEvents,
+                elasticsearchQueue.getConsumerBatchEnabled() ? elasticsearchQueue.getBatchSize() : 1);
+
+        List<CorrelationData> sent = new ArrayList<>();
+        String error = null;
+
+        try {
+            for (List<OutboxEvent> batch : batches) {
+                Message message = MessageBatches.merge(batch.stream().map(this::toMessage).collect(Collectors.toList()));
+                CorrelationData correlationData = new CorrelationData(batch.get(0).getId());
+
+                rabbitTemplate.send(rabbitmqProperties.getExchangeName(), batch.get(0).getRoutingKey(), message, correlationData);
+                sent.add(correlationData);
+            }
+        } catch (AmqpException e) {
+            error = e.toString();
+        }
+
+        int confirmed = 0;
+        long deadline = System.currentTimeMillis() + outboxRelayProperties.getConfirmTimeoutMillis();
+
+        for (CorrelationData correlationData : sent) {
+            String nack = this.awaitConfirm(correlationData, deadline);
+
+            if (Objects.nonNull(nack)) {
+                error = nack;
+                break;
+            }
+
+            confirmed++;
+        }
+
+        List<OutboxEvent> published = batches.subList(0, confirmed).stream()
+                .flatMap(List::stream)
+                .collect(Collectors.toList());
+
+        outboxEventRepository.deleteByIds(published.stream().map(OutboxEvent::getId).collect(Collectors.toList()));
+
+        long now = System.currentTimeMillis();
+        published.forEach(outboxEvent -> lagTimer.record(now - outboxEvent.getCreatedAt().getTime(), TimeUnit.MILLISECONDS));
+        publishedCounter.increment(published.size());
+
+        if (confirmed == batches.size())
+            return true;
+
+        // 실패한 묶음만 실패 횟수를 늘린다. 뒤의 묶음은 그 묶음이 나갈 때까지 claim 에서 막히므로 잡아둔 것만 푼다.
+        List<String> failedIds = batches.get(confirmed).stream().map(OutboxEvent::getId).collect(Collectors.toList());
+        List<String> waitingIds = batches.subList(confirmed + 1, batches.size()).stream()
+                .flatMap(List::stream)
+                .map(OutboxEvent::getId)
+                .collect(Collectors.toList());
+
+        Integer attempts = batches.get(confirmed).get(0).getAttempts() + 1;
+
+        if (attempts >= outboxRelayProperties.getMaxAttempts()) {
+            outboxEventRepository.park(failedIds, error);
+            outboxEventRepository.release(waitingIds);
+            parkedCounter.increment(failedIds.size());
+
+            log.error("parked outbox events. ids={}, attempts={}, cause={}", failedIds, attempts, error);
+
+            return false;
+        }
+
+        Date nextAttemptAt = new Date(now + this.backoffMillis(attempts - 1));
+
+        outboxEventRepository.retryLater(failedIds, nextAttemptAt, error);
+        outboxEventRepository.release(waitingIds);
+        retriedCounter.increment(failedIds.size() + waitingIds.size());
+
+        log.warn("failed to publish outbox events. published={}, retry={}, nextAttemptAt={}, cause={}", published.size(),
+                failedIds.size() + waitingIds.size(), nextAttemptAt, error);
+
+        return false;
+    }
+
+    /**
+     * @return broker 가 받았으면 null, 아니면 그 이유
+     */
+    private String awaitConfirm(CorrelationData correlationData, long deadline) {
+        try {
+            CorrelationData.Confirm confirm = correlationData.getFuture()
+                    .get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+
+            return confirm.isAck() ? null : "nack: " + confirm.getReason();
+
+        } catch (TimeoutException e) {
+            return "confirm timeout";
+        } catch (ExecutionException e) {
+            return e.getCause().toString();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "interrupted";
+        }
+    }
+
+    // 1초부터 두배씩 늘리고 maxBackoffSeconds 에서 멈춘다.
+    private long backoffMillis(Integer attempts) {
+        long seconds = 1L << Math.min(attempts, 20);
+
+        return Math.min(seconds, outboxRelayProperties.getMaxBackoffSeconds()) * 1000L;
+    }
+
+    // 같은 routing key 로 이어진 이벤트를 batchSize 개씩 묶는다. 순서는 그대로 둔다.
+    private List<List<OutboxEvent>> toBatches(List<OutboxEvent> outboxEvents, Integer batchSize) {
+        List<List<OutboxEvent>> batches = new ArrayList<>();
+        List<OutboxEvent> batch = new ArrayList<>();
+
+        for (OutboxEvent outboxEvent : outboxEvents) {
+            if (! batch.isEmpty()
+                    && (batch.size() == batchSize || ! batch.get(0).getRoutingKey().equals(outboxEvent.getRoutingKey()))) {
+                batches.add(batch);
+                batch = new ArrayList<>();
+            }
+
+            batch.add(outboxEvent);
+        }
+
+        if (! batch.isEmpty())
+            batches.add(batch);
+
+        return batches;
+    }
+
+    private Message toMessage(OutboxEvent outboxEvent) {
+        MessageProperties messageProperties = new MessageProperties();
+        messageProperties.setContentType(MessageProperties.CONTENT_TYPE_JSON);
+        messageProperties.setContentEncoding(StandardCharsets.UTF_8.name());
+        messageProperties.setMessageId(outboxEvent.getId());
+
+        return new Message(outboxEvent.getPayload().getBytes(StandardCharsets.UTF_8), messageProperties);
+    }
+
+}
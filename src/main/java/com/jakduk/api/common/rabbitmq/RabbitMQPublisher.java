@@ -1,16 +1,25 @@
 package com.jakduk.api.common.rabbitmq;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.jakduk.api.common.Constants;
+import com.jakduk.api.common.elasticsearch.PopularSearchWordCounter;
 import com.jakduk.api.common.util.JakdukUtils;
+import com.jakduk.api.common.util.ObjectMapperUtils;
 import com.jakduk.api.configuration.JakdukProperties;
+import com.jakduk.api.exception.ServiceError;
+import com.jakduk.api.exception.ServiceException;
+import com.jakduk.api.model.db.Article;
+import com.jakduk.api.model.db.OutboxEvent;
 import com.jakduk.api.model.elasticsearch.EsArticle;
 import com.jakduk.api.model.elasticsearch.EsComment;
+import com.jakduk.api.model.elasticsearch.EsCommentParents;
 import com.jakduk.api.model.elasticsearch.EsGallery;
+import com.jakduk.api.model.elasticsearch.EsParentArticle;
 import com.jakduk.api.model.elasticsearch.EsSearchWord;
-import com.jakduk.api.model.embedded.ArticleItem;
 import com.jakduk.api.model.embedded.CommonWriter;
 import com.jakduk.api.model.embedded.SimpleWriter;
 import com.jakduk.api.model.rabbitmq.EmailPayload;
+import com.jakduk.api.repository.outbox.OutboxEventRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
@@ -19,6 +28,7 @@ import org.springframework.stereotype.Component;
 
 import javax.annotation.Resource;
 import java.time.LocalDateTime;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
@@ -34,11 +44,12 @@ public class RabbitMQPublisher {
     private final Logger log = LoggerFactory.getLogger(this.getClass());
 
     private final String QUEUE_EMAIL = "email";
-    private final String QUEUE_ELASTICSEARCH = "elasticsearch";
 
     @Resource private JakdukProperties.Rabbitmq rabbitmqProperties;
 
     @Autowired private RabbitTemplate rabbitTemplate;
+    @Autowired private OutboxEventRepository outboxEventRepository;
+    @Autowired private PopularSearchWordCounter popularSearchWordCounter;
 
     public void sendWelcome(Locale locale, String recipientEmail, String userName) {
         EmailPayload emailPayload = new EmailPayload();
@@ -108,11 +119,11 @@ public class RabbitMQPublisher {
         this.publishElasticsearch(routingKey, id);
     }
 
-    public void indexDocumentComment(String id, ArticleItem articleItem, CommonWriter writer, String content, List<String> galleryIds) {
+    public void indexDocumentComment(String id, Article article, CommonWriter writer, String content, List<String> galleryIds) {
 
         EsComment esComment = new EsComment();
         esComment.setId(id);
-        esComment.setArticle(articleItem);
+        esComment.setArticle(this.toEsParentArticle(article));
         esComment.setContent(JakdukUtils.stripHtmlTag(content));
         esComment.setGalleries(galleryIds);
 
@@ -125,6 +136,19 @@ public class RabbitMQPublisher {
         this.publishElasticsearch(routingKey, id);
     }
 
+    /**
+     * 댓글 문서에 넣어둔 글 정보를 고친다. 글이 지워졌으면 제목이 없다.
+     * 받은 댓글 ID 들을 메시지 하나(outbox 이벤트 하나)로 보낸다.
+     */
+    public void updateDocumentCommentParent(List<String> ids, Article article) {
+        EsCommentParents esCommentParents = new EsCommentParents();
+        esCommentParents.setIds(ids);
+        esCommentParents.setArticle(this.toEsParentArticle(article));
+
+        String routingKey = rabbitmqProperties.getRoutingKeys().get(ElasticsearchRoutingKey.ELASTICSEARCH_UPDATE_DOCUMENT_ARTICLE_COMMENT_PARENT.getRoutingKey());
+        this.publishElasticsearch(routingKey, esCommentParents);
+    }
+
     public void indexDocumentGallery(String id, CommonWriter writer, String name) {
         EsGallery esGallery = new EsGallery();
         esGallery.setId(id);
@@ -140,7 +164,12 @@ public class RabbitMQPublisher {
         this.publishElasticsearch(routingKey, id);
     }
 
+    /**
+     * 검색어 문서는 ES 에 쌓고, 인기 검색어는 PopularSearchWordCounter 에서 바로 센다.
+     */
     public void indexDocumentSearchWord(String word, CommonWriter writer) {
+        popularSearchWordCounter.increase(word);
+
         EsSearchWord esSearchWord = new EsSearchWord();
         esSearchWord.setWord(word);
         esSearchWord.setWriter(Objects.nonNull(writer) ? new SimpleWriter(writer.getUserId(), writer.getUsername()) : null);
@@ -158,12 +187,37 @@ public class RabbitMQPublisher {
         }
     }
 
+    /**
+     * Elasticsearch 색인 이벤트는 바로 보내지 않고 outbox 에 쌓는다. OutboxRelay 가 모아서 보낸다.
+     * 그래서 broker 가 느리거나 꺼져 있거나 큐가 꺼져 있어도 요청은 기다리지 않고, 이벤트는 남는다.
+     */
     public void publishElasticsearch(String routingKey, Object message) {
-        if (rabbitmqProperties.getQueues().get(QUEUE_ELASTICSEARCH).getEnabled()) {
-            rabbitTemplate.convertAndSend(rabbitmqProperties.getExchangeName(), routingKey, message);
-        } else {
-            log.info("Can not publish message. {} queue is disabled.", QUEUE_ELASTICSEARCH);
+        OutboxEvent outboxEvent = new OutboxEvent();
+        outboxEvent.setRoutingKey(routingKey);
+        outboxEvent.setAttempts(0);
+        outboxEvent.setCreatedAt(new Date());
+        outboxEvent.setNextAttemptAt(outboxEvent.getCreatedAt());
+
+        try {
+            outboxEvent.setPayload(ObjectMapperUtils.writeValueAsString(message));
+        } catch (JsonProcessingException e) {
+            throw new ServiceException(ServiceError.ELASTICSEARCH_INDEX_FAILED, e);
         }
+
+        outboxEventRepository.save(outboxEvent);
+    }
+
+    private EsParentArticle toEsParentArticle(Article article) {
+        EsParentArticle esParentArticle = new EsParentArticle();
+        esParentArticle.setId(article.getId());
+        esParentArticle.setSeq(article.getSeq());
+        esParentArticle.setBoard(article.getBoard());
+        esParentArticle.setCategory(article.getCategory());
+
+        if (Objects.nonNull(article.getSubject()))
+            esParentArticle.setSubject(JakdukUtils.stripHtmlTag(article.getSubject()));
+
+        return esParentArticle;
     }
 
 }
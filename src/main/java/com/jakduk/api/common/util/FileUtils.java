@@ -5,16 +5,22 @@ import com.jakduk.api.exception.ServiceError;
 import com.jakduk.api.exception.ServiceException;
 import net.coobird.thumbnailator.Thumbnails;
 import net.coobird.thumbnailator.geometry.Positions;
-import org.apache.commons.io.IOUtils;
+import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.lang3.StringUtils;
 
-import java.io.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URL;
 import java.net.URLConnection;
 import java.nio.file.Files;
 import java.nio.file.LinkOption;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.LocalDate;
 
 /**
@@ -23,6 +29,54 @@ import java.time.LocalDate;
 
 public class FileUtils {
 
+    public static final String HASH_ALGORITHM = "SHA-256";
+
+    /**
+     * 스트림을 임시 파일로 흘려 쓰면서 같은 패스로 SHA-256 해시를 구한다. 내용 전체를 힙에 올리지 않는다.
+     * 예전 사진과 같은 내용인지 찾을 수 있게 MD5 해시도 함께 구한다.
+     *
+     * @param tempDirPath   임시 파일을 만들 폴더. 최종 위치와 같은 파일 시스템이면 옮길 때 이름만 바뀐다.
+     * @param inputStream   콘텐츠
+     * @param contentType   콘텐츠 타입
+     * @throws IOException  예외 처리 필요함
+     */
+    public static FileInfo writeTempFile(Path tempDirPath, InputStream inputStream, String contentType) throws IOException {
+
+        if (Files.notExists(tempDirPath, LinkOption.NOFOLLOW_LINKS))
+            Files.createDirectories(tempDirPath);
+
+        Path tempFilePath = Files.createTempFile(tempDirPath, "upload-", ".tmp");
+
+        try (DigestInputStream legacyDigestInputStream = new DigestInputStream(inputStream, MessageDigest.getInstance("MD5"));
+             DigestInputStream digestInputStream = new DigestInputStream(legacyDigestInputStream, MessageDigest.getInstance(HASH_ALGORITHM))) {
+
+            long size = Files.copy(digestInputStream, tempFilePath, StandardCopyOption.REPLACE_EXISTING);
+            String hash = Hex.encodeHexString(digestInputStream.getMessageDigest().digest());
+            String legacyHash = Hex.encodeHexString(legacyDigestInputStream.getMessageDigest().digest());
+
+            return new FileInfo(contentType, size, tempFilePath, hash, legacyHash);
+
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tempFilePath);
+            throw e;
+        } catch (NoSuchAlgorithmException e) {
+            Files.deleteIfExists(tempFilePath);
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 이미지 파일을 한번만 디코딩한다. (EXIF 방향 반영) 원본 크기, 썸네일을 모두 이 결과로 만든다.
+     *
+     * @param filePath      이미지 파일
+     * @throws IOException  예외 처리 필요함
+     */
+    public static BufferedImage readImage(Path filePath) throws IOException {
+        return Thumbnails.of(filePath.toFile())
+                .scale(1)
+                .asBufferedImage();
+    }
+
     /**
      * 이미지 파일 저장
      *
@@ -31,10 +85,12 @@ public class FileUtils {
      * @param fileName      파일 제목 (확장자 제외)
      * @param contentType   콘텐츠 타입
      * @param size          콘텐츠 크기
-     * @param bytes         콘텐츠
+     * @param sourceFilePath 원본 파일 (gif 는 그대로 복사)
+     * @param image         디코딩된 원본
      * @throws IOException  예외 처리 필요함
      */
-    public static void writeImageFile(String imagePath, LocalDate localDate, String fileName, String contentType, long size, byte[] bytes) throws IOException {
+    public static void writeImageFile(String imagePath, LocalDate localDate, String fileName, String contentType, long size,
+                                      Path sourceFilePath, BufferedImage image) throws IOException {
 
         // 사진 포맷.
         String formatName = StringUtils.split(contentType, "/")[1];
@@ -51,16 +107,15 @@ public class FileUtils {
         // 사진 저장.
         if (Files.notExists(imageFilePath, LinkOption.NOFOLLOW_LINKS)) {
             if ("gif".equals(formatName)) {
-                Files.write(imageFilePath, bytes);
+                Files.copy(sourceFilePath, imageFilePath);
             } else {
 
                 double scale = Constants.GALLERY_MAXIMUM_CAPACITY < size ?
                         Constants.GALLERY_MAXIMUM_CAPACITY / (double) size : 1;
 
-                InputStream inputStream = new ByteArrayInputStream(bytes);
-
-                Thumbnails.of(inputStream)
+                Thumbnails.of(image)
                         .scale(scale)
+                        .outputFormat(formatName)
                         .toFile(imageFilePath.toFile());
             }
         }
@@ -75,11 +130,11 @@ public class FileUtils {
      * @param contentType   콘텐츠 타입
      * @param width         줄일 가로 길이
      * @param height        줄일 세로 길이
-     * @param bytes         콘텐츠
+     * @param image         디코딩된 원본
      * @throws IOException  예외 처리 필요함
      */
     public static void writeSmallImageFile(String imagePath, LocalDate localDate, String fileName, String contentType,
-                                           Integer width, Integer height, byte[] bytes) throws IOException {
+                                           Integer width, Integer height, BufferedImage image) throws IOException {
 
         // 사진 포맷.
         String formatName = StringUtils.split(contentType, "/")[1];
@@ -95,84 +150,50 @@ public class FileUtils {
 
         // 사진 저장.
         if (Files.notExists(imageFilePath, LinkOption.NOFOLLOW_LINKS)) {
-
-            InputStream inputStream = new ByteArrayInputStream(bytes);
-
-            Thumbnails.of(inputStream)
+            Thumbnails.of(image)
                     .size(width, height)
                     .crop(Positions.CENTER)
+                    .outputFormat(formatName)
                     .toFile(imageFilePath.toFile());
         }
     }
 
     /**
-     * 파일 스트림 읽기
-     *
-     * @param imagePath     파일 최상위 경로
-     * @param localDate     파일 작성일 (년/월/일 로 폴더 나뉘어짐)
-     * @param fileName      파일 제목 (확장자 제외)
-     * @param contentType   콘텐츠 타입
-     * @throws IOException  예외 처리 필요함
-     */
-    public static ByteArrayOutputStream readImageFile(String imagePath, LocalDate localDate, String fileName, String contentType) throws IOException {
-
-        // 사진 포맷.
-        String formatName = StringUtils.split(contentType, "/")[1];
-
-        Path filePath = Paths.get(imagePath, String.valueOf(localDate.getYear()), String.valueOf(localDate.getMonthValue()),
-                String.valueOf(localDate.getDayOfMonth()), fileName + "." + formatName);
-
-        if (Files.exists(filePath, LinkOption.NOFOLLOW_LINKS)) {
-            BufferedInputStream in = new BufferedInputStream(new FileInputStream(filePath.toString()));
-            ByteArrayOutputStream byteStream = new ByteArrayOutputStream(512);
-
-            int imageByte;
-
-            while ((imageByte = in.read()) != -1){
-                byteStream.write(imageByte);
-            }
-
-            in.close();
-            return byteStream;
-
-        } else {
-            throw new ServiceException(ServiceError.NOT_FOUND_GALLERY_FILE);
-        }
-    }
-
-    /**
-     * URL에서 파일을 읽어와 FileInfo 객체로 반환
+     * URL에서 파일을 임시 파일로 받아 FileInfo 객체로 반환
      *
      * @param fileUrl URL
+     * @param tempDirPath 임시 파일을 만들 폴더
      * @throws IOException 예외 처리 필요함
      */
-    public static FileInfo getBytesByUrl(String fileUrl) throws IOException {
+    public static FileInfo getFileByUrl(String fileUrl, Path tempDirPath) throws IOException {
 
         URL url = new URL(fileUrl);
 
         URLConnection urlConnection = url.openConnection();
         String contentType = urlConnection.getContentType();
-        Long contentLength = urlConnection.getContentLengthLong();
 
-        BufferedInputStream in = new BufferedInputStream(url.openStream());
-        byte[] bytes = IOUtils.toByteArray(in);
-
-        return new FileInfo(contentType, contentLength, bytes);
+        try (InputStream in = urlConnection.getInputStream()) {
+            return writeTempFile(tempDirPath, in, contentType);
+        }
     }
 
     public static class FileInfo {
 
         private String contentType;
         private Long contentLength;
-        private byte[] bytes;
+        private Path path;
+        private String hash; // SHA-256
+        private String legacyHash; // MD5. 예전 사진의 hash 와 견준다
 
         public FileInfo() {
         }
 
-        public FileInfo(String contentType, Long contentLength, byte[] bytes) {
+        public FileInfo(String contentType, Long contentLength, Path path, String hash, String legacyHash) {
             this.contentType = contentType;
             this.contentLength = contentLength;
-            this.bytes = bytes;
+            this.path = path;
+            this.hash = hash;
+            this.legacyHash = legacyHash;
         }
 
         public String getContentType() {
@@ -183,8 +204,16 @@ public class FileUtils {
             return contentLength;
         }
 
-        public byte[] getBytes() {
-            return bytes;
+        public Path getPath() {
+            return path;
+        }
+
+        public String getHash() {
+            return hash;
+        }
+
+        public String getLegacyHash() {
+            return legacyHash;
         }
     }
 
@@ -0,0 +1,78 @@
+package com.jakduk.api.common.util;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.text.Normalizer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 한글을 자모로 나눈다.
+ *
+ * 겹받침, 이중모음도 입력하는 순서대로 나눠서 '닭' 을 입력하는 중인 '달' 이나 'ㄷㅏㄹ' 로도 앞부분이 맞게 한다.
+ */
+
+public class HangulUtils {
+
+    private static final char SYLLABLE_BEGIN = '가';
+    private static final char SYLLABLE_END = '힣';
+
+    private static final String CHOSEONG = "ㄱㄲㄴㄷㄸㄹㅁㅂㅃㅅㅆㅇㅈㅉㅊㅋㅌㅍㅎ";
+    private static final String JUNGSEONG = "ㅏㅐㅑㅒㅓㅔㅕㅖㅗㅘㅙㅚㅛㅜㅝㅞㅟㅠㅡㅢㅣ";
+    private static final String JONGSEONG = " ㄱㄲㄳㄴㄵㄶㄷㄹㄺㄻㄼㄽㄾㄿㅀㅁㅂㅄㅅㅆㅇㅈㅊㅋㅌㅍㅎ"; // 첫 자리는 받침 없음
+
+    private static final Map<Character, String> COMPOUNDS = new HashMap<>();
+
+    static {
+        String[][] compounds = {
+                {"ㄳ", "ㄱㅅ"}, {"ㄵ", "ㄴㅈ"}, {"ㄶ", "ㄴㅎ"}, {"ㄺ", "ㄹㄱ"}, {"ㄻ", "ㄹㅁ"}, {"ㄼ", "ㄹㅂ"}, {"ㄽ", "ㄹㅅ"},
+                {"ㄾ", "ㄹㅌ"}, {"ㄿ", "ㄹㅍ"}, {"ㅀ", "ㄹㅎ"}, {"ㅄ", "ㅂㅅ"},
+                {"ㅘ", "ㅗㅏ"}, {"ㅙ", "ㅗㅐ"}, {"ㅚ", "ㅗㅣ"}, {"ㅝ", "ㅜㅓ"}, {"ㅞ", "ㅜㅔ"}, {"ㅟ", "ㅜㅣ"}, {"ㅢ", "ㅡㅣ"}
+        };
+
+        for (String[] compound : compounds)
+            COMPOUNDS.put(compound[0].charAt(0), compound[1]);
+    }
+
+    /**
+     * 한글 음절과 겹자모를 자모로 나눈다. 나머지 글자는 그대로 둔다.
+     *
+     * @param text 나눌 글
+     * @return 자모로 나눈 글. '한국' 이면 'ㅎㅏㄴㄱㅜㄱ'
+     */
+    public static String decompose(String text) {
+        String normalized = Normalizer.normalize(StringUtils.defaultString(text), Normalizer.Form.NFC);
+
+        StringBuilder decomposed = new StringBuilder(normalized.length() * 3);
+
+        for (int i = 0; i < normalized.length(); i++) {
+            char c = normalized.charAt(i);
+
+            if (c >= SYLLABLE_BEGIN && c <= SYLLABLE_END) {
+                int index = c - SYLLABLE_BEGIN;
+                int jongseong = index % 28;
+
+                appendJamo(decomposed, CHOSEONG.charAt(index / 588));
+                appendJamo(decomposed, JUNGSEONG.charAt((index % 588) / 28));
+
+                if (jongseong > 0)
+                    appendJamo(decomposed, JONGSEONG.charAt(jongseong));
+
+            } else {
+                appendJamo(decomposed, c);
+            }
+        }
+
+        return decomposed.toString();
+    }
+
+    private static void appendJamo(StringBuilder decomposed, char jamo) {
+        String compound = COMPOUNDS.get(jamo);
+
+        if (compound != null)
+            decomposed.append(compound);
+        else
+            decomposed.append(jamo);
+    }
+
+}
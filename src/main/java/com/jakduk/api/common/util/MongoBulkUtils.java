@@ -0,0 +1,38 @@
+package com.jakduk.api.common.util;
+
+import com.mongodb.MongoBulkWriteException;
+import org.springframework.data.mongodb.BulkOperationException;
+
+import java.util.Set;
+import java.util.stream.Collectors;
+
+public class MongoBulkUtils {
+
+	private MongoBulkUtils() {}
+
+	/**
+	 * UNORDERED bulk 가 일부만 실패했을 때, 실패한 요청의 순서(0부터)를 구한다.
+	 * 나머지 요청은 이미 반영됐으니 다시 보내면 두번 더해진다.
+	 *
+	 * @return 실패한 요청의 순서. bulk 쓰기 실패가 아니라서 어디까지 반영됐는지 모르면 null
+	 */
+	public static Set<Integer> getFailedIndexes(RuntimeException e) {
+		if (e instanceof BulkOperationException) {
+			return ((BulkOperationException) e).getErrors().stream()
+					.map(com.mongodb.BulkWriteError::getIndex)
+					.collect(Collectors.toSet());
+		}
+
+		// Spring Data MongoDB 는 MongoBulkWriteException 을 DataIntegrityViolationException 등으로 감싼다.
+		for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+			if (cause instanceof MongoBulkWriteException) {
+				return ((MongoBulkWriteException) cause).getWriteErrors().stream()
+						.map(com.mongodb.bulk.BulkWriteError::getIndex)
+						.collect(Collectors.toSet());
+			}
+		}
+
+		return null;
+	}
+
+}
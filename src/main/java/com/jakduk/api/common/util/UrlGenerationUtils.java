@@ -10,7 +10,9 @@ import org.springframework.web.util.UriComponentsBuilder;
 
 import javax.annotation.Resource;
 import javax.servlet.http.HttpServletRequest;
+import java.util.Arrays;
 import java.util.Objects;
+import java.util.stream.Collectors;
 
 @Component
 public class UrlGenerationUtils {
@@ -63,6 +65,40 @@ public class UrlGenerationUtils {
         return uriComponents.toUriString();
     }
 
+    /**
+     * 가로 길이 단계별 사진첩 이미지 URL을 생성한다. 사진은 처음 요청될 때 만들어진다.
+     *
+     * @param id Gallery ID
+     * @param width 원하는 가로 길이
+     */
+    public String generateGalleryUrl(String id, Integer width) {
+
+        if (StringUtils.isBlank(id))
+            return null;
+
+        UriComponents uriComponents = UriComponentsBuilder.fromHttpUrl(jakdukProperties.getApiServerUrl())
+                .path("/{urlPathGallery}/{id}")
+                .queryParam("w", width)
+                .buildAndExpand(apiUrlPathProperties.getGalleryImage(), id);
+
+        return uriComponents.toUriString();
+    }
+
+    /**
+     * 가로 길이 단계별 사진첩 이미지의 srcset 값을 생성한다.
+     *
+     * @param id Gallery ID
+     */
+    public String generateGallerySrcset(String id) {
+
+        if (StringUtils.isBlank(id))
+            return null;
+
+        return Arrays.stream(Constants.GALLERY_VARIANT_WIDTHS)
+                .mapToObj(width -> this.generateGalleryUrl(id, width) + " " + width + "w")
+                .collect(Collectors.joining(", "));
+    }
+
     /**
      * 글 상세 API URL 생성
      *
@@ -0,0 +1,108 @@
+package com.jakduk.api.configuration;
+
+import com.jakduk.api.common.Constants;
+import com.jakduk.api.model.db.JobCheckpoint;
+import com.jakduk.api.repository.JobCheckpointRepository;
+import com.jakduk.api.restcontroller.vo.admin.ArticleCountersResponse;
+import com.jakduk.api.service.AdminService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.Date;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 게시물의 댓글수, 감정수 비정규화 필드를 채운다.
+ *
+ * 앱이 뜬 뒤 따로 스레드에서 돌아 시작을 막지 않고, 실패해도 앱은 그대로 뜨며 다음 주기에 다시 한다.
+ * 배포하는 동안 남아 있는 예전 서버는 댓글, 감정을 달아도 $inc 하지 않으므로, 첫 채우기부터 rolloutMinutes 가 지날 때까지
+ * intervalMinutes 마다 다시 채운다. 그 뒤에 시작한 채우기를 마치면 JobCheckpoint 에 COMPLETED 로 남기고 다음부터는 건너뛴다.
+ * 실제 값으로 $set 하므로 여러 서버가 함께 돌거나 중간에 꺼져서 다시 돌아도 결과는 같다.
+ * 그래도 남은 차이는 GET /api/admin/article/counters 로 확인하고 POST 로 고친다.
+ */
+
+@Component
+public class ArticleCountersMigration {
+
+	public final static String JOB_NAME = "articleCountersMigration";
+
+	private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+	@Autowired
+	private AdminService adminService;
+
+	@Autowired
+	private JobCheckpointRepository jobCheckpointRepository;
+
+	@Autowired
+	private JakdukProperties.ArticleCountersMigration articleCountersMigrationProperties;
+
+	private final ScheduledExecutorService scheduler =
+			Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("article-counters-migration-"));
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void start() {
+		scheduler.scheduleWithFixedDelay(this::run, 0L, articleCountersMigrationProperties.getIntervalMinutes(), TimeUnit.MINUTES);
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		scheduler.shutdownNow();
+	}
+
+	/**
+	 * 아직 끝나지 않았으면 한번 채운다. 첫 채우기부터 rolloutMinutes 가 지난 뒤에 시작한 채우기이면 끝낸다.
+	 *
+	 * @return 끝났으면 true
+	 */
+	public Boolean migrate() {
+		Optional<JobCheckpoint> saved = jobCheckpointRepository.findById(JOB_NAME);
+
+		if (saved.filter(jobCheckpoint -> Constants.BATCH_JOB_STATUS.COMPLETED.equals(jobCheckpoint.getStatus())).isPresent())
+			return true;
+
+		Date startedAt = new Date();
+
+		// 서버를 다시 띄워도 첫 채우기를 시작한 때부터 센다.
+		Date firstStartedAt = saved.map(JobCheckpoint::getStartedAt).orElse(startedAt);
+		Boolean completed = startedAt.getTime() - firstStartedAt.getTime() >=
+				TimeUnit.MINUTES.toMillis(articleCountersMigrationProperties.getRolloutMinutes());
+
+		ArticleCountersResponse response = adminService.checkArticleCounters(true);
+
+		JobCheckpoint jobCheckpoint = new JobCheckpoint();
+		jobCheckpoint.setId(JOB_NAME);
+		jobCheckpoint.setStatus(completed ? Constants.BATCH_JOB_STATUS.COMPLETED : Constants.BATCH_JOB_STATUS.RUNNING);
+		jobCheckpoint.setProcessed(response.getScanned().longValue());
+		jobCheckpoint.setSkipped((long) (response.getScanned() - response.getFixed()));
+		jobCheckpoint.setStartedAt(firstStartedAt);
+		jobCheckpoint.setUpdatedAt(new Date());
+
+		jobCheckpointRepository.save(jobCheckpoint);
+
+		log.info("article counters migrated. status={}, scanned={}, fixed={}, elapsed={}ms", jobCheckpoint.getStatus(),
+				response.getScanned(), response.getFixed(), System.currentTimeMillis() - startedAt.getTime());
+
+		return completed;
+	}
+
+	private void run() {
+		try {
+			if (this.migrate())
+				scheduler.shutdown();
+
+		} catch (RuntimeException e) {
+			log.error("failed to migrate article counters. it will be retried.", e);
+		}
+	}
+
+}
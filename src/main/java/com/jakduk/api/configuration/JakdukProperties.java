@@ -4,7 +4,9 @@ import com.jakduk.api.configuration.rabbitmq.RabbitMQ;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -25,6 +27,16 @@ public class JakdukProperties {
     private Rabbitmq rabbitmq = new Rabbitmq();
     private Elasticsearch elasticsearch = new Elasticsearch();
     private Storage storage = new Storage();
+    private ArticleViews articleViews = new ArticleViews();
+    private BoardCache boardCache = new BoardCache();
+    private GallerySurroundings gallerySurroundings = new GallerySurroundings();
+    private GalleryImage galleryImage = new GalleryImage();
+    private ThumbnailRegeneration thumbnailRegeneration = new ThumbnailRegeneration();
+    private OutboxRelay outboxRelay = new OutboxRelay();
+    private SearchReindex searchReindex = new SearchReindex();
+    private SearchCache searchCache = new SearchCache();
+    private PopularSearchWords popularSearchWords = new PopularSearchWords();
+    private SearchSuggest searchSuggest = new SearchSuggest();
 
     public String getRememberMeSeed() {
         return rememberMeSeed;
@@ -98,6 +110,86 @@ public class JakdukProperties {
         this.storage = storage;
     }
 
+    public ArticleViews getArticleViews() {
+        return articleViews;
+    }
+
+    public void setArticleViews(ArticleViews articleViews) {
+        this.articleViews = articleViews;
+    }
+
+    public BoardCache getBoardCache() {
+        return boardCache;
+    }
+
+    public void setBoardCache(BoardCache boardCache) {
+        this.boardCache = boardCache;
+    }
+
+    public GallerySurroundings getGallerySurroundings() {
+        return gallerySurroundings;
+    }
+
+    public void setGallerySurroundings(GallerySurroundings gallerySurroundings) {
+        this.gallerySurroundings = gallerySurroundings;
+    }
+
+    public GalleryImage getGalleryImage() {
+        return galleryImage;
+    }
+
+    public void setGalleryImage(GalleryImage galleryImage) {
+        this.galleryImage = galleryImage;
+    }
+
+    public ThumbnailRegeneration getThumbnailRegeneration() {
+        return thumbnailRegeneration;
+    }
+
+    public void setThumbnailRegeneration(ThumbnailRegeneration thumbnailRegeneration) {
+        this.thumbnailRegeneration = thumbnailRegeneration;
+    }
+
+    public OutboxRelay getOutboxRelay() {
+        return outboxRelay;
+    }
+
+    public void setOutboxRelay(OutboxRelay outboxRelay) {
+        this.outboxRelay = outboxRelay;
+    }
+
+    public SearchReindex getSearchReindex() {
+        return searchReindex;
+    }
+
+    public void setSearchReindex(SearchReindex searchReindex) {
+        this.searchReindex = searchReindex;
+    }
+
+    public SearchCache getSearchCache() {
+        return searchCache;
+    }
+
+    public void setSearchCache(SearchCache searchCache) {
+        this.searchCache = searchCache;
+    }
+
+    public PopularSearchWords getPopularSearchWords() {
+        return popularSearchWords;
+    }
+
+    public void setPopularSearchWords(PopularSearchWords popularSearchWords) {
+        this.popularSearchWords = popularSearchWords;
+    }
+
+    public SearchSuggest getSearchSuggest() {
+        return searchSuggest;
+    }
+
+    public void setSearchSuggest(SearchSuggest searchSuggest) {
+        this.searchSuggest = searchSuggest;
+    }
+
     @Configuration
     @ConfigurationProperties("jakduk.api-url-path")
     public class ApiUrlPath {
@@ -166,6 +258,7 @@ public class JakdukProperties {
     @ConfigurationProperties("jakduk.rabbitmq")
     public class Rabbitmq {
         private String exchangeName;
+        private String searchCacheExchangeName; // 검색 결과 캐시의 세대를 올린 것을 모든 서버에 알리는 fanout exchange
         private Map<String, RabbitMQ> queues = new HashMap<>();
         private Map<String, String> routingKeys = new HashMap<>();
 
@@ -177,6 +270,14 @@ public class JakdukProperties {
             this.exchangeName = exchangeName;
         }
 
+        public String getSearchCacheExchangeName() {
+            return searchCacheExchangeName;
+        }
+
+        public void setSearchCacheExchangeName(String searchCacheExchangeName) {
+            this.searchCacheExchangeName = searchCacheExchangeName;
+        }
+
         public Map<String, RabbitMQ> getQueues() {
             return queues;
         }
@@ -205,6 +306,9 @@ public class JakdukProperties {
         private Integer bulkConcurrentRequests;
         private Integer bulkFlushIntervalSeconds;
         private Integer bulkSizeMb;
+        private Map<String, Long> searchTimeoutMillis = new HashMap<>(); // 통합 검색에서 종류(article, comment, gallery)마다 기다리는 시간
+        private Long defaultSearchTimeoutMillis = 1000L; // searchTimeoutMillis 에 없는 종류를 기다리는 시간
+        private Boolean commentParentJoin = true; // 댓글 검색에서 글 제목을 has_parent 로 가져온다. 재색인으로 모든 댓글에 글 제목을 넣은 뒤에 false 로 바꾼다
 
         public Boolean getEnable() {
             return enable;
@@ -269,6 +373,30 @@ public class JakdukProperties {
         public void setBulkSizeMb(Integer bulkSizeMb) {
             this.bulkSizeMb = bulkSizeMb;
         }
+
+        public Map<String, Long> getSearchTimeoutMillis() {
+            return searchTimeoutMillis;
+        }
+
+        public void setSearchTimeoutMillis(Map<String, Long> searchTimeoutMillis) {
+            this.searchTimeoutMillis = searchTimeoutMillis;
+        }
+
+        public Long getDefaultSearchTimeoutMillis() {
+            return defaultSearchTimeoutMillis;
+        }
+
+        public void setDefaultSearchTimeoutMillis(Long defaultSearchTimeoutMillis) {
+            this.defaultSearchTimeoutMillis = defaultSearchTimeoutMillis;
+        }
+
+        public Boolean getCommentParentJoin() {
+            return commentParentJoin;
+        }
+
+        public void setCommentParentJoin(Boolean commentParentJoin) {
+            this.commentParentJoin = commentParentJoin;
+        }
     }
 
     @Configuration
@@ -278,6 +406,7 @@ public class JakdukProperties {
         private String thumbnailPath;
         private String userPictureLargePath;
         private String userPictureSmallPath;
+        private String blobPath; // 내용 해시로 찾는 사진 파일 저장소
 
         public String getImagePath() {
             return imagePath;
@@ -310,6 +439,429 @@ public class JakdukProperties {
         public void setUserPictureSmallPath(String userPictureSmallPath) {
             this.userPictureSmallPath = userPictureSmallPath;
         }
+
+        public String getBlobPath() {
+            return blobPath;
+        }
+
+        public void setBlobPath(String blobPath) {
+            this.blobPath = blobPath;
+        }
+    }
+
+    @Configuration
+    @ConfigurationProperties("jakduk.article-views")
+    public class ArticleViews {
+        private Long flushIntervalMillis = 10000L; // 읽음 수를 DB에 반영하는 주기
+
+        public Long getFlushIntervalMillis() {
+            return flushIntervalMillis;
+        }
+
+        public void setFlushIntervalMillis(Long flushIntervalMillis) {
+            this.flushIntervalMillis = flushIntervalMillis;
+        }
+    }
+
+    @Configuration
+    @ConfigurationProperties("jakduk.article-counters-migration")
+    public class ArticleCountersMigration {
+        private Long intervalMinutes = 10L; // 끝날 때까지 다시 채우는 주기
+        private Long rolloutMinutes = 60L; // 배포가 끝나는 데 걸리는 시간보다 길게. 첫 채우기부터 이만큼 지나야 끝낸다
+
+        public Long getIntervalMinutes() {
+            return intervalMinutes;
+        }
+
+        public void setIntervalMinutes(Long intervalMinutes) {
+            this.intervalMinutes = intervalMinutes;
+        }
+
+        public Long getRolloutMinutes() {
+            return rolloutMinutes;
+        }
+
+        public void setRolloutMinutes(Long rolloutMinutes) {
+            this.rolloutMinutes = rolloutMinutes;
+        }
+    }
+
+    @Configuration
+    @ConfigurationProperties("jakduk.board-cache")
+    public class BoardCache {
+        private Boolean enable = true;
+        private Integer pages = 3; // 앞에서부터 캐시할 페이지 수
+        private Integer ttlSeconds = 30;
+        private Integer totalTtlSeconds = 300; // 커서 방식 목록의 대략의 전체 글 수
+        private Integer maxEntries = 1000; // 넘으면 가장 오래 안 쓴 목록부터 버린다
+        private List<Integer> sizes = Collections.singletonList(20); // 캐시할 페이지 크기
+
+        public Boolean getEnable() {
+            return enable;
+        }
+
+        public void setEnable(Boolean enable) {
+            this.enable = enable;
+        }
+
+        public Integer getPages() {
+            return pages;
+        }
+
+        public void setPages(Integer pages) {
+            this.pages = pages;
+        }
+
+        public Integer getTtlSeconds() {
+            return ttlSeconds;
+        }
+
+        public void setTtlSeconds(Integer ttlSeconds) {
+            this.ttlSeconds = ttlSeconds;
+        }
+
+        public Integer getTotalTtlSeconds() {
+            return totalTtlSeconds;
+        }
+
+        public void setTotalTtlSeconds(Integer totalTtlSeconds) {
+            this.totalTtlSeconds = totalTtlSeconds;
+        }
+
+        public Integer getMaxEntries() {
+            return maxEntries;
+        }
+
+        public void setMaxEntries(Integer maxEntries) {
+            this.maxEntries = maxEntries;
+        }
+
+        public List<Integer> getSizes() {
+            return sizes;
+        }
+
+        public void setSizes(List<Integer> sizes) {
+            this.sizes = sizes;
+        }
+    }
+
+    @Configuration
+    @ConfigurationProperties("jakduk.gallery-surroundings")
+    public class GallerySurroundings {
+        private Long refreshIntervalMillis = 600000L; // 사진첩 보기 색인을 DB에서 다시 읽는 주기
+
+        public Long getRefreshIntervalMillis() {
+            return refreshIntervalMillis;
+        }
+
+        public void setRefreshIntervalMillis(Long refreshIntervalMillis) {
+            this.refreshIntervalMillis = refreshIntervalMillis;
+        }
+    }
+
+    @Configuration
+    @ConfigurationProperties("jakduk.gallery-image")
+    public class GalleryImage {
+        private Integer threads = 0; // 사진 크기 줄이기, 썸네일 만들기 스레드 수. 0 이면 CPU 수
+        private Integer queueCapacity = 100; // 꽉 차면 요청 스레드가 직접 처리한다
+        private Long awaitMillis = 5000L; // 처리 중인 사진을 요청 받았을 때 기다리는 최대 시간
+
+        public Integer getThreads() {
+            return threads;
+        }
+
+        public void setThreads(Integer threads) {
+            this.threads = threads;
+        }
+
+        public Integer getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(Integer queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+
+        public Long getAwaitMillis() {
+            return awaitMillis;
+        }
+
+        public void setAwaitMillis(Long awaitMillis) {
+            this.awaitMillis = awaitMillis;
+        }
+    }
+
+    @Configuration
+    @ConfigurationProperties("jakduk.thumbnail-regeneration")
+    public class ThumbnailRegeneration {
+        private Integer batchSize = 100; // 한번에 읽어 처리하고 진행 위치를 저장하는 사진 수
+        private Integer parallelism = 0; // 썸네일 다시 만들기 스레드 수. 0 이면 CPU 수
+
+        public Integer getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(Integer batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        public Integer getParallelism() {
+            return parallelism;
+        }
+
+        public void setParallelism(Integer parallelism) {
+            this.parallelism = parallelism;
+        }
+    }
+
+    @Configuration
+    @ConfigurationProperties("jakduk.outbox-relay")
+    public class OutboxRelay {
+        private Long intervalMillis = 500L; // outbox 를 비우러 가는 주기
+        private Integer batchSize = 500; // 한번에 가져와서 보내는 이벤트 수
+        private Long confirmTimeoutMillis = 5000L; // publisher confirm 을 기다리는 시간
+        private Integer leaseSeconds = 60; // 가져간 이벤트를 다른 서버가 못 가져가게 잡아두는 시간
+        private Integer maxBackoffSeconds = 300; // 실패한 이벤트를 다시 보내기까지 가장 오래 기다리는 시간
+        private Integer maxAttempts = 20; // 맨 앞 이벤트가 이만큼 실패하면 치워두고 뒤의 이벤트를 보낸다
+
+        public Long getIntervalMillis() {
+            return intervalMillis;
+        }
+
+        public void setIntervalMillis(Long intervalMillis) {
+            this.intervalMillis = intervalMillis;
+        }
+
+        public Integer getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(Integer batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        public Long getConfirmTimeoutMillis() {
+            return confirmTimeoutMillis;
+        }
+
+        public void setConfirmTimeoutMillis(Long confirmTimeoutMillis) {
+            this.confirmTimeoutMillis = confirmTimeoutMillis;
+        }
+
+        public Integer getLeaseSeconds() {
+            return leaseSeconds;
+        }
+
+        public void setLeaseSeconds(Integer leaseSeconds) {
+            this.leaseSeconds = leaseSeconds;
+        }
+
+        public Integer getMaxBackoffSeconds() {
+            return maxBackoffSeconds;
+        }
+
+        public void setMaxBackoffSeconds(Integer maxBackoffSeconds) {
+            this.maxBackoffSeconds = maxBackoffSeconds;
+        }
+
+        public Integer getMaxAttempts() {
+            return maxAttempts;
+        }
+
+        public void setMaxAttempts(Integer maxAttempts) {
+            this.maxAttempts = maxAttempts;
+        }
+    }
+
+    @Configuration
+    @ConfigurationProperties("jakduk.search-reindex")
+    public class SearchReindex {
+        private Integer batchSize = 500; // 한번에 읽어서 bulk 로 보내는 문서 수
+        private Integer maxDocumentsPerSecond = 2000; // 모든 원본을 합친 초당 색인 수. 0 이면 제한하지 않는다
+        private Long bulkTimeoutSeconds = 60L; // bulk 응답을 기다리는 시간
+        private Long targetsRefreshMillis = 10000L; // 다른 서버가 시작한 재색인을 알아채는 주기
+
+        public Integer getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(Integer batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        public Integer getMaxDocumentsPerSecond() {
+            return maxDocumentsPerSecond;
+        }
+
+        public void setMaxDocumentsPerSecond(Integer maxDocumentsPerSecond) {
+            this.maxDocumentsPerSecond = maxDocumentsPerSecond;
+        }
+
+        public Long getBulkTimeoutSeconds() {
+            return bulkTimeoutSeconds;
+        }
+
+        public void setBulkTimeoutSeconds(Long bulkTimeoutSeconds) {
+            this.bulkTimeoutSeconds = bulkTimeoutSeconds;
+        }
+
+        public Long getTargetsRefreshMillis() {
+            return targetsRefreshMillis;
+        }
+
+        public void setTargetsRefreshMillis(Long targetsRefreshMillis) {
+            this.targetsRefreshMillis = targetsRefreshMillis;
+        }
+    }
+
+    @Configuration
+    @ConfigurationProperties("jakduk.search-cache")
+    public class SearchCache {
+        private Boolean enable = true;
+        private Integer maxEntries = 1000;
+        private Integer maxSizeMb = 32; // 응답을 JSON 으로 바꾼 크기로 잰다
+        private Integer ttlSeconds = 60;
+        private Long invalidateGraceMillis = 2000L; // 색인하고 이 시간 안에 찾은 결과는 아직 반영 전일 수 있어서 담지 않는다
+
+        public Boolean getEnable() {
+            return enable;
+        }
+
+        public void setEnable(Boolean enable) {
+            this.enable = enable;
+        }
+
+        public Integer getMaxEntries() {
+            return maxEntries;
+        }
+
+        public void setMaxEntries(Integer maxEntries) {
+            this.maxEntries = maxEntries;
+        }
+
+        public Integer getMaxSizeMb() {
+            return maxSizeMb;
+        }
+
+        public void setMaxSizeMb(Integer maxSizeMb) {
+            this.maxSizeMb = maxSizeMb;
+        }
+
+        public Integer getTtlSeconds() {
+            return ttlSeconds;
+        }
+
+        public void setTtlSeconds(Integer ttlSeconds) {
+            this.ttlSeconds = ttlSeconds;
+        }
+
+        public Long getInvalidateGraceMillis() {
+            return invalidateGraceMillis;
+        }
+
+        public void setInvalidateGraceMillis(Long invalidateGraceMillis) {
+            this.invalidateGraceMillis = invalidateGraceMillis;
+        }
+    }
+
+    @Configuration
+    @ConfigurationProperties("jakduk.popular-search-words")
+    public class PopularSearchWords {
+        private Integer windowDays = 21; // 오늘부터 이 날 수만큼 앞까지 센다
+        private Integer topK = 100; // 미리 순위를 매겨두는 검색어 수. 이보다 많이 달라면 ES 로 센다
+        private Integer maxWordsPerDay = 2000; // 날짜마다 DB 에서 읽어오는 검색어 수
+        private Long snapshotIntervalMillis = 10000L;
+
+        public Integer getWindowDays() {
+            return windowDays;
+        }
+
+        public void setWindowDays(Integer windowDays) {
+            this.windowDays = windowDays;
+        }
+
+        public Integer getTopK() {
+            return topK;
+        }
+
+        public void setTopK(Integer topK) {
+            this.topK = topK;
+        }
+
+        public Integer getMaxWordsPerDay() {
+            return maxWordsPerDay;
+        }
+
+        public void setMaxWordsPerDay(Integer maxWordsPerDay) {
+            this.maxWordsPerDay = maxWordsPerDay;
+        }
+
+        public Long getSnapshotIntervalMillis() {
+            return snapshotIntervalMillis;
+        }
+
+        public void setSnapshotIntervalMillis(Long snapshotIntervalMillis) {
+            this.snapshotIntervalMillis = snapshotIntervalMillis;
+        }
+    }
+
+    @Configuration
+    @ConfigurationProperties("jakduk.search-suggest")
+    public class SearchSuggest {
+        private Integer maxTerms = 100000; // 넘으면 새 검색어는 다음 전체 갱신 때까지 넣지 않는다
+        private Integer maxTermLength = 50; // 이보다 긴 글 제목, 사진 이름은 넣지 않는다
+        private Integer maxSuggestions = 10;
+        private Integer loadBatchSize = 1000;
+        private Long refreshIntervalMillis = 600000L; // DB 에서 전체를 다시 읽는 주기
+        private Long popularWordsRefreshMillis = 60000L;
+
+        public Integer getMaxTerms() {
+            return maxTerms;
+        }
+
+        public void setMaxTerms(Integer maxTerms) {
+            this.maxTerms = maxTerms;
+        }
+
+        public Integer getMaxTermLength() {
+            return maxTermLength;
+        }
+
+        public void setMaxTermLength(Integer maxTermLength) {
+            this.maxTermLength = maxTermLength;
+        }
+
+        public Integer getMaxSuggestions() {
+            return maxSuggestions;
+        }
+
+        public void setMaxSuggestions(Integer maxSuggestions) {
+            this.maxSuggestions = maxSuggestions;
+        }
+
+        public Integer getLoadBatchSize() {
+            return loadBatchSize;
+        }
+
+        public void setLoadBatchSize(Integer loadBatchSize) {
+            this.loadBatchSize = loadBatchSize;
+        }
+
+        public Long getRefreshIntervalMillis() {
+            return refreshIntervalMillis;
+        }
+
+        public void setRefreshIntervalMillis(Long refreshIntervalMillis) {
+            this.refreshIntervalMillis = refreshIntervalMillis;
+        }
+
+        public Long getPopularWordsRefreshMillis() {
+            return popularWordsRefreshMillis;
+        }
+
+        public void setPopularWordsRefreshMillis(Long popularWordsRefreshMillis) {
+            this.popularWordsRefreshMillis = popularWordsRefreshMillis;
+        }
     }
 
 }
@@ -0,0 +1,129 @@
+package com.jakduk.api.configuration;
+
+import com.jakduk.api.model.db.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 저장소의 질의가 필요로 하는 몽고 인덱스를 앱 시작 시 보장한다.
+ *
+ * 새로운 질의를 추가하면 여기에 인덱스를 함께 선언하고, MongodbIndexTests 의 explain 검사에 질의를 추가한다.
+ */
+
+@Component
+public class MongodbIndexInitializer implements ApplicationRunner {
+
+	private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+	@Autowired
+	private MongoTemplate mongoTemplate;
+
+	/**
+	 * 컬렉션(엔티티) 별 인덱스 목록
+	 */
+	public static List<MongodbIndex> getIndexes() {
+		List<MongodbIndex> indexes = new ArrayList<>();
+
+		// 글 보기, 읽음 수 반영 (findOneBySeq, findOneByBoardAndSeq)
+		indexes.add(new MongodbIndex(Article.class, new Index().on("seq", Sort.Direction.ASC)));
+		indexes.add(new MongodbIndex(Article.class, new Index().on("board", Sort.Direction.ASC).on("seq", Sort.Direction.ASC)));
+		// 게시판 목록 (findByBoard, findByBoardAndCategory)
+		indexes.add(new MongodbIndex(Article.class, new Index().on("board", Sort.Direction.ASC).on("_id", Sort.Direction.DESC)));
+		indexes.add(new MongodbIndex(Article.class, new Index().on("board", Sort.Direction.ASC).on("category", Sort.Direction.ASC)
+				.on("_id", Sort.Direction.DESC)));
+		// 작성자의 최근 글 (findByIdAndUserId)
+		indexes.add(new MongodbIndex(Article.class, new Index().on("writer.userId", Sort.Direction.ASC).on("_id", Sort.Direction.DESC)));
+		// 공지 글 (findNotices)
+		indexes.add(new MongodbIndex(Article.class, new Index().on("status.notice", Sort.Direction.ASC).on("_id", Sort.Direction.DESC)));
+
+		// 글의 댓글 목록 (findByBoardSeqAndGTId, findIdsByBoardSeqAndGTId)
+		indexes.add(new MongodbIndex(ArticleComment.class, new Index().on("article.seq", Sort.Direction.ASC)
+				.on("article.board", Sort.Direction.ASC).on("_id", Sort.Direction.ASC)));
+		// 글 별 댓글 수 (findCommentsCountByIds, countByArticle)
+		indexes.add(new MongodbIndex(ArticleComment.class, new Index().on("article._id", Sort.Direction.ASC)));
+
+		// 아이템에 엮인 사진 (findByItemIdAndFromType, findFirstByItemIdsAndFromType)
+		indexes.add(new MongodbIndex(Gallery.class, new Index().on("linkedItems._id", Sort.Direction.ASC)
+				.on("linkedItems.from", Sort.Direction.ASC).on("status.status", Sort.Direction.ASC)));
+		// 사진 목록, 사진첩 보기 색인 (findGalleriesById, findIdsByStatus)
+		indexes.add(new MongodbIndex(Gallery.class, new Index().on("status.status", Sort.Direction.ASC).on("_id", Sort.Direction.DESC)));
+		// 같은 사진 올리기 검사 (findOneByHashAndStatusStatus)
+		indexes.add(new MongodbIndex(Gallery.class, new Index().on("hash", Sort.Direction.ASC).on("status.status", Sort.Direction.ASC)));
+
+		// 회원 (findOneByEmail, findOneByUsername, findOneByProviderIdAndProviderUserId)
+		indexes.add(new MongodbIndex(User.class, new Index().on("email", Sort.Direction.ASC)));
+		indexes.add(new MongodbIndex(User.class, new Index().on("username", Sort.Direction.ASC)));
+		indexes.add(new MongodbIndex(User.class, new Index().on("providerId", Sort.Direction.ASC).on("providerUserId", Sort.Direction.ASC)));
+
+		// 비밀번호 재설정 토큰 (findOneByCode, findOneByEmail)
+		indexes.add(new MongodbIndex(Token.class, new Index().on("code", Sort.Direction.ASC)));
+		indexes.add(new MongodbIndex(Token.class, new Index().on("email", Sort.Direction.ASC)));
+
+		// 인기 검색어 (PopularSearchWords 의 날짜별 상위 검색어 읽기, 지난 날짜 지우기)
+		indexes.add(new MongodbIndex(SearchWordCount.class, new Index().on("day", Sort.Direction.ASC).on("count", Sort.Direction.DESC)));
+
+		return indexes;
+	}
+
+	@Override
+	public void run(ApplicationArguments args) {
+		this.ensureIndexes();
+	}
+
+	/**
+	 * 인덱스가 없으면 background 로 생성한다. 이미 있으면 몽고가 무시한다.
+	 */
+	public void ensureIndexes() {
+		List<MongodbIndex> indexes = getIndexes();
+		long started = System.currentTimeMillis();
+
+		for (int i = 0; i < indexes.size(); i++) {
+			MongodbIndex index = indexes.get(i);
+			String collectionName = mongoTemplate.getCollectionName(index.getEntityClass());
+			long indexStarted = System.currentTimeMillis();
+
+			try {
+				String name = mongoTemplate.indexOps(index.getEntityClass()).ensureIndex(index.getDefinition());
+
+				log.info("mongodb index ensured ({}/{}). collection={}, index={}, elapsed={}ms", i + 1, indexes.size(), collectionName,
+						name, System.currentTimeMillis() - indexStarted);
+
+			} catch (RuntimeException e) {
+				// 같은 키의 다른 옵션 인덱스가 이미 있는 경우 등. 앱 시작은 막지 않는다.
+				log.warn("failed to ensure mongodb index. collection=" + collectionName + ", keys=" + index.getDefinition().getIndexKeys(), e);
+			}
+		}
+
+		log.info("mongodb indexes ensured. count={}, elapsed={}ms", indexes.size(), System.currentTimeMillis() - started);
+	}
+
+	public static class MongodbIndex {
+		private Class<?> entityClass;
+		private IndexDefinition definition;
+
+		public MongodbIndex(Class<?> entityClass, Index definition) {
+			this.entityClass = entityClass;
+			this.definition = definition.background();
+		}
+
+		public Class<?> getEntityClass() {
+			return entityClass;
+		}
+
+		public IndexDefinition getDefinition() {
+			return definition;
+		}
+	}
+
+}
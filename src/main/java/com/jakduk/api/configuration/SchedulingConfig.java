@@ -0,0 +1,13 @@
+package com.jakduk.api.configuration;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * 주기적으로 실행되는 작업(읽음 수 반영 등) 활성화
+ */
+
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
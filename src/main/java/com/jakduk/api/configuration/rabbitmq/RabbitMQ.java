@@ -9,6 +9,12 @@ public class RabbitMQ {
     private String bindingQueueName;
     private String bindingRoutingKey;
     private Boolean enabled;
+    private String deadLetterQueueName;
+    private Integer concurrency;
+    private Integer maxConcurrency;
+    private Integer prefetchCount;
+    private Integer batchSize;
+    private Boolean consumerBatchEnabled = false;
 
     public String getBindingQueueName() {
         return bindingQueueName;
@@ -33,4 +39,52 @@ public class RabbitMQ {
     public void setEnabled(Boolean enabled) {
         this.enabled = enabled;
     }
+
+    public String getDeadLetterQueueName() {
+        return deadLetterQueueName;
+    }
+
+    public void setDeadLetterQueueName(String deadLetterQueueName) {
+        this.deadLetterQueueName = deadLetterQueueName;
+    }
+
+    public Integer getConcurrency() {
+        return concurrency;
+    }
+
+    public void setConcurrency(Integer concurrency) {
+        this.concurrency = concurrency;
+    }
+
+    public Integer getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    public void setMaxConcurrency(Integer maxConcurrency) {
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    public Integer getPrefetchCount() {
+        return prefetchCount;
+    }
+
+    public void setPrefetchCount(Integer prefetchCount) {
+        this.prefetchCount = prefetchCount;
+    }
+
+    public Integer getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(Integer batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public Boolean getConsumerBatchEnabled() {
+        return consumerBatchEnabled;
+    }
+
+    public void setConsumerBatchEnabled(Boolean consumerBatchEnabled) {
+        this.consumerBatchEnabled = consumerBatchEnabled;
+    }
 }
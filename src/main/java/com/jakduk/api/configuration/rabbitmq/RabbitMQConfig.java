@@ -2,19 +2,25 @@ package com.jakduk.api.configuration.rabbitmq;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.jakduk.api.configuration.JakdukProperties;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.amqp.core.AcknowledgeMode;
 import org.springframework.amqp.core.Binding;
 import org.springframework.amqp.core.BindingBuilder;
 import org.springframework.amqp.core.Queue;
 import org.springframework.amqp.core.TopicExchange;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
 import org.springframework.amqp.support.converter.MessageConverter;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.amqp.SimpleRabbitListenerContainerFactoryConfigurer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 import javax.annotation.Resource;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.stream.Collectors;
 
 /**
@@ -24,6 +30,12 @@ import java.util.stream.Collectors;
 @Configuration
 public class RabbitMQConfig {
 
+    private final String QUEUE_EMAIL = "email";
+    private final String QUEUE_ELASTICSEARCH = "elasticsearch";
+
+    // 묶음 하나에 메시지 batchSize 개가 드니, ack 하지 않고 받아두는 메시지는 이 값 x batchSize 개
+    private final int DEFAULT_ELASTICSEARCH_PREFETCH_COUNT = 10;
+
     @Resource private JakdukProperties.Rabbitmq rabbitmqProperties;
 
     @Autowired private ObjectMapper objectMapper;
@@ -45,6 +57,7 @@ public class RabbitMQConfig {
                 .collect(Collectors.toMap(RabbitMQ::getBindingQueueName, RabbitMQ::getBindingRoutingKey));
 
         return queues.stream()
+                .filter(queue -> queueMap.containsKey(queue.getName()))
                 .map(queue -> BindingBuilder.bind(queue).to(exchange).with(queueMap.get(queue.getName())))
                 .collect(Collectors.toList());
     }
@@ -52,12 +65,76 @@ public class RabbitMQConfig {
     @Bean
     public List<Queue> queues() {
 
-        return rabbitmqProperties.getQueues().entrySet().stream()
+        List<Queue> queues = rabbitmqProperties.getQueues().entrySet().stream()
                 .map(queue -> {
                     RabbitMQ rabbitMQ = queue.getValue();
                     return new Queue(rabbitMQ.getBindingQueueName());
                 })
                 .collect(Collectors.toList());
+
+        // 처리하지 못한 메시지를 옮겨 두는 큐. exchange 에 묶지 않고 기본 exchange 로 큐 이름을 써서 보낸다.
+        rabbitmqProperties.getQueues().values().stream()
+                .map(RabbitMQ::getDeadLetterQueueName)
+                .filter(StringUtils::isNotBlank)
+                .forEach(deadLetterQueueName -> queues.add(new Queue(deadLetterQueueName)));
+
+        return queues;
+    }
+
+    @Bean
+    public SimpleRabbitListenerContainerFactory emailListenerContainerFactory(
+            SimpleRabbitListenerContainerFactoryConfigurer configurer, ConnectionFactory connectionFactory) {
+
+        return this.newListenerContainerFactory(rabbitmqProperties.getQueues().get(QUEUE_EMAIL), configurer, connectionFactory);
+    }
+
+    /**
+     * Elasticsearch 큐는 bulk 로 모아서 색인한 뒤에 ack 하므로 MANUAL 로 받는다.
+     * 묶음 메시지는 리스너가 직접 List<Message> 로 풀어서 묶음마다 한번만 라우팅한다.
+     *
+     * ack 하지 않은 메시지가 모두 서버 메모리에 쌓이니 prefetch 는 bulkActions 와 따로 작게 둔다.
+     * bulk 는 bulkFlushIntervalSeconds 마다 보내므로 bulkActions 까지 차지 않아도 된다.
+     */
+    @Bean
+    public SimpleRabbitListenerContainerFactory elasticsearchListenerContainerFactory(
+            SimpleRabbitListenerContainerFactoryConfigurer configurer, ConnectionFactory connectionFactory) {
+
+        RabbitMQ rabbitMQ = rabbitmqProperties.getQueues().get(QUEUE_ELASTICSEARCH);
+
+        SimpleRabbitListenerContainerFactory factory = this.newListenerContainerFactory(rabbitMQ, configurer, connectionFactory);
+        factory.setAcknowledgeMode(AcknowledgeMode.MANUAL);
+        factory.setDeBatchingEnabled(! rabbitMQ.getConsumerBatchEnabled());
+
+        if (Objects.isNull(rabbitMQ.getPrefetchCount()))
+            factory.setPrefetchCount(DEFAULT_ELASTICSEARCH_PREFETCH_COUNT);
+
+        return factory;
+    }
+
+    /**
+     * spring.rabbitmq.listener.simple 설정 위에 큐마다 정한 값을 덮어쓴다.
+     */
+    private SimpleRabbitListenerContainerFactory newListenerContainerFactory(RabbitMQ rabbitMQ,
+                                                                             SimpleRabbitListenerContainerFactoryConfigurer configurer,
+                                                                             ConnectionFactory connectionFactory) {
+
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+
+        if (Objects.nonNull(rabbitMQ.getConcurrency()))
+            factory.setConcurrentConsumers(rabbitMQ.getConcurrency());
+
+        if (Objects.nonNull(rabbitMQ.getMaxConcurrency()))
+            factory.setMaxConcurrentConsumers(rabbitMQ.getMaxConcurrency());
+
+        if (Objects.nonNull(rabbitMQ.getPrefetchCount()))
+            factory.setPrefetchCount(rabbitMQ.getPrefetchCount());
+
+        // 묶음으로 보내지 않는 큐는 batchSize 개를 받을 때마다 한번에 ack 한다. (AUTO 일 때)
+        if (! rabbitMQ.getConsumerBatchEnabled() && Objects.nonNull(rabbitMQ.getBatchSize()))
+            factory.setTxSize(rabbitMQ.getBatchSize());
+
+        return factory;
     }
 
 }
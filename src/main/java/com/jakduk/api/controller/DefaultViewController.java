@@ -1,8 +1,8 @@
 package com.jakduk.api.controller;
 
 import com.jakduk.api.common.Constants;
+import com.jakduk.api.common.gallery.GalleryVariantGenerator;
 import com.jakduk.api.common.util.DateUtils;
-import com.jakduk.api.common.util.FileUtils;
 import com.jakduk.api.common.util.UrlGenerationUtils;
 import com.jakduk.api.configuration.JakdukProperties;
 import com.jakduk.api.exception.ServiceError;
@@ -17,26 +17,33 @@ import com.redfin.sitemapgenerator.ChangeFreq;
 import com.redfin.sitemapgenerator.W3CDateFormat;
 import com.redfin.sitemapgenerator.WebSitemapGenerator;
 import com.redfin.sitemapgenerator.WebSitemapUrl;
+import org.apache.commons.lang3.BooleanUtils;
+import org.apache.commons.lang3.StringUtils;
 import org.bson.types.ObjectId;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.util.CollectionUtils;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.context.request.ServletWebRequest;
 
 import javax.annotation.Resource;
 import javax.servlet.http.HttpServletResponse;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.nio.charset.StandardCharsets;
-import java.time.LocalDate;
-import java.time.ZoneId;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author <a href="mailto:phjang1983@daum.net">Jang,Pyohwan</a>
@@ -48,8 +55,17 @@ import java.util.List;
 @Controller
 public class DefaultViewController {
 
+	// 사진은 ID 마다 내용이 바뀌지 않는다. (Spring 5.1 의 CacheControl 에는 immutable 이 없다)
+	private static final String GALLERY_IMAGE_CACHE_CONTROL =
+			CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().getHeaderValue() + ", immutable";
+
+	// 썸네일은 ThumbnailRegenerationJob 이 같은 자리에 다시 만들 수 있어서, 하루 지나면 ETag 로 다시 확인하게 한다.
+	private static final String GALLERY_THUMBNAIL_CACHE_CONTROL = CacheControl.maxAge(1, TimeUnit.DAYS).cachePublic().getHeaderValue();
+
+	// 크기 줄이기, 썸네일 만들기가 끝나지 않아 나중에 바뀔 수 있는 사진
+	private static final String PROCESSING_GALLERY_IMAGE_CACHE_CONTROL = CacheControl.noCache().getHeaderValue();
+
 	@Resource private JakdukProperties jakdukProperties;
-	@Resource private JakdukProperties.Storage storageProperties;
 
 	@Autowired private UrlGenerationUtils urlGenerationUtils;
 	@Autowired private GalleryService galleryService;
@@ -118,78 +134,143 @@ public class DefaultViewController {
 
 	// 사진 가져오기.
 	@GetMapping("/${jakduk.api-url-path.gallery-image}/{id}")
-	public void getGallery(@PathVariable String id,
-						   HttpServletResponse response) {
+	public ResponseEntity<FileSystemResource> getGallery(@PathVariable String id,
+														 @RequestParam(required = false) Integer w, // 원하는 가로 길이. 단계별로 올림
+														 ServletWebRequest webRequest) {
 
-		Gallery gallery = galleryService.findOneById(id);
-
-		ByteArrayOutputStream byteStream = galleryService.getGalleryOutStream(gallery.getId(), gallery.getContentType(),
-				Constants.IMAGE_TYPE.FULL);
-		response.setContentType(gallery.getContentType());
-
-		try {
-			byteStream.writeTo(response.getOutputStream());
-		} catch (IOException e) {
-			throw new ServiceException(ServiceError.NOT_FOUND_GALLERY, e);
-		}
+		return this.getGalleryImage(id, Constants.IMAGE_TYPE.FULL, w, webRequest);
 	}
 
 	// 사진 썸네일 가져오기.
 	@GetMapping("/${jakduk.api-url-path.gallery-thumbnail}/{id}")
-	public void getGalleyThumbnail(@PathVariable String id,
-								   HttpServletResponse response) {
-
-		Gallery gallery = galleryService.findOneById(id);
-
-		ByteArrayOutputStream byteStream = galleryService.getGalleryOutStream(gallery.getId(), gallery.getContentType(),
-				Constants.IMAGE_TYPE.THUMBNAIL);
-		response.setContentType(gallery.getContentType());
+	public ResponseEntity<FileSystemResource> getGalleyThumbnail(@PathVariable String id,
+																 ServletWebRequest webRequest) {
 
-		try {
-			byteStream.writeTo(response.getOutputStream());
-		} catch (IOException e) {
-			throw new ServiceException(ServiceError.NOT_FOUND_GALLERY, e);
-		}
+		return this.getGalleryImage(id, Constants.IMAGE_TYPE.THUMBNAIL, null, webRequest);
 	}
 
 	// 회원 프로필 사진 가져오기.
 	@RequestMapping(value = "/${jakduk.api-url-path.user-picture-large}/{id}", method = RequestMethod.GET)
-	public void getUserPicture(@PathVariable String id,
-							 HttpServletResponse response) {
+	public ResponseEntity<FileSystemResource> getUserPicture(@PathVariable String id) {
 
 		UserPicture userPicture = userPictureService.findOneById(id);
 
-		ObjectId objectId = new ObjectId(userPicture.getId());
-		LocalDate localDate = objectId.getDate().toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
-
-		try {
-			ByteArrayOutputStream byteStream = FileUtils.readImageFile(storageProperties.getUserPictureLargePath(), localDate, userPicture.getId(), userPicture.getContentType());
-			response.setContentType(userPicture.getContentType());
+		FileSystemResource resource = userPictureService.getUserPictureResource(userPicture, Constants.IMAGE_SIZE_TYPE.LARGE);
 
-			byteStream.writeTo(response.getOutputStream());
-		} catch (IOException e) {
-			throw new ServiceException(ServiceError.IO_EXCEPTION, e);
-		}
+		return this.toImageResponse(userPicture.getContentType(), resource);
 	}
 
 	// 회원 프로필 작은 사진 가져오기.
 	@RequestMapping(value = "/${jakduk.api-url-path.user-picture-small}/{id}", method = RequestMethod.GET)
-	public void getUserSmallPicture(@PathVariable String id,
-									HttpServletResponse response) {
+	public ResponseEntity<FileSystemResource> getUserSmallPicture(@PathVariable String id) {
 
 		UserPicture userPicture = userPictureService.findOneById(id);
 
-		ObjectId objectId = new ObjectId(userPicture.getId());
-		LocalDate localDate = objectId.getDate().toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
+		FileSystemResource resource = userPictureService.getUserPictureResource(userPicture, Constants.IMAGE_SIZE_TYPE.SMALL);
 
-		try {
-			ByteArrayOutputStream byteStream = FileUtils.readImageFile(storageProperties.getUserPictureSmallPath(), localDate, userPicture.getId(), userPicture.getContentType());
-			response.setContentType(userPicture.getContentType());
+		return this.toImageResponse(userPicture.getContentType(), resource);
+	}
 
-			byteStream.writeTo(response.getOutputStream());
-		} catch (IOException e) {
-			throw new ServiceException(ServiceError.IO_EXCEPTION, e);
+	/**
+	 * 사진 ID(ObjectId) 가 같으면 내용도 바뀌지 않으니 오래 캐시하게 한다.
+	 *
+	 * Last-Modified 는 ObjectId 의 생성 시각, ETag 는 사진 파일의 blob 과 크기 종류로 만든다.
+	 * If-None-Match 없이 If-Modified-Since 만 오면 DB 조회 없이, 그 외에는 파일을 열기 전에 304 로 응답한다.
+	 *
+	 * 크기 줄이기, 썸네일 만들기가 끝나지 않았거나 단계별 사진 대신 원본을 줄 때는 나중에 바뀌니,
+	 * Last-Modified, ETag 없이 매번 다시 받게 한다. 그래야 If-Modified-Since 만으로 304 가 나가지 않는다.
+	 *
+	 * 썸네일은 다시 만들면 같은 ID 라도 바뀌니 immutable 로 두지 않는다.
+	 * Last-Modified 와 ETag 를 썸네일 파일의 수정 시각으로 만들고, If-Modified-Since 만으로 304 를 주지 않는다.
+	 */
+	private ResponseEntity<FileSystemResource> getGalleryImage(String id, Constants.IMAGE_TYPE imageType, Integer width,
+															   ServletWebRequest webRequest) {
+
+		if (! ObjectId.isValid(id))
+			throw new ServiceException(ServiceError.NOT_FOUND_GALLERY);
+
+		if (Objects.nonNull(width) && width <= 0)
+			throw new ServiceException(ServiceError.INVALID_PARAMETER);
+
+		// 가로 길이 단계별 사진은 ETag 도 단계별로 다르다.
+		String variant = Objects.nonNull(width) ?
+				"w" + GalleryVariantGenerator.toBucketWidth(width) : StringUtils.lowerCase(imageType.name());
+
+		long lastModified = new ObjectId(id).getDate().getTime();
+
+		// checkNotModified 는 Last-Modified 를 응답에 넣으니, 처리 중인 사진에 붙지 않도록 If-Modified-Since 가 있을 때만 부른다.
+		if (! Constants.IMAGE_TYPE.THUMBNAIL.equals(imageType)
+				&& StringUtils.isBlank(webRequest.getHeader(HttpHeaders.IF_NONE_MATCH))
+				&& StringUtils.isNotBlank(webRequest.getHeader(HttpHeaders.IF_MODIFIED_SINCE))
+				&& webRequest.checkNotModified(lastModified)) {
+			webRequest.getResponse().setHeader(HttpHeaders.CACHE_CONTROL, GALLERY_IMAGE_CACHE_CONTROL);
+			return null;
 		}
+
+		Gallery gallery = galleryService.findOneById(id);
+
+		if (BooleanUtils.isTrue(gallery.getProcessing())) {
+			FileSystemResource resource = galleryService.getGalleryResource(gallery, imageType, width);
+
+			// 단계별 사진을 만들지 못했으면 원본
+			if (Objects.isNull(resource))
+				resource = galleryService.getGalleryResource(gallery, imageType, null);
+
+			webRequest.getResponse().setHeader(HttpHeaders.CACHE_CONTROL, PROCESSING_GALLERY_IMAGE_CACHE_CONTROL);
+
+			return this.toImageResponse(gallery.getContentType(), resource);
+		}
+
+		// 크기를 줄이면 다른 blob 으로 옮기니, 해시 대신 blob 으로 만든다.
+		String blobId = StringUtils.defaultIfBlank(gallery.getBlobId(), gallery.getHash());
+
+		if (Constants.IMAGE_TYPE.THUMBNAIL.equals(imageType))
+			return this.getGalleryThumbnail(gallery, blobId, variant, webRequest);
+		String eTag = StringUtils.isNotBlank(blobId) ? blobId + "-" + variant : null;
+
+		if (webRequest.checkNotModified(eTag, lastModified)) {
+			webRequest.getResponse().setHeader(HttpHeaders.CACHE_CONTROL, GALLERY_IMAGE_CACHE_CONTROL);
+			return null;
+		}
+
+		FileSystemResource resource = galleryService.getGalleryResource(gallery, imageType, width);
+
+		// 단계별 사진을 만들 차례를 얻지 못했으면 원본을 주되, 검증자(ETag, Last-Modified) 가 이미 나갔으니 저장하지 않게 한다.
+		if (Objects.isNull(resource)) {
+			webRequest.getResponse().setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.noStore().getHeaderValue());
+			return this.toImageResponse(gallery.getContentType(), galleryService.getGalleryResource(gallery, imageType, null));
+		}
+
+		// 파일이 있을 때만 오래 캐시하게 한다. 404 는 캐시되지 않도록.
+		webRequest.getResponse().setHeader(HttpHeaders.CACHE_CONTROL, GALLERY_IMAGE_CACHE_CONTROL);
+
+		return this.toImageResponse(gallery.getContentType(), resource);
+	}
+
+	private ResponseEntity<FileSystemResource> getGalleryThumbnail(Gallery gallery, String blobId, String variant,
+																   ServletWebRequest webRequest) {
+
+		FileSystemResource resource = galleryService.getGalleryResource(gallery, Constants.IMAGE_TYPE.THUMBNAIL, null);
+
+		long lastModified = resource.getFile().lastModified();
+		String eTag = StringUtils.isNotBlank(blobId) ? blobId + "-" + variant + "-" + lastModified : null;
+
+		webRequest.getResponse().setHeader(HttpHeaders.CACHE_CONTROL, GALLERY_THUMBNAIL_CACHE_CONTROL);
+
+		if (webRequest.checkNotModified(eTag, lastModified))
+			return null;
+
+		return this.toImageResponse(gallery.getContentType(), resource);
+	}
+
+	/**
+	 * 이미지 파일 응답. 파일을 힙에 올리지 않고 ResourceHttpMessageConverter 가 고정 크기 버퍼로 흘려 보낸다.
+	 * Content-Length 는 파일 크기로 정해지고, Range 요청이면 ResourceRegion 으로 206 부분 응답을 한다.
+	 */
+	private ResponseEntity<FileSystemResource> toImageResponse(String contentType, FileSystemResource resource) {
+		return ResponseEntity.ok()
+				.contentType(MediaType.parseMediaType(contentType))
+				.body(resource);
 	}
 
 }
@@ -55,10 +55,12 @@ public enum ServiceError {
     NOT_FOUND_JAKDUSCHEDULEGROUP(HttpStatus.SC_NOT_FOUND, "exception.not.found.jakduschedulegroup"),
     ALREADY_ENABLE(HttpStatus.SC_NOT_FOUND, "exception.already.enable"),
     ALREADY_DISABLE(HttpStatus.SC_NOT_FOUND, "exception.already.disable"),
+    BATCH_JOB_ALREADY_RUNNING(HttpStatus.SC_CONFLICT, "exception.batch.job.already.running"),
 
     SEND_EMAIL_FAILED(HttpStatus.SC_INTERNAL_SERVER_ERROR, "exception.send.email.failed"),
     GALLERY_IO_ERROR(HttpStatus.SC_INTERNAL_SERVER_ERROR, "exception.gallery.io"),
     ELASTICSEARCH_NOT_FOUND_INDEX(HttpStatus.SC_INTERNAL_SERVER_ERROR, "exception.elasticsearch.not.found.index"),
+    ELASTICSEARCH_INDEX_NOT_ALIAS(HttpStatus.SC_CONFLICT, "exception.elasticsearch.index.not.alias"),
     ELASTICSEARCH_INDEX_FAILED(HttpStatus.SC_INTERNAL_SERVER_ERROR, "exception.elasticsearch.index.failed");
 
     private final Integer httpStatus;
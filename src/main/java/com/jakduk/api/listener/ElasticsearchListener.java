@@ -1,15 +1,22 @@
 package com.jakduk.api.listener;
 
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.jakduk.api.common.elasticsearch.ElasticsearchBulkIndexer;
+import com.jakduk.api.common.elasticsearch.SearchReindexJob;
+import com.jakduk.api.common.elasticsearch.SearchResultCache;
+import com.jakduk.api.common.elasticsearch.SearchSuggester;
 import com.jakduk.api.common.rabbitmq.ElasticsearchRoutingKey;
+import com.jakduk.api.common.rabbitmq.MessageBatches;
 import com.jakduk.api.common.util.ObjectMapperUtils;
 import com.jakduk.api.configuration.JakdukProperties;
-import com.jakduk.api.exception.ServiceError;
-import com.jakduk.api.exception.ServiceException;
 import com.jakduk.api.model.elasticsearch.EsArticle;
 import com.jakduk.api.model.elasticsearch.EsComment;
+import com.jakduk.api.model.elasticsearch.EsCommentParents;
 import com.jakduk.api.model.elasticsearch.EsGallery;
 import com.jakduk.api.model.elasticsearch.EsSearchWord;
 import com.jakduk.api.service.SearchService;
+import com.rabbitmq.client.Channel;
+import org.elasticsearch.action.DocWriteRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.amqp.core.Message;
@@ -19,9 +26,10 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.stereotype.Component;
 
-import javax.annotation.Resource;
 import java.io.IOException;
-import java.util.Map;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 /**
  * Created by pyohwanjang on 2017. 6. 20..
@@ -32,57 +40,170 @@ public class ElasticsearchListener {
 
     private final Logger log = LoggerFactory.getLogger(this.getClass());
 
-    @Resource private JakdukProperties.Rabbitmq rabbitmqProperties;
+    private final ElasticsearchBulkIndexer elasticsearchBulkIndexer;
+    private final SearchReindexJob searchReindexJob;
+    private final SearchResultCache searchResultCache;
+
+    // 실제로 받는 routing key -> 처리기. 시작할 때 한번 만들고 바꾸지 않는다.
+    private final Map<String, RoutingHandler<?>> routingTable;
+
+    @Autowired
+    public ElasticsearchListener(JakdukProperties.Rabbitmq rabbitmqProperties, SearchService searchService,
+                                 ElasticsearchBulkIndexer elasticsearchBulkIndexer, SearchReindexJob searchReindexJob,
+                                 SearchResultCache searchResultCache, SearchSuggester searchSuggester) {
+        this.elasticsearchBulkIndexer = elasticsearchBulkIndexer;
+        this.searchReindexJob = searchReindexJob;
+        this.searchResultCache = searchResultCache;
+
+        Map<ElasticsearchRoutingKey, RoutingHandler<?>> handlers = new EnumMap<>(ElasticsearchRoutingKey.class);
+        handlers.put(ElasticsearchRoutingKey.ELASTICSEARCH_INDEX_DOCUMENT_ARTICLE, new RoutingHandler<>(EsArticle.class, searchService::getArticleIndexRequest,
+                article -> searchSuggester.putArticle(article.getId(), article.getSubject())));
+        handlers.put(ElasticsearchRoutingKey.ELASTICSEARCH_DELETE_DOCUMENT_ARTICLE, new RoutingHandler<>(String.class, searchService::getArticleDeleteRequest,
+                searchSuggester::removeArticle));
+        handlers.put(ElasticsearchRoutingKey.ELASTICSEARCH_INDEX_DOCUMENT_ARTICLE_COMMENT, new RoutingHandler<>(EsComment.class,
+                esComment -> searchService.getCommentIndexRequest(searchService.loadLatestParentArticle(esComment))));
+        handlers.put(ElasticsearchRoutingKey.ELASTICSEARCH_DELETE_DOCUMENT_ARTICLE_COMMENT, new RoutingHandler<>(String.class, searchService::getCommentDeleteRequest));
+        handlers.put(ElasticsearchRoutingKey.ELASTICSEARCH_UPDATE_DOCUMENT_ARTICLE_COMMENT_PARENT,
+                RoutingHandler.ofRequests(EsCommentParents.class, searchService::getCommentParentUpdateRequests));
+        handlers.put(ElasticsearchRoutingKey.ELASTICSEARCH_INDEX_DOCUMENT_GALLERY, new RoutingHandler<>(EsGallery.class, searchService::getGalleryIndexRequest,
+                gallery -> searchSuggester.putGallery(gallery.getId(), gallery.getName())));
+        handlers.put(ElasticsearchRoutingKey.ELASTICSEARCH_DELETE_DOCUMENT_GALLERY, new RoutingHandler<>(String.class, searchService::getGalleryDeleteRequest,
+                searchSuggester::removeGallery));
+        handlers.put(ElasticsearchRoutingKey.ELASTICSEARCH_INDEX_DOCUMENT_SEARCH_WORD, new RoutingHandler<>(EsSearchWord.class, searchService::getSearchWordIndexRequest));
+
+        Map<String, RoutingHandler<?>> routingTable = new HashMap<>();
+
+        handlers.forEach((elasticsearchRoutingKey, handler) -> {
+            String routingKey = rabbitmqProperties.getRoutingKeys().get(elasticsearchRoutingKey.getRoutingKey());
+
+            if (Objects.isNull(routingKey)) {
+                log.warn("routing key of {} is not configured.", elasticsearchRoutingKey.getRoutingKey());
+                return;
+            }
+
+            routingTable.put(routingKey, handler);
+        });
+
+        this.routingTable = Collections.unmodifiableMap(routingTable);
+    }
+
+    /**
+     * 받은 메시지를 List<Message> 로 풀어 색인, 삭제 요청으로 바꾼 뒤 bulk 에 넣는다.
+     * ack 는 bulk 결과가 나온 뒤에 ElasticsearchBulkIndexer 가 한다. 본문이 빈 묶음처럼 요청이 하나도 없으면 바로 한다.
+     */
+    @RabbitListener(queues = "${jakduk.rabbitmq.queues.elasticsearch.binding-queue-name}",
+            containerFactory = "elasticsearchListenerContainerFactory")
+    public void receive(Message message, Channel channel, @Header(AmqpHeaders.DELIVERY_TAG) long deliveryTag,
+                        @Header(AmqpHeaders.RECEIVED_ROUTING_KEY) String routingKey) {
+
+        this.receiveBatch(MessageBatches.split(message), routingKey, channel, deliveryTag);
+    }
+
+    /**
+     * 묶음 안의 메시지는 모두 같은 routing key 로 보낸 것이라 라우팅은 묶음마다 한번만 한다.
+     * 모르는 routing key 는 다시 받아도 처리할 수 없으니 dead letter 큐로 옮긴다.
+     *
+     * 재색인 중이면 요청을 새 인덱스에도 보내고, 두 요청이 모두 끝나야 그 메시지를 끝난 것으로 본다.
+     * 게시판, 사진첩 인덱스에 보내면 검색 결과 캐시의 세대를 올린다.
+     * 글 제목, 사진 이름은 요청으로 바꿀 때 자동 완성에도 넣거나 뺀다.
+     */
+    private void receiveBatch(List<Message> messages, String routingKey, Channel channel, long deliveryTag) {
+
+        RoutingHandler<?> handler = routingTable.get(routingKey);
+
+        if (Objects.isNull(handler)) {
+            log.warn("unknown routing key {}. {} messages are moved to dead letter queue.", routingKey, messages.size());
+
+            ElasticsearchBulkIndexer.Delivery delivery = elasticsearchBulkIndexer.newDelivery(channel, deliveryTag, messages.size());
+            IllegalArgumentException cause = new IllegalArgumentException("unknown routing key " + routingKey);
+            messages.forEach(message -> elasticsearchBulkIndexer.deadLetter(message, delivery, cause));
+            return;
+        }
+
+        // 메시지마다 보낼 요청과, 요청으로 바꾸지 못했으면 그 예외
+        List<List<DocWriteRequest<?>>> requests = new ArrayList<>(messages.size());
+        List<Exception> failures = new ArrayList<>(messages.size());
+        int items = 0;
 
-    @Autowired private SearchService searchService;
+        for (Message message : messages) {
+            try {
+                List<DocWriteRequest<?>> messageRequests = new ArrayList<>();
+
+                for (DocWriteRequest<?> request : handler.getDocWriteRequests(message.getBody())) {
+                    messageRequests.add(request);
+
+                    DocWriteRequest<?> copy = searchReindexJob.copyToReindexing(request);
+
+                    if (Objects.nonNull(copy))
+                        messageRequests.add(copy);
+                }
+
+                requests.add(messageRequests);
+                failures.add(null);
+
+            } catch (IOException | RuntimeException e) {
+                log.warn("can't convert message to elasticsearch request. routingKey={}, cause={}", routingKey, e.toString());
+                requests.add(Collections.emptyList());
+                failures.add(e);
+                items++;
+            }
+
+            items += requests.get(requests.size() - 1).size();
+        }
 
-    @RabbitListener(queues = "${jakduk.rabbitmq.queues.elasticsearch.binding-queue-name}")
-    public void receive(Message message, @Header(AmqpHeaders.RECEIVED_ROUTING_KEY) String routingKey) throws IOException {
+        ElasticsearchBulkIndexer.Delivery delivery = elasticsearchBulkIndexer.newDelivery(channel, deliveryTag, items);
 
-        String findKey = rabbitmqProperties.getRoutingKeys().entrySet().stream()
-                .filter(entity -> entity.getValue().equals(routingKey))
+        for (int i = 0; i < messages.size(); i++) {
+            Message message = messages.get(i);
+
+            if (Objects.nonNull(failures.get(i))) {
+                elasticsearchBulkIndexer.deadLetter(message, delivery, failures.get(i));
+                continue;
+            }
+
+            elasticsearchBulkIndexer.add(requests.get(i), message, delivery);
+        }
+
+        // 묶음 안의 요청은 모두 같은 인덱스로 간다.
+        requests.stream()
+                .filter(messageRequests -> ! messageRequests.isEmpty())
                 .findFirst()
-                .map(Map.Entry::getKey)
-                .orElseThrow(() -> new ServiceException(ServiceError.ILLEGAL_ARGUMENT));
-
-        ElasticsearchRoutingKey elasticsearchRoutingKey = ElasticsearchRoutingKey.find(findKey);
-
-        switch (elasticsearchRoutingKey) {
-            case ELASTICSEARCH_INDEX_DOCUMENT_ARTICLE:
-                EsArticle esArticle = ObjectMapperUtils.readValue(message.getBody(), EsArticle.class);
-                searchService.indexDocumentArticle(esArticle);
-                break;
-
-                case ELASTICSEARCH_DELETE_DOCUMENT_ARTICLE:
-                String boardId = ObjectMapperUtils.readValue(message.getBody(), String.class);
-                    searchService.deleteDocumentBoard(boardId);
-                break;
-
-            case ELASTICSEARCH_INDEX_DOCUMENT_ARTICLE_COMMENT:
-                EsComment esComment = ObjectMapperUtils.readValue(message.getBody(), EsComment.class);
-                searchService.indexDocumentBoardComment(esComment);
-                break;
-
-            case ELASTICSEARCH_DELETE_DOCUMENT_ARTICLE_COMMENT:
-                String commentId = ObjectMapperUtils.readValue(message.getBody(), String.class);
-                searchService.deleteDocumentBoardComment(commentId);
-                break;
-
-            case ELASTICSEARCH_INDEX_DOCUMENT_GALLERY:
-                EsGallery esGallery = ObjectMapperUtils.readValue(message.getBody(), EsGallery.class);
-                searchService.indexDocumentGallery(esGallery);
-                break;
-
-            case ELASTICSEARCH_DELETE_DOCUMENT_GALLERY:
-                String galleryId = ObjectMapperUtils.readValue(message.getBody(), String.class);
-                searchService.deleteDocumentGallery(galleryId);
-                break;
-
-            case ELASTICSEARCH_INDEX_DOCUMENT_SEARCH_WORD:
-                EsSearchWord esSearchWord = ObjectMapperUtils.readValue(message.getBody(), EsSearchWord.class);
-                searchService.indexDocumentSearchWord(esSearchWord);
-                break;
+                .ifPresent(messageRequests -> searchResultCache.invalidate(messageRequests.get(0).index()));
+    }
+
+    /**
+     * 메시지 본문을 정해진 타입으로 읽는 ObjectReader 와, 읽은 값으로 색인, 삭제 요청을 만드는 함수.
+     * 요청을 만든 뒤 읽은 값을 넘겨받을 곳이 있으면 넘긴다.
+     * 댓글의 글 정보 갱신처럼 메시지 하나가 요청 여러개가 되기도 한다.
+     */
+    private static class RoutingHandler<T> {
+        private final ObjectReader objectReader;
+        private final Function<T, List<DocWriteRequest<?>>> requestsFunction;
+        private final Consumer<T> valueConsumer;
+
+        RoutingHandler(Class<T> type, Function<T, DocWriteRequest<?>> requestFunction) {
+            this(type, requestFunction, value -> {});
+        }
+
+        RoutingHandler(Class<T> type, Function<T, DocWriteRequest<?>> requestFunction, Consumer<T> valueConsumer) {
+            this(ObjectMapperUtils.getObjectMapper().readerFor(type), value -> Collections.singletonList(requestFunction.apply(value)), valueConsumer);
+        }
+
+        private RoutingHandler(ObjectReader objectReader, Function<T, List<DocWriteRequest<?>>> requestsFunction, Consumer<T> valueConsumer) {
+            this.objectReader = objectReader;
+            this.requestsFunction = requestsFunction;
+            this.valueConsumer = valueConsumer;
+        }
+
+        static <T> RoutingHandler<T> ofRequests(Class<T> type, Function<T, List<DocWriteRequest<?>>> requestsFunction) {
+            return new RoutingHandler<>(ObjectMapperUtils.getObjectMapper().readerFor(type), requestsFunction, value -> {});
+        }
 
+        List<DocWriteRequest<?>> getDocWriteRequests(byte[] body) throws IOException {
+            T value = objectReader.readValue(body);
+            List<DocWriteRequest<?>> requests = requestsFunction.apply(value);
+            valueConsumer.accept(value);
+            return requests;
         }
     }
 
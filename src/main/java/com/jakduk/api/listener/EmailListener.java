@@ -22,7 +22,7 @@ public class EmailListener {
     @Autowired
     private EmailService emailService;
 
-    @RabbitListener(queues = "${jakduk.rabbitmq.queues.email.binding-queue-name}")
+    @RabbitListener(queues = "${jakduk.rabbitmq.queues.email.binding-queue-name}", containerFactory = "emailListenerContainerFactory")
     public void receive(EmailPayload emailPayload) throws MessagingException {
 
         switch (emailPayload.getType()) {
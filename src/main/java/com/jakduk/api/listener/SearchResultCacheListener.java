@@ -0,0 +1,30 @@
+package com.jakduk.api.listener;
+
+import com.jakduk.api.common.elasticsearch.SearchResultCache;
+import org.springframework.amqp.core.ExchangeTypes;
+import org.springframework.amqp.rabbit.annotation.Exchange;
+import org.springframework.amqp.rabbit.annotation.Queue;
+import org.springframework.amqp.rabbit.annotation.QueueBinding;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * 다른 서버가 게시판, 사진첩 인덱스에 색인한 것을 받아 검색 결과 캐시의 세대를 올린다.
+ * 서버마다 이름 없는 큐를 fanout exchange 에 묶어서 모든 서버가 받는다. 서버가 꺼지면 큐도 지워진다.
+ */
+
+@Component
+public class SearchResultCacheListener {
+
+    @Autowired
+    private SearchResultCache searchResultCache;
+
+    @RabbitListener(bindings = @QueueBinding(
+            value = @Queue(exclusive = "true", autoDelete = "true"),
+            exchange = @Exchange(value = "${jakduk.rabbitmq.search-cache-exchange-name}", type = ExchangeTypes.FANOUT)))
+    public void receive(String index) {
+        searchResultCache.onInvalidated(index);
+    }
+
+}
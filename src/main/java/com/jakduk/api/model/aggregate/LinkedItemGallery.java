@@ -0,0 +1,19 @@
+package com.jakduk.api.model.aggregate;
+
+/**
+ * 아이템(글, 댓글)별 첫번째 엮인 사진
+ */
+
+public class LinkedItemGallery {
+
+	private String id; // 아이템 ID
+	private String galleryId; // 사진 ID
+
+	public String getId() {
+		return id;
+	}
+
+	public String getGalleryId() {
+		return galleryId;
+	}
+}
@@ -36,6 +36,9 @@ public class Article implements UsersFeeling {
 	private String shortContent;
 	private LocalDateTime lastUpdated;
 	private Boolean linkedGallery;
+	private Integer commentCount; // 댓글 수
+	private Integer likingCount; // 좋아요 수
+	private Integer dislikingCount; // 싫어요 수
 
 	public String getId() {
 		return id;
@@ -168,4 +171,28 @@ public class Article implements UsersFeeling {
 	public void setLinkedGallery(Boolean linkedGallery) {
 		this.linkedGallery = linkedGallery;
 	}
+
+	public Integer getCommentCount() {
+		return commentCount;
+	}
+
+	public void setCommentCount(Integer commentCount) {
+		this.commentCount = commentCount;
+	}
+
+	public Integer getLikingCount() {
+		return likingCount;
+	}
+
+	public void setLikingCount(Integer likingCount) {
+		this.likingCount = likingCount;
+	}
+
+	public Integer getDislikingCount() {
+		return dislikingCount;
+	}
+
+	public void setDislikingCount(Integer dislikingCount) {
+		this.dislikingCount = dislikingCount;
+	}
 }
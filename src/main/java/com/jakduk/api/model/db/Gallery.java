@@ -28,6 +28,9 @@ public class Gallery {
 	private Long size;
 	private Long fileSize;
 	private String hash;
+	private String hashAlgorithm; // hash 를 구한 알고리즘. 없으면 예전에 MD5 로 구한 것
+	private String blobId; // 사진 파일이 있는 저장소 blob. 없으면 예전처럼 사진 ID 로 저장된 파일
+	private Boolean processing; // 크기 줄이기, 썸네일 만들기가 끝나지 않았으면 true. 끝나면 지운다
 	private List<LinkedItem> linkedItems;
 	private List<String> batch;
 
@@ -103,6 +106,30 @@ public class Gallery {
 		this.hash = hash;
 	}
 
+	public String getHashAlgorithm() {
+		return hashAlgorithm;
+	}
+
+	public void setHashAlgorithm(String hashAlgorithm) {
+		this.hashAlgorithm = hashAlgorithm;
+	}
+
+	public String getBlobId() {
+		return blobId;
+	}
+
+	public void setBlobId(String blobId) {
+		this.blobId = blobId;
+	}
+
+	public Boolean getProcessing() {
+		return processing;
+	}
+
+	public void setProcessing(Boolean processing) {
+		this.processing = processing;
+	}
+
 	public List<LinkedItem> getLinkedItems() {
 		return linkedItems;
 	}
@@ -0,0 +1,82 @@
+package com.jakduk.api.model.db;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Date;
+
+/**
+ * 내용 해시로 찾는 사진 파일. 같은 내용은 한번만 저장하고, 쓰는 Gallery, UserPicture 수를 센다.
+ */
+
+@Document
+public class ImageBlob {
+
+	@Id
+	private String id; // 내용의 SHA-256
+	private String contentType; // 처음 올라올 때의 콘텐츠 타입
+	private Long size; // 처음 올라올 때의 크기
+	private Integer references; // 쓰는 Gallery, UserPicture 수. 0 이 되면 파일과 함께 지운다
+	private Date createdAt;
+	private Date deletingAt; // 마지막 참조가 사라져 파일을 지우는 중이면 시작한 시각. 다 지우면 문서도 지운다
+
+	public String getId() {
+		return id;
+	}
+
+	public void setId(String id) {
+		this.id = id;
+	}
+
+	public String getContentType() {
+		return contentType;
+	}
+
+	public void setContentType(String contentType) {
+		this.contentType = contentType;
+	}
+
+	public Long getSize() {
+		return size;
+	}
+
+	public void setSize(Long size) {
+		this.size = size;
+	}
+
+	public Integer getReferences() {
+		return references;
+	}
+
+	public void setReferences(Integer references) {
+		this.references = references;
+	}
+
+	public Date getCreatedAt() {
+		return createdAt;
+	}
+
+	public void setCreatedAt(Date createdAt) {
+		this.createdAt = createdAt;
+	}
+
+	public Date getDeletingAt() {
+		return deletingAt;
+	}
+
+	public void setDeletingAt(Date deletingAt) {
+		this.deletingAt = deletingAt;
+	}
+
+	@Override
+	public String toString() {
+		return "ImageBlob{" +
+				"id='" + id + '\'' +
+				", contentType='" + contentType + '\'' +
+				", size=" + size +
+				", references=" + references +
+				", createdAt=" + createdAt +
+				", deletingAt=" + deletingAt +
+				'}';
+	}
+}
@@ -0,0 +1,133 @@
+package com.jakduk.api.model.db;
+
+import com.jakduk.api.common.Constants;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Date;
+
+/**
+ * 배치 작업의 진행 위치. 작업이 멈춰도 여기서부터 이어서 한다.
+ */
+
+@Document
+public class JobCheckpoint {
+
+	@Id
+	private String id; // 작업 이름
+	private Constants.BATCH_JOB_STATUS status; // 상태
+	private String lastId; // 마지막으로 처리한 문서 ID. 이어서 할 때 이 다음부터 읽는다
+	private String target; // 재색인이면 채우고 있는 새 인덱스
+	private Integer width;
+	private Integer height;
+	private Long processed; // 처리한 문서 수
+	private Long failed; // 실패한 문서 수
+	private Long skipped; // 건너뛴 문서 수
+	private Date startedAt;
+	private Date updatedAt;
+
+	public String getId() {
+		return id;
+	}
+
+	public void setId(String id) {
+		this.id = id;
+	}
+
+	public Constants.BATCH_JOB_STATUS getStatus() {
+		return status;
+	}
+
+	public void setStatus(Constants.BATCH_JOB_STATUS status) {
+		this.status = status;
+	}
+
+	public String getLastId() {
+		return lastId;
+	}
+
+	public void setLastId(String lastId) {
+		this.lastId = lastId;
+	}
+
+	public String getTarget() {
+		return target;
+	}
+
+	public void setTarget(String target) {
+		this.target = target;
+	}
+
+	public Integer getWidth() {
+		return width;
+	}
+
+	public void setWidth(Integer width) {
+		this.width = width;
+	}
+
+	public Integer getHeight() {
+		return height;
+	}
+
+	public void setHeight(Integer height) {
+		this.height = height;
+	}
+
+	public Long getProcessed() {
+		return processed;
+	}
+
+	public void setProcessed(Long processed) {
+		this.processed = processed;
+	}
+
+	public Long getFailed() {
+		return failed;
+	}
+
+	public void setFailed(Long failed) {
+		this.failed = failed;
+	}
+
+	public Long getSkipped() {
+		return skipped;
+	}
+
+	public void setSkipped(Long skipped) {
+		this.skipped = skipped;
+	}
+
+	public Date getStartedAt() {
+		return startedAt;
+	}
+
+	public void setStartedAt(Date startedAt) {
+		this.startedAt = startedAt;
+	}
+
+	public Date getUpdatedAt() {
+		return updatedAt;
+	}
+
+	public void setUpdatedAt(Date updatedAt) {
+		this.updatedAt = updatedAt;
+	}
+
+	@Override
+	public String toString() {
+		return "JobCheckpoint{" +
+				"id='" + id + '\'' +
+				", status=" + status +
+				", lastId=" + lastId +
+				", target='" + target + '\'' +
+				", width=" + width +
+				", height=" + height +
+				", processed=" + processed +
+				", failed=" + failed +
+				", skipped=" + skipped +
+				", startedAt=" + startedAt +
+				", updatedAt=" + updatedAt +
+				'}';
+	}
+}
@@ -0,0 +1,120 @@
+package com.jakduk.api.model.db;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Date;
+
+/**
+ * 아직 RabbitMQ 로 보내지 못한 Elasticsearch 색인 이벤트. OutboxRelay 가 보내고 broker 가 받았다고 confirm 하면 지운다.
+ */
+
+@Document
+public class OutboxEvent {
+
+	@Id
+	private String id; // ObjectId. 한 서버가 만든 이벤트끼리는 만든 순서이고, 이 순서대로 보낸다
+	private String routingKey;
+	private String payload; // JSON 으로 직렬화한 메시지 본문
+	private Integer attempts; // 보내기에 실패한 횟수
+	private Date nextAttemptAt; // 이 시각 이후에 보낸다
+	private String lockedBy; // 지금 보내고 있는 relay
+	private Date lockedUntil; // 이 시각까지 다른 relay 가 가져가지 못한다
+	private String lastError;
+	private Date createdAt;
+	private Date parkedAt; // maxAttempts 번 실패해서 더 보내지 않기로 한 시각. 지우면 다시 보낸다
+
+	public String getId() {
+		return id;
+	}
+
+	public void setId(String id) {
+		this.id = id;
+	}
+
+	public String getRoutingKey() {
+		return routingKey;
+	}
+
+	public void setRoutingKey(String routingKey) {
+		this.routingKey = routingKey;
+	}
+
+	public String getPayload() {
+		return payload;
+	}
+
+	public void setPayload(String payload) {
+		this.payload = payload;
+	}
+
+	public Integer getAttempts() {
+		return attempts;
+	}
+
+	public void setAttempts(Integer attempts) {
+		this.attempts = attempts;
+	}
+
+	public Date getNextAttemptAt() {
+		return nextAttemptAt;
+	}
+
+	public void setNextAttemptAt(Date nextAttemptAt) {
+		this.nextAttemptAt = nextAttemptAt;
+	}
+
+	public String getLockedBy() {
+		return lockedBy;
+	}
+
+	public void setLockedBy(String lockedBy) {
+		this.lockedBy = lockedBy;
+	}
+
+	public Date getLockedUntil() {
+		return lockedUntil;
+	}
+
+	public void setLockedUntil(Date lockedUntil) {
+		this.lockedUntil = lockedUntil;
+	}
+
+	public String getLastError() {
+		return lastError;
+	}
+
+	public void setLastError(String lastError) {
+		this.lastError = lastError;
+	}
+
+	public Date getCreatedAt() {
+		return createdAt;
+	}
+
+	public void setCreatedAt(Date createdAt) {
+		this.createdAt = createdAt;
+	}
+
+	public Date getParkedAt() {
+		return parkedAt;
+	}
+
+	public void setParkedAt(Date parkedAt) {
+		this.parkedAt = parkedAt;
+	}
+
+	@Override
+	public String toString() {
+		return "OutboxEvent{" +
+				"id='" + id + '\'' +
+				", routingKey='" + routingKey + '\'' +
+				", attempts=" + attempts +
+				", nextAttemptAt=" + nextAttemptAt +
+				", lockedBy='" + lockedBy + '\'' +
+				", lockedUntil=" + lockedUntil +
+				", createdAt=" + createdAt +
+				", parkedAt=" + parkedAt +
+				'}';
+	}
+}
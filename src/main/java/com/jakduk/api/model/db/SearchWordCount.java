@@ -0,0 +1,60 @@
+package com.jakduk.api.model.db;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * 날짜별 검색어 검색 수. 인기 검색어를 서버가 다시 시작해도 이어서 세도록 PopularSearchWords 가 주기적으로 더한다.
+ */
+
+@Document
+public class SearchWordCount {
+
+	@Id
+	private String id; // 날짜|검색어
+	private String day; // yyyy-MM-dd
+	private String word;
+	private Long count;
+
+	public String getId() {
+		return id;
+	}
+
+	public void setId(String id) {
+		this.id = id;
+	}
+
+	public String getDay() {
+		return day;
+	}
+
+	public void setDay(String day) {
+		this.day = day;
+	}
+
+	public String getWord() {
+		return word;
+	}
+
+	public void setWord(String word) {
+		this.word = word;
+	}
+
+	public Long getCount() {
+		return count;
+	}
+
+	public void setCount(Long count) {
+		this.count = count;
+	}
+
+	@Override
+	public String toString() {
+		return "SearchWordCount{" +
+				"id='" + id + '\'' +
+				", day='" + day + '\'' +
+				", word='" + word + '\'' +
+				", count=" + count +
+				'}';
+	}
+}
@@ -16,6 +16,7 @@ public class UserPicture {
     private String id;
     private Constants.GALLERY_STATUS_TYPE status;
     private String contentType;
+    private String blobId; // 사진 파일이 있는 저장소 blob. 없으면 예전처럼 사진 ID 로 저장된 파일
 
     public String getId() {
         return id;
@@ -40,4 +41,12 @@ public class UserPicture {
     public void setContentType(String contentType) {
         this.contentType = contentType;
     }
+
+    public String getBlobId() {
+        return blobId;
+    }
+
+    public void setBlobId(String blobId) {
+        this.blobId = blobId;
+    }
 }
@@ -1,6 +1,5 @@
 package com.jakduk.api.model.elasticsearch;
 
-import com.jakduk.api.model.embedded.ArticleItem;
 import com.jakduk.api.model.embedded.CommonWriter;
 
 import java.util.List;
@@ -15,7 +14,7 @@ import java.util.List;
 public class EsComment {
 	
     private String id;
-	private ArticleItem article;
+	private EsParentArticle article; // 검색 결과에 보여줄 글 정보. 글을 고치면 같이 고친다
 	private CommonWriter writer;
 	private String content;
 	private List<String> galleries;
@@ -28,11 +27,11 @@ public class EsComment {
 		this.id = id;
 	}
 
-	public ArticleItem getArticle() {
+	public EsParentArticle getArticle() {
 		return article;
 	}
 
-	public void setArticle(ArticleItem article) {
+	public void setArticle(EsParentArticle article) {
 		this.article = article;
 	}
 
@@ -0,0 +1,38 @@
+package com.jakduk.api.model.elasticsearch;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 한 글에 달린 댓글 문서들의 글 정보를 한번에 고치는 메시지.
+ * 댓글마다 메시지를 보내지 않고, 댓글 ID 를 한 쪽씩 묶어 보낸다.
+ */
+
+public class EsCommentParents {
+
+	private List<String> ids;
+	private EsParentArticle article; // 댓글 문서에 넣을 글 정보
+
+	public List<String> getIds() {
+		return ids;
+	}
+
+	public void setIds(List<String> ids) {
+		this.ids = ids;
+	}
+
+	/**
+	 * 예전 서버가 댓글마다 보낸 EsComment 메시지도 그대로 읽는다.
+	 */
+	public void setId(String id) {
+		this.ids = Collections.singletonList(id);
+	}
+
+	public EsParentArticle getArticle() {
+		return article;
+	}
+
+	public void setArticle(EsParentArticle article) {
+		this.article = article;
+	}
+}
@@ -0,0 +1,51 @@
+package com.jakduk.api.model.simple;
+
+import com.jakduk.api.common.Constants;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * 게시물의 댓글수, 감정수 비정규화 필드 점검용
+ */
+
+@Document(collection = Constants.COLLECTION_ARTICLE)
+public class ArticleOnCounter {
+
+	@Id
+	private String id;
+	private Integer seq;
+	private Integer commentCount;
+	private Integer likingCount;
+	private Integer dislikingCount;
+
+	public ArticleOnCounter() {
+	}
+
+	public ArticleOnCounter(String id, Integer seq, Integer commentCount, Integer likingCount, Integer dislikingCount) {
+		this.id = id;
+		this.seq = seq;
+		this.commentCount = commentCount;
+		this.likingCount = likingCount;
+		this.dislikingCount = dislikingCount;
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public Integer getSeq() {
+		return seq;
+	}
+
+	public Integer getCommentCount() {
+		return commentCount;
+	}
+
+	public Integer getLikingCount() {
+		return likingCount;
+	}
+
+	public Integer getDislikingCount() {
+		return dislikingCount;
+	}
+}
@@ -27,6 +27,9 @@ public class ArticleOnList {
 	private Integer views;
 	private String shortContent;
 	private Boolean linkedGallery;
+	private Integer commentCount;
+	private Integer likingCount;
+	private Integer dislikingCount;
 
 	public String getId() {
 		return id;
@@ -67,4 +70,16 @@ public class ArticleOnList {
 	public Boolean getLinkedGallery() {
 		return linkedGallery;
 	}
+
+	public Integer getCommentCount() {
+		return commentCount;
+	}
+
+	public Integer getLikingCount() {
+		return likingCount;
+	}
+
+	public Integer getDislikingCount() {
+		return dislikingCount;
+	}
 }
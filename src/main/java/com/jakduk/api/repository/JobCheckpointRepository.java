@@ -0,0 +1,7 @@
+package com.jakduk.api.repository;
+
+import com.jakduk.api.model.db.JobCheckpoint;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+public interface JobCheckpointRepository extends MongoRepository<JobCheckpoint, String> {
+}
@@ -3,6 +3,7 @@ package com.jakduk.api.repository.article;
 import com.jakduk.api.common.Constants;
 import com.jakduk.api.model.db.ArticleComment;
 import com.jakduk.api.model.aggregate.CommonCount;
+import com.jakduk.api.model.embedded.CommonFeelingUser;
 import com.jakduk.api.model.simple.ArticleCommentSimple;
 import org.bson.types.ObjectId;
 
@@ -31,6 +32,14 @@ public interface ArticleCommentRepositoryCustom {
      */
     List<ArticleComment> findByBoardSeqAndGTId(String board, Integer articleSeq, ObjectId commentId);
 
+    /**
+     * findByBoardSeqAndGTId 와 같은 순서, 개수로 댓글 ID 만 가져온다. 인덱스만 읽고 끝난다.
+     *
+     * @param articleSeq 게시물 seq
+     * @param commentId 댓글 ID
+     */
+    List<ObjectId> findIdsByBoardSeqAndGTId(String board, Integer articleSeq, ObjectId commentId);
+
     /**
      * boardItem의 objectId 기준 이상의 댓글 수를 가져온다
      *
@@ -40,4 +49,14 @@ public interface ArticleCommentRepositoryCustom {
 
     List<ArticleCommentSimple> findSimpleComments();
 
+    /**
+     * 감정 표현을 취소, 바꿈, 추가한다.
+     *
+     * @param id 댓글 ID
+     * @param feelingUser 감정 표현한 회원
+     * @param feeling 감정 표현 종류
+     * @return 감정 표현 회원의 userId 만 담긴 댓글. 댓글이 없거나 작성자 본인이면 null
+     */
+    ArticleComment findAndModifyUsersFeeling(String id, CommonFeelingUser feelingUser, Constants.FEELING_TYPE feeling);
+
 }
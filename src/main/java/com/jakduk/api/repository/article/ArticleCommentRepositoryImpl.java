@@ -3,7 +3,9 @@ package com.jakduk.api.repository.article;
 import com.jakduk.api.common.Constants;
 import com.jakduk.api.model.aggregate.CommonCount;
 import com.jakduk.api.model.db.ArticleComment;
+import com.jakduk.api.model.embedded.CommonFeelingUser;
 import com.jakduk.api.model.simple.ArticleCommentSimple;
+import org.bson.Document;
 import org.bson.types.ObjectId;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Sort;
@@ -18,6 +20,7 @@ import org.springframework.util.ObjectUtils;
 
 import java.util.List;
 import java.util.Objects;
+import java.util.stream.Collectors;
 
 /**
  * Created by pyohwan on 16. 11. 30.
@@ -58,7 +61,7 @@ public class ArticleCommentRepositoryImpl implements ArticleCommentRepositoryCus
     @Override
     public List<CommonCount> findCommentsCountByIds(List<ObjectId> ids) {
         AggregationOperation match = Aggregation.match(Criteria.where("article._id").in(ids));
-        AggregationOperation group = Aggregation.group("article").count().as("count");
+        AggregationOperation group = Aggregation.group("article._id").count().as("count");
         //AggregationOperation sort = Aggregation.sort(Direction.ASC, "_id");
         //AggregationOperation limit = Aggregation.limit(Constants.BOARD_LINE_NUMBER);
         Aggregation aggregation = Aggregation.newAggregation(match, group/*, sort, limit*/);
@@ -87,6 +90,23 @@ public class ArticleCommentRepositoryImpl implements ArticleCommentRepositoryCus
         return mongoTemplate.find(query, ArticleComment.class);
     }
 
+    @Override
+    public List<ObjectId> findIdsByBoardSeqAndGTId(String board, Integer articleSeq, ObjectId commentId) {
+        Query query = new Query();
+        query.addCriteria(Criteria.where("article.seq").is(articleSeq).and("article.board").is(board));
+
+        if (Objects.nonNull(commentId))
+            query.addCriteria(Criteria.where("_id").gt(commentId));
+
+        query.with(new Sort(Sort.Direction.ASC, "_id"));
+        query.limit(Constants.COMMENT_MAX_LIMIT);
+        query.fields().include("_id");
+
+        return mongoTemplate.find(query, Document.class, Constants.COLLECTION_ARTICLE_COMMENT).stream()
+                .map(document -> document.getObjectId("_id"))
+                .collect(Collectors.toList());
+    }
+
     /**
      * boardItem의 boardId 기준 이상의 댓글 수를 가져온다
      *
@@ -113,4 +133,14 @@ public class ArticleCommentRepositoryImpl implements ArticleCommentRepositoryCus
         return mongoTemplate.find(query, ArticleCommentSimple.class);
     }
 
+    /**
+     * 감정 표현을 취소, 바꿈, 추가한다.
+     */
+    @Override
+    public ArticleComment findAndModifyUsersFeeling(String id, CommonFeelingUser feelingUser, Constants.FEELING_TYPE feeling) {
+        Criteria criteria = Criteria.where("_id").is(new ObjectId(id));
+
+        return UsersFeelingOperations.toggle(mongoTemplate, ArticleComment.class, criteria, feelingUser, feeling, false);
+    }
+
 }
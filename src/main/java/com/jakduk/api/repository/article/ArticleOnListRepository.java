@@ -16,4 +16,6 @@ public interface ArticleOnListRepository extends MongoRepository<ArticleOnList,
 	
 	Page<ArticleOnList> findByBoard(Constants.BOARD_TYPE board, Pageable pageable);
 	Page<ArticleOnList> findByBoardAndCategory(Constants.BOARD_TYPE board, String category, Pageable pageable);
+	long countByBoard(Constants.BOARD_TYPE board);
+	long countByBoardAndCategory(Constants.BOARD_TYPE board, String category);
 }
@@ -4,6 +4,9 @@ import com.jakduk.api.common.Constants;
 import com.jakduk.api.model.aggregate.BoardFeelingCount;
 import com.jakduk.api.model.aggregate.BoardTop;
 import com.jakduk.api.model.db.Article;
+import com.jakduk.api.model.embedded.BoardLog;
+import com.jakduk.api.model.embedded.CommonFeelingUser;
+import com.jakduk.api.model.simple.ArticleOnCounter;
 import com.jakduk.api.model.simple.ArticleOnList;
 import com.jakduk.api.model.simple.ArticleOnRSS;
 import com.jakduk.api.model.simple.ArticleOnSitemap;
@@ -11,6 +14,7 @@ import com.jakduk.api.model.simple.ArticleSimple;
 import org.bson.types.ObjectId;
 import org.springframework.data.domain.Sort;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 /**
@@ -45,6 +49,18 @@ public interface ArticleRepositoryCustom {
      */
     List<ArticleOnList> findNotices(Sort sort);
 
+    /**
+     * 커서 방식 게시판 글 목록
+     *
+     * @param board 게시판
+     * @param category 말머리 (null 이면 검사 안함)
+     * @param objectId 기준 글 ID (null 이면 검사 안함)
+     * @param operator LT 이면 기준보다 오래된 글을 최신순으로, GT 이면 기준보다 최근 글을 오래된 순으로
+     * @param limit limit
+     */
+    List<ArticleOnList> findByBoardAndCategoryWithCursor(Constants.BOARD_TYPE board, String category, ObjectId objectId,
+                                                         Constants.CRITERIA_OPERATOR operator, Integer limit);
+
     /**
      * 홈에서 보여지는 최근글 목록
      */
@@ -77,4 +93,66 @@ public interface ArticleRepositoryCustom {
      */
     List<BoardTop> findTopLikes(Constants.BOARD_TYPE board, ObjectId commentId);
 
-}
\ No newline at end of file
+    /**
+     * 댓글 수를 증감한다.
+     *
+     * @param id 게시물 ID
+     * @param amount 증감량
+     */
+    void increaseCommentCount(String id, Integer amount);
+
+    /**
+     * 감정 표현을 취소, 바꿈, 추가하고 감정수를 증감한다.
+     *
+     * @param board 게시판
+     * @param seq 글 seq
+     * @param feelingUser 감정 표현한 회원
+     * @param feeling 감정 표현 종류
+     * @return 감정 표현 회원의 userId 만 담긴 글. 글이 없거나 작성자 본인이면 null
+     */
+    Article findAndModifyUsersFeeling(Constants.BOARD_TYPE board, Integer seq, CommonFeelingUser feelingUser, Constants.FEELING_TYPE feeling);
+
+    /**
+     * 글 고치기. 고친 필드만 바꾸고 기록을 덧붙여서, 함께 바뀌는 댓글수, 감정수, 읽음수를 덮어쓰지 않는다.
+     *
+     * @param category 말머리. null 이면 지운다
+     */
+    void updateEdited(String id, String subject, String content, String shortContent, String category, Boolean linkedGallery,
+                      BoardLog boardLog, LocalDateTime lastUpdated);
+
+    /**
+     * 댓글이 달린 글 지우기. 제목, 내용, 작성자만 지우고 기록을 덧붙인다.
+     */
+    void updateDeleted(String id, BoardLog boardLog, LocalDateTime lastUpdated);
+
+    /**
+     * 공지를 켜거나 끄고 기록을 덧붙인다.
+     */
+    void updateNotice(String id, Boolean notice, BoardLog boardLog);
+
+    /**
+     * 기준 Article ID 초과의 댓글수, 감정수 목록을 가져온다.
+     *
+     * @param objectId 해당 ID 초과의 조건 추가 (null 이면 검사 안함)
+     * @param limit limit
+     */
+    List<ArticleOnCounter> findCountersGreaterThanId(ObjectId objectId, Integer limit);
+
+    /**
+     * 댓글수, 감정수를 한번에 갱신한다.
+     */
+    void updateCounters(List<ArticleOnCounter> counters);
+
+    /**
+     * ID 보다 앞의 지워지지 않은 Article 을 최신 순으로 가져온다. _id, subject 만 읽는다.
+     *
+     * @param id 기준 ID. null 이면 가장 최신부터
+     */
+    List<Article> findSubjectsByIdLessThan(ObjectId id, Integer limit);
+
+    /**
+     * 댓글 색인에 넣을 글 정보를 가져온다. seq, board, category, subject 만 읽는다.
+     */
+    List<Article> findParentsByIdIn(List<String> ids);
+
+}
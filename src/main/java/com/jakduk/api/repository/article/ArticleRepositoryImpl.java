@@ -4,24 +4,33 @@ import com.jakduk.api.common.Constants;
 import com.jakduk.api.model.aggregate.BoardFeelingCount;
 import com.jakduk.api.model.aggregate.BoardTop;
 import com.jakduk.api.model.db.Article;
+import com.jakduk.api.model.embedded.BoardLog;
+import com.jakduk.api.model.embedded.CommonFeelingUser;
+import com.jakduk.api.model.simple.ArticleOnCounter;
 import com.jakduk.api.model.simple.ArticleOnList;
 import com.jakduk.api.model.simple.ArticleOnRSS;
 import com.jakduk.api.model.simple.ArticleOnSitemap;
 import com.jakduk.api.model.simple.ArticleSimple;
+import org.apache.commons.lang3.BooleanUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.bson.types.ObjectId;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.aggregation.*;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Repository;
+import org.springframework.util.CollectionUtils;
 import org.springframework.util.ObjectUtils;
 
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
+import java.util.stream.Collectors;
 
 /**
  * Created by pyohwan on 16. 10. 9.
@@ -117,6 +126,44 @@ public class ArticleRepositoryImpl implements ArticleRepositoryCustom {
         return mongoTemplate.find(query, ArticleOnList.class);
     }
 
+    /**
+     * 커서 방식 게시판 글 목록
+     *
+     * @param board 게시판
+     * @param category 말머리 (null 이면 검사 안함)
+     * @param objectId 기준 글 ID (null 이면 검사 안함)
+     * @param operator LT 이면 기준보다 오래된 글을 최신순으로, GT 이면 기준보다 최근 글을 오래된 순으로
+     * @param limit limit
+     */
+    @Override
+    public List<ArticleOnList> findByBoardAndCategoryWithCursor(Constants.BOARD_TYPE board, String category, ObjectId objectId,
+                                                                Constants.CRITERIA_OPERATOR operator, Integer limit) {
+        Query query = new Query();
+        query.addCriteria(Criteria.where("board").is(board.name()));
+
+        if (StringUtils.isNotBlank(category))
+            query.addCriteria(Criteria.where("category").is(category));
+
+        switch (operator) {
+            case GT:
+                if (Objects.nonNull(objectId))
+                    query.addCriteria(Criteria.where("_id").gt(objectId));
+
+                query.with(new Sort(Sort.Direction.ASC, "_id"));
+                break;
+            case LT:
+                if (Objects.nonNull(objectId))
+                    query.addCriteria(Criteria.where("_id").lt(objectId));
+
+                query.with(new Sort(Sort.Direction.DESC, "_id"));
+                break;
+        }
+
+        query.limit(limit);
+
+        return mongoTemplate.find(query, ArticleOnList.class);
+    }
+
     /**
      * 홈에서 보여지는 최근글 목록
      */
@@ -224,4 +271,159 @@ public class ArticleRepositoryImpl implements ArticleRepositoryCustom {
         return results.getMappedResults();
     }
 
+    /**
+     * 댓글 수를 증감한다.
+     *
+     * @param id 게시물 ID
+     * @param amount 증감량
+     */
+    @Override
+    public void increaseCommentCount(String id, Integer amount) {
+        Query query = new Query(Criteria.where("_id").is(new ObjectId(id)));
+        Update update = new Update().inc("commentCount", amount);
+
+        mongoTemplate.updateFirst(query, update, Constants.COLLECTION_ARTICLE);
+    }
+
+    /**
+     * 감정 표현을 취소, 바꿈, 추가하고 감정수를 증감한다.
+     */
+    @Override
+    public Article findAndModifyUsersFeeling(Constants.BOARD_TYPE board, Integer seq, CommonFeelingUser feelingUser,
+                                             Constants.FEELING_TYPE feeling) {
+
+        Criteria criteria = Criteria.where("board").is(board.name()).and("seq").is(seq);
+
+        return UsersFeelingOperations.toggle(mongoTemplate, Article.class, criteria, feelingUser, feeling, true);
+    }
+
+    /**
+     * 글 고치기. 고친 필드만 바꾸고 기록을 덧붙인다.
+     */
+    @Override
+    public void updateEdited(String id, String subject, String content, String shortContent, String category, Boolean linkedGallery,
+                             BoardLog boardLog, LocalDateTime lastUpdated) {
+
+        Query query = new Query(Criteria.where("_id").is(new ObjectId(id)));
+        Update update = new Update()
+                .set("subject", subject)
+                .set("content", content)
+                .set("shortContent", shortContent)
+                .set("linkedGallery", linkedGallery)
+                .set("lastUpdated", lastUpdated)
+                .push("logs", boardLog);
+
+        if (Objects.nonNull(category))
+            update.set("category", category);
+        else
+            update.unset("category");
+
+        mongoTemplate.updateFirst(query, update, Article.class);
+    }
+
+    /**
+     * 댓글이 달린 글 지우기. 제목, 내용, 작성자만 지우고 기록을 덧붙인다.
+     */
+    @Override
+    public void updateDeleted(String id, BoardLog boardLog, LocalDateTime lastUpdated) {
+        Query query = new Query(Criteria.where("_id").is(new ObjectId(id)));
+        Update update = new Update()
+                .unset("subject")
+                .unset("content")
+                .unset("writer")
+                .set("status.delete", true)
+                .set("linkedGallery", false)
+                .set("lastUpdated", lastUpdated)
+                .push("logs", boardLog);
+
+        mongoTemplate.updateFirst(query, update, Article.class);
+    }
+
+    /**
+     * 공지를 켜거나 끄고 기록을 덧붙인다.
+     */
+    @Override
+    public void updateNotice(String id, Boolean notice, BoardLog boardLog) {
+        Query query = new Query(Criteria.where("_id").is(new ObjectId(id)));
+        Update update = new Update().push("logs", boardLog);
+
+        if (BooleanUtils.isTrue(notice))
+            update.set("status.notice", true);
+        else
+            update.unset("status.notice");
+
+        mongoTemplate.updateFirst(query, update, Article.class);
+    }
+
+    /**
+     * 기준 Article ID 초과의 댓글수, 감정수 목록을 가져온다.
+     *
+     * @param objectId 해당 ID 초과의 조건 추가 (null 이면 검사 안함)
+     * @param limit limit
+     */
+    @Override
+    public List<ArticleOnCounter> findCountersGreaterThanId(ObjectId objectId, Integer limit) {
+        Query query = new Query();
+
+        if (Objects.nonNull(objectId))
+            query.addCriteria(Criteria.where("_id").gt(objectId));
+
+        query.with(new Sort(Sort.Direction.ASC, "_id"));
+        query.limit(limit);
+
+        return mongoTemplate.find(query, ArticleOnCounter.class);
+    }
+
+    /**
+     * 댓글수, 감정수를 한번에 갱신한다.
+     */
+    @Override
+    public void updateCounters(List<ArticleOnCounter> counters) {
+        if (CollectionUtils.isEmpty(counters))
+            return;
+
+        BulkOperations bulkOperations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Constants.COLLECTION_ARTICLE);
+
+        counters.forEach(counter -> {
+            Query query = new Query(Criteria.where("_id").is(new ObjectId(counter.getId())));
+            Update update = new Update()
+                    .set("commentCount", counter.getCommentCount())
+                    .set("likingCount", counter.getLikingCount())
+                    .set("dislikingCount", counter.getDislikingCount());
+
+            bulkOperations.updateOne(query, update);
+        });
+
+        bulkOperations.execute();
+    }
+
+    /**
+     * ID 보다 앞의 지워지지 않은 Article 을 최신 순으로 가져온다. _id, subject 만 읽는다.
+     */
+    @Override
+    public List<Article> findSubjectsByIdLessThan(ObjectId id, Integer limit) {
+        Query query = new Query();
+        query.addCriteria(Criteria.where("status.delete").ne(true));
+        query.fields().include("subject");
+        query.limit(limit);
+
+        if (Objects.nonNull(id))
+            query.addCriteria(Criteria.where("_id").lt(id));
+
+        query.with(new Sort(Sort.Direction.DESC, "_id"));
+
+        return mongoTemplate.find(query, Article.class);
+    }
+
+    /**
+     * 댓글 색인에 넣을 글 정보를 가져온다. seq, board, category, subject 만 읽는다.
+     */
+    @Override
+    public List<Article> findParentsByIdIn(List<String> ids) {
+        Query query = new Query(Criteria.where("_id").in(ids.stream().map(ObjectId::new).collect(Collectors.toList())));
+        query.fields().include("seq").include("board").include("category").include("subject");
+
+        return mongoTemplate.find(query, Article.class);
+    }
+
 }
@@ -0,0 +1,104 @@
+package com.jakduk.api.repository.article;
+
+import com.jakduk.api.common.Constants;
+import com.jakduk.api.model.embedded.CommonFeelingUser;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.Objects;
+
+/**
+ * 글, 댓글의 감정 표현(좋아요, 싫어요)을 문서 전체 저장 없이 서버에서 조건부 findAndModify 로 바꾼다.
+ *
+ * 취소, 바꿈, 추가 순서로 각각 원자적인 조건부 갱신을 시도하고, 그 사이에 다른 요청이 끼어들어 모두 맞지 않으면 다시 시도한다.
+ * 결과 문서에는 감정 표현 회원의 userId 만 담긴다.
+ */
+
+class UsersFeelingOperations {
+
+    private static final int MAX_ATTEMPTS = 3;
+
+    private UsersFeelingOperations() {
+    }
+
+    /**
+     * @param criteria 글 또는 댓글을 찾는 조건
+     * @param feelingUser 감정 표현한 회원
+     * @param feeling 감정 표현 종류
+     * @param withCounters 감정수 비정규화 필드(likingCount, dislikingCount)도 함께 증감할지
+     * @return 바뀐 문서. 없거나 작성자 본인이라 바꾸지 못했으면 null
+     */
+    static <T> T toggle(MongoTemplate mongoTemplate, Class<T> entityClass, Criteria criteria, CommonFeelingUser feelingUser,
+                        Constants.FEELING_TYPE feeling, Boolean withCounters) {
+
+        String mine = Constants.FEELING_TYPE.LIKE.equals(feeling) ? "usersLiking" : "usersDisliking";
+        String other = Constants.FEELING_TYPE.LIKE.equals(feeling) ? "usersDisliking" : "usersLiking";
+        String mineCount = Constants.FEELING_TYPE.LIKE.equals(feeling) ? "likingCount" : "dislikingCount";
+        String otherCount = Constants.FEELING_TYPE.LIKE.equals(feeling) ? "dislikingCount" : "likingCount";
+
+        String userId = feelingUser.getUserId();
+        Document byUserId = new Document("userId", userId);
+
+        FindAndModifyOptions options = FindAndModifyOptions.options().returnNew(true);
+
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+
+            // 이미 같은 감정 표현을 했을 때, 취소
+            Update cancel = new Update().pull(mine, byUserId);
+
+            if (withCounters)
+                cancel.inc(mineCount, -1);
+
+            T result = mongoTemplate.findAndModify(toQuery(criteria, Criteria.where(mine + ".userId").is(userId)),
+                    cancel, options, entityClass);
+
+            if (Objects.nonNull(result))
+                return result;
+
+            // 반대 감정 표현을 했을 때, 반대 것을 없애고 바꿈
+            Update change = new Update().pull(other, byUserId).addToSet(mine, feelingUser);
+
+            if (withCounters)
+                change.inc(otherCount, -1).inc(mineCount, 1);
+
+            result = mongoTemplate.findAndModify(toQuery(criteria, Criteria.where("writer.userId").ne(userId)
+                    .and(other + ".userId").is(userId)), change, options, entityClass);
+
+            if (Objects.nonNull(result))
+                return result;
+
+            // 아직 감정 표현을 하지 않았을 때, 추가
+            Update add = new Update().addToSet(mine, feelingUser);
+
+            if (withCounters)
+                add.inc(mineCount, 1);
+
+            result = mongoTemplate.findAndModify(toQuery(criteria, Criteria.where("writer.userId").ne(userId)
+                    .and(mine + ".userId").ne(userId).and(other + ".userId").ne(userId)), add, options, entityClass);
+
+            if (Objects.nonNull(result))
+                return result;
+
+            // 문서가 없거나 작성자 본인이면 더 시도해도 소용 없다.
+            if (! mongoTemplate.exists(toQuery(criteria, Criteria.where("writer.userId").ne(userId)), entityClass))
+                return null;
+        }
+
+        return null;
+    }
+
+    private static Query toQuery(Criteria criteria, Criteria condition) {
+        Query query = new Query(criteria).addCriteria(condition);
+
+        query.fields()
+                .include("usersLiking.userId")
+                .include("usersDisliking.userId");
+
+        return query;
+    }
+
+}
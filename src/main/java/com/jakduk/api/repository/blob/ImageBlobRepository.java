@@ -0,0 +1,7 @@
+package com.jakduk.api.repository.blob;
+
+import com.jakduk.api.model.db.ImageBlob;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+public interface ImageBlobRepository extends MongoRepository<ImageBlob, String>, ImageBlobRepositoryCustom {
+}
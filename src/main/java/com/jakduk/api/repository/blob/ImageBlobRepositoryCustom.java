@@ -0,0 +1,40 @@
+package com.jakduk.api.repository.blob;
+
+import com.jakduk.api.model.db.ImageBlob;
+
+public interface ImageBlobRepositoryCustom {
+
+    /**
+     * 참조 수를 1 늘린다. 처음 보는 내용이면 참조 수 1 로 만든다.
+     *
+     * @return 늘어난 뒤의 ImageBlob
+     */
+    ImageBlob increaseReferences(String id, String contentType, Long size);
+
+    /**
+     * 참조 수를 1 줄인다.
+     *
+     * @return 줄어든 뒤의 ImageBlob. 없으면 null
+     */
+    ImageBlob decreaseReferences(String id);
+
+    /**
+     * 참조 수가 0 이하이고 지우는 중이 아닐 때만 지우는 중으로 표시한다.
+     *
+     * @return 표시했으면 true. 그 사이 다시 참조되었거나 다른 서버가 지우는 중이면 false
+     */
+    Boolean markDeleting(String id);
+
+    /**
+     * 지우는 중 표시를 뗀다. 파일을 지우는 동안 다시 참조되었을 때 부른다.
+     */
+    void unmarkDeleting(String id);
+
+    /**
+     * 참조 수가 0 이하일 때만 지운다. 그 사이 다시 참조되었으면 지우지 않는다.
+     *
+     * @return 지웠으면 true
+     */
+    Boolean deleteIfUnreferenced(String id);
+
+}
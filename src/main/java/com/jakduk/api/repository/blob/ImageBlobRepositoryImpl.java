@@ -0,0 +1,76 @@
+package com.jakduk.api.repository.blob;
+
+import com.jakduk.api.model.db.ImageBlob;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Repository;
+
+import java.util.Date;
+
+@Repository
+public class ImageBlobRepositoryImpl implements ImageBlobRepositoryCustom {
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    /**
+     * 참조 수를 1 늘린다. 처음 보는 내용이면 참조 수 1 로 만든다.
+     */
+    @Override
+    public ImageBlob increaseReferences(String id, String contentType, Long size) {
+        Query query = new Query(Criteria.where("_id").is(id));
+
+        Update update = new Update()
+                .inc("references", 1)
+                .setOnInsert("contentType", contentType)
+                .setOnInsert("size", size)
+                .setOnInsert("createdAt", new Date());
+
+        return mongoTemplate.findAndModify(query, update, FindAndModifyOptions.options().upsert(true).returnNew(true), ImageBlob.class);
+    }
+
+    /**
+     * 참조 수를 1 줄인다.
+     */
+    @Override
+    public ImageBlob decreaseReferences(String id) {
+        Query query = new Query(Criteria.where("_id").is(id));
+
+        return mongoTemplate.findAndModify(query, new Update().inc("references", -1),
+                FindAndModifyOptions.options().returnNew(true), ImageBlob.class);
+    }
+
+    /**
+     * 참조 수가 0 이하이고 지우는 중이 아닐 때만 지우는 중으로 표시한다.
+     */
+    @Override
+    public Boolean markDeleting(String id) {
+        Query query = new Query(Criteria.where("_id").is(id).and("references").lte(0).and("deletingAt").exists(false));
+
+        return mongoTemplate.updateFirst(query, new Update().set("deletingAt", new Date()), ImageBlob.class).getModifiedCount() > 0;
+    }
+
+    /**
+     * 지우는 중 표시를 뗀다.
+     */
+    @Override
+    public void unmarkDeleting(String id) {
+        Query query = new Query(Criteria.where("_id").is(id));
+
+        mongoTemplate.updateFirst(query, new Update().unset("deletingAt"), ImageBlob.class);
+    }
+
+    /**
+     * 참조 수가 0 이하일 때만 지운다.
+     */
+    @Override
+    public Boolean deleteIfUnreferenced(String id) {
+        Query query = new Query(Criteria.where("_id").is(id).and("references").lte(0));
+
+        return mongoTemplate.remove(query, ImageBlob.class).getDeletedCount() > 0;
+    }
+}
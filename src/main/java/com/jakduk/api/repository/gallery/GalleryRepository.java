@@ -18,6 +18,8 @@ public interface GalleryRepository extends MongoRepository<Gallery, String>, Gal
 
 	Optional<Gallery> findOneById(String id);
 	Optional<Gallery> findOneByHashAndStatusStatus(String hash, Constants.GALLERY_STATUS_TYPE status);
+
+	Optional<Gallery> findOneByHashAndHashAlgorithmIsNullAndStatusStatus(String hash, Constants.GALLERY_STATUS_TYPE status);
 	
 	@Query(value="{'status.status' : 'use'}")
 	List<Gallery> findAll();
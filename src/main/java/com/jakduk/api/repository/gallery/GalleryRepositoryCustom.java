@@ -1,7 +1,9 @@
 package com.jakduk.api.repository.gallery;
 
 import com.jakduk.api.common.Constants;
+import com.jakduk.api.model.aggregate.LinkedItemGallery;
 import com.jakduk.api.model.db.Gallery;
+import com.jakduk.api.model.embedded.LinkedItem;
 import com.jakduk.api.model.simple.GallerySimple;
 import org.bson.types.ObjectId;
 
@@ -22,9 +24,92 @@ public interface GalleryRepositoryCustom {
      */
     List<Gallery> findByItemIdAndFromType(ObjectId itemId, Constants.GALLERY_FROM_TYPE fromType, Integer limit);
 
+    /**
+     * ItemID 배열과 FromType에 해당하는 아이템별 최신 Gallery ID 를 한번에 가져온다.
+     *
+     * @param itemIds 아이템 ID 배열
+     * @param fromType 출처
+     */
+    List<LinkedItemGallery> findFirstByItemIdsAndFromType(List<ObjectId> itemIds, Constants.GALLERY_FROM_TYPE fromType);
+
     /**
      * ItemID이 있으면 그 이전부터 최신순으로 GallerySimple 목록을 가져온다.
      */
     List<GallerySimple> findSimpleById(ObjectId id, Integer limit);
 
+    /**
+     * 상태에 해당하는 Gallery ID 전체를 가져온다. _id 만 읽는다.
+     */
+    List<ObjectId> findIdsByStatus(Constants.GALLERY_STATUS_TYPE status);
+
+    /**
+     * ID 배열에 해당하는 GallerySimple 목록을 가져온다. 순서는 보장하지 않는다.
+     */
+    List<GallerySimple> findSimpleByIds(List<ObjectId> ids);
+
+    /**
+     * 사진 파일 크기를 바꾼다.
+     */
+    void updateSize(String id, Long size);
+
+    /**
+     * 크기 줄이기, 썸네일 만들기가 끝났음을 표시한다.
+     */
+    void unsetProcessing(String id);
+
+    /**
+     * blob 이 그대로일 때만 다른 blob 과 크기로 바꾼다.
+     *
+     * @return 바꿨으면 true. 그 사이 지워졌거나 다른 blob 으로 바뀌었으면 false
+     */
+    Boolean updateBlobIdIfUnchanged(String id, String blobId, String newBlobId, Long size);
+
+    /**
+     * 아이템을 엮는다. 같은 아이템이 이미 있으면 그대로 둔다.
+     *
+     * @param enable true 이면 상태를 ENABLE 로 바꾼다
+     */
+    void addLinkedItem(String id, LinkedItem linkedItem, Boolean enable);
+
+    /**
+     * 이름을 바꾼다.
+     */
+    void updateName(String id, String name);
+
+    /**
+     * 아이템을 끊고, 바뀐 Gallery 의 linkedItems 를 돌려준다. 없으면 null
+     */
+    Gallery pullLinkedItem(String id, LinkedItem linkedItem);
+
+    /**
+     * 지우고, 지운 Gallery 의 blobId 를 돌려준다. 없으면 null
+     */
+    Gallery findAndRemoveBlobIdById(String id);
+
+    /**
+     * ID 보다 뒤의 Gallery 를 오래된 순으로 가져온다. _id, contentType, blobId 만 읽는다.
+     *
+     * @param id 기준 ID. null 이면 처음부터
+     */
+    List<Gallery> findContentTypeByIdGreaterThan(ObjectId id, Integer limit);
+
+    /**
+     * ID 보다 뒤의 ENABLE 상태 Gallery 를 오래된 순으로 가져온다. _id, name, writer 만 읽는다.
+     *
+     * @param id 기준 ID. null 이면 처음부터
+     */
+    List<Gallery> findEnabledByIdGreaterThan(ObjectId id, Integer limit);
+
+    /**
+     * ID 보다 앞의 ENABLE 상태 Gallery 를 최신 순으로 가져온다. _id, name 만 읽는다.
+     *
+     * @param id 기준 ID. null 이면 가장 최신부터
+     */
+    List<Gallery> findEnabledNamesByIdLessThan(ObjectId id, Integer limit);
+
+    /**
+     * ItemID 배열과 FromType에 엮인 ENABLE 상태 Gallery 를 한번에 가져온다. _id, linkedItems 만 읽는다.
+     */
+    List<Gallery> findByItemIdsAndFromType(List<ObjectId> itemIds, Constants.GALLERY_FROM_TYPE fromType);
+
 }
@@ -1,18 +1,27 @@
 package com.jakduk.api.repository.gallery;
 
 import com.jakduk.api.common.Constants;
+import com.jakduk.api.model.aggregate.LinkedItemGallery;
 import com.jakduk.api.model.db.Gallery;
+import com.jakduk.api.model.embedded.LinkedItem;
 import com.jakduk.api.model.simple.GallerySimple;
+import org.bson.Document;
 import org.bson.types.ObjectId;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
 import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.aggregation.AggregationResults;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
 import java.util.Objects;
+import java.util.stream.Collectors;
 
 /**
  * Created by pyohwan on 16. 11. 30.
@@ -65,6 +74,32 @@ public class GalleryRepositoryImpl implements GalleryRepositoryCustom {
         return mongoTemplate.find(query, Gallery.class);
     }
 
+    /**
+     * ItemID 배열과 FromType에 해당하는 아이템별 최신 Gallery ID 를 한번에 가져온다.
+     *
+     * db.gallery.aggregate([
+     *  {$match:{'status.status':'ENABLE', 'linkedItems._id':{$in:[...]}}},
+     *  {$unwind:'$linkedItems'},
+     *  {$match:{'linkedItems._id':{$in:[...]}, 'linkedItems.from':'ARTICLE'}},
+     *  {$sort:{_id:-1}},
+     *  {$group:{_id:'$linkedItems._id', galleryId:{$first:'$_id'}}}])
+     */
+    @Override
+    public List<LinkedItemGallery> findFirstByItemIdsAndFromType(List<ObjectId> itemIds, Constants.GALLERY_FROM_TYPE fromType) {
+        AggregationOperation match1 = Aggregation.match(Criteria.where("status.status").is(Constants.GALLERY_STATUS_TYPE.ENABLE.name())
+                .and("linkedItems._id").in(itemIds));
+        AggregationOperation unwind1 = Aggregation.unwind("linkedItems");
+        AggregationOperation match2 = Aggregation.match(Criteria.where("linkedItems._id").in(itemIds)
+                .and("linkedItems.from").is(fromType.name()));
+        AggregationOperation sort1 = Aggregation.sort(Sort.Direction.DESC, "_id");
+        AggregationOperation group1 = Aggregation.group("linkedItems._id").first("_id").as("galleryId");
+
+        Aggregation aggregation = Aggregation.newAggregation(match1, unwind1, match2, sort1, group1);
+        AggregationResults<LinkedItemGallery> results = mongoTemplate.aggregate(aggregation, Constants.COLLECTION_GALLERY, LinkedItemGallery.class);
+
+        return results.getMappedResults();
+    }
+
     @Override
     public List<GallerySimple> findSimpleById(ObjectId id, Integer limit) {
 
@@ -80,4 +115,176 @@ public class GalleryRepositoryImpl implements GalleryRepositoryCustom {
 
         return mongoTemplate.find(query, GallerySimple.class);
     }
+
+    /**
+     * 상태에 해당하는 Gallery ID 전체를 가져온다. _id 만 읽는다.
+     */
+    @Override
+    public List<ObjectId> findIdsByStatus(Constants.GALLERY_STATUS_TYPE status) {
+        Query query = new Query();
+        query.addCriteria(Criteria.where("status.status").is(status.name()));
+        query.fields().include("_id");
+
+        return mongoTemplate.find(query, Document.class, Constants.COLLECTION_GALLERY).stream()
+                .map(document -> document.getObjectId("_id"))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * ID 배열에 해당하는 GallerySimple 목록을 가져온다. 순서는 보장하지 않는다.
+     */
+    @Override
+    public List<GallerySimple> findSimpleByIds(List<ObjectId> ids) {
+        Query query = new Query();
+        query.addCriteria(Criteria.where("_id").in(ids));
+        query.fields().include("name").include("writer");
+
+        return mongoTemplate.find(query, GallerySimple.class);
+    }
+
+    /**
+     * 사진 파일 크기를 바꾼다.
+     */
+    @Override
+    public void updateSize(String id, Long size) {
+        Query query = new Query(Criteria.where("_id").is(new ObjectId(id)));
+
+        mongoTemplate.updateFirst(query, new Update().set("size", size), Gallery.class);
+    }
+
+    /**
+     * 크기 줄이기, 썸네일 만들기가 끝났음을 표시한다.
+     */
+    @Override
+    public void unsetProcessing(String id) {
+        Query query = new Query(Criteria.where("_id").is(new ObjectId(id)));
+
+        mongoTemplate.updateFirst(query, new Update().unset("processing"), Gallery.class);
+    }
+
+    /**
+     * blob 이 그대로일 때만 다른 blob 과 크기로 바꾼다.
+     */
+    @Override
+    public Boolean updateBlobIdIfUnchanged(String id, String blobId, String newBlobId, Long size) {
+        Query query = new Query(Criteria.where("_id").is(new ObjectId(id)).and("blobId").is(blobId));
+
+        return mongoTemplate.updateFirst(query, new Update().set("blobId", newBlobId).set("size", size), Gallery.class)
+                .getModifiedCount() > 0;
+    }
+
+    /**
+     * 아이템을 엮는다. 크기 줄이기가 바꾼 blobId, size, processing 을 덮어쓰지 않게 엮은 필드만 바꾼다.
+     */
+    @Override
+    public void addLinkedItem(String id, LinkedItem linkedItem, Boolean enable) {
+        Query query = new Query(Criteria.where("_id").is(new ObjectId(id)));
+        Update update = new Update().addToSet("linkedItems", linkedItem);
+
+        if (enable)
+            update.set("status.status", Constants.GALLERY_STATUS_TYPE.ENABLE.name());
+
+        mongoTemplate.updateFirst(query, update, Gallery.class);
+    }
+
+    /**
+     * 이름을 바꾼다.
+     */
+    @Override
+    public void updateName(String id, String name) {
+        Query query = new Query(Criteria.where("_id").is(new ObjectId(id)));
+
+        mongoTemplate.updateFirst(query, new Update().set("name", name), Gallery.class);
+    }
+
+    /**
+     * 아이템을 끊고, 바뀐 Gallery 의 linkedItems 를 돌려준다.
+     */
+    @Override
+    public Gallery pullLinkedItem(String id, LinkedItem linkedItem) {
+        Query query = new Query(Criteria.where("_id").is(new ObjectId(id)));
+        query.fields().include("linkedItems");
+
+        return mongoTemplate.findAndModify(query, new Update().pull("linkedItems", linkedItem),
+                FindAndModifyOptions.options().returnNew(true), Gallery.class);
+    }
+
+    /**
+     * 지우고, 지운 Gallery 의 blobId 를 돌려준다.
+     */
+    @Override
+    public Gallery findAndRemoveBlobIdById(String id) {
+        Query query = new Query(Criteria.where("_id").is(new ObjectId(id)));
+        query.fields().include("blobId");
+
+        return mongoTemplate.findAndRemove(query, Gallery.class);
+    }
+
+    /**
+     * ID 보다 뒤의 Gallery 를 오래된 순으로 가져온다. _id, contentType, blobId 만 읽는다.
+     */
+    @Override
+    public List<Gallery> findContentTypeByIdGreaterThan(ObjectId id, Integer limit) {
+        Query query = new Query();
+        query.fields().include("contentType").include("blobId");
+        query.limit(limit);
+
+        if (Objects.nonNull(id))
+            query.addCriteria(Criteria.where("_id").gt(id));
+
+        query.with(new Sort(Sort.Direction.ASC, "_id"));
+
+        return mongoTemplate.find(query, Gallery.class);
+    }
+
+    /**
+     * ID 보다 뒤의 ENABLE 상태 Gallery 를 오래된 순으로 가져온다.
+     */
+    @Override
+    public List<Gallery> findEnabledByIdGreaterThan(ObjectId id, Integer limit) {
+        Query query = new Query();
+        query.addCriteria(Criteria.where("status.status").is(Constants.GALLERY_STATUS_TYPE.ENABLE.name()));
+        query.fields().include("name").include("writer");
+        query.limit(limit);
+
+        if (Objects.nonNull(id))
+            query.addCriteria(Criteria.where("_id").gt(id));
+
+        query.with(new Sort(Sort.Direction.ASC, "_id"));
+
+        return mongoTemplate.find(query, Gallery.class);
+    }
+
+    /**
+     * ID 보다 앞의 ENABLE 상태 Gallery 를 최신 순으로 가져온다. _id, name 만 읽는다.
+     */
+    @Override
+    public List<Gallery> findEnabledNamesByIdLessThan(ObjectId id, Integer limit) {
+        Query query = new Query();
+        query.addCriteria(Criteria.where("status.status").is(Constants.GALLERY_STATUS_TYPE.ENABLE.name()));
+        query.fields().include("name");
+        query.limit(limit);
+
+        if (Objects.nonNull(id))
+            query.addCriteria(Criteria.where("_id").lt(id));
+
+        query.with(new Sort(Sort.Direction.DESC, "_id"));
+
+        return mongoTemplate.find(query, Gallery.class);
+    }
+
+    /**
+     * ItemID 배열과 FromType에 엮인 ENABLE 상태 Gallery 를 한번에 가져온다.
+     */
+    @Override
+    public List<Gallery> findByItemIdsAndFromType(List<ObjectId> itemIds, Constants.GALLERY_FROM_TYPE fromType) {
+        Query query = new Query();
+        query.addCriteria(Criteria.where("status.status").is(Constants.GALLERY_STATUS_TYPE.ENABLE.name()));
+        query.addCriteria(Criteria.where("linkedItems").elemMatch(Criteria.where("_id").in(itemIds).and("from").is(fromType)));
+        query.fields().include("linkedItems");
+
+        query.with(new Sort(Sort.Direction.ASC, "_id"));
+
+        return mongoTemplate.find(query, Gallery.class);
+    }
 }
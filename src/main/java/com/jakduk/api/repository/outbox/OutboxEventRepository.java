@@ -0,0 +1,7 @@
+package com.jakduk.api.repository.outbox;
+
+import com.jakduk.api.model.db.OutboxEvent;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+public interface OutboxEventRepository extends MongoRepository<OutboxEvent, String>, OutboxEventRepositoryCustom {
+}
@@ -0,0 +1,40 @@
+package com.jakduk.api.repository.outbox;
+
+import com.jakduk.api.model.db.OutboxEvent;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+public interface OutboxEventRepositoryCustom {
+
+    /**
+     * 치워두지 않은 가장 오래된 이벤트부터 이어서 보낼 때가 된 것을 limit 개까지 가져가고, leaseSeconds 동안 다른 relay 가 가져가지 못하게 잡아둔다.
+     * 가장 오래된 이벤트를 다른 relay 가 잡고 있거나 아직 보낼 때가 아니면 아무것도 가져가지 않는다.
+     *
+     * @param owner 가져가는 relay
+     * @return 가져간 이벤트. 오래된 순
+     */
+    List<OutboxEvent> claim(String owner, Integer limit, Integer leaseSeconds);
+
+    /**
+     * 실패 횟수를 늘리고 nextAttemptAt 이후에 다시 보내도록 잡아둔 것을 푼다.
+     */
+    void retryLater(Collection<String> ids, Date nextAttemptAt, String error);
+
+    /**
+     * 실패 횟수를 늘리고 더 보내지 않도록 치워둔다. parkedAt 을 지우면 다시 보낸다.
+     */
+    void park(Collection<String> ids, String error);
+
+    /**
+     * 실패 횟수는 그대로 두고 잡아둔 것을 푼다.
+     */
+    void release(Collection<String> ids);
+
+    /**
+     * 보낸 이벤트를 지운다.
+     */
+    void deleteByIds(Collection<String> ids);
+
+}
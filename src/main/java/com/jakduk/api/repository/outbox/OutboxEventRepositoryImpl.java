@@ -0,0 +1,136 @@
+package com.jakduk.api.repository.outbox;
+
+import com.jakduk.api.model.db.OutboxEvent;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+@Repository
+public class OutboxEventRepositoryImpl implements OutboxEventRepositoryCustom {
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    /**
+     * 치워두지 않은 가장 오래된 이벤트부터 이어서 보낼 때가 된 것만 가져간다.
+     *
+     * 앞선 이벤트가 잡혀 있거나 다시 보낼 때를 기다리는 동안 뒤의 이벤트가 먼저 나가면, 같은 문서의 색인과 삭제 순서가 뒤바뀔 수 있다.
+     * 그래서 앞에서부터 끊기지 않는 만큼만 잡고, 잡은 결과를 owner 와 lockedUntil 로 다시 읽는다.
+     *
+     * _id 는 ObjectId 라 한 서버가 만든 이벤트끼리만 만든 순서를 지킨다. 여러 서버가 거의 같은 때에 같은 문서의 이벤트를 만들면
+     * 시계 차이만큼 뒤바뀔 수 있고, 아직 저장 중인 이벤트보다 뒤의 것을 먼저 가져갈 수도 있다.
+     */
+    @Override
+    public List<OutboxEvent> claim(String owner, Integer limit, Integer leaseSeconds) {
+        Date now = new Date();
+        Date lockedUntil = new Date(now.getTime() + leaseSeconds * 1000L);
+
+        Query oldestQuery = new Query(Criteria.where("parkedAt").is(null))
+                .with(new Sort(Sort.Direction.ASC, "_id"))
+                .limit(limit);
+        oldestQuery.fields().include("_id").include("nextAttemptAt").include("lockedUntil");
+
+        List<String> ids = new ArrayList<>();
+
+        for (OutboxEvent outboxEvent : mongoTemplate.find(oldestQuery, OutboxEvent.class)) {
+            if (outboxEvent.getNextAttemptAt().after(now)
+                    || (Objects.nonNull(outboxEvent.getLockedUntil()) && ! outboxEvent.getLockedUntil().before(now)))
+                break;
+
+            ids.add(outboxEvent.getId());
+        }
+
+        if (ids.isEmpty())
+            return Collections.emptyList();
+
+        Query claimQuery = new Query(new Criteria().andOperator(
+                Criteria.where("_id").in(ids),
+                new Criteria().orOperator(Criteria.where("lockedUntil").is(null), Criteria.where("lockedUntil").lt(now))));
+
+        mongoTemplate.updateMulti(claimQuery, new Update().set("lockedBy", owner).set("lockedUntil", lockedUntil), OutboxEvent.class);
+
+        Query claimedQuery = new Query(Criteria.where("_id").in(ids).and("lockedBy").is(owner).and("lockedUntil").is(lockedUntil))
+                .with(new Sort(Sort.Direction.ASC, "_id"));
+
+        List<OutboxEvent> claimed = mongoTemplate.find(claimedQuery, OutboxEvent.class);
+
+        // 다른 relay 와 동시에 잡아서 맨 앞을 놓쳤으면 잡은 것도 풀어준다.
+        if (! claimed.isEmpty() && ! claimed.get(0).getId().equals(ids.get(0))) {
+            this.release(claimed.stream().map(OutboxEvent::getId).collect(Collectors.toList()));
+            return Collections.emptyList();
+        }
+
+        return claimed;
+    }
+
+    /**
+     * 실패 횟수를 늘리고 nextAttemptAt 이후에 다시 보낸다.
+     */
+    @Override
+    public void retryLater(Collection<String> ids, Date nextAttemptAt, String error) {
+        if (ids.isEmpty())
+            return;
+
+        Update update = new Update()
+                .inc("attempts", 1)
+                .set("nextAttemptAt", nextAttemptAt)
+                .set("lastError", error)
+                .unset("lockedBy")
+                .unset("lockedUntil");
+
+        mongoTemplate.updateMulti(new Query(Criteria.where("_id").in(ids)), update, OutboxEvent.class);
+    }
+
+    /**
+     * 실패 횟수를 늘리고 더 보내지 않도록 치워둔다.
+     */
+    @Override
+    public void park(Collection<String> ids, String error) {
+        if (ids.isEmpty())
+            return;
+
+        Update update = new Update()
+                .inc("attempts", 1)
+                .set("parkedAt", new Date())
+                .set("lastError", error)
+                .unset("lockedBy")
+                .unset("lockedUntil");
+
+        mongoTemplate.updateMulti(new Query(Criteria.where("_id").in(ids)), update, OutboxEvent.class);
+    }
+
+    /**
+     * 보낸 이벤트를 지운다.
+     */
+    @Override
+    public void deleteByIds(Collection<String> ids) {
+        if (ids.isEmpty())
+            return;
+
+        mongoTemplate.remove(new Query(Criteria.where("_id").in(ids)), OutboxEvent.class);
+    }
+
+    /**
+     * 잡아둔 것을 푼다.
+     */
+    @Override
+    public void release(Collection<String> ids) {
+        if (ids.isEmpty())
+            return;
+
+        mongoTemplate.updateMulti(new Query(Criteria.where("_id").in(ids)),
+                new Update().unset("lockedBy").unset("lockedUntil"), OutboxEvent.class);
+    }
+}
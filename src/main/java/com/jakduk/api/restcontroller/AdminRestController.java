@@ -538,13 +538,68 @@ public class AdminRestController {
 		return data;
 	}
 
-	// 썸네일 크기 지정
+	// 썸네일 크기 지정. 사진 ID 가 없으면 전체 썸네일 다시 만들기 작업을 시작한다
 	@RequestMapping(value = "/thumbnail/size", method = RequestMethod.POST)
-	public EmptyJsonResponse thumbnailSizeWrite(@RequestBody ThumbnailSizeWrite thumbnailSizeWrite) {
+	public EmptyJsonResponse thumbnailSizeWrite(@Valid @RequestBody ThumbnailSizeWrite thumbnailSizeWrite) {
 		adminService.thumbnailSizeWrite(thumbnailSizeWrite);
 		return EmptyJsonResponse.newInstance();
 	}
 
+	// 썸네일 다시 만들기 작업 상태
+	@RequestMapping(value = "/thumbnail/regeneration", method = RequestMethod.GET)
+	public ThumbnailRegenerationResponse getThumbnailRegeneration() {
+		return adminService.getThumbnailRegeneration();
+	}
+
+	// 썸네일 다시 만들기 작업 이어서 하기
+	@RequestMapping(value = "/thumbnail/regeneration/resume", method = RequestMethod.POST)
+	public ThumbnailRegenerationResponse resumeThumbnailRegeneration() {
+		return adminService.resumeThumbnailRegeneration();
+	}
+
+	// 썸네일 다시 만들기 작업 멈추기
+	@RequestMapping(value = "/thumbnail/regeneration/stop", method = RequestMethod.POST)
+	public ThumbnailRegenerationResponse stopThumbnailRegeneration() {
+		return adminService.stopThumbnailRegeneration();
+	}
+
+	// 검색 재색인 작업 상태
+	@RequestMapping(value = "/search/reindex", method = RequestMethod.GET)
+	public SearchReindexResponse getSearchReindex() {
+		return adminService.getSearchReindex();
+	}
+
+	// 검색 재색인 작업 시작. 새 인덱스를 만들어 처음부터 색인한다
+	// 처음 alias 로 바꿀 때는 migrateIndex=true 로 예전 인덱스를 지우는 것을 허락해야 한다
+	@RequestMapping(value = "/search/reindex", method = RequestMethod.POST)
+	public SearchReindexResponse startSearchReindex(@RequestParam(required = false, defaultValue = "false") Boolean migrateIndex) {
+		return adminService.startSearchReindex(migrateIndex);
+	}
+
+	// 검색 재색인 작업 이어서 하기
+	@RequestMapping(value = "/search/reindex/resume", method = RequestMethod.POST)
+	public SearchReindexResponse resumeSearchReindex() {
+		return adminService.resumeSearchReindex();
+	}
+
+	// 검색 재색인 작업 멈추기
+	@RequestMapping(value = "/search/reindex/stop", method = RequestMethod.POST)
+	public SearchReindexResponse stopSearchReindex() {
+		return adminService.stopSearchReindex();
+	}
+
+	// 게시물 댓글수, 감정수 점검
+	@RequestMapping(value = "/article/counters", method = RequestMethod.GET)
+	public ArticleCountersResponse checkArticleCounters() {
+		return adminService.checkArticleCounters(false);
+	}
+
+	// 게시물 댓글수, 감정수 채우기 및 고치기
+	@RequestMapping(value = "/article/counters", method = RequestMethod.POST)
+	public ArticleCountersResponse fixArticleCounters() {
+		return adminService.checkArticleCounters(true);
+	}
+
 	// 경기 목록
 	@RequestMapping(value = "/competitions", method = RequestMethod.GET)
 	public Map<String, Object> getCompetitions() {
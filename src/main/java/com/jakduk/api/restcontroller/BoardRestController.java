@@ -13,7 +13,6 @@ import com.jakduk.api.model.aggregate.BoardTop;
 import com.jakduk.api.model.db.Article;
 import com.jakduk.api.model.db.ArticleComment;
 import com.jakduk.api.model.db.Gallery;
-import com.jakduk.api.model.embedded.CommonFeelingUser;
 import com.jakduk.api.model.embedded.CommonWriter;
 import com.jakduk.api.restcontroller.vo.EmptyJsonResponse;
 import com.jakduk.api.restcontroller.vo.UserFeelingResponse;
@@ -63,6 +62,23 @@ public class BoardRestController {
         return articleService.getArticles(board, categoryCode, page, size);
     }
 
+    // 게시판 글 목록 (커서 방식)
+    @GetMapping("/{board}/articles/cursor")
+    public GetArticlesCursorResponse getArticlesByCursor(
+            @PathVariable Constants.BOARD_TYPE board, // 게시판
+            @RequestParam(required = false) String cursor, // 기준 글 ID
+            @RequestParam(required = false, defaultValue = "next") Constants.CURSOR_DIRECTION direction, // 방향
+            @RequestParam(required = false, defaultValue = "20") Integer size, // 목록 크기
+            @RequestParam(required = false, defaultValue = "ALL") String categoryCode, // 말머리
+            @RequestParam(required = false, defaultValue = "false") Boolean withTotal // 대략의 전체 글 수 포함 여부
+    ) {
+
+        if (size < 1 || size > Constants.BOARD_MAX_LIMIT)
+            size = Constants.BOARD_MAX_LIMIT;
+
+        return articleService.getArticlesByCursor(board, categoryCode, cursor, direction, size, withTotal);
+    }
+
     // 게시판 주간 선두 글
     @GetMapping("/{board}/tops")
     public GetArticlesTopsResponse getArticlesTops(
@@ -307,16 +323,7 @@ public class BoardRestController {
 
         CommonWriter commonWriter = AuthUtils.getCommonWriterFromSession();
 
-        Article article = articleService.setArticleFeelings(commonWriter, board, seq, feeling);
-
-        List<CommonFeelingUser> usersLiking = article.getUsersLiking();
-        List<CommonFeelingUser> usersDisliking = article.getUsersDisliking();
-
-        return new UserFeelingResponse() {{
-            setMyFeeling(JakdukUtils.getMyFeeling(commonWriter, usersLiking, usersDisliking));
-            setNumberOfLike(CollectionUtils.isEmpty(usersLiking) ? 0 : usersLiking.size());
-            setNumberOfDislike(CollectionUtils.isEmpty(usersDisliking) ? 0 : usersDisliking.size());
-        }};
+        return articleService.setArticleFeelings(commonWriter, board, seq, feeling);
     }
 
     // 자유게시판 글의 감정 표현 회원 목록
@@ -339,16 +346,7 @@ public class BoardRestController {
 
         CommonWriter commonWriter = AuthUtils.getCommonWriterFromSession();
 
-        ArticleComment boardComment = articleService.setArticleCommentFeeling(commonWriter, commentId, feeling);
-
-        List<CommonFeelingUser> usersLiking = boardComment.getUsersLiking();
-        List<CommonFeelingUser> usersDisliking = boardComment.getUsersDisliking();
-
-        return new UserFeelingResponse() {{
-            setMyFeeling(JakdukUtils.getMyFeeling(commonWriter, usersLiking, usersDisliking));
-            setNumberOfLike(CollectionUtils.isEmpty(usersLiking) ? 0 : usersLiking.size());
-            setNumberOfDislike(CollectionUtils.isEmpty(usersDisliking) ? 0 : usersDisliking.size());
-        }};
+        return articleService.setArticleCommentFeeling(commonWriter, commentId, feeling);
     }
 
     // 게시판 글의 공지 활성화
@@ -381,6 +379,7 @@ public class BoardRestController {
     public void initBoardTypeEnumBinder(WebDataBinder dataBinder) {
         dataBinder.registerCustomEditor(Constants.BOARD_TYPE.class, new BoardTypeEnumConverter());
         dataBinder.registerCustomEditor(Constants.FEELING_TYPE.class, new FeelingTypeEnumConverter());
+        dataBinder.registerCustomEditor(Constants.CURSOR_DIRECTION.class, new CursorDirectionEnumConverter());
     }
 
     private class BoardTypeEnumConverter extends PropertyEditorSupport {
@@ -406,4 +405,16 @@ public class BoardRestController {
             }
         }
     }
+
+    private class CursorDirectionEnumConverter extends PropertyEditorSupport {
+
+        @Override
+        public void setAsText(String text) throws IllegalArgumentException {
+            if (StringUtils.isAllLowerCase(text)) {
+                setValue(text.toUpperCase());
+            } else {
+                throw new ServiceException(ServiceError.INVALID_PARAMETER);
+            }
+        }
+    }
 }
@@ -20,6 +20,7 @@ import org.springframework.web.multipart.MultipartFile;
 
 import javax.servlet.http.HttpServletRequest;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 import java.util.Objects;
 
@@ -65,8 +66,12 @@ public class GalleryRestController {
 
         CommonWriter commonWriter = AuthUtils.getCommonWriterFromSession();
 
-        Gallery gallery = galleryService.uploadImage(commonWriter, file.getOriginalFilename(), file.getSize(),
-                contentType, file.getBytes());
+        Gallery gallery;
+
+        // 내용 전체를 byte[] 로 올리지 않고 스트림으로 넘긴다.
+        try (InputStream inputStream = file.getInputStream()) {
+            gallery = galleryService.uploadImage(commonWriter, file.getOriginalFilename(), contentType, inputStream);
+        }
 
         GalleryUploadResponse response = new GalleryUploadResponse();
 
@@ -3,6 +3,7 @@ package com.jakduk.api.restcontroller;
 import com.jakduk.api.common.rabbitmq.RabbitMQPublisher;
 import com.jakduk.api.common.util.AuthUtils;
 import com.jakduk.api.restcontroller.vo.search.PopularSearchWordResult;
+import com.jakduk.api.restcontroller.vo.search.SearchSuggestResult;
 import com.jakduk.api.restcontroller.vo.search.SearchUnifiedResponse;
 import com.jakduk.api.service.SearchService;
 import org.apache.commons.lang3.StringUtils;
@@ -81,7 +82,19 @@ public class SearchRestController {
 		// 3 주전
 		LocalDate threeWeeksAgo = LocalDate.now().minusWeeks(3);
 
-		return searchService.aggregateSearchWord(threeWeeksAgo, size);
+		return searchService.getPopularSearchWords(threeWeeksAgo, size);
+	}
+
+	// 검색어 자동 완성
+	@GetMapping("/suggest")
+	public SearchSuggestResult searchSuggest(
+			@NotEmpty @RequestParam String q, // 입력 중인 검색어
+			@RequestParam(required = false, defaultValue = "5") Integer size // 크기
+	) {
+
+		if (size <= 0) size = 5;
+
+		return searchService.suggest(q, size);
 	}
 
 }
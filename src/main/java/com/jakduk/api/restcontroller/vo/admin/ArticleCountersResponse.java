@@ -0,0 +1,40 @@
+package com.jakduk.api.restcontroller.vo.admin;
+
+import java.util.List;
+
+/**
+ * 게시물 댓글수, 감정수 점검 결과
+ */
+
+public class ArticleCountersResponse {
+    private Integer scanned; // 점검한 게시물 수
+    private Integer mismatched; // 실제 값과 다른 게시물 수
+    private Integer fixed; // 고친 게시물 수
+    private List<Integer> mismatchedSeqs; // 실제 값과 다른 게시물 seq (일부)
+
+    public ArticleCountersResponse() {
+    }
+
+    public ArticleCountersResponse(Integer scanned, Integer mismatched, Integer fixed, List<Integer> mismatchedSeqs) {
+        this.scanned = scanned;
+        this.mismatched = mismatched;
+        this.fixed = fixed;
+        this.mismatchedSeqs = mismatchedSeqs;
+    }
+
+    public Integer getScanned() {
+        return scanned;
+    }
+
+    public Integer getMismatched() {
+        return mismatched;
+    }
+
+    public Integer getFixed() {
+        return fixed;
+    }
+
+    public List<Integer> getMismatchedSeqs() {
+        return mismatchedSeqs;
+    }
+}
@@ -0,0 +1,99 @@
+package com.jakduk.api.restcontroller.vo.admin;
+
+import com.jakduk.api.common.Constants;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 검색 재색인 작업 상태
+ */
+
+public class SearchReindexResponse {
+    private Constants.BATCH_JOB_STATUS status; // 한번도 하지 않았으면 null
+    private List<Source> sources; // 원본별 진행 상황
+    private Double throughput; // 이번 실행의 초당 색인 수
+    private Date startedAt;
+    private Date updatedAt;
+
+    public SearchReindexResponse() {
+    }
+
+    public SearchReindexResponse(Constants.BATCH_JOB_STATUS status, List<Source> sources, Double throughput, Date startedAt,
+                                 Date updatedAt) {
+        this.status = status;
+        this.sources = sources;
+        this.throughput = throughput;
+        this.startedAt = startedAt;
+        this.updatedAt = updatedAt;
+    }
+
+    public Constants.BATCH_JOB_STATUS getStatus() {
+        return status;
+    }
+
+    public List<Source> getSources() {
+        return sources;
+    }
+
+    public Double getThroughput() {
+        return throughput;
+    }
+
+    public Date getStartedAt() {
+        return startedAt;
+    }
+
+    public Date getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public static class Source {
+        private String name; // article, comment, gallery
+        private Constants.BATCH_JOB_STATUS status;
+        private String target; // 채우고 있는 새 인덱스
+        private String lastId; // 마지막으로 색인한 문서 ID
+        private Long processed; // 색인한 문서 수
+        private Long failed; // 실패한 문서 수
+        private Long skipped; // 재색인 중에 들어온 변경이 먼저 써서 건너뛴 문서 수
+
+        public Source(String name, Constants.BATCH_JOB_STATUS status, String target, String lastId, Long processed, Long failed,
+                      Long skipped) {
+            this.name = name;
+            this.status = status;
+            this.target = target;
+            this.lastId = lastId;
+            this.processed = processed;
+            this.failed = failed;
+            this.skipped = skipped;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Constants.BATCH_JOB_STATUS getStatus() {
+            return status;
+        }
+
+        public String getTarget() {
+            return target;
+        }
+
+        public String getLastId() {
+            return lastId;
+        }
+
+        public Long getProcessed() {
+            return processed;
+        }
+
+        public Long getFailed() {
+            return failed;
+        }
+
+        public Long getSkipped() {
+            return skipped;
+        }
+    }
+}
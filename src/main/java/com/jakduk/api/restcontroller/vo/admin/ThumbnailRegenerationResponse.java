@@ -0,0 +1,79 @@
+package com.jakduk.api.restcontroller.vo.admin;
+
+import com.jakduk.api.common.Constants;
+
+import java.util.Date;
+
+/**
+ * 썸네일 다시 만들기 작업 상태
+ */
+
+public class ThumbnailRegenerationResponse {
+    private Constants.BATCH_JOB_STATUS status; // 한번도 하지 않았으면 null
+    private Integer width;
+    private Integer height;
+    private String lastId; // 마지막으로 처리한 사진 ID
+    private Long processed; // 처리한 사진 수
+    private Long failed; // 실패한 사진 수
+    private Long skipped; // 원본이 없어 건너뛴 사진 수
+    private Double throughput; // 이번 실행의 초당 처리 수
+    private Date startedAt;
+    private Date updatedAt;
+
+    public ThumbnailRegenerationResponse() {
+    }
+
+    public ThumbnailRegenerationResponse(Constants.BATCH_JOB_STATUS status, Integer width, Integer height, String lastId,
+                                         Long processed, Long failed, Long skipped, Double throughput, Date startedAt, Date updatedAt) {
+        this.status = status;
+        this.width = width;
+        this.height = height;
+        this.lastId = lastId;
+        this.processed = processed;
+        this.failed = failed;
+        this.skipped = skipped;
+        this.throughput = throughput;
+        this.startedAt = startedAt;
+        this.updatedAt = updatedAt;
+    }
+
+    public Constants.BATCH_JOB_STATUS getStatus() {
+        return status;
+    }
+
+    public Integer getWidth() {
+        return width;
+    }
+
+    public Integer getHeight() {
+        return height;
+    }
+
+    public String getLastId() {
+        return lastId;
+    }
+
+    public Long getProcessed() {
+        return processed;
+    }
+
+    public Long getFailed() {
+        return failed;
+    }
+
+    public Long getSkipped() {
+        return skipped;
+    }
+
+    public Double getThroughput() {
+        return throughput;
+    }
+
+    public Date getStartedAt() {
+        return startedAt;
+    }
+
+    public Date getUpdatedAt() {
+        return updatedAt;
+    }
+}
@@ -0,0 +1,93 @@
+package com.jakduk.api.restcontroller.vo.board;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 게시판 글 목록 (커서 방식)
+ */
+
+public class GetArticlesCursorResponse {
+
+    private Map<String, String> categories; // 말머리 맵
+    private List<GetArticle> articles; // 글 목록
+    private List<GetArticle> notices; // 공지글 목록. 첫 목록에서만
+    private String prevCursor; // 최근 방향 목록의 커서 (목록의 첫 글 ID)
+    private String nextCursor; // 오래된 방향 목록의 커서 (목록의 마지막 글 ID)
+    private Boolean first; // 가장 최근 목록 여부
+    private Boolean last; // 가장 오래된 목록 여부
+    private Integer size; // 목록당 글 수
+    private Long totalElements; // 대략의 전체 글 수 (withTotal 일 때만)
+
+    public Map<String, String> getCategories() {
+        return categories;
+    }
+
+    public void setCategories(Map<String, String> categories) {
+        this.categories = categories;
+    }
+
+    public List<GetArticle> getArticles() {
+        return articles;
+    }
+
+    public void setArticles(List<GetArticle> articles) {
+        this.articles = articles;
+    }
+
+    public List<GetArticle> getNotices() {
+        return notices;
+    }
+
+    public void setNotices(List<GetArticle> notices) {
+        this.notices = notices;
+    }
+
+    public String getPrevCursor() {
+        return prevCursor;
+    }
+
+    public void setPrevCursor(String prevCursor) {
+        this.prevCursor = prevCursor;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
+    public Boolean getFirst() {
+        return first;
+    }
+
+    public void setFirst(Boolean first) {
+        this.first = first;
+    }
+
+    public Boolean getLast() {
+        return last;
+    }
+
+    public void setLast(Boolean last) {
+        this.last = last;
+    }
+
+    public Integer getSize() {
+        return size;
+    }
+
+    public void setSize(Integer size) {
+        this.size = size;
+    }
+
+    public Long getTotalElements() {
+        return totalElements;
+    }
+
+    public void setTotalElements(Long totalElements) {
+        this.totalElements = totalElements;
+    }
+}
@@ -14,6 +14,7 @@ public class GalleryDetail {
     private String name; // 사진 이름
     private String imageUrl; // 사진 풀 URL
     private String thumbnailUrl; // 사진 썸네일 URL
+    private String srcset; // 가로 길이 단계별 사진 URL 목록 (img srcset)
     private GalleryStatus status; // 사진 상태
 
     public String getId() {
@@ -63,4 +64,12 @@ public class GalleryDetail {
     public void setStatus(GalleryStatus status) {
         this.status = status;
     }
+
+    public String getSrcset() {
+        return srcset;
+    }
+
+    public void setSrcset(String srcset) {
+        this.srcset = srcset;
+    }
 }
@@ -11,6 +11,8 @@ import java.util.List;
 public class SearchArticleResult {
 	private Long took; // 찾기에 걸린 시간(ms)
 	private Long totalCount; // 매칭되는 아이템 수
+	private Boolean timedOut; // 기다리는 시간 안에 다 찾지 못함
+	private Boolean failed; // 찾다가 오류가 남
 	private List<ArticleSource> articles; // 매칭되는 게시물 목록
 
 	public Long getTook() {
@@ -36,4 +38,20 @@ public class SearchArticleResult {
 	public void setArticles(List<ArticleSource> articles) {
 		this.articles = articles;
 	}
+
+	public Boolean getTimedOut() {
+		return timedOut;
+	}
+
+	public void setTimedOut(Boolean timedOut) {
+		this.timedOut = timedOut;
+	}
+
+	public Boolean getFailed() {
+		return failed;
+	}
+
+	public void setFailed(Boolean failed) {
+		this.failed = failed;
+	}
 }
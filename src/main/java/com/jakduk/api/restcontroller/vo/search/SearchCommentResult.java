@@ -13,6 +13,8 @@ public class SearchCommentResult {
 
 	private Long took;
 	private Long totalCount;
+	private Boolean timedOut; // 기다리는 시간 안에 다 찾지 못함
+	private Boolean failed; // 찾다가 오류가 남
 	private List<EsCommentSource> comments;
 
 	public Long getTook() {
@@ -38,4 +40,20 @@ public class SearchCommentResult {
 	public void setComments(List<EsCommentSource> comments) {
 		this.comments = comments;
 	}
+
+	public Boolean getTimedOut() {
+		return timedOut;
+	}
+
+	public void setTimedOut(Boolean timedOut) {
+		this.timedOut = timedOut;
+	}
+
+	public Boolean getFailed() {
+		return failed;
+	}
+
+	public void setFailed(Boolean failed) {
+		this.failed = failed;
+	}
 }
@@ -12,6 +12,8 @@ public class SearchGalleryResult {
 
     private Long took;
     private Long totalCount;
+    private Boolean timedOut; // 기다리는 시간 안에 다 찾지 못함
+    private Boolean failed; // 찾다가 오류가 남
     private List<EsGallerySource> galleries;
 
     public Long getTook() {
@@ -37,4 +39,20 @@ public class SearchGalleryResult {
     public void setGalleries(List<EsGallerySource> galleries) {
         this.galleries = galleries;
     }
+
+    public Boolean getTimedOut() {
+        return timedOut;
+    }
+
+    public void setTimedOut(Boolean timedOut) {
+        this.timedOut = timedOut;
+    }
+
+    public Boolean getFailed() {
+        return failed;
+    }
+
+    public void setFailed(Boolean failed) {
+        this.failed = failed;
+    }
 }
@@ -0,0 +1,28 @@
+package com.jakduk.api.restcontroller.vo.search;
+
+import java.util.List;
+
+/**
+ * 검색어 자동 완성 결과
+ */
+
+public class SearchSuggestResult {
+	private Long tookMicros; // 찾는데 걸린 시간 (마이크로초)
+	private List<String> suggestions;
+
+	public Long getTookMicros() {
+		return tookMicros;
+	}
+
+	public void setTookMicros(Long tookMicros) {
+		this.tookMicros = tookMicros;
+	}
+
+	public List<String> getSuggestions() {
+		return suggestions;
+	}
+
+	public void setSuggestions(List<String> suggestions) {
+		this.suggestions = suggestions;
+	}
+}
@@ -2,26 +2,36 @@ package com.jakduk.api.service;
 
 
 import com.jakduk.api.common.Constants;
-import com.jakduk.api.configuration.JakdukProperties;
+import com.jakduk.api.common.elasticsearch.SearchReindexJob;
+import com.jakduk.api.common.gallery.ThumbnailRegenerationJob;
 import com.jakduk.api.dao.JakdukDAO;
 import com.jakduk.api.exception.ServiceError;
 import com.jakduk.api.exception.ServiceException;
+import com.jakduk.api.model.aggregate.BoardFeelingCount;
+import com.jakduk.api.model.aggregate.CommonCount;
 import com.jakduk.api.model.db.*;
 import com.jakduk.api.model.embedded.JakduScheduleScore;
 import com.jakduk.api.model.embedded.LocalName;
+import com.jakduk.api.model.simple.ArticleOnCounter;
 import com.jakduk.api.repository.AttendanceClubRepository;
 import com.jakduk.api.repository.CompetitionRepository;
 import com.jakduk.api.repository.EncyclopediaRepository;
 import com.jakduk.api.repository.HomeDescriptionRepository;
+import com.jakduk.api.repository.article.ArticleCommentRepository;
+import com.jakduk.api.repository.article.ArticleRepository;
 import com.jakduk.api.repository.footballclub.FootballClubOriginRepository;
 import com.jakduk.api.repository.footballclub.FootballClubRepository;
 import com.jakduk.api.repository.gallery.GalleryRepository;
 import com.jakduk.api.repository.jakdu.JakduScheduleGroupRepository;
 import com.jakduk.api.repository.jakdu.JakduScheduleRepository;
+import com.jakduk.api.restcontroller.vo.admin.ArticleCountersResponse;
 import com.jakduk.api.restcontroller.vo.admin.CompetitionWrite;
 import com.jakduk.api.restcontroller.vo.admin.JakduScheduleGroupWrite;
 import com.jakduk.api.restcontroller.vo.admin.JakduScheduleWrite;
+import com.jakduk.api.restcontroller.vo.admin.SearchReindexResponse;
+import com.jakduk.api.restcontroller.vo.admin.ThumbnailRegenerationResponse;
 import com.jakduk.api.restcontroller.vo.admin.ThumbnailSizeWrite;
+import org.apache.commons.lang3.BooleanUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.bson.types.ObjectId;
 import org.slf4j.Logger;
@@ -30,22 +40,10 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 
-import javax.annotation.Resource;
-import javax.imageio.ImageIO;
-import java.awt.*;
-import java.awt.image.BufferedImage;
-import java.io.BufferedInputStream;
-import java.io.FileInputStream;
-import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.LinkOption;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.time.Instant;
-import java.time.LocalDateTime;
-import java.time.ZoneId;
 import java.util.*;
 import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * @author <a href="mailto:phjang1983@daum.net">Jang,Pyohwan</a>
@@ -56,19 +54,21 @@ public class AdminService {
 
 	private final Logger log = LoggerFactory.getLogger(this.getClass());
 
-	@Resource private JakdukProperties.Storage storageProperties;
-
 	@Autowired private JakdukDAO jakdukDAO;
 	@Autowired private CommonService commonService;
 	@Autowired private EncyclopediaRepository encyclopediaRepository;
 	@Autowired private FootballClubRepository footballClubRepository;
 	@Autowired private FootballClubOriginRepository footballClubOriginRepository;
 	@Autowired private GalleryRepository galleryRepository;
+	@Autowired private ArticleRepository articleRepository;
+	@Autowired private ArticleCommentRepository articleCommentRepository;
 	@Autowired private HomeDescriptionRepository homeDescriptionReposotiry;
 	@Autowired private AttendanceClubRepository attendanceClubRepository;
 	@Autowired private JakduScheduleRepository jakduScheduleRepository;
 	@Autowired private JakduScheduleGroupRepository jakduScheduleGroupRepository;
 	@Autowired private CompetitionRepository competitionRepository; // 리팩토링 할때 없애자.
+	@Autowired private ThumbnailRegenerationJob thumbnailRegenerationJob;
+	@Autowired private SearchReindexJob searchReindexJob;
 
 	// 알림판 목록.
 	public List<HomeDescription> findHomeDescriptions() {
@@ -154,68 +154,54 @@ public class AdminService {
 		return attendanceClubs;
 	}
 	
+	/**
+	 * 썸네일을 다시 만든다. 사진 ID 가 있으면 그 사진만 바로 만들고, 없으면 전체를 배치 작업으로 돌린다.
+	 */
 	public void thumbnailSizeWrite(ThumbnailSizeWrite thumbnailSizeWrite) {
-		
-		List<Gallery> galleries;
-		
-		if (thumbnailSizeWrite.getGalleryId() != null && !thumbnailSizeWrite.getGalleryId().isEmpty()) {
-			galleries = new ArrayList<>();
-			galleries.add(galleryRepository.findById(thumbnailSizeWrite.getGalleryId()).orElseThrow(() -> new ServiceException(ServiceError.NOT_FOUND_GALLERY)));
+
+		if (StringUtils.isNotBlank(thumbnailSizeWrite.getGalleryId())) {
+			Gallery gallery = galleryRepository.findById(thumbnailSizeWrite.getGalleryId())
+					.orElseThrow(() -> new ServiceException(ServiceError.NOT_FOUND_GALLERY));
+
+			thumbnailRegenerationJob.regenerate(gallery, thumbnailSizeWrite.getWidth(), thumbnailSizeWrite.getHeight());
 		} else {
-			galleries = galleryRepository.findAll();
-		}
-		
-		for (Gallery gallery : galleries) {
-			ObjectId objId = new ObjectId(gallery.getId());
-			Instant instant = Instant.ofEpochMilli(objId.getDate().getTime());
-			LocalDateTime timePoint = LocalDateTime.ofInstant(instant, ZoneId.systemDefault());
-			
-			Path imageDirPath = Paths.get(storageProperties.getImagePath(), String.valueOf(timePoint.getYear()),
-					String.valueOf(timePoint.getMonthValue()), String.valueOf(timePoint.getDayOfMonth()));
-			
-			Path thumbDirPath = Paths.get(storageProperties.getThumbnailPath(), String.valueOf(timePoint.getYear()),
-					String.valueOf(timePoint.getMonthValue()), String.valueOf(timePoint.getDayOfMonth()));
-			
-			// 사진 경로.
-			Path imageFilePath = imageDirPath.resolve(gallery.getId());
-			Path thumbFilePath = thumbDirPath.resolve(gallery.getId());
-			
-			// 사진 포맷.
-			String formatName = "jpg";
-			
-			String splitContentType[] = gallery.getContentType().split("/");
-			if (!splitContentType[1].equals("octet-stream")) {
-				formatName = splitContentType[1];
-			}
-			
-			if (Files.exists(imageFilePath, LinkOption.NOFOLLOW_LINKS)) {
-				
-				try {
-					
-					if (Files.exists(thumbFilePath, LinkOption.NOFOLLOW_LINKS)) {
-						Files.delete(thumbFilePath);
-					}
-
-					log.debug("gallery=" + gallery);
-					
-					BufferedInputStream in = new BufferedInputStream(new FileInputStream(imageFilePath.toString()));
-					
-					BufferedImage bi = ImageIO.read(in);
-					BufferedImage bufferIm = new BufferedImage(thumbnailSizeWrite.getWidth(), thumbnailSizeWrite.getHeight(), BufferedImage.TYPE_INT_RGB);
-					Image tempImg = bi.getScaledInstance(thumbnailSizeWrite.getWidth(), thumbnailSizeWrite.getHeight(), Image.SCALE_AREA_AVERAGING);
-					Graphics2D g2 = bufferIm.createGraphics();
-					g2.drawImage(tempImg, 0, 0, thumbnailSizeWrite.getWidth(), thumbnailSizeWrite.getHeight(), null);
-					
-					ImageIO.write(bufferIm, formatName, thumbFilePath.toFile());				
-					
-					in.close();					
-				} catch (IOException e) {
-					log.warn(e.getMessage(), e);
-				}
-			}				
+			thumbnailRegenerationJob.start(thumbnailSizeWrite.getWidth(), thumbnailSizeWrite.getHeight());
 		}
 	}
 
+	public ThumbnailRegenerationResponse getThumbnailRegeneration() {
+		return thumbnailRegenerationJob.getStatus();
+	}
+
+	public ThumbnailRegenerationResponse resumeThumbnailRegeneration() {
+		return thumbnailRegenerationJob.resume();
+	}
+
+	public ThumbnailRegenerationResponse stopThumbnailRegeneration() {
+		return thumbnailRegenerationJob.stop();
+	}
+
+	public SearchReindexResponse getSearchReindex() {
+		return searchReindexJob.getStatus();
+	}
+
+	/**
+	 * 새 인덱스에 글, 댓글, 사진을 다시 색인하고 alias 를 옮긴다.
+	 *
+	 * @param migrateIndex 검색이 쓰는 이름이 아직 인덱스이면 지우고 alias 로 바꾼다. 되돌릴 수 없다
+	 */
+	public SearchReindexResponse startSearchReindex(Boolean migrateIndex) {
+		return searchReindexJob.start(migrateIndex);
+	}
+
+	public SearchReindexResponse resumeSearchReindex() {
+		return searchReindexJob.resume();
+	}
+
+	public SearchReindexResponse stopSearchReindex() {
+		return searchReindexJob.stop();
+	}
+
 	public void saveAttendanceClub(String id, String origin, String league, Integer season, Integer games, Integer total, Integer average) {
 
 		FootballClubOrigin footballClubOrigin = footballClubOriginRepository.findOneById(origin)
@@ -448,4 +434,68 @@ public class AdminService {
 		competitionRepository.deleteById(id);
 	}
 
+	/**
+	 * 게시물의 댓글수, 감정수 비정규화 필드를 실제 값과 비교한다.
+	 *
+	 * @param fix true 이면 실제 값과 다른 게시물을 고친다. (최초 채우기 포함)
+	 */
+	public ArticleCountersResponse checkArticleCounters(Boolean fix) {
+
+		int scanned = 0;
+		int mismatched = 0;
+		int fixed = 0;
+		List<Integer> mismatchedSeqs = new ArrayList<>();
+
+		ObjectId lastId = null;
+		List<ArticleOnCounter> counters = articleRepository.findCountersGreaterThanId(lastId, Constants.NUMBER_OF_ITEMS_EACH_PAGES);
+
+		while (! counters.isEmpty()) {
+			List<ObjectId> ids = counters.stream()
+					.map(counter -> new ObjectId(counter.getId()))
+					.collect(Collectors.toList());
+
+			Map<String, Integer> commentCounts = articleCommentRepository.findCommentsCountByIds(ids).stream()
+					.collect(Collectors.toMap(CommonCount::getId, CommonCount::getCount));
+
+			Map<String, BoardFeelingCount> feelingCounts = articleRepository.findUsersFeelingCount(ids).stream()
+					.collect(Collectors.toMap(BoardFeelingCount::getId, Function.identity()));
+
+			List<ArticleOnCounter> actualCounters = new ArrayList<>();
+
+			for (ArticleOnCounter counter : counters) {
+				BoardFeelingCount feelingCount = feelingCounts.get(counter.getId());
+
+				ArticleOnCounter actual = new ArticleOnCounter(counter.getId(), counter.getSeq(),
+						commentCounts.getOrDefault(counter.getId(), 0),
+						Objects.nonNull(feelingCount) ? feelingCount.getUsersLikingCount() : 0,
+						Objects.nonNull(feelingCount) ? feelingCount.getUsersDislikingCount() : 0);
+
+				if (! Objects.equals(counter.getCommentCount(), actual.getCommentCount())
+						|| ! Objects.equals(counter.getLikingCount(), actual.getLikingCount())
+						|| ! Objects.equals(counter.getDislikingCount(), actual.getDislikingCount())) {
+
+					actualCounters.add(actual);
+
+					if (mismatchedSeqs.size() < Constants.ARTICLE_COUNTERS_MISMATCHED_SEQS_LIMIT)
+						mismatchedSeqs.add(counter.getSeq());
+				}
+			}
+
+			scanned += counters.size();
+			mismatched += actualCounters.size();
+
+			if (BooleanUtils.isTrue(fix)) {
+				articleRepository.updateCounters(actualCounters);
+				fixed += actualCounters.size();
+			}
+
+			lastId = ids.get(ids.size() - 1);
+			counters = articleRepository.findCountersGreaterThanId(lastId, Constants.NUMBER_OF_ITEMS_EACH_PAGES);
+		}
+
+		log.info("article counters checked. scanned={}, mismatched={}, fixed={}", scanned, mismatched, fixed);
+
+		return new ArticleCountersResponse(scanned, mismatched, fixed, mismatchedSeqs);
+	}
+
 }
@@ -1,6 +1,9 @@
 package com.jakduk.api.service;
 
 import com.jakduk.api.common.Constants;
+import com.jakduk.api.common.board.ArticleChangedEvent;
+import com.jakduk.api.common.board.ArticleViewsAccumulator;
+import com.jakduk.api.common.board.BoardArticlesCache;
 import com.jakduk.api.common.board.category.BoardCategory;
 import com.jakduk.api.common.board.category.BoardCategoryGenerator;
 import com.jakduk.api.common.rabbitmq.RabbitMQPublisher;
@@ -9,9 +12,9 @@ import com.jakduk.api.common.util.JakdukUtils;
 import com.jakduk.api.common.util.UrlGenerationUtils;
 import com.jakduk.api.exception.ServiceError;
 import com.jakduk.api.exception.ServiceException;
-import com.jakduk.api.model.aggregate.BoardFeelingCount;
 import com.jakduk.api.model.aggregate.BoardTop;
 import com.jakduk.api.model.aggregate.CommonCount;
+import com.jakduk.api.model.aggregate.LinkedItemGallery;
 import com.jakduk.api.model.db.Article;
 import com.jakduk.api.model.db.ArticleComment;
 import com.jakduk.api.model.db.Gallery;
@@ -22,6 +25,7 @@ import com.jakduk.api.repository.article.ArticleCommentRepository;
 import com.jakduk.api.repository.article.ArticleOnListRepository;
 import com.jakduk.api.repository.article.ArticleRepository;
 import com.jakduk.api.repository.gallery.GalleryRepository;
+import com.jakduk.api.restcontroller.vo.UserFeelingResponse;
 import com.jakduk.api.restcontroller.vo.board.*;
 import com.jakduk.api.restcontroller.vo.home.HomeArticle;
 import com.jakduk.api.restcontroller.vo.home.HomeArticleComment;
@@ -32,6 +36,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -41,15 +46,14 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import org.springframework.util.CollectionUtils;
-import org.springframework.util.ObjectUtils;
 
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.util.*;
 import java.util.Map.Entry;
-import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class ArticleService {
@@ -64,6 +68,9 @@ public class ArticleService {
 	@Autowired private CommonService commonService;
 	@Autowired private CommonGalleryService commonGalleryService;
 	@Autowired private RabbitMQPublisher rabbitMQPublisher;
+	@Autowired private ArticleViewsAccumulator articleViewsAccumulator;
+	@Autowired private BoardArticlesCache boardArticlesCache;
+	@Autowired private ApplicationEventPublisher applicationEventPublisher;
 
 	public Article findOneBySeq(Constants.BOARD_TYPE board, Integer seq) {
         return articleRepository.findOneByBoardAndSeq(board.name(), seq)
@@ -102,9 +109,15 @@ public class ArticleService {
 		article.setLogs(this.initBoardLogs(objectId, Constants.ARTICLE_LOG_TYPE.CREATE.name(), writer));
 		article.setLastUpdated(LocalDateTime.ofInstant(objectId.getDate().toInstant(), ZoneId.systemDefault()));
 		article.setLinkedGallery(linkedGallery);
+		article.setCommentCount(0);
+		article.setLikingCount(0);
+		article.setDislikingCount(0);
 
 		articleRepository.save(article);
 
+		applicationEventPublisher.publishEvent(new ArticleChangedEvent(ArticleChangedEvent.TYPE.CREATE, board, article.getId(),
+				article.getCategory()));
+
 		log.info("new post created. post seq={}, subject={}", article.getSeq(), article.getSubject());
 
 		return article;
@@ -136,6 +149,9 @@ public class ArticleService {
 		String stripHtmlContent = StringUtils.defaultIfBlank(JakdukUtils.stripHtmlTag(content), StringUtils.EMPTY);
 		String shortContent = StringUtils.truncate(stripHtmlContent, Constants.ARTICLE_SHORT_CONTENT_LENGTH);
 
+		String previousCategory = article.getCategory();
+		String previousSubject = article.getSubject();
+
 		article.setSubject(subject);
 		article.setContent(content);
 		article.setCategory(Constants.BOARD_TYPE.FREE.equals(board) ? null : categoryCode);
@@ -149,13 +165,23 @@ public class ArticleService {
 			logs = new ArrayList<>();
 
 		ObjectId logId = new ObjectId();
-		logs.add(new BoardLog(logId.toString(), Constants.ARTICLE_LOG_TYPE.EDIT.name(), new SimpleWriter(writer.getUserId(), writer.getUsername())));
+		BoardLog boardLog = new BoardLog(logId.toString(), Constants.ARTICLE_LOG_TYPE.EDIT.name(), new SimpleWriter(writer.getUserId(), writer.getUsername()));
+		logs.add(boardLog);
 		article.setLogs(logs);
 
 		// lastUpdated
 		article.setLastUpdated(LocalDateTime.ofInstant(logId.getDate().toInstant(), ZoneId.systemDefault()));
 
-		articleRepository.save(article);
+		// 통째로 저장하면 그 사이 바뀐 댓글수, 감정수를 되돌리니 고친 필드만 바꾼다.
+		articleRepository.updateEdited(article.getId(), article.getSubject(), article.getContent(), article.getShortContent(),
+				article.getCategory(), article.getLinkedGallery(), boardLog, article.getLastUpdated());
+
+		applicationEventPublisher.publishEvent(new ArticleChangedEvent(ArticleChangedEvent.TYPE.EDIT, board, article.getId(),
+				article.getCategory(), previousCategory));
+
+		// 댓글 색인에 넣어둔 제목, 말머리도 고친다.
+		if (! Objects.equals(previousSubject, article.getSubject()) || ! Objects.equals(previousCategory, article.getCategory()))
+			this.updateCommentsParentDocument(article);
 
 		log.info("post was edited. post seq={}, subject={}", article.getSeq(), article.getSubject());
 
@@ -209,7 +235,10 @@ public class ArticleService {
 			// lastUpdated
 			article.setLastUpdated(LocalDateTime.ofInstant(boardHistoryId.getDate().toInstant(), ZoneId.systemDefault()));
 
-			articleRepository.save(article);
+			articleRepository.updateDeleted(article.getId(), history, article.getLastUpdated());
+
+			// 댓글은 남지만 검색에서는 빠진다.
+			this.updateCommentsParentDocument(article);
 
 			log.info("A post was deleted(post only). post seq={}, subject={}", article.getSeq(), article.getSubject());
         }
@@ -224,6 +253,9 @@ public class ArticleService {
         if (article.getLinkedGallery())
 			commonGalleryService.unlinkGalleries(article.getId(), Constants.GALLERY_FROM_TYPE.ARTICLE);
 
+		applicationEventPublisher.publishEvent(new ArticleChangedEvent(ArticleChangedEvent.TYPE.DELETE, board, article.getId(),
+				article.getCategory()));
+
 		// 색인 지움
 		rabbitMQPublisher.deleteDocumentArticle(article.getId());
 
@@ -235,6 +267,14 @@ public class ArticleService {
      */
 	public GetArticlesResponse getArticles(Constants.BOARD_TYPE board, String categoryCode, Integer page, Integer size) {
 
+		Locale locale = JakdukUtils.getLocale();
+		GetArticlesResponse cachedResponse = boardArticlesCache.get(board, categoryCode, locale, page, size);
+
+		if (Objects.nonNull(cachedResponse))
+			return cachedResponse;
+
+		Long generation = boardArticlesCache.getGeneration();
+
 		Sort sort = new Sort(Sort.Direction.DESC, Collections.singletonList("_id"));
 		Pageable pageable = PageRequest.of(page - 1, size, sort);
 		Page<ArticleOnList> articlePages;
@@ -248,93 +288,97 @@ public class ArticleService {
 		// 자유 게시판 공지글 목록
 		List<ArticleOnList> notices = articleRepository.findNotices(sort);
 
-		// 게시물 VO 변환 및 썸네일 URL 추가
-		Function<ArticleOnList, GetArticle> convertToGetArticle = article -> {
-			GetArticle getArticle = new GetArticle();
-			BeanUtils.copyProperties(article, getArticle);
-
-			if (article.getLinkedGallery()) {
-				List<Gallery> galleries = galleryRepository.findByItemIdAndFromType(
-						new ObjectId(article.getId()), Constants.GALLERY_FROM_TYPE.ARTICLE, 1);
-
-				if (! CollectionUtils.isEmpty(galleries)) {
-					List<BoardGallerySimple> boardGalleries = galleries.stream()
-							.map(gallery -> new BoardGallerySimple() {{
-								setId(gallery.getId());
-								setThumbnailUrl(urlGenerationUtils.generateGalleryUrl(Constants.IMAGE_SIZE_TYPE.SMALL, gallery.getId()));
-							}})
-							.collect(Collectors.toList());
-
-					getArticle.setGalleries(boardGalleries);
-				}
-			}
-
-			return getArticle;
-		};
-
-		List<GetArticle> getArticles = articlePages.getContent().stream()
-				.map(convertToGetArticle)
-				.collect(Collectors.toList());
-
-		List<GetArticle> getNotices = notices.stream()
-				.map(convertToGetArticle)
-				.collect(Collectors.toList());
-
-		// Board ID 뽑아내기.
-		ArrayList<ObjectId> ids = new ArrayList<>();
+		// 사진과 엮인 게시물들의 썸네일을 한번에 가져온다.
+		Map<String, List<BoardGallerySimple>> articlesGalleries = this.getArticlesFirstGalleries(
+				Stream.concat(articlePages.getContent().stream(), notices.stream())
+						.filter(article -> BooleanUtils.isTrue(article.getLinkedGallery()))
+						.map(ArticleOnList::getId)
+						.collect(Collectors.toList()));
 
-		getArticles.forEach(article -> ids.add(new ObjectId(article.getId())));
-		getNotices.forEach(article -> ids.add(new ObjectId(article.getId())));
-
-		// 게시물의 댓글수
-		Map<String, Integer> commentCounts = articleCommentRepository.findCommentsCountByIds(ids).stream()
-				.collect(Collectors.toMap(CommonCount::getId, CommonCount::getCount));
-
-		// 게시물의 감정수
-		Map<String, BoardFeelingCount> feelingCounts = articleRepository.findUsersFeelingCount(ids).stream()
-				.collect(Collectors.toMap(BoardFeelingCount::getId, Function.identity()));
-
-		// 댓글수, 감정 표현수 합치기.
-		Consumer<GetArticle> applyCounts = article -> {
-			String boardId = article.getId();
-			Integer commentCount = commentCounts.get(boardId);
+		GetArticlesResponse response = new GetArticlesResponse();
+		response.setCategories(this.getCategoriesMap(board, locale));
+		response.setArticles(this.toGetArticles(articlePages.getContent(), articlesGalleries));
+		response.setNotices(this.toGetArticles(notices, articlesGalleries));
+		response.setFirst(articlePages.isFirst());
+		response.setLast(articlePages.isLast());
+		response.setTotalPages(articlePages.getTotalPages());
+		response.setTotalElements(articlePages.getTotalElements());
+		response.setNumberOfElements(articlePages.getNumberOfElements());
+		response.setSize(articlePages.getSize());
+		response.setNumber(articlePages.getNumber());
 
-			if (Objects.nonNull(commentCount))
-				article.setCommentCount(commentCount);
+		boardArticlesCache.put(board, categoryCode, locale, page, size, generation, response);
 
-			BoardFeelingCount feelingCount = feelingCounts.get(boardId);
+		return response;
+	}
 
-			if (Objects.nonNull(feelingCount)) {
-				article.setLikingCount(feelingCount.getUsersLikingCount());
-				article.setDislikingCount(feelingCount.getUsersDislikingCount());
-			}
-		};
+	/**
+	 * 게시판 글 목록 (커서 방식)
+	 *
+	 * skip 없이 _id 기준으로 찾기 때문에 뒷 페이지도 첫 페이지와 비용이 같다.
+	 *
+	 * @param cursor 기준 글 ID. null 이면 가장 최근 글부터
+	 * @param direction NEXT 는 기준보다 오래된 글, PREV 는 기준보다 최근 글
+	 * @param withTotal 캐시된 대략의 전체 글 수 포함 여부
+	 */
+	public GetArticlesCursorResponse getArticlesByCursor(Constants.BOARD_TYPE board, String categoryCode, String cursor,
+														 Constants.CURSOR_DIRECTION direction, Integer size, Boolean withTotal) {
 
-		getArticles.forEach(applyCounts);
-		getNotices.forEach(applyCounts);
+		String category = "ALL".equals(categoryCode) ? null : categoryCode;
+		ObjectId cursorId = null;
 
-		// 말머리
-		List<BoardCategory> categories = BoardCategoryGenerator.getCategories(board, JakdukUtils.getLocale());
-		Map<String, String> categoriesMap = null;
+		if (StringUtils.isNotBlank(cursor)) {
+			if (! ObjectId.isValid(cursor))
+				throw new ServiceException(ServiceError.INVALID_PARAMETER);
 
-		if (! CollectionUtils.isEmpty(categories)) {
-			categoriesMap = categories.stream()
-					.collect(Collectors.toMap(BoardCategory::getCode, boardCategory -> boardCategory.getNames().get(0).getName()));
+			cursorId = new ObjectId(cursor);
+		}
 
-			categoriesMap.put("ALL", JakdukUtils.getMessageSource("board.category.all"));
+		Boolean isPrev = Objects.nonNull(cursorId) && Constants.CURSOR_DIRECTION.PREV.equals(direction);
+		Constants.CRITERIA_OPERATOR operator = isPrev ? Constants.CRITERIA_OPERATOR.GT : Constants.CRITERIA_OPERATOR.LT;
+
+		// 한개 더 가져와서 더 있는지 알아낸다.
+		List<ArticleOnList> articles = new ArrayList<>(
+				articleRepository.findByBoardAndCategoryWithCursor(board, category, cursorId, operator, size + 1));
+
+		Boolean hasMore = articles.size() > size;
+
+		if (hasMore)
+			articles = articles.subList(0, size);
+
+		// 최근 방향은 오래된 순으로 가져오니 뒤집는다.
+		if (isPrev)
+			Collections.reverse(articles);
+
+		// 공지글은 첫 목록에서만
+		List<ArticleOnList> notices = Objects.isNull(cursorId)
+				? articleRepository.findNotices(new Sort(Sort.Direction.DESC, Collections.singletonList("_id")))
+				: Collections.emptyList();
+
+		// 사진과 엮인 게시물들의 썸네일을 한번에 가져온다.
+		Map<String, List<BoardGallerySimple>> articlesGalleries = this.getArticlesFirstGalleries(
+				Stream.concat(articles.stream(), notices.stream())
+						.filter(article -> BooleanUtils.isTrue(article.getLinkedGallery()))
+						.map(ArticleOnList::getId)
+						.collect(Collectors.toList()));
+
+		GetArticlesCursorResponse response = new GetArticlesCursorResponse();
+		response.setCategories(this.getCategoriesMap(board, JakdukUtils.getLocale()));
+		response.setArticles(this.toGetArticles(articles, articlesGalleries));
+		response.setNotices(this.toGetArticles(notices, articlesGalleries));
+		response.setFirst(isPrev ? ! hasMore : Objects.isNull(cursorId));
+		response.setLast(isPrev ? false : ! hasMore);
+		response.setSize(size);
+
+		if (! articles.isEmpty()) {
+			response.setPrevCursor(articles.get(0).getId());
+			response.setNextCursor(articles.get(articles.size() - 1).getId());
 		}
 
-		GetArticlesResponse response = new GetArticlesResponse();
-		response.setCategories(categoriesMap);
-		response.setArticles(getArticles);
-		response.setNotices(getNotices);
-		response.setFirst(articlePages.isFirst());
-		response.setLast(articlePages.isLast());
-		response.setTotalPages(articlePages.getTotalPages());
-		response.setTotalElements(articlePages.getTotalElements());
-		response.setNumberOfElements(articlePages.getNumberOfElements());
-		response.setSize(articlePages.getSize());
-		response.setNumber(articlePages.getNumber());
+		if (BooleanUtils.isTrue(withTotal))
+			response.setTotalElements(boardArticlesCache.getTotalElements(board, category, () -> Objects.isNull(category)
+					? articleOnListRepository.countByBoard(board)
+					: articleOnListRepository.countByBoardAndCategory(board, category)));
 
 		return response;
 	}
@@ -348,27 +392,19 @@ public class ArticleService {
 
 		List<ArticleOnList> articles = articleRepository.findLatest(sort, Constants.HOME_SIZE_POST);
 
+		// 사진과 엮인 게시물들의 썸네일을 한번에 가져온다.
+		Map<String, List<BoardGallerySimple>> articlesGalleries = this.getArticlesFirstGalleries(
+				articles.stream()
+						.filter(post -> BooleanUtils.isTrue(post.getLinkedGallery()))
+						.map(ArticleOnList::getId)
+						.collect(Collectors.toList()));
+
 		// 게시물 VO 변환 및 썸네일 URL 추가
 		return articles.stream()
 				.map(post -> {
 					HomeArticle homeArticle = new HomeArticle();
 					BeanUtils.copyProperties(post, homeArticle);
-
-					if (post.getLinkedGallery()) {
-						List<Gallery> galleries = galleryRepository.findByItemIdAndFromType(
-								new ObjectId(post.getId()), Constants.GALLERY_FROM_TYPE.ARTICLE, 1);
-
-						List<BoardGallerySimple> boardGalleries = galleries.stream()
-								.sorted(Comparator.comparing(Gallery::getId))
-								.limit(1)
-								.map(gallery -> new BoardGallerySimple() {{
-									setId(gallery.getId());
-									setThumbnailUrl(urlGenerationUtils.generateGalleryUrl(Constants.IMAGE_SIZE_TYPE.SMALL, gallery.getId()));
-								}})
-								.collect(Collectors.toList());
-
-						homeArticle.setGalleries(boardGalleries);
-					}
+					homeArticle.setGalleries(articlesGalleries.get(post.getId()));
 
 					return homeArticle;
 				})
@@ -421,26 +457,29 @@ public class ArticleService {
 
     /**
      * 글 감정 표현.
+     *
+     * @return 감정수와 나의 감정 표현
      */
-	public Article setArticleFeelings(CommonWriter writer, Constants.BOARD_TYPE board, Integer seq, Constants.FEELING_TYPE feeling) {
+	public UserFeelingResponse setArticleFeelings(CommonWriter writer, Constants.BOARD_TYPE board, Integer seq, Constants.FEELING_TYPE feeling) {
 
-		Article article = articleRepository.findOneByBoardAndSeq(board.name(), seq)
-                .orElseThrow(() -> new ServiceException(ServiceError.NOT_FOUND_ARTICLE));
+		CommonFeelingUser feelingUser = new CommonFeelingUser(new ObjectId().toString(), writer.getUserId(), writer.getUsername());
 
-        String userId = writer.getUserId();
-        String username = writer.getUsername();
+		Article article = articleRepository.findAndModifyUsersFeeling(board, seq, feelingUser, feeling);
 
-		CommonWriter articleWriter = article.getWriter();
+		if (Objects.isNull(article)) {
+			Article existArticle = articleRepository.findOneByBoardAndSeq(board.name(), seq)
+					.orElseThrow(() -> new ServiceException(ServiceError.NOT_FOUND_ARTICLE));
 
-		// 이 게시물의 작성자라서 감정 표현을 할 수 없음
-		if (userId.equals(articleWriter.getUserId()))
-			throw new ServiceException(ServiceError.FEELING_YOU_ARE_WRITER);
+			// 이 게시물의 작성자라서 감정 표현을 할 수 없음
+			if (writer.getUserId().equals(existArticle.getWriter().getUserId()))
+				throw new ServiceException(ServiceError.FEELING_YOU_ARE_WRITER);
 
-		this.setUsersFeeling(userId, username, feeling, article);
+			throw new ServiceException(ServiceError.INTERNAL_SERVER_ERROR);
+		}
 
-		articleRepository.save(article);
+		applicationEventPublisher.publishEvent(new ArticleChangedEvent(ArticleChangedEvent.TYPE.FEELING, board, article.getId(), null));
 
-		return article;
+		return this.toUserFeelingResponse(writer, article);
 	}
 
 	/**
@@ -466,8 +505,13 @@ public class ArticleService {
 
 		articleCommentRepository.save(articleComment);
 
+		articleRepository.increaseCommentCount(article.getId(), 1);
+
+		applicationEventPublisher.publishEvent(new ArticleChangedEvent(ArticleChangedEvent.TYPE.COMMENT, board, article.getId(),
+				article.getCategory()));
+
 		// 엘라스틱서치 색인 요청
-		rabbitMQPublisher.indexDocumentComment(articleComment.getId(), articleComment.getArticle(), articleComment.getWriter(),
+		rabbitMQPublisher.indexDocumentComment(articleComment.getId(), article, articleComment.getWriter(),
 				articleComment.getContent(), galleryIds);
 
 		return articleComment;
@@ -498,8 +542,11 @@ public class ArticleService {
 
 		articleCommentRepository.save(articleComment);
 
+		Article article = articleRepository.findOneById(articleComment.getArticle().getId())
+				.orElseThrow(() -> new ServiceException(ServiceError.NOT_FOUND_ARTICLE));
+
 		// 엘라스틱서치 색인 요청
-		rabbitMQPublisher.indexDocumentComment(articleComment.getId(), articleComment.getArticle(), articleComment.getWriter(),
+		rabbitMQPublisher.indexDocumentComment(articleComment.getId(), article, articleComment.getWriter(),
 				articleComment.getContent(), galleryIds);
 
 		return articleComment;
@@ -518,6 +565,11 @@ public class ArticleService {
 
 		articleCommentRepository.deleteById(id);
 
+		articleRepository.increaseCommentCount(articleComment.getArticle().getId(), -1);
+
+		applicationEventPublisher.publishEvent(new ArticleChangedEvent(ArticleChangedEvent.TYPE.COMMENT, board,
+				articleComment.getArticle().getId(), null));
+
 		// 색인 지움
 		rabbitMQPublisher.deleteDocumentComment(id);
 
@@ -551,27 +603,26 @@ public class ArticleService {
 	 *
 	 * @param commentId 댓글 ID
 	 * @param feeling 감정표현 종류
-     * @return 자유게시판 댓글 객체
+     * @return 감정수와 나의 감정 표현
      */
-	public ArticleComment setArticleCommentFeeling(CommonWriter writer, String commentId, Constants.FEELING_TYPE feeling) {
+	public UserFeelingResponse setArticleCommentFeeling(CommonWriter writer, String commentId, Constants.FEELING_TYPE feeling) {
 
-		ArticleComment boardComment = articleCommentRepository.findOneById(commentId)
-				.orElseThrow(() -> new ServiceException(ServiceError.NOT_FOUND_COMMENT));
-
-		String userId = writer.getUserId();
-		String username = writer.getUsername();
+		CommonFeelingUser feelingUser = new CommonFeelingUser(new ObjectId().toString(), writer.getUserId(), writer.getUsername());
 
-		CommonWriter postWriter = boardComment.getWriter();
+		ArticleComment articleComment = articleCommentRepository.findAndModifyUsersFeeling(commentId, feelingUser, feeling);
 
-		// 이 게시물의 작성자라서 감정 표현을 할 수 없음
-		if (userId.equals(postWriter.getUserId()))
-			throw new ServiceException(ServiceError.FEELING_YOU_ARE_WRITER);
+		if (Objects.isNull(articleComment)) {
+			ArticleComment existComment = articleCommentRepository.findOneById(commentId)
+					.orElseThrow(() -> new ServiceException(ServiceError.NOT_FOUND_COMMENT));
 
-		this.setUsersFeeling(userId, username, feeling, boardComment);
+			// 이 댓글의 작성자라서 감정 표현을 할 수 없음
+			if (writer.getUserId().equals(existComment.getWriter().getUserId()))
+				throw new ServiceException(ServiceError.FEELING_YOU_ARE_WRITER);
 
-		articleCommentRepository.save(boardComment);
+			throw new ServiceException(ServiceError.INTERNAL_SERVER_ERROR);
+		}
 
-		return boardComment;
+		return this.toUserFeelingResponse(writer, articleComment);
 	}
 
 	public void enableArticleNotice(CommonWriter writer, Constants.BOARD_TYPE board, Integer seq) {
@@ -621,11 +672,15 @@ public class ArticleService {
 			histories = new ArrayList<>();
 
 		String historyType = isEnable ? Constants.ARTICLE_LOG_TYPE.ENABLE_NOTICE.name() : Constants.ARTICLE_LOG_TYPE.DISABLE_NOTICE.name();
-		histories.add(new BoardLog(new ObjectId().toString(), historyType, new SimpleWriter(writer.getUserId(), writer.getUsername())));
+		BoardLog history = new BoardLog(new ObjectId().toString(), historyType, new SimpleWriter(writer.getUserId(), writer.getUsername()));
+		histories.add(history);
 
 		article.setLogs(histories);
 
-		articleRepository.save(article);
+		articleRepository.updateNotice(article.getId(), status.getNotice(), history);
+
+		applicationEventPublisher.publishEvent(new ArticleChangedEvent(ArticleChangedEvent.TYPE.NOTICE, board, article.getId(),
+				article.getCategory()));
 
 		if (log.isInfoEnabled())
 			log.info("Set notice for article. seq={}, type={}", article.getSeq(), status.getNotice());
@@ -773,27 +828,19 @@ public class ArticleService {
 			List<ArticleOnList> latestPostsByWriter = articleRepository.findByIdAndUserId(
 					new ObjectId(articleDetail.getId()), articleDetail.getWriter().getUserId(), 3);
 
+			// 사진과 엮인 게시물들의 썸네일을 한번에 가져온다.
+			Map<String, List<BoardGallerySimple>> articlesGalleries = this.getArticlesFirstGalleries(
+					latestPostsByWriter.stream()
+							.filter(post -> BooleanUtils.isTrue(post.getLinkedGallery()))
+							.map(ArticleOnList::getId)
+							.collect(Collectors.toList()));
+
 			// 게시물 VO 변환 및 썸네일 URL 추가
 			latestArticles = latestPostsByWriter.stream()
 					.map(post -> {
 						LatestArticle latestArticle = new LatestArticle();
 						BeanUtils.copyProperties(post, latestArticle);
-
-						if (! post.getLinkedGallery()) {
-							List<Gallery> latestPostGalleries = galleryRepository.findByItemIdAndFromType(new ObjectId(post.getId()),
-									Constants.GALLERY_FROM_TYPE.ARTICLE, 1);
-
-							if (! ObjectUtils.isEmpty(latestPostGalleries)) {
-								List<BoardGallerySimple> boardGalleries = latestPostGalleries.stream()
-										.map(gallery -> new BoardGallerySimple() {{
-											setId(gallery.getId());
-											setThumbnailUrl(urlGenerationUtils.generateGalleryUrl(Constants.IMAGE_SIZE_TYPE.SMALL, gallery.getId()));
-										}})
-										.collect(Collectors.toList());
-
-								latestArticle.setGalleries(boardGalleries);
-							}
-						}
+						latestArticle.setGalleries(articlesGalleries.get(post.getId()));
 
 						return latestArticle;
 					})
@@ -812,11 +859,14 @@ public class ArticleService {
 
 	/**
 	 * 읽음수 1 증가
+	 *
+	 * DB 에는 누적기가 주기적으로 반영하고, 응답에는 바로 증가된 값을 보여준다.
 	 */
 	private void increaseViews(Article article) {
-		int views = article.getViews();
+		articleViewsAccumulator.increase(article.getSeq());
+
+		int views = Optional.ofNullable(article.getViews()).orElse(0);
 		article.setViews(++views);
-		articleRepository.save(article);
 	}
 
 	/**
@@ -831,76 +881,79 @@ public class ArticleService {
 	}
 
 	/**
-	 * 감정 표현 CRUD
+	 * 감정 표현 결과 응답
 	 *
-	 * @param userId 회원 ID
-	 * @param username 회원 별명
-	 * @param feeling 입력받은 감정
-	 * @param usersFeeling 편집할 객체
+	 * @param writer 감정 표현한 회원
+	 * @param usersFeeling 감정 표현 회원 목록이 담긴 객체
 	 */
-	private void setUsersFeeling(String userId, String username, Constants.FEELING_TYPE feeling, UsersFeeling usersFeeling) {
-
+	private UserFeelingResponse toUserFeelingResponse(CommonWriter writer, UsersFeeling usersFeeling) {
 		List<CommonFeelingUser> usersLiking = usersFeeling.getUsersLiking();
 		List<CommonFeelingUser> usersDisliking = usersFeeling.getUsersDisliking();
 
-		if (CollectionUtils.isEmpty(usersLiking)) usersLiking = new ArrayList<>();
-		if (CollectionUtils.isEmpty(usersDisliking)) usersDisliking = new ArrayList<>();
-
-		// 해당 회원이 좋아요를 이미 했는지 검사
-		Optional<CommonFeelingUser> alreadyLike = usersLiking.stream()
-				.filter(commonFeelingUser -> commonFeelingUser.getUserId().equals(userId))
-				.findFirst();
-
-		// 해당 회원이 싫어요를 이미 했는지 검사
-		Optional<CommonFeelingUser> alreadyDislike = usersDisliking.stream()
-				.filter(commonFeelingUser -> commonFeelingUser.getUserId().equals(userId))
-				.findFirst();
-
-		CommonFeelingUser feelingUser = new CommonFeelingUser(new ObjectId().toString(), userId, username);
-
-		switch (feeling) {
-			case LIKE:
-				// 이미 좋아요를 했을 때, 좋아요를 취소
-				if (alreadyLike.isPresent()) {
-					usersLiking.remove(alreadyLike.get());
-				}
-				// 이미 싫어요를 했을 때, 싫어요를 없애고 좋아요로 바꿈
-				else if (alreadyDislike.isPresent()) {
-					usersDisliking.remove(alreadyDislike.get());
-					usersLiking.add(feelingUser);
-
-					usersFeeling.setUsersDisliking(usersDisliking);
-				}
-				// 아직 감정 표현을 하지 않아 좋아요로 등록
-				else {
-					usersLiking.add(feelingUser);
-				}
-
-				usersFeeling.setUsersLiking(usersLiking);
+		UserFeelingResponse response = new UserFeelingResponse();
+		response.setMyFeeling(JakdukUtils.getMyFeeling(writer, usersLiking, usersDisliking));
+		response.setNumberOfLike(CollectionUtils.isEmpty(usersLiking) ? 0 : usersLiking.size());
+		response.setNumberOfDislike(CollectionUtils.isEmpty(usersDisliking) ? 0 : usersDisliking.size());
 
-				break;
+		return response;
+	}
 
-			case DISLIKE:
-				// 이미 싫어요를 했을 때, 싫어요를 취소
-				if (alreadyDislike.isPresent()) {
-					usersDisliking.remove(alreadyDislike.get());
-				}
-				// 이미 좋아요를 했을 때, 좋아요를 없애고 싫어요로 바꿈
-				else if (alreadyLike.isPresent()) {
-					usersLiking.remove(alreadyLike.get());
-					usersDisliking.add(feelingUser);
-
-					usersFeeling.setUsersLiking(usersLiking);
-				}
-				// 아직 감정 표현을 하지 않아 싫어요로 등록
-				else {
-					usersDisliking.add(feelingUser);
-				}
-
-				usersFeeling.setUsersDisliking(usersDisliking);
+	/**
+	 * 게시물 VO 변환 및 썸네일 URL 추가
+	 */
+	private List<GetArticle> toGetArticles(List<ArticleOnList> articles, Map<String, List<BoardGallerySimple>> articlesGalleries) {
+		return articles.stream()
+				.map(article -> {
+					GetArticle getArticle = new GetArticle();
+					BeanUtils.copyProperties(article, getArticle);
+					getArticle.setGalleries(articlesGalleries.get(article.getId()));
 
-				break;
+					return getArticle;
+				})
+				.collect(Collectors.toList());
+	}
+
+	/**
+	 * 말머리 맵. key는 말머리코드, value는 표시되는 이름
+	 */
+	private Map<String, String> getCategoriesMap(Constants.BOARD_TYPE board, Locale locale) {
+		List<BoardCategory> categories = BoardCategoryGenerator.getCategories(board, locale);
+		Map<String, String> categoriesMap = null;
+
+		if (! CollectionUtils.isEmpty(categories)) {
+			categoriesMap = categories.stream()
+					.collect(Collectors.toMap(BoardCategory::getCode, boardCategory -> boardCategory.getNames().get(0).getName()));
+
+			categoriesMap.put("ALL", JakdukUtils.getMessageSource("board.category.all"));
 		}
+
+		return categoriesMap;
+	}
+
+	/**
+	 * 게시물들의 첫번째 엮인 사진을 한번의 질의로 가져온다.
+	 *
+	 * @param articleIds 게시물 ID 배열
+	 * @return 게시물 ID 별 썸네일 목록
+	 */
+	private Map<String, List<BoardGallerySimple>> getArticlesFirstGalleries(List<String> articleIds) {
+
+		if (CollectionUtils.isEmpty(articleIds))
+			return Collections.emptyMap();
+
+		List<ObjectId> itemIds = articleIds.stream()
+				.distinct()
+				.map(ObjectId::new)
+				.collect(Collectors.toList());
+
+		return galleryRepository.findFirstByItemIdsAndFromType(itemIds, Constants.GALLERY_FROM_TYPE.ARTICLE).stream()
+				.collect(Collectors.toMap(LinkedItemGallery::getId, itemGallery -> {
+					BoardGallerySimple boardGallery = new BoardGallerySimple();
+					boardGallery.setId(itemGallery.getGalleryId());
+					boardGallery.setThumbnailUrl(urlGenerationUtils.generateGalleryUrl(Constants.IMAGE_SIZE_TYPE.SMALL, itemGallery.getGalleryId()));
+
+					return Collections.singletonList(boardGallery);
+				}));
 	}
 
 	/**
@@ -990,4 +1043,27 @@ public class ArticleService {
 				.collect(Collectors.toList());
 	}
 
+	/**
+	 * 글의 모든 댓글 문서에 들어 있는 글 정보를 고치도록 요청한다.
+	 * 댓글은 ID 만 읽고, 한 쪽의 댓글 ID 를 메시지 하나로 묶어 보낸다.
+	 */
+	private void updateCommentsParentDocument(Article article) {
+		ObjectId lastCommentId = null;
+		List<ObjectId> commentIds;
+
+		do {
+			commentIds = articleCommentRepository.findIdsByBoardSeqAndGTId(article.getBoard(), article.getSeq(), lastCommentId);
+
+			if (commentIds.isEmpty())
+				break;
+
+			rabbitMQPublisher.updateDocumentCommentParent(commentIds.stream()
+					.map(ObjectId::toString)
+					.collect(Collectors.toList()), article);
+
+			lastCommentId = commentIds.get(commentIds.size() - 1);
+
+		} while (commentIds.size() == Constants.COMMENT_MAX_LIMIT);
+	}
+
 }
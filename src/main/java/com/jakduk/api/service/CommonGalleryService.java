@@ -1,13 +1,16 @@
 package com.jakduk.api.service;
 
 import com.jakduk.api.common.Constants;
+import com.jakduk.api.common.gallery.GalleryFileResolver;
+import com.jakduk.api.common.gallery.GallerySurroundingsIndex;
+import com.jakduk.api.common.gallery.GalleryVariantGenerator;
+import com.jakduk.api.common.gallery.ImageBlobStore;
 import com.jakduk.api.common.rabbitmq.RabbitMQPublisher;
 import com.jakduk.api.common.util.FileUtils;
 import com.jakduk.api.configuration.JakdukProperties;
 import com.jakduk.api.model.db.Gallery;
 import com.jakduk.api.model.embedded.LinkedItem;
 import com.jakduk.api.repository.gallery.GalleryRepository;
-import org.apache.commons.lang3.StringUtils;
 import org.bson.types.ObjectId;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -16,6 +19,7 @@ import javax.annotation.Resource;
 import java.time.LocalDate;
 import java.time.ZoneId;
 import java.util.List;
+import java.util.Objects;
 
 /**
  * Created by pyohwanjang on 2017. 4. 18..
@@ -27,25 +31,41 @@ public class CommonGalleryService {
     @Resource private JakdukProperties.Storage storageProperties;
     @Autowired private GalleryRepository galleryRepository;
     @Autowired private RabbitMQPublisher rabbitMQPublisher;
+    @Autowired private GallerySurroundingsIndex gallerySurroundingsIndex;
+    @Autowired private GalleryVariantGenerator galleryVariantGenerator;
+    @Autowired private GalleryFileResolver galleryFileResolver;
+    @Autowired private ImageBlobStore imageBlobStore;
 
     /**
      * Gallery와 사진 파일 지움
      *
-     * @param id Gallery ID
-     * @param contentType contentType
+     * blob 을 쓰는 사진은 참조만 줄이고, 마지막 참조일 때 파일이 지워진다.
+     *
+     * @param gallery Gallery
      */
-    public void deleteGallery(String id, String contentType) {
-        ObjectId objectId = new ObjectId(id);
-        LocalDate localDate = objectId.getDate().toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
+    public void deleteGallery(Gallery gallery) {
+        // 크기를 줄이면서 다른 blob 으로 옮겼을 수 있으니, 지운 문서의 blob 참조를 줄인다.
+        Gallery deleted = galleryRepository.findAndRemoveBlobIdById(gallery.getId());
+        gallerySurroundingsIndex.remove(gallery.getId());
+
+        if (Objects.nonNull(gallery.getBlobId())) {
+            if (Objects.nonNull(deleted) && Objects.nonNull(deleted.getBlobId()))
+                imageBlobStore.release(deleted.getBlobId());
+
+            return;
+        }
+
+        String id = gallery.getId();
+        LocalDate localDate = new ObjectId(id).getDate().toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
 
         // 사진 포맷.
-        String formatName = StringUtils.split(contentType, "/")[1];
+        String formatName = GalleryFileResolver.getFormatName(gallery.getContentType());
         String fileName = id + "." + formatName;
 
+        galleryVariantGenerator.removeVariants(galleryFileResolver.getImageFilePath(gallery), id, formatName);
+
         FileUtils.removeImageFile(storageProperties.getImagePath(), localDate, fileName);
         FileUtils.removeImageFile(storageProperties.getThumbnailPath(), localDate, fileName);
-
-        galleryRepository.deleteById(id);
     }
 
     /**
@@ -66,7 +86,7 @@ public class CommonGalleryService {
                 gallery.setLinkedItems(linkedItems);
                 galleryRepository.save(gallery);
             } else if (removed && linkedItems.size() < 1) {
-                this.deleteGallery(gallery.getId(), gallery.getContentType());
+                this.deleteGallery(gallery);
                 rabbitMQPublisher.deleteDocumentGallery(gallery.getId());
             }
         });
@@ -1,9 +1,14 @@
 package com.jakduk.api.service;
 
 import com.jakduk.api.common.Constants;
+import com.jakduk.api.common.gallery.GalleryFileResolver;
+import com.jakduk.api.common.gallery.GalleryImageProcessor;
+import com.jakduk.api.common.gallery.GallerySurroundingsIndex;
+import com.jakduk.api.common.gallery.GalleryVariantGenerator;
+import com.jakduk.api.common.gallery.ImageBlobStore;
 import com.jakduk.api.common.rabbitmq.RabbitMQPublisher;
+import com.jakduk.api.common.util.FileUtils;
 import com.jakduk.api.common.util.UrlGenerationUtils;
-import com.jakduk.api.configuration.JakdukProperties;
 import com.jakduk.api.exception.ServiceError;
 import com.jakduk.api.exception.ServiceException;
 import com.jakduk.api.model.db.Article;
@@ -12,6 +17,7 @@ import com.jakduk.api.model.embedded.CommonWriter;
 import com.jakduk.api.model.embedded.GalleryStatus;
 import com.jakduk.api.model.embedded.LinkedItem;
 import com.jakduk.api.model.simple.ArticleSimple;
+import com.jakduk.api.model.simple.GallerySimple;
 import com.jakduk.api.repository.article.ArticleRepository;
 import com.jakduk.api.repository.gallery.GalleryRepository;
 import com.jakduk.api.restcontroller.vo.board.GalleryOnBoard;
@@ -28,27 +34,22 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
 import org.springframework.stereotype.Service;
 import org.springframework.util.CollectionUtils;
-import org.springframework.util.DigestUtils;
 import org.springframework.util.ObjectUtils;
 
-import javax.annotation.Resource;
+import java.awt.image.BufferedImage;
 import java.io.*;
 import java.nio.file.Files;
 import java.nio.file.LinkOption;
 import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.attribute.BasicFileAttributes;
-import java.time.Instant;
-import java.time.LocalDateTime;
-import java.time.ZoneId;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Objects;
-import java.util.Optional;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
 import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * @author <a href="mailto:phjang1983@daum.net">Jang,Pyohwan</a>
@@ -62,13 +63,16 @@ public class GalleryService {
 
 	private final Logger log = LoggerFactory.getLogger(this.getClass());
 
-	@Resource private JakdukProperties.Storage storageProperties;
-
 	@Autowired private UrlGenerationUtils urlGenerationUtils;
 	@Autowired private GalleryRepository galleryRepository;
 	@Autowired private ArticleRepository articleRepository;
 	@Autowired private CommonGalleryService commonGalleryService;
 	@Autowired private RabbitMQPublisher rabbitMQPublisher;
+	@Autowired private GallerySurroundingsIndex gallerySurroundingsIndex;
+	@Autowired private GalleryImageProcessor galleryImageProcessor;
+	@Autowired private GalleryVariantGenerator galleryVariantGenerator;
+	@Autowired private GalleryFileResolver galleryFileResolver;
+	@Autowired private ImageBlobStore imageBlobStore;
 
 	public Gallery findOneById(String id) {
 		return galleryRepository.findOneById(id).orElseThrow(() -> new ServiceException(ServiceError.NOT_FOUND_GALLERY));
@@ -123,55 +127,75 @@ public class GalleryService {
 		galleryDetail.setName(StringUtils.isNoneBlank(gallery.getName()) ? gallery.getName() : gallery.getFileName());
 		galleryDetail.setImageUrl(urlGenerationUtils.generateGalleryUrl(Constants.IMAGE_SIZE_TYPE.LARGE, gallery.getId()));
 		galleryDetail.setThumbnailUrl(urlGenerationUtils.generateGalleryUrl(Constants.IMAGE_SIZE_TYPE.SMALL, gallery.getId()));
+		galleryDetail.setSrcset(urlGenerationUtils.generateGallerySrcset(gallery.getId()));
 
-		// 사진첩 보기의 앞, 뒤 사진을 가져온다.
-		List<Gallery> surroundingsPrevGalleries = galleryRepository.findGalleriesById(new ObjectId(id), Constants.CRITERIA_OPERATOR.GT,
-				Constants.NUMBER_OF_ITEMS_IN_SURROUNDINGS_GALLERY);
-		List<Gallery> surroundingsNextGalleries = galleryRepository.findGalleriesById(new ObjectId(id), Constants.CRITERIA_OPERATOR.LT,
-				Constants.NUMBER_OF_ITEMS_IN_SURROUNDINGS_GALLERY);
+		// 사진첩 보기의 앞, 뒤 사진 ID 를 색인에서 찾는다. 보는 사진에 가까운 순서.
+		List<String> surroundingsPrevIds = gallerySurroundingsIndex.findNewerIds(id, Constants.NUMBER_OF_ITEMS_IN_SURROUNDINGS_GALLERY);
+		List<String> surroundingsNextIds = gallerySurroundingsIndex.findOlderIds(id, Constants.NUMBER_OF_ITEMS_IN_SURROUNDINGS_GALLERY);
 
 		final Integer HALF_NUMBER_OF_ITEMS_IN_SURROUNDINGS_GALLERY = Constants.NUMBER_OF_ITEMS_IN_SURROUNDINGS_GALLERY / 2;
-		Integer prevGalleriesLimit = 0;
-		Integer nextGalleriesLimit = 0;
-		List<SurroundingsGallery> surroundingsGalleries = new ArrayList<>();
-
-		// Gallery -> SurroundingsGallery
-		Consumer<Gallery> extractSurroundingsGalleries = surroundingsPrevGallery -> {
-			SurroundingsGallery surroundingsGallery = new SurroundingsGallery();
-			BeanUtils.copyProperties(surroundingsPrevGallery, surroundingsGallery);
-
-			surroundingsGallery.setImageUrl(urlGenerationUtils.generateGalleryUrl(Constants.IMAGE_SIZE_TYPE.LARGE, surroundingsPrevGallery.getId()));
-			surroundingsGallery.setThumbnailUrl(urlGenerationUtils.generateGalleryUrl(Constants.IMAGE_SIZE_TYPE.SMALL, surroundingsPrevGallery.getId()));
-
-			surroundingsGalleries.add(surroundingsGallery);
-		};
+		Integer prevGalleriesLimit;
+		Integer nextGalleriesLimit;
 
 		// 앞 사진 목록과 뒷 사진 목록이 모두 5개 이상일때
-		if (surroundingsPrevGalleries.size() >= HALF_NUMBER_OF_ITEMS_IN_SURROUNDINGS_GALLERY
-				&& surroundingsNextGalleries.size() >= HALF_NUMBER_OF_ITEMS_IN_SURROUNDINGS_GALLERY) {
+		if (surroundingsPrevIds.size() >= HALF_NUMBER_OF_ITEMS_IN_SURROUNDINGS_GALLERY
+				&& surroundingsNextIds.size() >= HALF_NUMBER_OF_ITEMS_IN_SURROUNDINGS_GALLERY) {
 
 			prevGalleriesLimit = HALF_NUMBER_OF_ITEMS_IN_SURROUNDINGS_GALLERY;
 			nextGalleriesLimit = HALF_NUMBER_OF_ITEMS_IN_SURROUNDINGS_GALLERY;
 		}
 		// 뒷 사진 목록이 5개 미만일때
-		else if (surroundingsPrevGalleries.size() >= HALF_NUMBER_OF_ITEMS_IN_SURROUNDINGS_GALLERY
-				&& surroundingsNextGalleries.size() < HALF_NUMBER_OF_ITEMS_IN_SURROUNDINGS_GALLERY) {
-
-			prevGalleriesLimit = Constants.NUMBER_OF_ITEMS_IN_SURROUNDINGS_GALLERY - surroundingsNextGalleries.size();
-			nextGalleriesLimit = surroundingsNextGalleries.size();
+		else if (surroundingsPrevIds.size() >= HALF_NUMBER_OF_ITEMS_IN_SURROUNDINGS_GALLERY) {
+			prevGalleriesLimit = Constants.NUMBER_OF_ITEMS_IN_SURROUNDINGS_GALLERY - surroundingsNextIds.size();
+			nextGalleriesLimit = surroundingsNextIds.size();
 		}
 		// 앞 사진 목록이 5개 미만일때
-		else if (surroundingsPrevGalleries.size() < HALF_NUMBER_OF_ITEMS_IN_SURROUNDINGS_GALLERY
-				&& surroundingsNextGalleries.size() >= HALF_NUMBER_OF_ITEMS_IN_SURROUNDINGS_GALLERY) {
-
-			prevGalleriesLimit = surroundingsPrevGalleries.size();
-			nextGalleriesLimit = Constants.NUMBER_OF_ITEMS_IN_SURROUNDINGS_GALLERY - surroundingsPrevGalleries.size();
+		else if (surroundingsNextIds.size() >= HALF_NUMBER_OF_ITEMS_IN_SURROUNDINGS_GALLERY) {
+			prevGalleriesLimit = surroundingsPrevIds.size();
+			nextGalleriesLimit = Constants.NUMBER_OF_ITEMS_IN_SURROUNDINGS_GALLERY - surroundingsPrevIds.size();
 		}
+		// 모두 5개 미만일때
+		else {
+			prevGalleriesLimit = surroundingsPrevIds.size();
+			nextGalleriesLimit = surroundingsNextIds.size();
+		}
+
+		// 최신순으로 현재 보는 사진 포함 11장을 조합한다.
+		List<String> prevIds = new ArrayList<>(surroundingsPrevIds.subList(0, Math.min(prevGalleriesLimit, surroundingsPrevIds.size())));
+		Collections.reverse(prevIds);
+		List<String> nextIds = surroundingsNextIds.subList(0, Math.min(nextGalleriesLimit, surroundingsNextIds.size()));
 
-		// 현재 보는 사진 포함 11장을 조합한다.
-		surroundingsPrevGalleries.stream()
-				.limit(prevGalleriesLimit)
-				.forEach(extractSurroundingsGalleries);
+		List<ObjectId> surroundingsIds = Stream.concat(prevIds.stream(), nextIds.stream())
+				.map(ObjectId::new)
+				.collect(Collectors.toList());
+
+		// 앞, 뒤 사진은 필요한 필드만 한번에 읽는다.
+		Map<String, GallerySimple> surroundingsGalleriesMap = surroundingsIds.isEmpty() ? Collections.emptyMap() :
+				galleryRepository.findSimpleByIds(surroundingsIds).stream()
+						.collect(Collectors.toMap(GallerySimple::getId, Function.identity()));
+
+		List<SurroundingsGallery> surroundingsGalleries = new ArrayList<>();
+
+		// GallerySimple -> SurroundingsGallery
+		Consumer<String> extractSurroundingsGalleries = surroundingsId -> {
+			GallerySimple gallerySimple = surroundingsGalleriesMap.get(surroundingsId);
+
+			// 다른 서버에서 지워져 색인에만 남은 사진
+			if (Objects.isNull(gallerySimple)) {
+				gallerySurroundingsIndex.remove(surroundingsId);
+				return;
+			}
+
+			SurroundingsGallery surroundingsGallery = new SurroundingsGallery();
+			BeanUtils.copyProperties(gallerySimple, surroundingsGallery);
+
+			surroundingsGallery.setImageUrl(urlGenerationUtils.generateGalleryUrl(Constants.IMAGE_SIZE_TYPE.LARGE, surroundingsId));
+			surroundingsGallery.setThumbnailUrl(urlGenerationUtils.generateGalleryUrl(Constants.IMAGE_SIZE_TYPE.SMALL, surroundingsId));
+
+			surroundingsGalleries.add(surroundingsGallery);
+		};
+
+		prevIds.forEach(extractSurroundingsGalleries);
 
 		SurroundingsGallery surroundingsViewingGallery = new SurroundingsGallery();
 		BeanUtils.copyProperties(gallery, surroundingsViewingGallery);
@@ -181,9 +205,7 @@ public class GalleryService {
 
 		surroundingsGalleries.add(surroundingsViewingGallery);
 
-		surroundingsNextGalleries.stream()
-				.limit(nextGalleriesLimit)
-				.forEach(extractSurroundingsGalleries);
+		nextIds.forEach(extractSurroundingsGalleries);
 
 		// 이 사진을 사용하는 게시물 목록
         // TODO 댓글도 보여줘야지?
@@ -214,138 +236,227 @@ public class GalleryService {
 
 	/**
 	 * 사진 올리기
+	 *
+	 * 올린 내용을 임시 파일로 흘려 쓰면서 해시를 구하고, 처음 보는 내용일 때만 저장소로 옮긴 뒤 TEMP 상태로 바로 응답한다.
+	 * 크기 줄이기와 썸네일은 GalleryImageProcessor 가 뒤에서 만든다. 이미 있는 내용이면 다시 만들지 않는다.
      */
-	public Gallery uploadImage(CommonWriter writer, String fileName, long size, String contentType, byte[] bytes) {
+	public Gallery uploadImage(CommonWriter writer, String fileName, String contentType, InputStream inputStream) {
 
-		// hash를 뽑아 DB에 같은게 있는지 찾아보고, 있으면 찾은걸 응답.
-		String hash = DigestUtils.md5DigestAsHex(bytes);
-		Optional<Gallery> oGallery = galleryRepository.findOneByHashAndStatusStatus(hash, Constants.GALLERY_STATUS_TYPE.ENABLE);
+		FileUtils.FileInfo fileInfo;
 
-		if (oGallery.isPresent())
-			return oGallery.get();
+		try {
+			fileInfo = FileUtils.writeTempFile(imageBlobStore.getTempDirPath(), inputStream, contentType);
+		} catch (IOException e) {
+			throw new ServiceException(ServiceError.GALLERY_IO_ERROR, e);
+		}
 
-		Gallery gallery = new Gallery();
-		gallery.setContentType(contentType);
-		gallery.setWriter(writer);
-		gallery.setStatus(new GalleryStatus(Constants.GALLERY_STATUS_TYPE.TEMP));
-		gallery.setFileName(fileName);
-		gallery.setSize(size);
-		gallery.setFileSize(size);
-		gallery.setHash(DigestUtils.md5DigestAsHex(bytes));
+		try {
+			// hash를 DB에 같은게 있는지 찾아보고, 있으면 찾은걸 응답. 예전 사진은 MD5 로 찾는다.
+			Optional<Gallery> oGallery = galleryRepository.findOneByHashAndStatusStatus(fileInfo.getHash(), Constants.GALLERY_STATUS_TYPE.ENABLE);
 
-		galleryRepository.save(gallery);
+			if (! oGallery.isPresent())
+				oGallery = galleryRepository.findOneByHashAndHashAlgorithmIsNullAndStatusStatus(fileInfo.getLegacyHash(),
+						Constants.GALLERY_STATUS_TYPE.ENABLE);
 
-		// 사진 포맷.
-		String splitContentType[] = StringUtils.split(contentType, "/");
-		String formatName = splitContentType[1];
+			if (oGallery.isPresent())
+				return oGallery.get();
 
-		try {
-			// 폴더 생성.
-			ObjectId objId = new ObjectId(gallery.getId());
-			Instant instant = Instant.ofEpochMilli(objId.getDate().getTime());
-			LocalDateTime timePoint = LocalDateTime.ofInstant(instant, ZoneId.systemDefault());
+			Boolean created = imageBlobStore.acquire(fileInfo);
 
-			Path imageDirPath = Paths.get(storageProperties.getImagePath(), String.valueOf(timePoint.getYear()),
-					String.valueOf(timePoint.getMonthValue()), String.valueOf(timePoint.getDayOfMonth()));
+			Gallery gallery = new Gallery();
+			gallery.setContentType(contentType);
+			gallery.setWriter(writer);
+			gallery.setStatus(new GalleryStatus(Constants.GALLERY_STATUS_TYPE.TEMP));
+			gallery.setFileName(fileName);
+			gallery.setFileSize(fileInfo.getContentLength());
+			gallery.setHash(fileInfo.getHash());
+			gallery.setHashAlgorithm(FileUtils.HASH_ALGORITHM);
+			gallery.setBlobId(fileInfo.getHash());
 
-			Path thumbDirPath = Paths.get(storageProperties.getThumbnailPath(), String.valueOf(timePoint.getYear()),
-					String.valueOf(timePoint.getMonthValue()), String.valueOf(timePoint.getDayOfMonth()));
+			Path imageFilePath = galleryFileResolver.getImageFilePath(gallery);
+			Path thumbFilePath = galleryFileResolver.getThumbnailFilePath(gallery);
 
-			if (Files.notExists(imageDirPath, LinkOption.NOFOLLOW_LINKS))
-				Files.createDirectories(imageDirPath);
+			// 같은 내용이라도 다른 포맷으로 올라왔으면 썸네일이 없을 수 있다.
+			Boolean processing = created || Files.notExists(thumbFilePath, LinkOption.NOFOLLOW_LINKS);
 
-			if (Files.notExists(thumbDirPath, LinkOption.NOFOLLOW_LINKS))
-				Files.createDirectories(thumbDirPath);
+			// 처리가 끝날 때까지는 사진 응답을 오래 캐시하지 않는다.
+			if (processing)
+				gallery.setProcessing(true);
 
-			// 사진 경로.
-			Path imageFilePath = imageDirPath.resolve(gallery.getId() + "." + formatName);
-			Path thumbFilePath = thumbDirPath.resolve(gallery.getId() + "." + formatName);
+			try {
+				// 이미 있는 내용이면 줄어든 크기일 수 있다.
+				gallery.setSize(created ? fileInfo.getContentLength() : Files.size(imageFilePath));
 
-			// 사진 저장.
-			if (Files.notExists(imageFilePath, LinkOption.NOFOLLOW_LINKS)) {
-				if ("gif".equals(formatName)) {
-					Files.write(imageFilePath, bytes);
-				} else {
+				galleryRepository.save(gallery);
 
-					double scale = Constants.GALLERY_MAXIMUM_CAPACITY < size ?
-							Constants.GALLERY_MAXIMUM_CAPACITY / (double) size : 1;
+			} catch (IOException | RuntimeException e) {
+				imageBlobStore.release(gallery.getBlobId());
+				throw e;
+			}
 
-                    InputStream originalInputStream = new ByteArrayInputStream(bytes);
+			if (processing) {
+				String formatName = GalleryFileResolver.getFormatName(contentType);
 
-					Thumbnails.of(originalInputStream)
-							.scale(scale)
-							.toFile(imageFilePath.toFile());
+				galleryImageProcessor.submit(gallery.getId(),
+						() -> this.processImage(gallery.getId(), gallery.getBlobId(), contentType, formatName, created));
+			}
 
-					BasicFileAttributes attr = Files.readAttributes(imageFilePath, BasicFileAttributes.class);
+			log.debug("gallery=\n{}", gallery);
 
-					gallery.setSize(attr.size());
+			return gallery;
 
-					galleryRepository.save(gallery);
-				}
+		} catch (IOException e) {
+			throw new ServiceException(ServiceError.GALLERY_IO_ERROR, e);
+		} finally {
+			try {
+				Files.deleteIfExists(fileInfo.getPath());
+			} catch (IOException e) {
+				log.warn("failed to delete temp file. path={}", fileInfo.getPath());
 			}
+		}
+	}
+
+	/**
+	 * 저장된 원본을 한번만 디코딩해서, 새로 저장한 원본이 너무 크면 줄이고 썸네일을 만든다.
+	 * 같은 원본을 여러 사진이 함께 쓰니 썸네일은 다른 곳에 만들고 바꿔치기 해서 읽는 쪽이 덜 쓰인 파일을 보지 않게 한다.
+	 *
+	 * 실패해도 끝났음을 표시한다. 만들지 못한 썸네일은 ThumbnailRegenerationJob 으로 다시 만들 수 있다.
+	 *
+	 * @param created 새로 저장한 원본이면 true
+	 */
+	private void processImage(String id, String blobId, String contentType, String formatName, Boolean created) {
+
+		try {
+			this.resizeImage(id, blobId, contentType, formatName, created);
+		} finally {
+			galleryRepository.unsetProcessing(id);
+		}
+	}
+
+	private void resizeImage(String id, String blobId, String contentType, String formatName, Boolean created) {
+
+		try {
+			Path imageFilePath = imageBlobStore.getFilePath(blobId);
+			BufferedImage image = FileUtils.readImage(imageFilePath);
+			long size = Files.size(imageFilePath);
+
+			// 사진 크기 줄이기. gif 는 움직임이 사라지니 그대로 둔다.
+			if (created && ! "gif".equals(formatName) && Constants.GALLERY_MAXIMUM_CAPACITY < size) {
+				blobId = this.storeResizedImage(id, blobId, contentType, formatName, image, size);
+
+				// 그 사이 사진이 지워졌다.
+				if (Objects.isNull(blobId))
+					return;
+			}
+
+			Path thumbFilePath = imageBlobStore.getDerivedFilePath(blobId, GalleryFileResolver.THUMBNAIL, formatName);
 
 			// 썸네일 만들기.
 			if (Files.notExists(thumbFilePath, LinkOption.NOFOLLOW_LINKS)) {
-				InputStream thumbInputStream = new ByteArrayInputStream(bytes);
+				Path resizingFilePath = thumbFilePath.resolveSibling(id + "-resizing." + formatName);
 
-				Thumbnails.of(thumbInputStream)
+				Thumbnails.of(image)
 						.size(Constants.GALLERY_THUMBNAIL_SIZE_WIDTH, Constants.GALLERY_THUMBNAIL_SIZE_HEIGHT)
-                        .crop(Positions.TOP_CENTER)
-						.toFile(thumbFilePath.toFile());
+						.crop(Positions.TOP_CENTER)
+						.outputFormat(formatName)
+						.toFile(resizingFilePath.toFile());
+
+				Files.move(resizingFilePath, thumbFilePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
 			}
 
 		} catch (IOException e) {
 			throw new ServiceException(ServiceError.GALLERY_IO_ERROR, e);
 		}
+	}
 
-		log.debug("gallery=\n{}", gallery);
+	/**
+	 * 줄인 사진을 새 blob 으로 저장하고 이 사진만 옮긴 뒤 원본의 참조를 줄인다.
+	 * 원본은 같은 내용을 올린 다른 사진, 프로필 사진이 함께 쓸 수 있어서 고치지 않는다.
+	 *
+	 * @return 옮긴 blob ID. 그 사이 사진이 지워졌거나 다른 blob 으로 바뀌었으면 null
+	 */
+	private String storeResizedImage(String id, String blobId, String contentType, String formatName, BufferedImage image,
+									 long size) throws IOException {
 
-		return gallery;
+		double scale = Constants.GALLERY_MAXIMUM_CAPACITY / (double) size;
 
-	}
+		Path tempDirPath = imageBlobStore.getTempDirPath();
+		Path resizingFilePath = tempDirPath.resolve(id + "-resizing." + formatName);
 
-	// 이미지 가져오기.
-	public ByteArrayOutputStream getGalleryOutStream(String id, String contentType, Constants.IMAGE_TYPE imageType) {
+		Files.createDirectories(tempDirPath);
 
-		ObjectId objId = new ObjectId(id);
-		Instant instant = Instant.ofEpochMilli(objId.getDate().getTime());
-		LocalDateTime timePoint = LocalDateTime.ofInstant(instant, ZoneId.systemDefault());
+		FileUtils.FileInfo resized;
 
-		String imagePath = null;
+		try {
+			Thumbnails.of(image)
+					.scale(scale)
+					.outputFormat(formatName)
+					.toFile(resizingFilePath.toFile());
+
+			// 해시를 구하면서 임시 파일로 옮긴다.
+			try (InputStream inputStream = Files.newInputStream(resizingFilePath)) {
+				resized = FileUtils.writeTempFile(tempDirPath, inputStream, contentType);
+			}
 
-		switch (imageType) {
-			case FULL:
-				imagePath = storageProperties.getImagePath();
-				break;
-			case THUMBNAIL:
-				imagePath = storageProperties.getThumbnailPath();
-				break;
+		} finally {
+			Files.deleteIfExists(resizingFilePath);
 		}
 
-		String formatName = StringUtils.split(contentType, "/")[1];
+		try {
+			imageBlobStore.acquire(resized);
+		} finally {
+			Files.deleteIfExists(resized.getPath());
+		}
 
-		Path filePath = Paths.get(imagePath, String.valueOf(timePoint.getYear()), String.valueOf(timePoint.getMonthValue()),
-				String.valueOf(timePoint.getDayOfMonth()), id + "." + formatName);
+		if (! galleryRepository.updateBlobIdIfUnchanged(id, blobId, resized.getHash(), resized.getContentLength())) {
+			imageBlobStore.release(resized.getHash());
+			return null;
+		}
 
-		if (Files.exists(filePath, LinkOption.NOFOLLOW_LINKS)) {
-			try {
-				BufferedInputStream in = new BufferedInputStream(new FileInputStream(filePath.toString()));
-				ByteArrayOutputStream byteStream = new ByteArrayOutputStream(512);
+		imageBlobStore.release(blobId);
 
-				int imageByte;
+		return resized.getHash();
+	}
 
-				while ((imageByte = in.read()) != -1){
-					byteStream.write(imageByte);
-				}
+	/**
+	 * 사진 파일. 내용을 메모리에 올리지 않고 디스크에서 바로 응답으로 보낸다.
+	 *
+	 * @param width 원하는 가로 길이. 원본(FULL) 일 때만 쓰고, 단계별 사진을 처음 요청되면 만든다. null 이면 원본
+	 * @return 사진 파일. 단계별 사진을 지금 만들 수 없으면 null
+	 */
+	public FileSystemResource getGalleryResource(Gallery gallery, Constants.IMAGE_TYPE imageType, Integer width) {
 
-				in.close();
-				return byteStream;
+		// 방금 올린 사진이면 썸네일이 만들어질 때까지 잠시 기다린다.
+		galleryImageProcessor.await(gallery.getId());
 
-			} catch (IOException e) {
-				throw new ServiceException(ServiceError.GALLERY_IO_ERROR, e);
-			}
-		} else {
-			throw new ServiceException(ServiceError.NOT_FOUND_GALLERY);
+		Path filePath = this.getGalleryFilePath(gallery, imageType);
+
+		// 크기를 줄여 다른 blob 으로 옮겼으면 다시 읽는다.
+		if (Files.notExists(filePath, LinkOption.NOFOLLOW_LINKS) && Objects.nonNull(gallery.getBlobId())) {
+			gallery = galleryRepository.findOneById(gallery.getId())
+					.orElseThrow(() -> new ServiceException(ServiceError.NOT_FOUND_GALLERY));
+
+			filePath = this.getGalleryFilePath(gallery, imageType);
+		}
+
+		if (Files.notExists(filePath, LinkOption.NOFOLLOW_LINKS))
+			throw new ServiceException(ServiceError.NOT_FOUND_GALLERY_FILE);
+
+		if (Objects.isNull(width) || ! Constants.IMAGE_TYPE.FULL.equals(imageType))
+			return new FileSystemResource(filePath);
+
+		Path variantFilePath = galleryVariantGenerator.getVariant(filePath, GalleryFileResolver.getFileId(gallery),
+				GalleryFileResolver.getFormatName(gallery.getContentType()), GalleryVariantGenerator.toBucketWidth(width));
+
+		return Objects.nonNull(variantFilePath) ? new FileSystemResource(variantFilePath) : null;
+	}
+
+	private Path getGalleryFilePath(Gallery gallery, Constants.IMAGE_TYPE imageType) {
+		switch (imageType) {
+			case THUMBNAIL:
+				return galleryFileResolver.getThumbnailFilePath(gallery);
+			default:
+				return galleryFileResolver.getImageFilePath(gallery);
 		}
 	}
 
@@ -365,7 +476,7 @@ public class GalleryService {
 			if (! userId.equals(gallery.getWriter().getUserId()))
 				throw new ServiceException(ServiceError.FORBIDDEN);
 
-			commonGalleryService.deleteGallery(id, gallery.getContentType());
+			commonGalleryService.deleteGallery(gallery);
 		}
 	}
 
@@ -385,17 +496,11 @@ public class GalleryService {
 		LinkedItem linkedItem = new LinkedItem(itemId, fromType);
 
 		// Galleries 와 해당 Item을 연결 한다.
+		// 크기 줄이기가 끝나며 바꾼 blobId, size 를 덮어쓰지 않도록 문서 전체를 저장하지 않고 엮은 필드만 바꾼다.
 		galleries.forEach(gallery -> {
-			List<LinkedItem> willBeLinkedItems = gallery.getLinkedItems();
+			Boolean enable = gallery.getStatus().getStatus().equals(Constants.GALLERY_STATUS_TYPE.TEMP);
 
-			if (CollectionUtils.isEmpty(willBeLinkedItems))
-				willBeLinkedItems = new ArrayList<>();
-
-			// 중복 검사 해서 없으면 추가
-			if (willBeLinkedItems.stream().noneMatch(item -> item.getId().equals(linkedItem.getId()))) {
-				willBeLinkedItems.add(linkedItem);
-				gallery.setLinkedItems(willBeLinkedItems);
-			}
+			galleryRepository.addLinkedItem(gallery.getId(), linkedItem, enable);
 
 			// 사용자가 입력한 이름이 있다면 그걸 입력. 그림 글쓴이만 이름을 고칠 수 있다.
 			if (userId.equals(gallery.getWriter().getUserId())) {
@@ -404,17 +509,11 @@ public class GalleryService {
 						.findFirst()
 						.ifPresent(galleryOnBoard -> {
 							gallery.setName(galleryOnBoard.getName());
+							galleryRepository.updateName(gallery.getId(), galleryOnBoard.getName());
 						});
 			}
 
-			GalleryStatus status = gallery.getStatus();
-
-			if (status.getStatus().equals(Constants.GALLERY_STATUS_TYPE.TEMP)) {
-				status.setStatus(Constants.GALLERY_STATUS_TYPE.ENABLE);
-				gallery.setStatus(status);
-			}
-
-			galleryRepository.save(gallery);
+			gallerySurroundingsIndex.add(gallery.getId());
 
 			// 엘라스틱서치 색인 요청
 			rabbitMQPublisher.indexDocumentGallery(gallery.getId(), gallery.getWriter(), gallery.getName());
@@ -433,22 +532,14 @@ public class GalleryService {
 				if (! CollectionUtils.isEmpty(linkedItems) &&
 						gallery.getStatus().getStatus().equals(Constants.GALLERY_STATUS_TYPE.ENABLE)) {
 
-					linkedItems.stream()
-							.filter(item -> item.getId().equals(linkedItem.getId()) && item.getFrom().equals(linkedItem.getFrom()))
-							.findFirst()
-							.ifPresent(linkedItems::remove);
+					Gallery pulled = galleryRepository.pullLinkedItem(gallery.getId(), linkedItem);
 
 					// 모두 지움.
-					if (linkedItems.size() < 1) {
-						commonGalleryService.deleteGallery(gallery.getId(), gallery.getContentType());
+					if (Objects.nonNull(pulled) && CollectionUtils.isEmpty(pulled.getLinkedItems())) {
+						commonGalleryService.deleteGallery(gallery);
 						// 엘라스틱 서치 document 삭제.
 						rabbitMQPublisher.deleteDocumentGallery(gallery.getId());
 					}
-					// 업데이트 처리
-					else {
-						gallery.setLinkedItems(linkedItems);
-						galleryRepository.save(gallery);
-					}
 				}
 			});
 		}
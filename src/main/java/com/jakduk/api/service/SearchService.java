@@ -1,29 +1,42 @@
 package com.jakduk.api.service;
 
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.jakduk.api.common.Constants;
+import com.jakduk.api.common.elasticsearch.PopularSearchWordCounter;
+import com.jakduk.api.common.elasticsearch.SearchResultCache;
+import com.jakduk.api.common.elasticsearch.SearchSuggester;
+import com.jakduk.api.common.util.JakdukUtils;
 import com.jakduk.api.common.util.ObjectMapperUtils;
 import com.jakduk.api.common.util.UrlGenerationUtils;
 import com.jakduk.api.configuration.JakdukProperties;
 import com.jakduk.api.exception.ServiceError;
 import com.jakduk.api.exception.ServiceException;
+import com.jakduk.api.model.db.Article;
 import com.jakduk.api.model.elasticsearch.*;
+import com.jakduk.api.repository.article.ArticleRepository;
 import com.jakduk.api.restcontroller.vo.board.BoardGallerySimple;
 import com.jakduk.api.restcontroller.vo.search.*;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.apache.commons.lang3.StringUtils;
-import org.elasticsearch.action.delete.DeleteResponse;
-import org.elasticsearch.action.index.IndexRequestBuilder;
-import org.elasticsearch.action.index.IndexResponse;
-import org.elasticsearch.action.search.MultiSearchRequestBuilder;
-import org.elasticsearch.action.search.MultiSearchResponse;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.delete.DeleteRequest;
+import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.action.search.SearchRequestBuilder;
 import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.update.UpdateRequest;
 import org.elasticsearch.client.Client;
 import org.elasticsearch.common.text.Text;
+import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.index.query.BoolQueryBuilder;
 import org.elasticsearch.index.query.InnerHitBuilder;
+import org.elasticsearch.index.query.QueryBuilder;
 import org.elasticsearch.index.query.QueryBuilders;
 import org.elasticsearch.join.query.JoinQueryBuilders;
-import org.elasticsearch.rest.RestStatus;
+import org.elasticsearch.script.Script;
+import org.elasticsearch.script.ScriptType;
 import org.elasticsearch.search.SearchHit;
 import org.elasticsearch.search.SearchHits;
 import org.elasticsearch.search.aggregations.AggregationBuilders;
@@ -41,6 +54,10 @@ import javax.annotation.Resource;
 import java.io.IOException;
 import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
 
 /**
@@ -56,9 +73,16 @@ public class SearchService {
 
 	@Autowired private UrlGenerationUtils urlGenerationUtils;
 	@Autowired private Client client;
+	@Autowired private MeterRegistry meterRegistry;
+	@Autowired private SearchResultCache searchResultCache;
+	@Autowired private PopularSearchWordCounter popularSearchWordCounter;
+	@Autowired private SearchSuggester searchSuggester;
+	@Autowired private ArticleRepository articleRepository;
 
 	/**
-	 * 통합 검색
+	 * 통합 검색. 종류마다 따로 찾아서, 기다리는 시간 안에 끝난 것만 돌려준다.
+	 * 늦거나 실패한 종류는 빈 목록에 timedOut, failed 를 표시해서 돌려준다.
+	 * 모든 종류를 다 찾은 결과만 캐시에 담는다.
 	 *
 	 * @param query	검색어
 	 * @param from	페이지 시작 위치
@@ -68,58 +92,143 @@ public class SearchService {
 	public SearchUnifiedResponse searchUnified(String query, String include, Integer from, Integer size, String preTags,
 											   String postTags) {
 
-		SearchUnifiedResponse searchUnifiedResponse = new SearchUnifiedResponse();
-		Queue<Constants.SEARCH_INCLUDE_TYPE> searchOrder = new LinkedList<>();
-		MultiSearchRequestBuilder multiSearchRequestBuilder = client.prepareMultiSearch();
+		SearchUnifiedResponse cachedResponse = searchResultCache.get(query, include, from, size, preTags, postTags);
+
+		if (Objects.nonNull(cachedResponse))
+			return cachedResponse;
+
+		Long generation = searchResultCache.getGeneration();
+		Map<Constants.SEARCH_INCLUDE_TYPE, CompletableFuture<SearchResponse>> searches = new EnumMap<>(Constants.SEARCH_INCLUDE_TYPE.class);
+		long started = System.nanoTime();
 
 		if (StringUtils.contains(include, Constants.SEARCH_INCLUDE_TYPE.ARTICLE.name())) {
 			SearchRequestBuilder searchRequestBuilder = getArticleSearchRequestBuilder(query, from, size, preTags, postTags);
-			multiSearchRequestBuilder.add(searchRequestBuilder);
-			searchOrder.offer(Constants.SEARCH_INCLUDE_TYPE.ARTICLE);
+			searches.put(Constants.SEARCH_INCLUDE_TYPE.ARTICLE, this.search(Constants.SEARCH_INCLUDE_TYPE.ARTICLE, searchRequestBuilder));
 		}
 
 		if (StringUtils.contains(include, Constants.SEARCH_INCLUDE_TYPE.COMMENT.name())) {
 			SearchRequestBuilder searchRequestBuilder = getCommentSearchRequestBuilder(query, from, size, preTags, postTags);
-			multiSearchRequestBuilder.add(searchRequestBuilder);
-			searchOrder.offer(Constants.SEARCH_INCLUDE_TYPE.COMMENT);
+			searches.put(Constants.SEARCH_INCLUDE_TYPE.COMMENT, this.search(Constants.SEARCH_INCLUDE_TYPE.COMMENT, searchRequestBuilder));
 		}
 
 		if (StringUtils.contains(include, Constants.SEARCH_INCLUDE_TYPE.GALLERY.name())) {
 			SearchRequestBuilder searchRequestBuilder = getGallerySearchRequestBuilder(query, from, size < 10 ? 4 : size, preTags, postTags);
-			multiSearchRequestBuilder.add(searchRequestBuilder);
-			searchOrder.offer(Constants.SEARCH_INCLUDE_TYPE.GALLERY);
+			searches.put(Constants.SEARCH_INCLUDE_TYPE.GALLERY, this.search(Constants.SEARCH_INCLUDE_TYPE.GALLERY, searchRequestBuilder));
 		}
 
-		MultiSearchResponse multiSearchResponse = multiSearchRequestBuilder.execute().actionGet();
-
-		for (MultiSearchResponse.Item item : multiSearchResponse.getResponses()) {
-			SearchResponse searchResponse = item.getResponse();
-			Constants.SEARCH_INCLUDE_TYPE order = searchOrder.poll();
-
-			if (item.isFailure())
-				continue;
-
-			if (! ObjectUtils.isEmpty(order)) {
-				switch (order) {
-					case ARTICLE:
-						SearchArticleResult searchArticleResult = getArticleSearchResponse(searchResponse);
-						searchUnifiedResponse.setArticleResult(searchArticleResult);
-						break;
-					case COMMENT:
-						SearchCommentResult searchCommentResult = getCommentSearchResponse(searchResponse);
-						searchUnifiedResponse.setCommentResult(searchCommentResult);
-						break;
-					case GALLERY:
-						SearchGalleryResult searchGalleryResult = getGallerySearchResponse(searchResponse);
-						searchUnifiedResponse.setGalleryResult(searchGalleryResult);
-						break;
-				}
+		SearchUnifiedResponse searchUnifiedResponse = new SearchUnifiedResponse();
+		Boolean complete = true;
+
+		for (Map.Entry<Constants.SEARCH_INCLUDE_TYPE, CompletableFuture<SearchResponse>> search : searches.entrySet()) {
+			Constants.SEARCH_INCLUDE_TYPE type = search.getKey();
+			long deadline = started + TimeUnit.MILLISECONDS.toNanos(this.getSearchTimeoutMillis(type));
+
+			SearchResponse searchResponse = null;
+			Boolean timedOut = false;
+			Boolean failed = false;
+
+			try {
+				searchResponse = search.getValue().get(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+				timedOut = searchResponse.isTimedOut();
+
+			} catch (TimeoutException e) {
+				timedOut = true;
+				meterRegistry.counter("jakduk.search.timeout", "type", type.name().toLowerCase()).increment();
+				log.warn("search timed out. type={}, query={}", type, query);
+
+			} catch (ExecutionException e) {
+				failed = true;
+				log.warn("search failed. type={}, query={}", type, query, e.getCause());
+
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				timedOut = true;
+			}
+
+			complete = complete && ! timedOut && ! failed;
+
+			// 받지 못한 종류는 여기까지 기다린 시간을 걸린 시간으로 적는다.
+			Long took = Objects.nonNull(searchResponse) ? searchResponse.getTook().getMillis()
+					: TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+
+			switch (type) {
+				case ARTICLE:
+					SearchArticleResult searchArticleResult = Objects.nonNull(searchResponse)
+							? getArticleSearchResponse(searchResponse) : new SearchArticleResult() {{
+								setTotalCount(0L);
+								setArticles(Collections.emptyList());
+							}};
+					searchArticleResult.setTook(took);
+					searchArticleResult.setTimedOut(timedOut);
+					searchArticleResult.setFailed(failed);
+					searchUnifiedResponse.setArticleResult(searchArticleResult);
+					break;
+				case COMMENT:
+					SearchCommentResult searchCommentResult = Objects.nonNull(searchResponse)
+							? getCommentSearchResponse(searchResponse) : new SearchCommentResult() {{
+								setTotalCount(0L);
+								setComments(Collections.emptyList());
+							}};
+					searchCommentResult.setTook(took);
+					searchCommentResult.setTimedOut(timedOut);
+					searchCommentResult.setFailed(failed);
+					searchUnifiedResponse.setCommentResult(searchCommentResult);
+					break;
+				case GALLERY:
+					SearchGalleryResult searchGalleryResult = Objects.nonNull(searchResponse)
+							? getGallerySearchResponse(searchResponse) : new SearchGalleryResult() {{
+								setTotalCount(0L);
+								setGalleries(Collections.emptyList());
+							}};
+					searchGalleryResult.setTook(took);
+					searchGalleryResult.setTimedOut(timedOut);
+					searchGalleryResult.setFailed(failed);
+					searchUnifiedResponse.setGalleryResult(searchGalleryResult);
+					break;
 			}
 		}
 
+		if (complete)
+			searchResultCache.put(query, include, from, size, preTags, postTags, generation, searchUnifiedResponse);
+
 		return searchUnifiedResponse;
 	}
 
+	/**
+	 * 인기 검색어. PopularSearchWordCounter 가 매겨둔 순위를 돌려주고, 아직 없으면 ES 에서 센다.
+	 *
+	 * @param gteDate	이 날짜부터 센다
+	 * @param size	반환 개수
+	 */
+	public PopularSearchWordResult getPopularSearchWords(LocalDate gteDate, Integer size) {
+		long started = System.nanoTime();
+		List<EsTermsBucket> popularWords = popularSearchWordCounter.getPopularWords(gteDate, size);
+
+		if (Objects.isNull(popularWords))
+			return this.aggregateSearchWord(gteDate, size);
+
+		return new PopularSearchWordResult() {{
+			setTook(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+			setPopularSearchWords(popularWords);
+		}};
+	}
+
+	/**
+	 * 검색어 자동 완성. ES 를 거치지 않고 SearchSuggester 에서 찾는다.
+	 *
+	 * @param q	입력 중인 검색어
+	 * @param size	반환 개수
+	 */
+	public SearchSuggestResult suggest(String q, Integer size) {
+		long started = System.nanoTime();
+		List<String> suggestions = searchSuggester.suggest(q, size);
+
+		return new SearchSuggestResult() {{
+			setTookMicros(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - started));
+			setSuggestions(suggestions);
+		}};
+	}
+
 	public PopularSearchWordResult aggregateSearchWord(LocalDate gteDate, Integer size) {
 
 		SearchRequestBuilder searchRequestBuilder = client.prepareSearch()
@@ -156,114 +265,159 @@ public class SearchService {
 		}};
 	}
 
-	public void indexDocumentArticle(EsArticle esArticle) {
-
-		String id = esArticle.getId();
+	/**
+	 * 글 색인 요청. BulkProcessor 에 모아서 보낸다.
+	 */
+	public IndexRequest getArticleIndexRequest(EsArticle esArticle) {
 
 		try {
-			IndexResponse response = client.prepareIndex()
-					.setIndex(elasticsearchProperties.getIndexBoard())
-					.setType(Constants.ES_TYPE_ARTICLE)
-					.setId(id)
-					.setSource(ObjectMapperUtils.writeValueAsString(esArticle), XContentType.JSON)
-					.get();
+			return new IndexRequest(elasticsearchProperties.getIndexBoard(), Constants.ES_TYPE_ARTICLE, esArticle.getId())
+					.source(ObjectMapperUtils.writeValueAsString(esArticle), XContentType.JSON);
 
 		} catch (IOException e) {
 			throw new ServiceException(ServiceError.ELASTICSEARCH_INDEX_FAILED, e.getCause());
 		}
 	}
 
-	public void deleteDocumentBoard(String id) {
-		DeleteResponse response = client.prepareDelete()
-				.setIndex(elasticsearchProperties.getIndexBoard())
-				.setType(Constants.ES_TYPE_ARTICLE)
-				.setId(id)
-				.get();
-
-		if (! response.status().equals(RestStatus.OK))
-			log.info("board id {} is not found. so can't delete it!", id);
+	public DeleteRequest getArticleDeleteRequest(String id) {
+		return new DeleteRequest(elasticsearchProperties.getIndexBoard(), Constants.ES_TYPE_ARTICLE, id);
 	}
 
-	public void indexDocumentBoardComment(EsComment esComment) {
+	public IndexRequest getCommentIndexRequest(EsComment esComment) {
 
-		String id = esComment.getId();
 		String parentBoardId = esComment.getArticle().getId();
 
 		try {
-			IndexResponse response = client.prepareIndex()
-					.setIndex(elasticsearchProperties.getIndexBoard())
-					.setType(Constants.ES_TYPE_COMMENT)
-					.setId(id)
-					.setParent(parentBoardId)
-					.setSource(ObjectMapperUtils.writeValueAsString(esComment), XContentType.JSON)
-					.get();
+			return new IndexRequest(elasticsearchProperties.getIndexBoard(), Constants.ES_TYPE_COMMENT, esComment.getId())
+					.parent(parentBoardId)
+					.source(ObjectMapperUtils.writeValueAsString(esComment), XContentType.JSON);
 
 		} catch (IOException e) {
 			throw new ServiceException(ServiceError.ELASTICSEARCH_INDEX_FAILED, e.getCause());
 		}
 	}
 
-	public void deleteDocumentBoardComment(String id) {
+	public DeleteRequest getCommentDeleteRequest(String id) {
+		return new DeleteRequest(elasticsearchProperties.getIndexBoard(), Constants.ES_TYPE_COMMENT, id);
+	}
+
+	/**
+	 * 댓글 문서들의 글 정보만 통째로 바꾼다. 부분 문서로 합치면 지워진 글의 제목이 남으므로 script 로 바꾼다.
+	 * 글 정보는 메시지 하나에 한번만 Mongo 에서 다시 읽어 모든 댓글에 같이 넣는다.
+	 */
+	public List<DocWriteRequest<?>> getCommentParentUpdateRequests(EsCommentParents esCommentParents) {
+
+		EsParentArticle esParentArticle = this.loadLatestParentArticle(esCommentParents.getArticle());
+
+		Map<String, Object> article = ObjectMapperUtils.getObjectMapper()
+				.convertValue(esParentArticle, new TypeReference<Map<String, Object>>() {});
+
+		Script script = new Script(ScriptType.INLINE, Script.DEFAULT_SCRIPT_LANG, "ctx._source.article = params.article",
+				Collections.singletonMap("article", article));
+
+		return esCommentParents.getIds().stream()
+				.map(id -> new UpdateRequest(elasticsearchProperties.getIndexBoard(), Constants.ES_TYPE_COMMENT, id)
+						.parent(esParentArticle.getId())
+						.script(script))
+				.collect(Collectors.toList());
+	}
+
+	/**
+	 * 댓글 색인, 글 정보 갱신 메시지를 요청으로 바꿀 때 글 정보를 Mongo 에서 다시 읽는다.
+	 * 메시지를 보낸 뒤에 글을 고쳤으면 메시지에 담긴 제목은 예전 것이라, 요청을 만드는 때의 제목을 넣는다.
+	 * 글이 없으면 메시지에 담긴 글 정보를 그대로 쓴다.
+	 */
+	public EsComment loadLatestParentArticle(EsComment esComment) {
+		this.loadLatestParentArticle(esComment.getArticle());
+		return esComment;
+	}
 
-		DeleteResponse response = client.prepareDelete()
-				.setIndex(elasticsearchProperties.getIndexBoard())
-				.setType(Constants.ES_TYPE_COMMENT)
-				.setId(id)
-				.get();
+	private EsParentArticle loadLatestParentArticle(EsParentArticle esParentArticle) {
 
-		if (! response.status().equals(RestStatus.OK))
-			log.info("comment id {} is not found. so can't delete it!", id);
+		List<Article> articles = articleRepository.findParentsByIdIn(Collections.singletonList(esParentArticle.getId()));
+
+		if (articles.isEmpty())
+			return esParentArticle;
+
+		Article article = articles.get(0);
+		esParentArticle.setSeq(article.getSeq());
+		esParentArticle.setBoard(article.getBoard());
+		esParentArticle.setCategory(article.getCategory());
+		esParentArticle.setSubject(Objects.nonNull(article.getSubject()) ? JakdukUtils.stripHtmlTag(article.getSubject()) : null);
+
+		return esParentArticle;
 	}
 
 	// TODO : 구현 해야 함
 	public void createDocumentJakduComment(EsJakduComment EsJakduComment) {}
 
-	public void indexDocumentGallery(EsGallery esGallery) {
-
-		String id = esGallery.getId();
+	public IndexRequest getGalleryIndexRequest(EsGallery esGallery) {
 
 		try {
-			IndexResponse response = client.prepareIndex()
-					.setIndex(elasticsearchProperties.getIndexGallery())
-					.setType(Constants.ES_TYPE_GALLERY)
-					.setId(id)
-					.setSource(ObjectMapperUtils.writeValueAsString(esGallery), XContentType.JSON)
-					.get();
+			return new IndexRequest(elasticsearchProperties.getIndexGallery(), Constants.ES_TYPE_GALLERY, esGallery.getId())
+					.source(ObjectMapperUtils.writeValueAsString(esGallery), XContentType.JSON);
 
 		} catch (IOException e) {
 			throw new ServiceException(ServiceError.ELASTICSEARCH_INDEX_FAILED, e.getCause());
 		}
 	}
 
-	public void deleteDocumentGallery(String id) {
-
-		DeleteResponse response = client.prepareDelete()
-				.setIndex(elasticsearchProperties.getIndexGallery())
-				.setType(Constants.ES_TYPE_GALLERY)
-				.setId(id)
-				.get();
-
-		if (! response.status().equals(RestStatus.OK))
-			log.info("gallery id {} is not found. so can't delete it!", id);
+	public DeleteRequest getGalleryDeleteRequest(String id) {
+		return new DeleteRequest(elasticsearchProperties.getIndexGallery(), Constants.ES_TYPE_GALLERY, id);
 	}
 
-	public void indexDocumentSearchWord(EsSearchWord esSearchWord) {
+	public IndexRequest getSearchWordIndexRequest(EsSearchWord esSearchWord) {
 
 		try {
-			IndexRequestBuilder indexRequestBuilder = client.prepareIndex();
-			IndexResponse response = indexRequestBuilder
-					.setIndex(elasticsearchProperties.getIndexSearchWord())
-					.setType(Constants.ES_TYPE_SEARCH_WORD)
-					.setSource(ObjectMapperUtils.writeValueAsString(esSearchWord), XContentType.JSON)
-					.get();
-
-			log.debug("indexDocumentSearchWord Source:\n {}", indexRequestBuilder.request().getDescription());
+			return new IndexRequest(elasticsearchProperties.getIndexSearchWord(), Constants.ES_TYPE_SEARCH_WORD)
+					.source(ObjectMapperUtils.writeValueAsString(esSearchWord), XContentType.JSON);
 
 		} catch (IOException e) {
 			throw new ServiceException(ServiceError.ELASTICSEARCH_INDEX_FAILED, e.getCause());
 		}
 	}
 
+	/**
+	 * 기다리지 않고 검색을 보낸다. ES 에도 같은 timeout 을 줘서 늦은 shard 는 버리고 찾은 만큼만 받게 한다.
+	 * 기다리는 시간이 지나서 도착한 응답도 걸린 시간은 jakduk.search.latency 에 남긴다.
+	 */
+	private CompletableFuture<SearchResponse> search(Constants.SEARCH_INCLUDE_TYPE type, SearchRequestBuilder searchRequestBuilder) {
+		CompletableFuture<SearchResponse> future = new CompletableFuture<>();
+		String typeTag = type.name().toLowerCase();
+		long started = System.nanoTime();
+
+		searchRequestBuilder.setTimeout(TimeValue.timeValueMillis(this.getSearchTimeoutMillis(type)));
+
+		client.search(searchRequestBuilder.request(), new ActionListener<SearchResponse>() {
+			@Override
+			public void onResponse(SearchResponse searchResponse) {
+				getLatencyTimer(typeTag, "success").record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+				future.complete(searchResponse);
+			}
+
+			@Override
+			public void onFailure(Exception e) {
+				getLatencyTimer(typeTag, "failure").record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+				future.completeExceptionally(e);
+			}
+		});
+
+		return future;
+	}
+
+	private Timer getLatencyTimer(String type, String result) {
+		return Timer.builder("jakduk.search.latency")
+				.description("통합 검색에서 종류마다 ES 응답을 받기까지 걸린 시간")
+				.tags("type", type, "result", result)
+				.publishPercentileHistogram()
+				.register(meterRegistry);
+	}
+
+	private Long getSearchTimeoutMillis(Constants.SEARCH_INCLUDE_TYPE type) {
+		return elasticsearchProperties.getSearchTimeoutMillis()
+				.getOrDefault(type.name().toLowerCase(), elasticsearchProperties.getDefaultSearchTimeoutMillis());
+	}
+
 	private SearchRequestBuilder getArticleSearchRequestBuilder(String query, Integer from, Integer size, String preTags,
 																String postTags) {
 
@@ -350,14 +504,7 @@ public class SearchService {
 				.setIndices(elasticsearchProperties.getIndexBoard())
 				.setTypes(Constants.ES_TYPE_COMMENT)
 				.setFetchSource(null, new String[]{"content"})
-				.setQuery(
-						QueryBuilders.boolQuery()
-								.must(QueryBuilders.matchQuery("content", query))
-								.must(JoinQueryBuilders
-                                        .hasParentQuery(Constants.ES_TYPE_ARTICLE, QueryBuilders.matchAllQuery(), false)
-                                        .innerHit(new InnerHitBuilder())
-								)
-				)
+				.setQuery(this.getCommentQuery(query))
 				.setFrom(from)
 				.setSize(size);
 
@@ -373,6 +520,22 @@ public class SearchService {
 		return searchRequestBuilder;
 	}
 
+	/**
+	 * 글 정보는 댓글 문서에 넣어둔 것을 쓴다. 지워진 글의 댓글은 글 제목이 없으니 뺀다.
+	 * commentParentJoin 이면 예전처럼 has_parent 의 inner hit 으로 글 정보를 가져온다.
+	 */
+	private QueryBuilder getCommentQuery(String query) {
+		BoolQueryBuilder commentQuery = QueryBuilders.boolQuery()
+				.must(QueryBuilders.matchQuery("content", query));
+
+		if (elasticsearchProperties.getCommentParentJoin())
+			return commentQuery.must(JoinQueryBuilders
+					.hasParentQuery(Constants.ES_TYPE_ARTICLE, QueryBuilders.matchAllQuery(), false)
+					.innerHit(new InnerHitBuilder()));
+
+		return commentQuery.filter(QueryBuilders.existsQuery("article.subject"));
+	}
+
 	private SearchCommentResult getCommentSearchResponse(SearchResponse searchResponse) {
 		SearchHits searchHits = searchResponse.getHits();
 
@@ -382,7 +545,7 @@ public class SearchService {
 					EsCommentSource esCommentSource = ObjectMapperUtils.convertValue(sourceMap, EsCommentSource.class);
 					esCommentSource.setScore(searchHit.getScore());
 
-					if (! searchHit.getInnerHits().isEmpty()) {
+					if (Objects.nonNull(searchHit.getInnerHits()) && ! searchHit.getInnerHits().isEmpty()) {
 						SearchHit[] innerSearchHits = searchHit.getInnerHits().get(Constants.ES_TYPE_ARTICLE).getHits();
 						Map<String, Object> innerSourceMap = innerSearchHits[ innerSearchHits.length - 1 ].getSourceAsMap();
 						EsParentArticle esParentArticle = ObjectMapperUtils.convertValue(innerSourceMap, EsParentArticle.class);
@@ -1,12 +1,27 @@
 package com.jakduk.api.service;
 
+import com.jakduk.api.common.Constants;
+import com.jakduk.api.common.gallery.GalleryFileResolver;
+import com.jakduk.api.common.gallery.ImageBlobStore;
+import com.jakduk.api.configuration.JakdukProperties;
 import com.jakduk.api.exception.ServiceError;
 import com.jakduk.api.exception.ServiceException;
 import com.jakduk.api.model.db.UserPicture;
 import com.jakduk.api.repository.user.UserPictureRepository;
+import org.bson.types.ObjectId;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.Resource;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Objects;
+
 /**
  * Created by pyohwan on 17. 2. 16.
  */
@@ -14,11 +29,54 @@ import org.springframework.stereotype.Service;
 @Service
 public class UserPictureService {
 
+    public final static String SMALL = "small";
+
+    @Resource
+    private JakdukProperties.Storage storageProperties;
+
     @Autowired
     private UserPictureRepository userPictureRepository;
 
+    @Autowired
+    private ImageBlobStore imageBlobStore;
+
     public UserPicture findOneById(String id) {
         return userPictureRepository.findOneById(id)
                 .orElseThrow(() -> new ServiceException(ServiceError.NOT_FOUND_USER_IMAGE));
     }
+
+    /**
+     * 프로필 사진 파일 경로
+     *
+     * blob 이 있으면 큰 사진은 blob 원본, 작은 사진은 그 옆의 파생 파일. 없으면 예전처럼 년/월/일 폴더의 {사진 ID}.{포맷}
+     */
+    public Path getUserPictureFilePath(UserPicture userPicture, Constants.IMAGE_SIZE_TYPE sizeType) {
+        String formatName = GalleryFileResolver.getFormatName(userPicture.getContentType());
+
+        if (Objects.nonNull(userPicture.getBlobId())) {
+            return Constants.IMAGE_SIZE_TYPE.LARGE.equals(sizeType) ?
+                    imageBlobStore.getFilePath(userPicture.getBlobId()) :
+                    imageBlobStore.getDerivedFilePath(userPicture.getBlobId(), SMALL, formatName);
+        }
+
+        String imagePath = Constants.IMAGE_SIZE_TYPE.LARGE.equals(sizeType) ?
+                storageProperties.getUserPictureLargePath() : storageProperties.getUserPictureSmallPath();
+
+        LocalDate localDate = new ObjectId(userPicture.getId()).getDate().toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
+
+        return Paths.get(imagePath, String.valueOf(localDate.getYear()), String.valueOf(localDate.getMonthValue()),
+                String.valueOf(localDate.getDayOfMonth()), userPicture.getId() + "." + formatName);
+    }
+
+    /**
+     * 프로필 사진 파일. 내용은 응답을 쓸 때 디스크에서 바로 읽힌다.
+     */
+    public FileSystemResource getUserPictureResource(UserPicture userPicture, Constants.IMAGE_SIZE_TYPE sizeType) {
+        Path filePath = this.getUserPictureFilePath(userPicture, sizeType);
+
+        if (Files.notExists(filePath, LinkOption.NOFOLLOW_LINKS))
+            throw new ServiceException(ServiceError.NOT_FOUND_GALLERY_FILE);
+
+        return new FileSystemResource(filePath);
+    }
 }
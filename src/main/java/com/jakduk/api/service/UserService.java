@@ -2,11 +2,11 @@ package com.jakduk.api.service;
 
 
 import com.jakduk.api.common.Constants;
+import com.jakduk.api.common.gallery.ImageBlobStore;
 import com.jakduk.api.common.rabbitmq.RabbitMQPublisher;
 import com.jakduk.api.common.util.AuthUtils;
 import com.jakduk.api.common.util.FileUtils;
 import com.jakduk.api.common.util.JakdukUtils;
-import com.jakduk.api.configuration.JakdukProperties;
 import com.jakduk.api.configuration.security.JakdukAuthority;
 import com.jakduk.api.exception.ServiceError;
 import com.jakduk.api.exception.ServiceException;
@@ -26,8 +26,9 @@ import com.jakduk.api.repository.user.UserProfileRepository;
 import com.jakduk.api.repository.user.UserRepository;
 import com.jakduk.api.restcontroller.vo.user.UserPasswordFindResponse;
 import com.jakduk.api.restcontroller.vo.user.UserProfileResponse;
+import net.coobird.thumbnailator.Thumbnails;
+import net.coobird.thumbnailator.geometry.Positions;
 import org.apache.commons.lang3.StringUtils;
-import org.bson.types.ObjectId;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -35,10 +36,14 @@ import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.Resource;
+import java.awt.image.BufferedImage;
 import java.io.IOException;
-import java.time.LocalDate;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.time.LocalDateTime;
-import java.time.ZoneId;
 import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
@@ -49,7 +54,6 @@ public class UserService {
 
 	private final Logger log = LoggerFactory.getLogger(this.getClass());
 
-	@Resource private JakdukProperties.Storage storageProperties;
 	@Resource private AuthUtils authUtils;
 
 	@Autowired private RabbitMQPublisher rabbitMQPublisher;
@@ -59,6 +63,8 @@ public class UserService {
 	@Autowired private UserProfileRepository userProfileRepository;
 	@Autowired private UserPictureRepository userPictureRepository;
 	@Autowired private TokenRepository tokenRepository;
+	@Autowired private UserPictureService userPictureService;
+	@Autowired private ImageBlobStore imageBlobStore;
 
 	public Optional<User> findOneByProviderIdAndProviderUserId(Constants.ACCOUNT_TYPE providerId, String providerUserId) {
 		return userRepository.findOneByProviderIdAndProviderUserId(providerId, providerUserId);
@@ -162,24 +168,17 @@ public class UserService {
 		// SNS에서 사용중인 사진을 User와 연동
 		else if (StringUtils.isNotBlank(largePictureUrl)) {
 			try {
-				FileUtils.FileInfo fileInfo = FileUtils.getBytesByUrl(largePictureUrl);
+				FileUtils.FileInfo fileInfo = FileUtils.getFileByUrl(largePictureUrl, imageBlobStore.getTempDirPath());
 
-				if (! StringUtils.startsWithIgnoreCase(fileInfo.getContentType(), "image/"))
-					throw new ServiceException(ServiceError.FILE_ONLY_IMAGE_TYPE_CAN_BE_UPLOADED);
+				try {
+					if (! StringUtils.startsWithIgnoreCase(fileInfo.getContentType(), "image/"))
+						throw new ServiceException(ServiceError.FILE_ONLY_IMAGE_TYPE_CAN_BE_UPLOADED);
 
-				userPicture = new UserPicture();
-				userPicture.setStatus(Constants.GALLERY_STATUS_TYPE.TEMP);
-				userPicture.setContentType(fileInfo.getContentType());
+					userPicture = this.saveUserPicture(fileInfo);
 
-				userPictureRepository.save(userPicture);
-
-				ObjectId objectId = new ObjectId(userPicture.getId());
-				LocalDate localDate = objectId.getDate().toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
-
-				FileUtils.writeImageFile(storageProperties.getUserPictureLargePath(), localDate, userPicture.getId(), fileInfo.getContentType(),
-						fileInfo.getContentLength(), fileInfo.getBytes());
-				FileUtils.writeSmallImageFile(storageProperties.getUserPictureSmallPath(), localDate, userPicture.getId(), fileInfo.getContentType(),
-						Constants.USER_SMALL_PICTURE_SIZE_WIDTH, Constants.USER_SMALL_PICTURE_SIZE_HEIGHT, fileInfo.getBytes());
+				} finally {
+					Files.deleteIfExists(fileInfo.getPath());
+				}
 
 				user.setUserPicture(userPicture);
 
@@ -342,27 +341,96 @@ public class UserService {
 
 	/**
 	 * 프로필 이미지 올리기
+	 *
+	 * 올린 내용을 임시 파일로 흘려 쓰고, 처음 보는 내용일 때만 한번 디코딩해서 큰 사진과 작은 사진을 만든다.
 	 */
-	public UserPicture uploadUserPicture(String contentType, long size, byte[] bytes) {
+	public UserPicture uploadUserPicture(String contentType, InputStream inputStream) {
+
+		FileUtils.FileInfo fileInfo = null;
+
+		try {
+			fileInfo = FileUtils.writeTempFile(imageBlobStore.getTempDirPath(), inputStream, contentType);
+
+			return this.saveUserPicture(fileInfo);
+
+		} catch (IOException e) {
+			throw new ServiceException(ServiceError.GALLERY_IO_ERROR, e);
+		} finally {
+			if (Objects.nonNull(fileInfo)) {
+				try {
+					Files.deleteIfExists(fileInfo.getPath());
+				} catch (IOException e) {
+					log.warn("failed to delete temp file. path={}", fileInfo.getPath());
+				}
+			}
+		}
+	}
+
+	/**
+	 * 임시 파일로 받은 프로필 사진을 저장소에 넣고 TEMP 상태의 UserPicture 를 만든다.
+	 */
+	private UserPicture saveUserPicture(FileUtils.FileInfo fileInfo) throws IOException {
 
 		UserPicture userPicture = new UserPicture();
 		userPicture.setStatus(Constants.GALLERY_STATUS_TYPE.TEMP);
-		userPicture.setContentType(contentType);
-
-		userPictureRepository.save(userPicture);
+		userPicture.setContentType(fileInfo.getContentType());
+		userPicture.setBlobId(fileInfo.getHash());
 
-		ObjectId objectId = new ObjectId(userPicture.getId());
-		LocalDate localDate = objectId.getDate().toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
+		Boolean created = imageBlobStore.acquire(fileInfo);
 
 		try {
-			FileUtils.writeImageFile(storageProperties.getUserPictureLargePath(), localDate, userPicture.getId(), contentType, size, bytes);
-			FileUtils.writeSmallImageFile(storageProperties.getUserPictureSmallPath(), localDate, userPicture.getId(), contentType,
-					Constants.USER_SMALL_PICTURE_SIZE_WIDTH, Constants.USER_SMALL_PICTURE_SIZE_HEIGHT, bytes);
+			this.writeUserPictureFiles(userPicture, created);
+			userPictureRepository.save(userPicture);
+		} catch (IOException | RuntimeException e) {
+			imageBlobStore.release(userPicture.getBlobId());
+			throw e;
+		}
 
-			return userPicture;
+		return userPicture;
+	}
 
-		} catch (IOException e) {
-			throw new ServiceException(ServiceError.GALLERY_IO_ERROR, e);
+	/**
+	 * 저장소의 원본을 한번 디코딩해서, 새로 저장한 원본이 너무 크면 줄이고 작은 사진이 없으면 만든다.
+	 * 같은 원본을 다른 사진이 함께 쓰니, 다른 곳에 만들고 바꿔치기 해서 읽는 쪽이 덜 쓰인 파일을 보지 않게 한다.
+	 *
+	 * @param created 새로 저장한 원본이면 true
+	 */
+	private void writeUserPictureFiles(UserPicture userPicture, Boolean created) throws IOException {
+
+		String formatName = StringUtils.split(userPicture.getContentType(), "/")[1];
+
+		Path largeFilePath = userPictureService.getUserPictureFilePath(userPicture, Constants.IMAGE_SIZE_TYPE.LARGE);
+		Path smallFilePath = userPictureService.getUserPictureFilePath(userPicture, Constants.IMAGE_SIZE_TYPE.SMALL);
+
+		long size = Files.size(largeFilePath);
+		boolean resizeLarge = created && ! "gif".equals(formatName) && Constants.GALLERY_MAXIMUM_CAPACITY < size;
+
+		if (! resizeLarge && Files.exists(smallFilePath, LinkOption.NOFOLLOW_LINKS))
+			return;
+
+		BufferedImage image = FileUtils.readImage(largeFilePath);
+
+		if (resizeLarge) {
+			Path resizingFilePath = Files.createTempFile(largeFilePath.getParent(), userPicture.getBlobId() + "-", "." + formatName);
+
+			Thumbnails.of(image)
+					.scale(Constants.GALLERY_MAXIMUM_CAPACITY / (double) size)
+					.outputFormat(formatName)
+					.toFile(resizingFilePath.toFile());
+
+			Files.move(resizingFilePath, largeFilePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+
+		if (Files.notExists(smallFilePath, LinkOption.NOFOLLOW_LINKS)) {
+			Path resizingFilePath = Files.createTempFile(smallFilePath.getParent(), userPicture.getBlobId() + "-", "." + formatName);
+
+			Thumbnails.of(image)
+					.size(Constants.USER_SMALL_PICTURE_SIZE_WIDTH, Constants.USER_SMALL_PICTURE_SIZE_HEIGHT)
+					.crop(Positions.CENTER)
+					.outputFormat(formatName)
+					.toFile(resizingFilePath.toFile());
+
+			Files.move(resizingFilePath, smallFilePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
 		}
 	}
 
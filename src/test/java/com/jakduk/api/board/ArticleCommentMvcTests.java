@@ -332,9 +332,6 @@ public class ArticleCommentMvcTests {
     @WithMockJakdukUser
     public void setArticleCommentFeelingTest() throws Exception {
 
-        when(articleService.setArticleCommentFeeling(any(CommonWriter.class), anyString(), any(Constants.FEELING_TYPE.class)))
-                .thenReturn(articleComment);
-
         List<CommonFeelingUser> usersLiking = articleComment.getUsersLiking();
         List<CommonFeelingUser> usersDisliking = articleComment.getUsersDisliking();
 
@@ -343,6 +340,9 @@ public class ArticleCommentMvcTests {
         expectResponse.setNumberOfLike(CollectionUtils.isEmpty(usersLiking) ? 0 : usersLiking.size());
         expectResponse.setNumberOfDislike(CollectionUtils.isEmpty(usersDisliking) ? 0 : usersDisliking.size());
 
+        when(articleService.setArticleCommentFeeling(any(CommonWriter.class), anyString(), any(Constants.FEELING_TYPE.class)))
+                .thenReturn(expectResponse);
+
         mvc.perform(
                 post("/api/board/{board}/comment/{commentId}/{feeling}", articleComment.getArticle().getBoard().toLowerCase(),
                         articleComment.getId(), Constants.FEELING_TYPE.LIKE.name().toLowerCase())
@@ -45,6 +45,7 @@ import org.springframework.util.CollectionUtils;
 import javax.servlet.http.Cookie;
 import java.time.LocalDateTime;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
@@ -232,6 +233,67 @@ public class ArticleMvcTests {
                 ));
     }
 
+    @Test
+    @WithMockUser
+    public void getArticlesByCursorTest() throws Exception {
+
+        GetArticle getArticle = new GetArticle();
+        BeanUtils.copyProperties(article, getArticle);
+        getArticle.setGalleries(simpleGalleries);
+        getArticle.setCommentCount(5);
+        getArticle.setLikingCount(article.getUsersLiking().size());
+        getArticle.setDislikingCount(article.getUsersDisliking().size());
+
+        GetArticlesCursorResponse expectResponse = new GetArticlesCursorResponse();
+        expectResponse.setCategories(categoriesMap);
+        expectResponse.setArticles(Arrays.asList(getArticle));
+        expectResponse.setNotices(Collections.emptyList());
+        expectResponse.setPrevCursor(getArticle.getId());
+        expectResponse.setNextCursor(getArticle.getId());
+        expectResponse.setFirst(false);
+        expectResponse.setLast(false);
+        expectResponse.setSize(20);
+        expectResponse.setTotalElements(1011L);
+
+        when(articleService.getArticlesByCursor(any(Constants.BOARD_TYPE.class), anyString(), anyString(),
+                any(Constants.CURSOR_DIRECTION.class), anyInt(), anyBoolean()))
+                .thenReturn(expectResponse);
+
+        mvc.perform(
+                get("/api/board/{board}/articles/cursor", Constants.BOARD_TYPE.FOOTBALL.name().toLowerCase())
+                        .param("cursor", "59c8879fa2b594c5d33e6ac5")
+                        .param("direction", Constants.CURSOR_DIRECTION.NEXT.name().toLowerCase())
+                        .param("withTotal", "true")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andExpect(content().json(ObjectMapperUtils.writeValueAsString(expectResponse)))
+                .andDo(document("getArticlesByCursor",
+                        pathParameters(
+                                parameterWithName("board").description("게시판 " +
+                                        Stream.of(Constants.BOARD_TYPE.values()).map(Enum::name).map(String::toLowerCase).collect(Collectors.toList()))
+                        ),
+                        requestParameters(
+                                parameterWithName("cursor").description("(optional) 기준 글 ID. 없으면 가장 최근 글부터.").optional(),
+                                parameterWithName("direction").description("(optional, default next) 방향. next 는 기준보다 오래된 글, prev 는 기준보다 최근 글.").optional(),
+                                parameterWithName("size").description("(optional, default 20) 목록 크기.").optional(),
+                                parameterWithName("categoryCode").description("(optional, default ALL) 말머리.").optional(),
+                                parameterWithName("withTotal").description("(optional, default false) 대략의 전체 글 수 포함 여부. 잠시 캐시된 값이다.").optional()
+                        ),
+                        responseFields(
+                                subsectionWithPath("categories").type(JsonFieldType.OBJECT).description("말머리 맵. key는 말머리코드, value는 표시되는 이름(Locale 지원)"),
+                                subsectionWithPath("articles").type(JsonFieldType.ARRAY).description("글 목록. json 형식은 게시물 목록의 articles와 같음."),
+                                subsectionWithPath("notices").type(JsonFieldType.ARRAY).description("공지글 목록. 커서가 없는 첫 목록에서만 채워진다."),
+                                fieldWithPath("prevCursor").type(JsonFieldType.STRING).description("최근 방향(prev) 목록을 가져올 때의 커서"),
+                                fieldWithPath("nextCursor").type(JsonFieldType.STRING).description("오래된 방향(next) 목록을 가져올 때의 커서"),
+                                fieldWithPath("first").type(JsonFieldType.BOOLEAN).description("가장 최근 목록 여부"),
+                                fieldWithPath("last").type(JsonFieldType.BOOLEAN).description("가장 오래된 목록 여부"),
+                                fieldWithPath("size").type(JsonFieldType.NUMBER).description("목록당 글 수"),
+                                fieldWithPath("totalElements").type(JsonFieldType.NUMBER).description("대략의 전체 글 수 (withTotal 일 때만)").optional()
+                        )
+                ));
+    }
+
     @Test
     @WithMockUser
     public void getTopsTest() throws Exception {
@@ -556,10 +618,6 @@ public class ArticleMvcTests {
     @WithMockJakdukUser
     public void setArticleFeeling() throws Exception {
 
-        when(articleService.setArticleFeelings(any(CommonWriter.class), any(Constants.BOARD_TYPE.class), anyInt(),
-                any(Constants.FEELING_TYPE.class)))
-                .thenReturn(article);
-
         List<CommonFeelingUser> usersLiking = article.getUsersLiking();
         List<CommonFeelingUser> usersDisliking = article.getUsersDisliking();
 
@@ -568,6 +626,10 @@ public class ArticleMvcTests {
         expectResponse.setNumberOfLike(CollectionUtils.isEmpty(usersLiking) ? 0 : usersLiking.size());
         expectResponse.setNumberOfDislike(CollectionUtils.isEmpty(usersDisliking) ? 0 : usersDisliking.size());
 
+        when(articleService.setArticleFeelings(any(CommonWriter.class), any(Constants.BOARD_TYPE.class), anyInt(),
+                any(Constants.FEELING_TYPE.class)))
+                .thenReturn(expectResponse);
+
         mvc.perform(
                 post("/api/board/{board}/{seq}/{feeling}", article.getBoard().toLowerCase(), article.getSeq(),
                         Constants.FEELING_TYPE.LIKE.name().toLowerCase())
@@ -0,0 +1,111 @@
+package com.jakduk.api.board;
+
+import com.jakduk.api.common.board.ArticleViewsAccumulator;
+import com.jakduk.api.model.db.Article;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.BsonDocument;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class ArticleViewsAccumulatorTest {
+
+    private MongoTemplate mongoTemplate;
+    private BulkOperations bulkOperations;
+    private SimpleMeterRegistry meterRegistry;
+    private ArticleViewsAccumulator accumulator;
+
+    @Before
+    public void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        bulkOperations = mock(BulkOperations.class);
+        meterRegistry = new SimpleMeterRegistry();
+
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Article.class)).thenReturn(bulkOperations);
+
+        accumulator = new ArticleViewsAccumulator(mongoTemplate, meterRegistry);
+    }
+
+    @Test
+    public void flushOneIncPerArticle() throws InterruptedException {
+        ExecutorService executorService = Executors.newFixedThreadPool(4);
+
+        for (int i = 0; i < 1000; i++) {
+            int seq = i % 2 == 0 ? 1 : 2;
+            executorService.execute(() -> accumulator.increase(seq));
+        }
+
+        executorService.shutdown();
+        executorService.awaitTermination(10, TimeUnit.SECONDS);
+
+        Assert.assertEquals(Long.valueOf(1000), accumulator.getPendingCount());
+        Assert.assertEquals(1000D, meterRegistry.get("jakduk.article.views.pending").gauge().value(), 0D);
+
+        accumulator.flush();
+
+        verify(bulkOperations, times(2)).updateOne(any(Query.class), eq(new Update().inc("views", 500L)));
+        verify(bulkOperations).execute();
+
+        Assert.assertEquals(Long.valueOf(0), accumulator.getPendingCount());
+        Assert.assertEquals(1000D, meterRegistry.get("jakduk.article.views.flushed").counter().count(), 0D);
+
+        // 누적된 것이 없으면 DB 에 가지 않는다.
+        accumulator.flush();
+        verify(bulkOperations, times(1)).execute();
+    }
+
+    @Test
+    public void keepPendingViewsWhenFlushFailed() {
+        when(bulkOperations.execute()).thenThrow(new RuntimeException("mongo down"));
+
+        accumulator.increase(1);
+        accumulator.increase(1);
+        accumulator.flush();
+
+        Assert.assertEquals(Long.valueOf(2), accumulator.getPendingCount());
+        Assert.assertEquals(0D, meterRegistry.get("jakduk.article.views.flushed").counter().count(), 0D);
+    }
+
+    @Test
+    public void keepOnlyFailedViewsWhenFlushPartiallyFailed() {
+        // 두번째 요청(seq 2)만 실패하고 첫번째는 이미 더해졌다.
+        MongoBulkWriteException cause = new MongoBulkWriteException(
+                BulkWriteResult.acknowledged(0, 1, 0, 1, Collections.emptyList()),
+                Collections.singletonList(new BulkWriteError(1, "failed", new BsonDocument(), 1)), null, new ServerAddress());
+
+        when(bulkOperations.execute()).thenThrow(new DataIntegrityViolationException("partially failed", cause));
+
+        accumulator.increase(1);
+        accumulator.increase(2);
+        accumulator.increase(2);
+        accumulator.flush();
+
+        Assert.assertEquals(Long.valueOf(2), accumulator.getPendingCount());
+        Assert.assertEquals(1D, meterRegistry.get("jakduk.article.views.flushed").counter().count(), 0D);
+
+        reset(bulkOperations);
+        accumulator.flush();
+
+        verify(bulkOperations).updateOne(any(Query.class), eq(new Update().inc("views", 2L)));
+        verify(bulkOperations, times(1)).updateOne(any(Query.class), any(Update.class));
+    }
+
+}
@@ -0,0 +1,136 @@
+package com.jakduk.api.board;
+
+import com.jakduk.api.common.Constants;
+import com.jakduk.api.common.board.ArticleChangedEvent;
+import com.jakduk.api.common.board.BoardArticlesCache;
+import com.jakduk.api.configuration.JakdukProperties;
+import com.jakduk.api.restcontroller.vo.board.GetArticle;
+import com.jakduk.api.restcontroller.vo.board.GetArticlesResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Locale;
+
+public class BoardArticlesCacheTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private BoardArticlesCache cache;
+
+    @Before
+    public void setUp() {
+        JakdukProperties.BoardCache boardCacheProperties = new JakdukProperties().new BoardCache();
+        meterRegistry = new SimpleMeterRegistry();
+
+        cache = new BoardArticlesCache(boardCacheProperties, meterRegistry);
+
+        cache.put(Constants.BOARD_TYPE.FOOTBALL, "ALL", Locale.KOREAN, 1, 20, cache.getGeneration(), newResponse("a1"));
+        cache.put(Constants.BOARD_TYPE.FOOTBALL, "KL1", Locale.KOREAN, 1, 20, cache.getGeneration(), newResponse("a1"));
+        cache.put(Constants.BOARD_TYPE.FOOTBALL, "KL2", Locale.KOREAN, 1, 20, cache.getGeneration(), newResponse("a2"));
+        cache.put(Constants.BOARD_TYPE.FREE, "ALL", Locale.KOREAN, 1, 20, cache.getGeneration(), newResponse("a3"));
+    }
+
+    @Test
+    public void hitAndMiss() {
+        Assert.assertNotNull(cache.get(Constants.BOARD_TYPE.FOOTBALL, "ALL", Locale.KOREAN, 1, 20));
+        Assert.assertNull(cache.get(Constants.BOARD_TYPE.FOOTBALL, "ALL", Locale.ENGLISH, 1, 20));
+        // 캐시 대상 페이지가 아님
+        cache.put(Constants.BOARD_TYPE.FOOTBALL, "ALL", Locale.KOREAN, 10, 20, cache.getGeneration(), newResponse("a9"));
+        Assert.assertNull(cache.get(Constants.BOARD_TYPE.FOOTBALL, "ALL", Locale.KOREAN, 10, 20));
+
+        Assert.assertEquals(1D, meterRegistry.get("jakduk.board.articles.cache").tag("result", "hit").counter().count(), 0D);
+        Assert.assertEquals(1D, meterRegistry.get("jakduk.board.articles.cache").tag("result", "miss").counter().count(), 0D);
+    }
+
+    @Test
+    public void createEvictsAllAndSameCategory() {
+        cache.onArticleChanged(new ArticleChangedEvent(ArticleChangedEvent.TYPE.CREATE, Constants.BOARD_TYPE.FOOTBALL, "new", "KL1"));
+
+        Assert.assertNull(cache.get(Constants.BOARD_TYPE.FOOTBALL, "ALL", Locale.KOREAN, 1, 20));
+        Assert.assertNull(cache.get(Constants.BOARD_TYPE.FOOTBALL, "KL1", Locale.KOREAN, 1, 20));
+        Assert.assertNotNull(cache.get(Constants.BOARD_TYPE.FOOTBALL, "KL2", Locale.KOREAN, 1, 20));
+        Assert.assertNotNull(cache.get(Constants.BOARD_TYPE.FREE, "ALL", Locale.KOREAN, 1, 20));
+    }
+
+    @Test
+    public void feelingEvictsOnlyListsContainingArticle() {
+        cache.onArticleChanged(new ArticleChangedEvent(ArticleChangedEvent.TYPE.FEELING, Constants.BOARD_TYPE.FOOTBALL, "a2", null));
+
+        Assert.assertEquals(Integer.valueOf(3), cache.size());
+        Assert.assertNull(cache.get(Constants.BOARD_TYPE.FOOTBALL, "KL2", Locale.KOREAN, 1, 20));
+    }
+
+    @Test
+    public void noticeEvictsAllBoards() {
+        // 공지 목록은 게시판을 가리지 않는다.
+        cache.onArticleChanged(new ArticleChangedEvent(ArticleChangedEvent.TYPE.NOTICE, Constants.BOARD_TYPE.FOOTBALL, "a9", "KL1"));
+
+        Assert.assertEquals(Integer.valueOf(0), cache.size());
+    }
+
+    @Test
+    public void skipResponseReadBeforeChange() {
+        Long generation = cache.getGeneration();
+
+        // 읽는 동안 글이 바뀜
+        cache.onArticleChanged(new ArticleChangedEvent(ArticleChangedEvent.TYPE.CREATE, Constants.BOARD_TYPE.FREE, "new", null));
+        cache.put(Constants.BOARD_TYPE.FREE, "ALL", Locale.KOREAN, 2, 20, generation, newResponse("a4"));
+
+        Assert.assertNull(cache.get(Constants.BOARD_TYPE.FREE, "ALL", Locale.KOREAN, 2, 20));
+    }
+
+    @Test
+    public void skipUnknownCategoryAndSize() {
+        cache.put(Constants.BOARD_TYPE.FOOTBALL, "RANDOM", Locale.KOREAN, 1, 20, cache.getGeneration(), newResponse("a5"));
+        cache.put(Constants.BOARD_TYPE.FREE, "KL1", Locale.KOREAN, 1, 20, cache.getGeneration(), newResponse("a5"));
+        cache.put(Constants.BOARD_TYPE.FOOTBALL, "ALL", Locale.KOREAN, 1, 17, cache.getGeneration(), newResponse("a5"));
+
+        Assert.assertEquals(Integer.valueOf(4), cache.size());
+    }
+
+    @Test
+    public void evictLeastRecentlyUsedOverMaxEntries() {
+        JakdukProperties.BoardCache boardCacheProperties = new JakdukProperties().new BoardCache();
+        boardCacheProperties.setMaxEntries(2);
+
+        BoardArticlesCache boundedCache = new BoardArticlesCache(boardCacheProperties, new SimpleMeterRegistry());
+
+        boundedCache.put(Constants.BOARD_TYPE.FOOTBALL, "ALL", Locale.KOREAN, 1, 20, boundedCache.getGeneration(), newResponse("a1"));
+        boundedCache.put(Constants.BOARD_TYPE.FOOTBALL, "KL1", Locale.KOREAN, 1, 20, boundedCache.getGeneration(), newResponse("a1"));
+        boundedCache.get(Constants.BOARD_TYPE.FOOTBALL, "ALL", Locale.KOREAN, 1, 20);
+        boundedCache.put(Constants.BOARD_TYPE.FOOTBALL, "KL2", Locale.KOREAN, 1, 20, boundedCache.getGeneration(), newResponse("a2"));
+
+        Assert.assertEquals(Integer.valueOf(2), boundedCache.size());
+        Assert.assertNotNull(boundedCache.get(Constants.BOARD_TYPE.FOOTBALL, "ALL", Locale.KOREAN, 1, 20));
+        Assert.assertNull(boundedCache.get(Constants.BOARD_TYPE.FOOTBALL, "KL1", Locale.KOREAN, 1, 20));
+    }
+
+    @Test
+    public void evictExpired() {
+        JakdukProperties.BoardCache boardCacheProperties = new JakdukProperties().new BoardCache();
+        boardCacheProperties.setTtlSeconds(-1);
+
+        BoardArticlesCache expiringCache = new BoardArticlesCache(boardCacheProperties, new SimpleMeterRegistry());
+        expiringCache.put(Constants.BOARD_TYPE.FOOTBALL, "ALL", Locale.KOREAN, 1, 20, expiringCache.getGeneration(), newResponse("a1"));
+
+        Assert.assertEquals(Integer.valueOf(1), expiringCache.size());
+
+        expiringCache.evictExpired();
+
+        Assert.assertEquals(Integer.valueOf(0), expiringCache.size());
+    }
+
+    private GetArticlesResponse newResponse(String articleId) {
+        GetArticle article = new GetArticle();
+        article.setId(articleId);
+
+        GetArticlesResponse response = new GetArticlesResponse();
+        response.setArticles(Collections.singletonList(article));
+        response.setNotices(Collections.emptyList());
+
+        return response;
+    }
+
+}
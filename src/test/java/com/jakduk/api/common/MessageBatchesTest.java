@@ -0,0 +1,69 @@
+package com.jakduk.api.common;
+
+import com.jakduk.api.common.rabbitmq.MessageBatches;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.core.support.MessageBatch;
+import org.springframework.amqp.rabbit.core.support.SimpleBatchingStrategy;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class MessageBatchesTest {
+
+    @Test
+    public void splitBatchedMessage() {
+        SimpleBatchingStrategy batchingStrategy = new SimpleBatchingStrategy(3, 1024, 1000);
+
+        Assert.assertNull(batchingStrategy.addToBatch("jakduk", "dev.elasticsearch.index-document-article", this.newMessage("a")));
+        Assert.assertNull(batchingStrategy.addToBatch("jakduk", "dev.elasticsearch.index-document-article", this.newMessage("bb")));
+
+        MessageBatch batch = batchingStrategy.addToBatch("jakduk", "dev.elasticsearch.index-document-article", this.newMessage("ccc"));
+
+        List<Message> messages = MessageBatches.split(batch.getMessage());
+
+        Assert.assertEquals(3, messages.size());
+        Assert.assertEquals("a", new String(messages.get(0).getBody()));
+        Assert.assertEquals("bb", new String(messages.get(1).getBody()));
+        Assert.assertEquals("ccc", new String(messages.get(2).getBody()));
+
+        // 풀어낸 메시지는 다시 묶음으로 보이지 않고, 속성은 메시지마다 따로 갖는다.
+        Assert.assertNull(messages.get(0).getMessageProperties().getHeaders().get(MessageProperties.SPRING_BATCH_FORMAT));
+        Assert.assertEquals(MessageProperties.CONTENT_TYPE_JSON, messages.get(0).getMessageProperties().getContentType());
+        Assert.assertNotSame(messages.get(0).getMessageProperties(), messages.get(1).getMessageProperties());
+    }
+
+    @Test
+    public void notBatchedMessage() {
+        Message message = this.newMessage("a");
+
+        List<Message> messages = MessageBatches.split(message);
+
+        Assert.assertEquals(1, messages.size());
+        Assert.assertSame(message, messages.get(0));
+    }
+
+    @Test
+    public void mergeAndSplit() {
+        Message merged = MessageBatches.merge(Arrays.asList(this.newMessage("a"), this.newMessage("bb")));
+
+        Assert.assertEquals(MessageProperties.BATCH_FORMAT_LENGTH_HEADER4,
+                merged.getMessageProperties().getHeaders().get(MessageProperties.SPRING_BATCH_FORMAT));
+
+        List<Message> messages = MessageBatches.split(merged);
+
+        Assert.assertEquals(2, messages.size());
+        Assert.assertEquals("a", new String(messages.get(0).getBody()));
+        Assert.assertEquals("bb", new String(messages.get(1).getBody()));
+    }
+
+    private Message newMessage(String body) {
+        MessageProperties messageProperties = new MessageProperties();
+        messageProperties.setContentType(MessageProperties.CONTENT_TYPE_JSON);
+
+        return new Message(body.getBytes(), messageProperties);
+    }
+
+}
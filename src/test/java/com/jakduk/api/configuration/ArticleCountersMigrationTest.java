@@ -0,0 +1,92 @@
+package com.jakduk.api.configuration;
+
+import com.jakduk.api.common.Constants;
+import com.jakduk.api.model.db.JobCheckpoint;
+import com.jakduk.api.repository.JobCheckpointRepository;
+import com.jakduk.api.restcontroller.vo.admin.ArticleCountersResponse;
+import com.jakduk.api.service.AdminService;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+public class ArticleCountersMigrationTest {
+
+    private AdminService adminService;
+    private JobCheckpointRepository jobCheckpointRepository;
+    private ArticleCountersMigration migration;
+
+    @Before
+    public void setUp() {
+        adminService = Mockito.mock(AdminService.class);
+        jobCheckpointRepository = Mockito.mock(JobCheckpointRepository.class);
+
+        JakdukProperties.ArticleCountersMigration properties = new JakdukProperties().new ArticleCountersMigration();
+        properties.setRolloutMinutes(60L);
+
+        migration = new ArticleCountersMigration();
+        ReflectionTestUtils.setField(migration, "adminService", adminService);
+        ReflectionTestUtils.setField(migration, "jobCheckpointRepository", jobCheckpointRepository);
+        ReflectionTestUtils.setField(migration, "articleCountersMigrationProperties", properties);
+
+        Mockito.when(adminService.checkArticleCounters(true))
+                .thenReturn(new ArticleCountersResponse(10, 7, 7, Collections.emptyList()));
+    }
+
+    @Test
+    public void keepFillingWhileRollingOut() {
+        Mockito.when(jobCheckpointRepository.findById(ArticleCountersMigration.JOB_NAME)).thenReturn(Optional.empty());
+
+        // 예전 서버가 남아 있을 수 있어서 아직 끝내지 않는다.
+        Assert.assertFalse(migration.migrate());
+
+        ArgumentCaptor<JobCheckpoint> captor = ArgumentCaptor.forClass(JobCheckpoint.class);
+        Mockito.verify(jobCheckpointRepository).save(captor.capture());
+
+        Assert.assertEquals(Constants.BATCH_JOB_STATUS.RUNNING, captor.getValue().getStatus());
+        Assert.assertEquals(Long.valueOf(10L), captor.getValue().getProcessed());
+        Assert.assertEquals(Long.valueOf(3L), captor.getValue().getSkipped());
+    }
+
+    @Test
+    public void completeAfterRollout() {
+        Date firstStartedAt = new Date(System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(61));
+
+        JobCheckpoint running = new JobCheckpoint();
+        running.setId(ArticleCountersMigration.JOB_NAME);
+        running.setStatus(Constants.BATCH_JOB_STATUS.RUNNING);
+        running.setStartedAt(firstStartedAt);
+
+        Mockito.when(jobCheckpointRepository.findById(ArticleCountersMigration.JOB_NAME)).thenReturn(Optional.of(running));
+
+        Assert.assertTrue(migration.migrate());
+
+        ArgumentCaptor<JobCheckpoint> captor = ArgumentCaptor.forClass(JobCheckpoint.class);
+        Mockito.verify(jobCheckpointRepository).save(captor.capture());
+
+        Assert.assertEquals(Constants.BATCH_JOB_STATUS.COMPLETED, captor.getValue().getStatus());
+        Assert.assertEquals(firstStartedAt, captor.getValue().getStartedAt());
+    }
+
+    @Test
+    public void skipWhenCompleted() {
+        JobCheckpoint completed = new JobCheckpoint();
+        completed.setId(ArticleCountersMigration.JOB_NAME);
+        completed.setStatus(Constants.BATCH_JOB_STATUS.COMPLETED);
+
+        Mockito.when(jobCheckpointRepository.findById(ArticleCountersMigration.JOB_NAME)).thenReturn(Optional.of(completed));
+
+        Assert.assertTrue(migration.migrate());
+
+        Mockito.verify(adminService, Mockito.never()).checkArticleCounters(Mockito.anyBoolean());
+        Mockito.verify(jobCheckpointRepository, Mockito.never()).save(Mockito.any());
+    }
+
+}
@@ -0,0 +1,112 @@
+package com.jakduk.api.configuration;
+
+import com.jakduk.api.common.Constants;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 자주 쓰이는 질의가 인덱스를 타는지 explain 으로 검사한다. COLLSCAN 이 있으면 실패.
+ */
+
+@RunWith(SpringRunner.class)
+@DataMongoTest
+@EnableConfigurationProperties
+@Import({JakdukProperties.class, MongodbConfig.class, MongodbIndexInitializer.class})
+public class MongodbIndexTests {
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private MongodbIndexInitializer mongodbIndexInitializer;
+
+    private final Document byIdDesc = new Document("_id", -1);
+    private final Document byIdAsc = new Document("_id", 1);
+
+    @Before
+    public void setUp() {
+        mongodbIndexInitializer.ensureIndexes();
+    }
+
+    @Test
+    public void articleQueries() {
+        assertNotCollectionScan(Constants.COLLECTION_ARTICLE, new Document("seq", 1), null);
+        assertNotCollectionScan(Constants.COLLECTION_ARTICLE, new Document("board", "FREE").append("seq", 1), null);
+        assertNotCollectionScan(Constants.COLLECTION_ARTICLE, new Document("board", "FREE"), byIdDesc);
+        assertNotCollectionScan(Constants.COLLECTION_ARTICLE, new Document("board", "FOOTBALL").append("category", "CLASSIC"), byIdDesc);
+        assertNotCollectionScan(Constants.COLLECTION_ARTICLE, new Document("writer.userId", "userId")
+                .append("_id", new Document("$ne", new ObjectId())), byIdDesc);
+        assertNotCollectionScan(Constants.COLLECTION_ARTICLE, new Document("status.notice", true), byIdDesc);
+    }
+
+    @Test
+    public void articleCommentQueries() {
+        assertNotCollectionScan(Constants.COLLECTION_ARTICLE_COMMENT, new Document("article.seq", 1).append("article.board", "FREE"), byIdAsc);
+        assertNotCollectionScan(Constants.COLLECTION_ARTICLE_COMMENT, new Document("article._id",
+                new Document("$in", Arrays.asList(new ObjectId(), new ObjectId()))), null);
+    }
+
+    @Test
+    public void galleryQueries() {
+        assertNotCollectionScan(Constants.COLLECTION_GALLERY, new Document("status.status", Constants.GALLERY_STATUS_TYPE.ENABLE.name())
+                .append("linkedItems._id", new ObjectId())
+                .append("linkedItems.from", Constants.GALLERY_FROM_TYPE.ARTICLE.name()), byIdDesc);
+        assertNotCollectionScan(Constants.COLLECTION_GALLERY, new Document("hash", "hash")
+                .append("status.status", Constants.GALLERY_STATUS_TYPE.ENABLE.name()), null);
+        assertNotCollectionScan(Constants.COLLECTION_GALLERY, new Document("status.status", Constants.GALLERY_STATUS_TYPE.ENABLE.name())
+                .append("_id", new Document("$lt", new ObjectId())), byIdDesc);
+    }
+
+    @Test
+    public void userQueries() {
+        assertNotCollectionScan(Constants.COLLECTION_USER, new Document("email", "test@jakduk.com"), null);
+        assertNotCollectionScan(Constants.COLLECTION_USER, new Document("username", "test"), null);
+        assertNotCollectionScan(Constants.COLLECTION_USER, new Document("providerId", Constants.ACCOUNT_TYPE.FACEBOOK.name())
+                .append("providerUserId", "1"), null);
+    }
+
+    private void assertNotCollectionScan(String collectionName, Document filter, Document sort) {
+        Document find = new Document("find", collectionName).append("filter", filter);
+
+        if (sort != null)
+            find.append("sort", sort);
+
+        Document explain = mongoTemplate.getDb().runCommand(new Document("explain", find).append("verbosity", "queryPlanner"));
+        Document winningPlan = explain.get("queryPlanner", Document.class).get("winningPlan", Document.class);
+
+        Assert.assertFalse(collectionName + " " + filter.toJson() + " does COLLSCAN. plan=" + winningPlan.toJson(),
+                hasCollectionScan(winningPlan));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Boolean hasCollectionScan(Document stage) {
+        if ("COLLSCAN".equals(stage.getString("stage")))
+            return true;
+
+        if (stage.get("inputStage") instanceof Document && hasCollectionScan(stage.get("inputStage", Document.class)))
+            return true;
+
+        if (stage.get("inputStages") instanceof List) {
+            for (Document inputStage : (List<Document>) stage.get("inputStages")) {
+                if (hasCollectionScan(inputStage))
+                    return true;
+            }
+        }
+
+        return false;
+    }
+
+}
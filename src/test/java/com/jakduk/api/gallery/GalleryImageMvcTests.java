@@ -0,0 +1,230 @@
+package com.jakduk.api.gallery;
+
+import com.jakduk.api.TestMvcConfig;
+import com.jakduk.api.common.Constants;
+import com.jakduk.api.common.util.UrlGenerationUtils;
+import com.jakduk.api.controller.DefaultViewController;
+import com.jakduk.api.model.db.Gallery;
+import com.jakduk.api.service.ArticleService;
+import com.jakduk.api.service.GalleryService;
+import com.jakduk.api.service.UserPictureService;
+import org.bson.types.ObjectId;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@RunWith(SpringRunner.class)
+@WebMvcTest(DefaultViewController.class)
+@Import({TestMvcConfig.class})
+public class GalleryImageMvcTests {
+
+    @Autowired
+    private MockMvc mvc;
+
+    @MockBean private GalleryService galleryService;
+    @MockBean private UserPictureService userPictureService;
+    @MockBean private ArticleService articleService;
+    @MockBean private UrlGenerationUtils urlGenerationUtils;
+
+    @MockBean private UserDetailsService userDetailsService;
+
+    private Gallery gallery;
+    private Path imageFile;
+    private long lastModified;
+
+    @Before
+    public void setUp() throws Exception {
+        gallery = new Gallery();
+        gallery.setId("58b9050b807d714eaf50a111");
+        gallery.setContentType("image/png");
+        gallery.setHash("9a0364b9e99bb480dd25e1f0284c8555");
+
+        lastModified = new ObjectId(gallery.getId()).getDate().getTime();
+
+        imageFile = Files.createTempFile("gallery", ".png");
+        Files.write(imageFile, "0123456789".getBytes());
+
+        when(galleryService.findOneById(anyString()))
+                .thenReturn(gallery);
+
+        when(galleryService.getGalleryResource(eq(gallery), eq(Constants.IMAGE_TYPE.FULL), isNull()))
+                .thenReturn(new FileSystemResource(imageFile));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(imageFile);
+    }
+
+    @Test
+    @WithMockUser
+    public void getGalleryTest() throws Exception {
+        mvc.perform(get("/gallery/{id}", gallery.getId()))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("image/png"))
+                .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, 10L))
+                .andExpect(header().string(HttpHeaders.ACCEPT_RANGES, "bytes"))
+                .andExpect(header().string(HttpHeaders.ETAG, "\"9a0364b9e99bb480dd25e1f0284c8555-full\""))
+                .andExpect(header().dateValue(HttpHeaders.LAST_MODIFIED, lastModified))
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "max-age=31536000, public, immutable"))
+                .andExpect(content().bytes("0123456789".getBytes()));
+    }
+
+    @Test
+    @WithMockUser
+    public void getGalleryIfNoneMatchTest() throws Exception {
+        mvc.perform(get("/gallery/{id}", gallery.getId())
+                .header(HttpHeaders.IF_NONE_MATCH, "\"9a0364b9e99bb480dd25e1f0284c8555-full\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "max-age=31536000, public, immutable"));
+
+        // 파일은 열지 않는다.
+        verify(galleryService, never()).getGalleryResource(any(), any(), any());
+    }
+
+    @Test
+    @WithMockUser
+    public void getGalleryIfModifiedSinceTest() throws Exception {
+        mvc.perform(get("/gallery/{id}", gallery.getId())
+                .header(HttpHeaders.IF_MODIFIED_SINCE, DateTimeFormatter.RFC_1123_DATE_TIME.format(
+                        Instant.ofEpochMilli(lastModified).atZone(ZoneOffset.UTC))))
+                .andExpect(status().isNotModified());
+
+        // DB 도 조회하지 않는다.
+        verify(galleryService, never()).findOneById(anyString());
+    }
+
+    @Test
+    @WithMockUser
+    public void getGalleryThumbnailETagTest() throws Exception {
+        when(galleryService.getGalleryResource(eq(gallery), eq(Constants.IMAGE_TYPE.THUMBNAIL), isNull()))
+                .thenReturn(new FileSystemResource(imageFile));
+
+        // 같은 해시라도 원본과 썸네일의 ETag 는 다르다.
+        mvc.perform(get("/gallery/thumbnail/{id}", gallery.getId())
+                .header(HttpHeaders.IF_NONE_MATCH, "\"9a0364b9e99bb480dd25e1f0284c8555-full\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG,
+                        "\"9a0364b9e99bb480dd25e1f0284c8555-thumbnail-" + imageFile.toFile().lastModified() + "\""));
+    }
+
+    @Test
+    @WithMockUser
+    public void getRegeneratedGalleryThumbnailTest() throws Exception {
+        when(galleryService.getGalleryResource(eq(gallery), eq(Constants.IMAGE_TYPE.THUMBNAIL), isNull()))
+                .thenReturn(new FileSystemResource(imageFile));
+
+        String eTag = "\"9a0364b9e99bb480dd25e1f0284c8555-thumbnail-" + imageFile.toFile().lastModified() + "\"";
+
+        mvc.perform(get("/gallery/thumbnail/{id}", gallery.getId())
+                .header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "max-age=86400, public"));
+
+        // 다시 만들어 파일이 바뀌면 예전 ETag, ObjectId 시각의 If-Modified-Since 로는 304 가 나가지 않는다.
+        imageFile.toFile().setLastModified(imageFile.toFile().lastModified() + 60000);
+
+        mvc.perform(get("/gallery/thumbnail/{id}", gallery.getId())
+                .header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isOk());
+
+        mvc.perform(get("/gallery/thumbnail/{id}", gallery.getId())
+                .header(HttpHeaders.IF_MODIFIED_SINCE, DateTimeFormatter.RFC_1123_DATE_TIME.format(
+                        Instant.ofEpochMilli(lastModified).atZone(ZoneOffset.UTC))))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "max-age=86400, public"));
+    }
+
+    @Test
+    @WithMockUser
+    public void getGalleryRangeTest() throws Exception {
+        mvc.perform(get("/gallery/{id}", gallery.getId())
+                .header(HttpHeaders.RANGE, "bytes=2-5"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 2-5/10"))
+                .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, 4L))
+                .andExpect(content().bytes("2345".getBytes()));
+    }
+
+    @Test
+    @WithMockUser
+    public void getGalleryVariantTest() throws Exception {
+        when(galleryService.getGalleryResource(eq(gallery), eq(Constants.IMAGE_TYPE.FULL), eq(500)))
+                .thenReturn(new FileSystemResource(imageFile));
+
+        // 가로 길이는 단계로 올림되어 ETag 에 들어간다.
+        mvc.perform(get("/gallery/{id}", gallery.getId())
+                .param("w", "500"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"9a0364b9e99bb480dd25e1f0284c8555-w640\""));
+
+        mvc.perform(get("/gallery/{id}", gallery.getId())
+                .param("w", "0"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @WithMockUser
+    public void getGalleryBlobETagTest() throws Exception {
+        // 크기를 줄여 다른 blob 으로 옮긴 사진
+        gallery.setBlobId("5e884898da28047151d0e56f8dc62927");
+
+        mvc.perform(get("/gallery/{id}", gallery.getId())
+                .header(HttpHeaders.IF_NONE_MATCH, "\"9a0364b9e99bb480dd25e1f0284c8555-full\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"5e884898da28047151d0e56f8dc62927-full\""));
+    }
+
+    @Test
+    @WithMockUser
+    public void getProcessingGalleryTest() throws Exception {
+        gallery.setProcessing(true);
+
+        mvc.perform(get("/gallery/{id}", gallery.getId()))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(HttpHeaders.ETAG))
+                .andExpect(header().doesNotExist(HttpHeaders.LAST_MODIFIED))
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "no-cache"))
+                .andExpect(content().bytes("0123456789".getBytes()));
+    }
+
+    @Test
+    @WithMockUser
+    public void getGalleryVariantFallbackTest() throws Exception {
+        // 단계별 사진을 만들 차례를 얻지 못함
+        when(galleryService.getGalleryResource(eq(gallery), eq(Constants.IMAGE_TYPE.FULL), eq(500)))
+                .thenReturn(null);
+
+        mvc.perform(get("/gallery/{id}", gallery.getId())
+                .param("w", "500"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "no-store"))
+                .andExpect(content().bytes("0123456789".getBytes()));
+    }
+
+}
@@ -0,0 +1,97 @@
+package com.jakduk.api.gallery;
+
+import com.jakduk.api.common.gallery.GalleryImageProcessor;
+import com.jakduk.api.configuration.JakdukProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class GalleryImageProcessorTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private GalleryImageProcessor processor;
+
+    @Before
+    public void setUp() {
+        JakdukProperties.GalleryImage galleryImageProperties = new JakdukProperties().new GalleryImage();
+        galleryImageProperties.setThreads(1);
+        galleryImageProperties.setQueueCapacity(1);
+
+        meterRegistry = new SimpleMeterRegistry();
+        processor = new GalleryImageProcessor(galleryImageProperties, meterRegistry);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        processor.shutdown();
+    }
+
+    @Test
+    public void awaitUntilProcessed() {
+        AtomicReference<String> processed = new AtomicReference<>();
+
+        processor.submit("g1", () -> {
+            sleep(200);
+            processed.set("g1");
+        });
+
+        processor.await("g1");
+
+        Assert.assertEquals("g1", processed.get());
+        Assert.assertEquals(1L, meterRegistry.get("jakduk.gallery.image.processing").tag("result", "success").timer().count());
+    }
+
+    @Test
+    public void callerRunsWhenQueueIsFull() throws Exception {
+        CountDownLatch blocker = new CountDownLatch(1);
+        AtomicReference<String> thirdThread = new AtomicReference<>();
+
+        // 스레드 1개가 잡고 있고, 대기열 1칸이 찬다.
+        processor.submit("g1", () -> await(blocker));
+        processor.submit("g2", () -> {});
+
+        Assert.assertEquals(Integer.valueOf(1), processor.getQueueSize());
+        Assert.assertEquals(1D, meterRegistry.get("jakduk.gallery.image.queue").gauge().value(), 0D);
+
+        // 꽉 찼으니 호출한 스레드에서 처리된다.
+        processor.submit("g3", () -> thirdThread.set(Thread.currentThread().getName()));
+
+        Assert.assertEquals(Thread.currentThread().getName(), thirdThread.get());
+
+        blocker.countDown();
+    }
+
+    @Test
+    public void failureIsRecorded() {
+        processor.submit("g1", () -> {
+            throw new IllegalStateException("broken image");
+        });
+
+        processor.await("g1");
+
+        Assert.assertEquals(1L, meterRegistry.get("jakduk.gallery.image.processing").tag("result", "failure").timer().count());
+    }
+
+    private void sleep(long millis) {
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
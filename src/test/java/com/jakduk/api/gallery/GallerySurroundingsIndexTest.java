@@ -0,0 +1,77 @@
+package com.jakduk.api.gallery;
+
+import com.jakduk.api.common.Constants;
+import com.jakduk.api.common.gallery.GallerySurroundingsIndex;
+import com.jakduk.api.repository.gallery.GalleryRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.types.ObjectId;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.mockito.Mockito.*;
+
+public class GallerySurroundingsIndexTest {
+
+    private GalleryRepository galleryRepository;
+    private GallerySurroundingsIndex index;
+    private List<ObjectId> ids;
+
+    @Before
+    public void setUp() {
+        // 오래된 순서
+        ids = IntStream.range(0, 10)
+                .mapToObj(i -> new ObjectId(new Date(1500000000000L + i * 10000L)))
+                .collect(Collectors.toList());
+
+        galleryRepository = mock(GalleryRepository.class);
+        when(galleryRepository.findIdsByStatus(Constants.GALLERY_STATUS_TYPE.ENABLE)).thenReturn(new ArrayList<>(ids));
+
+        index = new GallerySurroundingsIndex(galleryRepository, new SimpleMeterRegistry());
+    }
+
+    @Test
+    public void nearestFirst() {
+        String viewing = ids.get(5).toString();
+
+        Assert.assertEquals(Arrays.asList(ids.get(6).toString(), ids.get(7).toString()), index.findNewerIds(viewing, 2));
+        Assert.assertEquals(Arrays.asList(ids.get(4).toString(), ids.get(3).toString()), index.findOlderIds(viewing, 2));
+
+        // 처음 찾을 때 한번만 읽는다.
+        verify(galleryRepository, times(1)).findIdsByStatus(Constants.GALLERY_STATUS_TYPE.ENABLE);
+    }
+
+    @Test
+    public void edges() {
+        Assert.assertTrue(index.findNewerIds(ids.get(9).toString(), 5).isEmpty());
+        Assert.assertEquals(9, index.findOlderIds(ids.get(9).toString(), 100).size());
+    }
+
+    @Test
+    public void addAndRemove() {
+        index.refresh();
+
+        ObjectId newest = new ObjectId();
+        index.add(newest.toString());
+        index.remove(ids.get(8).toString());
+
+        Assert.assertEquals(Arrays.asList(ids.get(9).toString(), newest.toString()), index.findNewerIds(ids.get(7).toString(), 5));
+        Assert.assertEquals(Integer.valueOf(10), index.size());
+    }
+
+    @Test
+    public void viewingGalleryNotInIndex() {
+        ObjectId temp = new ObjectId(new Date(1500000045000L));
+
+        Assert.assertEquals(Arrays.asList(ids.get(5).toString()), index.findNewerIds(temp.toString(), 1));
+        Assert.assertEquals(Arrays.asList(ids.get(4).toString()), index.findOlderIds(temp.toString(), 1));
+    }
+
+}
@@ -0,0 +1,105 @@
+package com.jakduk.api.gallery;
+
+import com.jakduk.api.common.gallery.GalleryVariantGenerator;
+import com.jakduk.api.configuration.JakdukProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+public class GalleryVariantGeneratorTest {
+
+    private JakdukProperties.GalleryImage galleryImageProperties;
+    private SimpleMeterRegistry meterRegistry;
+    private GalleryVariantGenerator generator;
+    private Path imageFilePath;
+
+    @Before
+    public void setUp() throws Exception {
+        galleryImageProperties = new JakdukProperties().new GalleryImage();
+        galleryImageProperties.setThreads(2);
+
+        meterRegistry = new SimpleMeterRegistry();
+        generator = new GalleryVariantGenerator(galleryImageProperties, meterRegistry);
+
+        imageFilePath = Files.createTempDirectory("jakduk").resolve("58b9050b807d714eaf50a111.png");
+        ImageIO.write(new BufferedImage(1000, 500, BufferedImage.TYPE_INT_RGB), "png", imageFilePath.toFile());
+    }
+
+    @Test
+    public void toBucketWidth() {
+        Assert.assertEquals(Integer.valueOf(320), GalleryVariantGenerator.toBucketWidth(1));
+        Assert.assertEquals(Integer.valueOf(640), GalleryVariantGenerator.toBucketWidth(640));
+        Assert.assertEquals(Integer.valueOf(960), GalleryVariantGenerator.toBucketWidth(641));
+        Assert.assertEquals(Integer.valueOf(1920), GalleryVariantGenerator.toBucketWidth(5000));
+    }
+
+    @Test
+    public void generateNextToOriginal() throws Exception {
+        Path variant = generator.getVariant(imageFilePath, "58b9050b807d714eaf50a111", "png", 640);
+
+        Assert.assertEquals(imageFilePath.resolveSibling("58b9050b807d714eaf50a111-w640.png"), variant);
+        Assert.assertEquals(640, ImageIO.read(variant.toFile()).getWidth());
+
+        // 원본보다 큰 단계는 원본을 쓴다.
+        Assert.assertEquals(imageFilePath, generator.getVariant(imageFilePath, "58b9050b807d714eaf50a111", "png", 1280));
+
+        generator.removeVariants(imageFilePath, "58b9050b807d714eaf50a111", "png");
+
+        Assert.assertTrue(Files.notExists(variant));
+        Assert.assertTrue(Files.exists(imageFilePath));
+    }
+
+    @Test
+    public void concurrentRequestsGenerateOnce() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Path>> futures = new ArrayList<>();
+
+        for (int i = 0; i < 8; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                return generator.getVariant(imageFilePath, "58b9050b807d714eaf50a111", "png", 320);
+            }));
+        }
+
+        start.countDown();
+
+        for (Future<Path> future : futures)
+            Assert.assertEquals(imageFilePath.resolveSibling("58b9050b807d714eaf50a111-w320.png"), future.get(10, TimeUnit.SECONDS));
+
+        executor.shutdown();
+
+        Assert.assertEquals(1D, meterRegistry.get("jakduk.gallery.variant").tag("result", "generated").counter().count(), 0D);
+    }
+
+    @Test
+    public void skipGenerationWhenNoPermit() throws Exception {
+        galleryImageProperties.setThreads(1);
+        galleryImageProperties.setAwaitMillis(0L);
+        generator = new GalleryVariantGenerator(galleryImageProperties, meterRegistry);
+
+        // 다른 variant 를 만드는 중
+        Semaphore permits = (Semaphore) ReflectionTestUtils.getField(generator, "permits");
+        permits.acquire();
+
+        Assert.assertNull(generator.getVariant(imageFilePath, "58b9050b807d714eaf50a111", "png", 640));
+        Assert.assertTrue(Files.notExists(imageFilePath.resolveSibling("58b9050b807d714eaf50a111-w640.png")));
+        Assert.assertEquals(1D, meterRegistry.get("jakduk.gallery.variant").tag("result", "fallback").counter().count(), 0D);
+
+        permits.release();
+
+        Assert.assertEquals(imageFilePath.resolveSibling("58b9050b807d714eaf50a111-w640.png"),
+                generator.getVariant(imageFilePath, "58b9050b807d714eaf50a111", "png", 640));
+    }
+
+}
@@ -0,0 +1,203 @@
+package com.jakduk.api.gallery;
+
+import com.jakduk.api.common.gallery.ImageBlobStore;
+import com.jakduk.api.common.util.FileUtils;
+import com.jakduk.api.configuration.JakdukProperties;
+import com.jakduk.api.model.db.ImageBlob;
+import com.jakduk.api.repository.blob.ImageBlobRepository;
+import org.apache.commons.codec.binary.Hex;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Date;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.*;
+
+import static org.mockito.ArgumentMatchers.*;
+
+public class ImageBlobStoreTest {
+
+    private final Map<String, Integer> references = new ConcurrentHashMap<>();
+    private final Map<String, Date> deletingAt = new ConcurrentHashMap<>();
+
+    private ImageBlobRepository imageBlobRepository;
+    private ImageBlobStore imageBlobStore;
+
+    @Before
+    public void setUp() throws Exception {
+        JakdukProperties.Storage storageProperties = new JakdukProperties().new Storage();
+        storageProperties.setBlobPath(Files.createTempDirectory("jakduk").toString());
+
+        // 참조 수만 세는 저장소
+        imageBlobRepository = Mockito.mock(ImageBlobRepository.class);
+
+        Mockito.when(imageBlobRepository.increaseReferences(anyString(), any(), any())).thenAnswer(invocation ->
+                this.toImageBlob(invocation.getArgument(0), references.merge(invocation.getArgument(0), 1, Integer::sum)));
+
+        Mockito.when(imageBlobRepository.decreaseReferences(anyString())).thenAnswer(invocation -> {
+            String id = invocation.getArgument(0);
+            return references.containsKey(id) ? this.toImageBlob(id, references.merge(id, -1, Integer::sum)) : null;
+        });
+
+        Mockito.when(imageBlobRepository.markDeleting(anyString())).thenAnswer(invocation -> {
+            String id = invocation.getArgument(0);
+            return references.get(id) == 0 && deletingAt.putIfAbsent(id, new Date()) == null;
+        });
+
+        Mockito.doAnswer(invocation -> deletingAt.remove(invocation.getArgument(0)))
+                .when(imageBlobRepository).unmarkDeleting(anyString());
+
+        Mockito.when(imageBlobRepository.deleteIfUnreferenced(anyString())).thenAnswer(invocation -> {
+            String id = invocation.getArgument(0);
+
+            if (! references.remove(id, 0))
+                return false;
+
+            deletingAt.remove(id);
+            return true;
+        });
+
+        Mockito.when(imageBlobRepository.findById(anyString())).thenAnswer(invocation -> {
+            String id = invocation.getArgument(0);
+            return references.containsKey(id) ? Optional.of(this.toImageBlob(id, references.get(id))) : Optional.empty();
+        });
+
+        imageBlobStore = new ImageBlobStore(imageBlobRepository, storageProperties);
+    }
+
+    @Test
+    public void sameContentIsStoredOnce() throws Exception {
+        FileUtils.FileInfo first = this.writeTempFile(new byte[]{1, 2, 3});
+        FileUtils.FileInfo second = this.writeTempFile(new byte[]{1, 2, 3});
+
+        Assert.assertEquals(first.getHash(), second.getHash());
+
+        Assert.assertTrue(imageBlobStore.acquire(first));
+        Assert.assertFalse(imageBlobStore.acquire(second));
+
+        Path filePath = imageBlobStore.getFilePath(first.getHash());
+
+        Assert.assertArrayEquals(new byte[]{1, 2, 3}, Files.readAllBytes(filePath));
+        Assert.assertTrue(Files.notExists(first.getPath()));
+        Assert.assertEquals(Integer.valueOf(2), references.get(first.getHash()));
+
+        Files.deleteIfExists(second.getPath());
+    }
+
+    @Test
+    public void filesAreDeletedWithLastReference() throws Exception {
+        FileUtils.FileInfo first = this.writeTempFile(new byte[]{4, 5, 6});
+        FileUtils.FileInfo second = this.writeTempFile(new byte[]{4, 5, 6});
+
+        imageBlobStore.acquire(first);
+        imageBlobStore.acquire(second);
+
+        String blobId = first.getHash();
+        Path filePath = imageBlobStore.getFilePath(blobId);
+        Path thumbnailFilePath = imageBlobStore.getDerivedFilePath(blobId, "thumbnail", "png");
+        Files.write(thumbnailFilePath, new byte[]{7});
+
+        imageBlobStore.release(blobId);
+
+        Assert.assertTrue(Files.exists(filePath));
+        Assert.assertTrue(Files.exists(thumbnailFilePath));
+
+        imageBlobStore.release(blobId);
+
+        Assert.assertTrue(Files.notExists(filePath));
+        Assert.assertTrue(Files.notExists(thumbnailFilePath));
+        Assert.assertFalse(references.containsKey(blobId));
+
+        Files.deleteIfExists(second.getPath());
+    }
+
+    @Test
+    public void acquireWhileAnotherServerIsDeleting() throws Exception {
+        FileUtils.FileInfo first = this.writeTempFile(new byte[]{8, 9});
+        String blobId = first.getHash();
+        Path filePath = imageBlobStore.getFilePath(blobId);
+
+        imageBlobStore.acquire(first);
+
+        // 다른 서버가 마지막 참조를 줄이고 지우는 중으로 표시했다.
+        references.put(blobId, 0);
+        deletingAt.put(blobId, new Date());
+
+        FileUtils.FileInfo second = this.writeTempFile(new byte[]{8, 9});
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<Boolean> acquired = executor.submit(() -> imageBlobStore.acquire(second));
+
+        TimeUnit.MILLISECONDS.sleep(200);
+        Assert.assertFalse(acquired.isDone());
+
+        // 기다리는 동안 같은 잠금 줄의 다른 내용은 막히지 않는다.
+        byte[] other = this.findSameLockContent(blobId);
+        FileUtils.FileInfo third = this.writeTempFile(other);
+        Assert.assertTrue(imageBlobStore.acquire(third));
+        Assert.assertFalse(acquired.isDone());
+
+        // 다른 서버가 파일을 다 지웠지만 그 사이 참조가 늘어 표시만 뗀다.
+        Files.delete(filePath);
+        deletingAt.remove(blobId);
+
+        // 지워진 파일을 다시 쓴다.
+        Assert.assertTrue(acquired.get(5, TimeUnit.SECONDS));
+        Assert.assertArrayEquals(new byte[]{8, 9}, Files.readAllBytes(filePath));
+        Assert.assertEquals(Integer.valueOf(1), references.get(blobId));
+
+        executor.shutdown();
+    }
+
+    @Test
+    public void keepFilesReacquiredBeforeMarkedDeleting() throws Exception {
+        FileUtils.FileInfo first = this.writeTempFile(new byte[]{10});
+        String blobId = first.getHash();
+
+        imageBlobStore.acquire(first);
+
+        // 줄이는 사이 다른 서버가 참조를 늘렸다.
+        Mockito.when(imageBlobRepository.decreaseReferences(blobId)).thenAnswer(invocation -> {
+            references.put(blobId, 1);
+            return this.toImageBlob(blobId, 0);
+        });
+
+        imageBlobStore.release(blobId);
+
+        Assert.assertTrue(Files.exists(imageBlobStore.getFilePath(blobId)));
+        Assert.assertFalse(deletingAt.containsKey(blobId));
+    }
+
+    // ImageBlobStore 의 잠금 줄 수(64)로 나눈 나머지가 같은 다른 내용을 찾는다.
+    private byte[] findSameLockContent(String blobId) throws Exception {
+        for (int i = 0; ; i++) {
+            byte[] bytes = ByteBuffer.allocate(4).putInt(i).array();
+            String hash = Hex.encodeHexString(MessageDigest.getInstance("SHA-256").digest(bytes));
+
+            if (! hash.equals(blobId) && Math.floorMod(hash.hashCode(), 64) == Math.floorMod(blobId.hashCode(), 64))
+                return bytes;
+        }
+    }
+
+    private FileUtils.FileInfo writeTempFile(byte[] bytes) throws Exception {
+        return FileUtils.writeTempFile(imageBlobStore.getTempDirPath(), new ByteArrayInputStream(bytes), "image/png");
+    }
+
+    private ImageBlob toImageBlob(String id, Integer references) {
+        ImageBlob imageBlob = new ImageBlob();
+        imageBlob.setId(id);
+        imageBlob.setReferences(references);
+        imageBlob.setDeletingAt(deletingAt.get(id));
+
+        return imageBlob;
+    }
+
+}
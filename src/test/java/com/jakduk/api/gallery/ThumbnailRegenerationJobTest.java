@@ -0,0 +1,176 @@
+package com.jakduk.api.gallery;
+
+import com.jakduk.api.common.Constants;
+import com.jakduk.api.common.gallery.GalleryFileResolver;
+import com.jakduk.api.common.gallery.ImageBlobStore;
+import com.jakduk.api.common.gallery.ThumbnailRegenerationJob;
+import com.jakduk.api.configuration.JakdukProperties;
+import com.jakduk.api.model.db.Gallery;
+import com.jakduk.api.model.db.JobCheckpoint;
+import com.jakduk.api.repository.JobCheckpointRepository;
+import com.jakduk.api.repository.blob.ImageBlobRepository;
+import com.jakduk.api.repository.gallery.GalleryRepository;
+import com.jakduk.api.restcontroller.vo.admin.ThumbnailRegenerationResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.types.ObjectId;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.*;
+
+public class ThumbnailRegenerationJobTest {
+
+    private GalleryRepository galleryRepository;
+    private JobCheckpointRepository jobCheckpointRepository;
+    private SimpleMeterRegistry meterRegistry;
+    private ThumbnailRegenerationJob job;
+    private Path rootPath;
+
+    private Gallery gallery1;
+    private Gallery gallery2;
+    private Gallery gallery3;
+
+    @Before
+    public void setUp() throws Exception {
+        rootPath = Files.createTempDirectory("jakduk");
+
+        JakdukProperties.Storage storageProperties = new JakdukProperties().new Storage();
+        storageProperties.setImagePath(rootPath.resolve("image").toString());
+        storageProperties.setThumbnailPath(rootPath.resolve("thumbnail").toString());
+        storageProperties.setBlobPath(rootPath.resolve("blob").toString());
+
+        JakdukProperties.ThumbnailRegeneration thumbnailRegenerationProperties = new JakdukProperties().new ThumbnailRegeneration();
+        thumbnailRegenerationProperties.setBatchSize(2);
+        thumbnailRegenerationProperties.setParallelism(2);
+
+        galleryRepository = Mockito.mock(GalleryRepository.class);
+        jobCheckpointRepository = Mockito.mock(JobCheckpointRepository.class);
+        meterRegistry = new SimpleMeterRegistry();
+
+        GalleryFileResolver galleryFileResolver = new GalleryFileResolver(storageProperties,
+                new ImageBlobStore(Mockito.mock(ImageBlobRepository.class), storageProperties));
+
+        job = new ThumbnailRegenerationJob(galleryRepository, jobCheckpointRepository, galleryFileResolver,
+                thumbnailRegenerationProperties, meterRegistry);
+
+        // 초 단위라서 10초씩 떨어뜨린다.
+        long now = System.currentTimeMillis();
+        gallery1 = this.newGallery(new ObjectId(new Date(now - 30000)), true);
+        gallery2 = this.newGallery(new ObjectId(new Date(now - 20000)), true);
+        gallery3 = this.newGallery(new ObjectId(new Date(now - 10000)), false);
+
+        Mockito.when(galleryRepository.findContentTypeByIdGreaterThan(isNull(), eq(2)))
+                .thenReturn(Arrays.asList(gallery1, gallery2));
+        Mockito.when(galleryRepository.findContentTypeByIdGreaterThan(eq(new ObjectId(gallery2.getId())), eq(2)))
+                .thenReturn(Collections.singletonList(gallery3));
+        Mockito.when(galleryRepository.findContentTypeByIdGreaterThan(eq(new ObjectId(gallery3.getId())), eq(2)))
+                .thenReturn(Collections.emptyList());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        job.shutdown();
+    }
+
+    @Test
+    public void regenerateAll() throws Exception {
+        job.start(50, 40);
+
+        ThumbnailRegenerationResponse status = this.awaitFinished();
+
+        Assert.assertEquals(Constants.BATCH_JOB_STATUS.COMPLETED, status.getStatus());
+        Assert.assertEquals(gallery3.getId(), status.getLastId());
+        Assert.assertEquals(Long.valueOf(2), status.getProcessed());
+        Assert.assertEquals(Long.valueOf(1), status.getSkipped());
+        Assert.assertEquals(Long.valueOf(0), status.getFailed());
+
+        BufferedImage thumbnail = ImageIO.read(this.getThumbnailPath(gallery1).toFile());
+
+        Assert.assertEquals(50, thumbnail.getWidth());
+        Assert.assertEquals(40, thumbnail.getHeight());
+        Assert.assertTrue(Files.exists(this.getThumbnailPath(gallery2)));
+
+        Assert.assertEquals(2D, meterRegistry.get("jakduk.thumbnail.regeneration").tag("result", "success").counter().count(), 0D);
+    }
+
+    @Test
+    public void resumeFromCheckpoint() throws Exception {
+        JobCheckpoint checkpoint = new JobCheckpoint();
+        checkpoint.setId(ThumbnailRegenerationJob.JOB_NAME);
+        checkpoint.setStatus(Constants.BATCH_JOB_STATUS.STOPPED);
+        checkpoint.setLastId(gallery2.getId());
+        checkpoint.setWidth(50);
+        checkpoint.setHeight(40);
+        checkpoint.setProcessed(2L);
+        checkpoint.setFailed(0L);
+        checkpoint.setSkipped(0L);
+
+        Mockito.when(jobCheckpointRepository.findById(ThumbnailRegenerationJob.JOB_NAME)).thenReturn(Optional.of(checkpoint));
+
+        job.resume();
+
+        ThumbnailRegenerationResponse status = this.awaitFinished();
+
+        // 저장된 위치 다음부터 읽어서, 앞의 사진은 다시 만들지 않는다.
+        Mockito.verify(galleryRepository, Mockito.never()).findContentTypeByIdGreaterThan(isNull(), anyInt());
+        Assert.assertTrue(Files.notExists(this.getThumbnailPath(gallery1)));
+
+        Assert.assertEquals(Constants.BATCH_JOB_STATUS.COMPLETED, status.getStatus());
+        Assert.assertEquals(Long.valueOf(2), status.getProcessed());
+        Assert.assertEquals(Long.valueOf(1), status.getSkipped());
+    }
+
+    private ThumbnailRegenerationResponse awaitFinished() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        ThumbnailRegenerationResponse status = job.getStatus();
+
+        while (status.getStatus() == Constants.BATCH_JOB_STATUS.RUNNING && System.currentTimeMillis() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(50);
+            status = job.getStatus();
+        }
+
+        return status;
+    }
+
+    private Gallery newGallery(ObjectId id, Boolean withImage) throws Exception {
+        Gallery gallery = new Gallery();
+        gallery.setId(id.toString());
+        gallery.setContentType("image/png");
+
+        if (withImage) {
+            Path imageFilePath = this.getDatePath("image", gallery).resolve(gallery.getId() + ".png");
+            Files.createDirectories(imageFilePath.getParent());
+            ImageIO.write(new BufferedImage(200, 100, BufferedImage.TYPE_INT_RGB), "png", imageFilePath.toFile());
+        }
+
+        return gallery;
+    }
+
+    private Path getThumbnailPath(Gallery gallery) {
+        return this.getDatePath("thumbnail", gallery).resolve(gallery.getId() + ".png");
+    }
+
+    private Path getDatePath(String type, Gallery gallery) {
+        LocalDate localDate = new ObjectId(gallery.getId()).getDate().toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
+
+        return Paths.get(rootPath.resolve(type).toString(), String.valueOf(localDate.getYear()),
+                String.valueOf(localDate.getMonthValue()), String.valueOf(localDate.getDayOfMonth()));
+    }
+
+}
@@ -0,0 +1,176 @@
+package com.jakduk.api.rabbitmq;
+
+import com.jakduk.api.common.rabbitmq.MessageBatches;
+import com.jakduk.api.common.rabbitmq.OutboxRelay;
+import com.jakduk.api.configuration.JakdukProperties;
+import com.jakduk.api.configuration.rabbitmq.RabbitMQ;
+import com.jakduk.api.model.db.OutboxEvent;
+import com.jakduk.api.repository.outbox.OutboxEventRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.*;
+
+public class OutboxRelayTest {
+
+    private OutboxEventRepository outboxEventRepository;
+    private RabbitTemplate rabbitTemplate;
+    private RabbitMQ elasticsearchQueue;
+    private OutboxRelay outboxRelay;
+
+    // broker 가 받은 메시지. 이 routing key 로 보낸 것은 nack 한다.
+    private final List<Message> received = new ArrayList<>();
+    private String nackRoutingKey;
+
+    // deleteByIds 로 지운 ID 들
+    @Captor
+    private ArgumentCaptor<Collection<String>> deleted;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+
+        elasticsearchQueue = new RabbitMQ();
+        elasticsearchQueue.setEnabled(true);
+        elasticsearchQueue.setBatchSize(2);
+        elasticsearchQueue.setConsumerBatchEnabled(true);
+
+        JakdukProperties.Rabbitmq rabbitmqProperties = new JakdukProperties().new Rabbitmq();
+        rabbitmqProperties.setExchangeName("jakduk-test");
+        rabbitmqProperties.getQueues().put("elasticsearch", elasticsearchQueue);
+
+        JakdukProperties.OutboxRelay outboxRelayProperties = new JakdukProperties().new OutboxRelay();
+        outboxRelayProperties.setBatchSize(10);
+        outboxRelayProperties.setConfirmTimeoutMillis(100L);
+        outboxRelayProperties.setMaxAttempts(3);
+
+        outboxEventRepository = Mockito.mock(OutboxEventRepository.class);
+        rabbitTemplate = Mockito.mock(RabbitTemplate.class);
+
+        Mockito.doAnswer(invocation -> {
+            String routingKey = invocation.getArgument(1);
+            CorrelationData correlationData = invocation.getArgument(3);
+
+            received.add(invocation.getArgument(2));
+            correlationData.getFuture().set(new CorrelationData.Confirm(! routingKey.equals(nackRoutingKey), "rejected"));
+
+            return null;
+        }).when(rabbitTemplate).send(anyString(), anyString(), any(Message.class), any(CorrelationData.class));
+
+        outboxRelay = new OutboxRelay(outboxEventRepository, rabbitTemplate, outboxRelayProperties, rabbitmqProperties,
+                new SimpleMeterRegistry());
+    }
+
+    @Test
+    public void batchConsecutiveRoutingKeys() {
+        this.claim(this.newEvent("1", "index"), this.newEvent("2", "index"), this.newEvent("3", "index"), this.newEvent("4", "delete"));
+
+        outboxRelay.relay();
+
+        // index 3개는 2개, 1개로 묶고 delete 는 따로 보낸다.
+        Assert.assertEquals(3, received.size());
+        Assert.assertEquals(2, MessageBatches.split(received.get(0)).size());
+        Assert.assertEquals("{\"id\":\"3\"}", new String(MessageBatches.split(received.get(1)).get(0).getBody()));
+        Assert.assertEquals("{\"id\":\"4\"}", new String(received.get(2).getBody()));
+
+        Assert.assertEquals(Arrays.asList("1", "2", "3", "4"), this.deletedIds());
+        Mockito.verify(outboxEventRepository, Mockito.never()).retryLater(any(), any(), any());
+    }
+
+    @Test
+    public void retryFromFirstNackedBatch() {
+        nackRoutingKey = "delete";
+        this.claim(this.newEvent("1", "index"), this.newEvent("2", "delete"), this.newEvent("3", "index"));
+
+        outboxRelay.relay();
+
+        // 3 은 broker 가 받았어도 2 보다 먼저 색인되지 않게 함께 다시 보낸다. 실패 횟수는 2 만 늘린다.
+        Assert.assertEquals(Collections.singletonList("1"), this.deletedIds());
+
+        ArgumentCaptor<Date> nextAttemptAt = ArgumentCaptor.forClass(Date.class);
+        Mockito.verify(outboxEventRepository).retryLater(eq(Collections.singletonList("2")), nextAttemptAt.capture(), contains("rejected"));
+        Mockito.verify(outboxEventRepository).release(Collections.singletonList("3"));
+
+        Assert.assertTrue(nextAttemptAt.getValue().after(new Date()));
+    }
+
+    @Test
+    public void parkHeadAfterMaxAttempts() {
+        nackRoutingKey = "delete";
+        OutboxEvent failing = this.newEvent("1", "delete");
+        failing.setAttempts(2);
+        this.claim(failing, this.newEvent("2", "index"));
+
+        outboxRelay.relay();
+
+        // 계속 실패하는 맨 앞을 치워두고, 뒤의 이벤트는 다음에 바로 보낸다.
+        Assert.assertTrue(this.deletedIds().isEmpty());
+        Mockito.verify(outboxEventRepository).park(eq(Collections.singletonList("1")), contains("rejected"));
+        Mockito.verify(outboxEventRepository).release(Collections.singletonList("2"));
+        Mockito.verify(outboxEventRepository, Mockito.never()).retryLater(any(), any(), any());
+    }
+
+    @Test
+    public void retryWhenConfirmTimesOut() {
+        Mockito.doNothing().when(rabbitTemplate).send(anyString(), anyString(), any(Message.class), any(CorrelationData.class));
+        this.claim(this.newEvent("1", "index"));
+
+        outboxRelay.relay();
+
+        Assert.assertTrue(this.deletedIds().isEmpty());
+        Mockito.verify(outboxEventRepository).retryLater(eq(Collections.singletonList("1")), any(Date.class), eq("confirm timeout"));
+    }
+
+    @Test
+    public void keepEventsWhenQueueDisabled() {
+        elasticsearchQueue.setEnabled(false);
+
+        outboxRelay.relay();
+
+        Mockito.verifyZeroInteractions(outboxEventRepository, rabbitTemplate);
+    }
+
+    private void claim(OutboxEvent... outboxEvents) {
+        Mockito.when(outboxEventRepository.claim(anyString(), anyInt(), anyInt()))
+                .thenReturn(Arrays.asList(outboxEvents))
+                .thenReturn(Collections.emptyList());
+    }
+
+    private List<String> deletedIds() {
+        Mockito.verify(outboxEventRepository, Mockito.atLeast(0)).deleteByIds(deleted.capture());
+
+        List<String> ids = new ArrayList<>();
+        deleted.getAllValues().forEach(ids::addAll);
+
+        return ids;
+    }
+
+    private OutboxEvent newEvent(String id, String routingKey) {
+        OutboxEvent outboxEvent = new OutboxEvent();
+        outboxEvent.setId(id);
+        outboxEvent.setRoutingKey(routingKey);
+        outboxEvent.setPayload("{\"id\":\"" + id + "\"}");
+        outboxEvent.setAttempts(0);
+        outboxEvent.setCreatedAt(new Date());
+        outboxEvent.setNextAttemptAt(outboxEvent.getCreatedAt());
+
+        return outboxEvent;
+    }
+
+}
@@ -0,0 +1,263 @@
+package com.jakduk.api.search;
+
+import com.jakduk.api.common.elasticsearch.ElasticsearchBulkIndexer;
+import com.jakduk.api.configuration.JakdukProperties;
+import com.jakduk.api.configuration.rabbitmq.RabbitMQ;
+import com.rabbitmq.client.Channel;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.delete.DeleteRequest;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.index.IndexResponse;
+import org.elasticsearch.action.update.UpdateRequest;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.index.VersionType;
+import org.elasticsearch.index.engine.DocumentMissingException;
+import org.elasticsearch.index.engine.VersionConflictEngineException;
+import org.elasticsearch.index.shard.ShardId;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.amqp.core.AmqpTemplate;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.mockito.ArgumentMatchers.*;
+
+public class ElasticsearchBulkIndexerTest {
+
+    private Client client;
+    private AmqpTemplate amqpTemplate;
+    private Channel channel;
+    private SimpleMeterRegistry meterRegistry;
+    private ElasticsearchBulkIndexer elasticsearchBulkIndexer;
+
+    private final AtomicReference<BulkRequest> lastBulkRequest = new AtomicReference<>();
+
+    @Before
+    public void setUp() {
+        JakdukProperties.Elasticsearch elasticsearchProperties = new JakdukProperties().new Elasticsearch();
+        elasticsearchProperties.setBulkActions(2);
+        elasticsearchProperties.setBulkConcurrentRequests(0); // 부르는 쪽 스레드에서 바로 보낸다.
+        elasticsearchProperties.setBulkFlushIntervalSeconds(60);
+        elasticsearchProperties.setBulkSizeMb(5);
+
+        RabbitMQ elasticsearchQueue = new RabbitMQ();
+        elasticsearchQueue.setBindingQueueName("test.elasticsearch");
+        elasticsearchQueue.setDeadLetterQueueName("test.elasticsearch.dead-letter");
+
+        JakdukProperties.Rabbitmq rabbitmqProperties = new JakdukProperties().new Rabbitmq();
+        rabbitmqProperties.getQueues().put("elasticsearch", elasticsearchQueue);
+
+        client = Mockito.mock(Client.class);
+        amqpTemplate = Mockito.mock(AmqpTemplate.class);
+        channel = Mockito.mock(Channel.class);
+        meterRegistry = new SimpleMeterRegistry();
+
+        elasticsearchBulkIndexer = new ElasticsearchBulkIndexer(client, amqpTemplate, elasticsearchProperties,
+                rabbitmqProperties, meterRegistry);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        elasticsearchBulkIndexer.shutdown();
+    }
+
+    @Test
+    public void ackOnlySucceededItems() throws Exception {
+        this.failSecondItem();
+
+        Message first = this.newMessage("1");
+        Message second = this.newMessage("2");
+
+        elasticsearchBulkIndexer.add(this.newIndexRequest("1"), first, elasticsearchBulkIndexer.newDelivery(channel, 1L, 1));
+
+        // bulkActions 가 차기 전에는 보내지 않는다.
+        Mockito.verify(client, Mockito.never()).bulk(any(BulkRequest.class), any());
+
+        elasticsearchBulkIndexer.add(this.newIndexRequest("2"), second, elasticsearchBulkIndexer.newDelivery(channel, 2L, 1));
+
+        Assert.assertEquals(2, lastBulkRequest.get().numberOfActions());
+
+        Mockito.verify(channel).basicAck(1L, false);
+        Mockito.verify(amqpTemplate).send(eq(""), eq("test.elasticsearch.dead-letter"), eq(second));
+        Mockito.verify(channel).basicAck(2L, false);
+        Mockito.verify(channel, Mockito.never()).basicNack(anyLong(), anyBoolean(), anyBoolean());
+
+        Assert.assertEquals(1D, meterRegistry.get("jakduk.elasticsearch.indexing").tag("result", "success").counter().count(), 0D);
+        Assert.assertEquals(1D, meterRegistry.get("jakduk.elasticsearch.indexing").tag("result", "failure").counter().count(), 0D);
+        Assert.assertEquals(1L, meterRegistry.get("jakduk.elasticsearch.bulk").tag("result", "success").timer().count());
+        Assert.assertEquals(2L, meterRegistry.get("jakduk.elasticsearch.indexing.latency").timer().count());
+    }
+
+    @Test
+    public void deadLetterWholeBulkOnFailure() throws Exception {
+
+        Mockito.doAnswer(invocation -> {
+            ActionListener<BulkResponse> listener = invocation.getArgument(1);
+            listener.onFailure(new IllegalStateException("no node available"));
+            return null;
+        }).when(client).bulk(any(BulkRequest.class), any());
+
+        Message message = this.newMessage("3");
+
+        elasticsearchBulkIndexer.add(new DeleteRequest("board", "article", "3"), message, elasticsearchBulkIndexer.newDelivery(channel, 3L, 1));
+        elasticsearchBulkIndexer.flush();
+
+        Mockito.verify(amqpTemplate).send(eq(""), eq("test.elasticsearch.dead-letter"), eq(message));
+        Mockito.verify(channel).basicAck(3L, false);
+
+        Assert.assertEquals(1L, meterRegistry.get("jakduk.elasticsearch.bulk").tag("result", "failure").timer().count());
+    }
+
+    @Test
+    public void ackEmptyBatchRightAway() throws Exception {
+        // 본문이 빈 묶음은 나눠도 메시지가 없다.
+        elasticsearchBulkIndexer.newDelivery(channel, 8L, 0);
+
+        Mockito.verify(channel).basicAck(8L, false);
+    }
+
+    @Test
+    public void ackBatchOnceAfterAllItems() throws Exception {
+        this.failSecondItem();
+
+        Message first = this.newMessage("1");
+        Message second = this.newMessage("2");
+
+        // 묶음 하나로 받은 메시지 둘
+        ElasticsearchBulkIndexer.Delivery delivery = elasticsearchBulkIndexer.newDelivery(channel, 4L, 2);
+
+        elasticsearchBulkIndexer.add(this.newIndexRequest("1"), first, delivery);
+
+        Mockito.verify(channel, Mockito.never()).basicAck(anyLong(), anyBoolean());
+
+        elasticsearchBulkIndexer.add(this.newIndexRequest("2"), second, delivery);
+
+        // 실패한 메시지만 dead letter 큐로 옮기고, 묶음은 한번 ack 한다.
+        Mockito.verify(amqpTemplate).send(eq(""), eq("test.elasticsearch.dead-letter"), eq(second));
+        Mockito.verify(amqpTemplate, Mockito.never()).send(anyString(), anyString(), eq(first));
+        Mockito.verify(channel, Mockito.times(1)).basicAck(4L, false);
+    }
+
+    @Test
+    public void ackUpdateOfMissingDocument() throws Exception {
+
+        Mockito.doAnswer(invocation -> {
+            ActionListener<BulkResponse> listener = invocation.getArgument(1);
+            ShardId shardId = new ShardId("board", "_na_", 0);
+
+            listener.onResponse(new BulkResponse(new BulkItemResponse[] {
+                    new BulkItemResponse(0, DocWriteRequest.OpType.UPDATE,
+                            new BulkItemResponse.Failure("board", "comment", "5", new DocumentMissingException(shardId, "comment", "5")))
+            }, 10));
+            return null;
+        }).when(client).bulk(any(BulkRequest.class), any());
+
+        Message message = this.newMessage("5");
+
+        // 그 사이에 지워진 댓글의 글 정보 고치기
+        elasticsearchBulkIndexer.add(new UpdateRequest("board", "comment", "5").doc("{}", XContentType.JSON), message,
+                elasticsearchBulkIndexer.newDelivery(channel, 5L, 1));
+        elasticsearchBulkIndexer.flush();
+
+        Mockito.verify(amqpTemplate, Mockito.never()).send(anyString(), anyString(), any(Message.class));
+        Mockito.verify(channel).basicAck(5L, false);
+    }
+
+    @Test
+    public void ackOlderCopyToReindexing() throws Exception {
+
+        Mockito.doAnswer(invocation -> {
+            ActionListener<BulkResponse> listener = invocation.getArgument(1);
+            ShardId shardId = new ShardId("board_v2", "_na_", 0);
+
+            listener.onResponse(new BulkResponse(new BulkItemResponse[] {
+                    new BulkItemResponse(0, DocWriteRequest.OpType.DELETE,
+                            new BulkItemResponse.Failure("board_v2", "article", "6",
+                                    new VersionConflictEngineException(shardId, "article", "6", "current version is higher")))
+            }, 10));
+            return null;
+        }).when(client).bulk(any(BulkRequest.class), any());
+
+        Message message = this.newMessage("6");
+
+        // 재색인이 더 나중에 읽은 내용을 이미 넣었다.
+        elasticsearchBulkIndexer.add(new DeleteRequest("board_v2", "article", "6").versionType(VersionType.EXTERNAL).version(1L),
+                message, elasticsearchBulkIndexer.newDelivery(channel, 6L, 1));
+        elasticsearchBulkIndexer.flush();
+
+        Mockito.verify(amqpTemplate, Mockito.never()).send(anyString(), anyString(), any(Message.class));
+        Mockito.verify(channel).basicAck(6L, false);
+    }
+
+    @Test
+    public void deadLetterOnceWhenCopyAlsoFails() throws Exception {
+
+        Mockito.doAnswer(invocation -> {
+            ActionListener<BulkResponse> listener = invocation.getArgument(1);
+
+            listener.onResponse(new BulkResponse(new BulkItemResponse[] {
+                    new BulkItemResponse(0, DocWriteRequest.OpType.INDEX,
+                            new BulkItemResponse.Failure("board", "article", "7", new IllegalArgumentException("mapper_parsing_exception"))),
+                    new BulkItemResponse(1, DocWriteRequest.OpType.INDEX,
+                            new BulkItemResponse.Failure("board_v2", "article", "7", new IllegalArgumentException("mapper_parsing_exception")))
+            }, 10));
+            return null;
+        }).when(client).bulk(any(BulkRequest.class), any());
+
+        Message message = this.newMessage("7");
+
+        // 재색인 중이라 새 인덱스로 보내는 복사본도 함께 넣는다.
+        elasticsearchBulkIndexer.add(Arrays.asList(this.newIndexRequest("7"), this.newIndexRequest("7").index("board_v2")),
+                message, elasticsearchBulkIndexer.newDelivery(channel, 7L, 2));
+
+        Mockito.verify(amqpTemplate, Mockito.times(1)).send(eq(""), eq("test.elasticsearch.dead-letter"), eq(message));
+        Mockito.verify(channel, Mockito.times(1)).basicAck(7L, false);
+
+        Assert.assertEquals(1D, meterRegistry.get("jakduk.elasticsearch.indexing").tag("result", "failure").counter().count(), 0D);
+    }
+
+    // 첫번째는 성공, 두번째는 매핑이 맞지 않아 실패
+    private void failSecondItem() {
+        Mockito.doAnswer(invocation -> {
+            BulkRequest bulkRequest = invocation.getArgument(0);
+            ActionListener<BulkResponse> listener = invocation.getArgument(1);
+            lastBulkRequest.set(bulkRequest);
+
+            ShardId shardId = new ShardId("board", "_na_", 0);
+
+            BulkItemResponse[] items = new BulkItemResponse[] {
+                    new BulkItemResponse(0, DocWriteRequest.OpType.INDEX,
+                            new IndexResponse(shardId, "article", "1", 0, 1, 1, true)),
+                    new BulkItemResponse(1, DocWriteRequest.OpType.INDEX,
+                            new BulkItemResponse.Failure("board", "article", "2", new IllegalArgumentException("mapper_parsing_exception")))
+            };
+
+            listener.onResponse(new BulkResponse(items, 10));
+            return null;
+        }).when(client).bulk(any(BulkRequest.class), any());
+    }
+
+    private IndexRequest newIndexRequest(String id) {
+        return new IndexRequest("board", "article", id).source("{\"subject\":\"" + id + "\"}", XContentType.JSON);
+    }
+
+    private Message newMessage(String body) {
+        MessageProperties messageProperties = new MessageProperties();
+        messageProperties.setReceivedRoutingKey("test.elasticsearch.index-document-article");
+
+        return new Message(body.getBytes(), messageProperties);
+    }
+
+}
@@ -0,0 +1,210 @@
+package com.jakduk.api.search;
+
+import com.jakduk.api.common.elasticsearch.ElasticsearchBulkIndexer;
+import com.jakduk.api.common.elasticsearch.SearchReindexJob;
+import com.jakduk.api.common.elasticsearch.SearchResultCache;
+import com.jakduk.api.common.elasticsearch.SearchSuggester;
+import com.jakduk.api.common.util.ObjectMapperUtils;
+import com.jakduk.api.configuration.JakdukProperties;
+import com.jakduk.api.configuration.rabbitmq.RabbitMQ;
+import com.jakduk.api.listener.ElasticsearchListener;
+import com.jakduk.api.model.elasticsearch.EsArticle;
+import com.jakduk.api.service.SearchService;
+import com.rabbitmq.client.Channel;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.index.IndexResponse;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.index.shard.ShardId;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.AmqpTemplate;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.core.support.MessageBatch;
+import org.springframework.amqp.rabbit.core.support.SimpleBatchingStrategy;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+import static org.mockito.ArgumentMatchers.any;
+
+/**
+ * ElasticsearchListener 설정별 처리량. 브로커 대신 메모리 큐와 prefetch 만큼만 ack 안 된 메시지를 들고 있는 소비자를 쓰고,
+ * Elasticsearch 는 bulk 한번에 2ms + 항목당 10µs 걸린다고 본다.
+ *
+ * 오래 걸려서 -Dbenchmark=true 일 때만 돈다.
+ */
+public class ElasticsearchListenerBenchmarkTest {
+
+    private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+    private final String ROUTING_KEY = "bench.elasticsearch.index-document-article";
+    private final int MESSAGES = 5000;
+
+    private final ScheduledExecutorService elasticsearch = Executors.newScheduledThreadPool(4);
+
+    @Test
+    public void messagesPerSecond() throws Exception {
+        Assume.assumeTrue(Boolean.getBoolean("benchmark"));
+
+        // 배치 크기, 소비자 수, prefetch
+        int[][] settings = new int[][] {
+                {1, 1, 250},
+                {1, 3, 1000},
+                {100, 1, 100},
+                {100, 3, 100}
+        };
+
+        for (int[] setting : settings) {
+            double messagesPerSecond = this.run(setting[0], setting[1], setting[2]);
+
+            log.info("batchSize={}, concurrency={}, prefetch={} : {} messages/sec", setting[0], setting[1], setting[2],
+                    String.format("%.0f", messagesPerSecond));
+        }
+
+        elasticsearch.shutdown();
+    }
+
+    private double run(int batchSize, int concurrency, int prefetch) throws Exception {
+        JakdukProperties.Elasticsearch elasticsearchProperties = new JakdukProperties().new Elasticsearch();
+        elasticsearchProperties.setIndexBoard("bench_board");
+        elasticsearchProperties.setBulkActions(1000);
+        elasticsearchProperties.setBulkConcurrentRequests(2);
+        elasticsearchProperties.setBulkFlushIntervalSeconds(1);
+        elasticsearchProperties.setBulkSizeMb(50);
+
+        RabbitMQ elasticsearchQueue = new RabbitMQ();
+        elasticsearchQueue.setDeadLetterQueueName("bench.elasticsearch.dead-letter");
+
+        JakdukProperties.Rabbitmq rabbitmqProperties = new JakdukProperties().new Rabbitmq();
+        rabbitmqProperties.getQueues().put("elasticsearch", elasticsearchQueue);
+        rabbitmqProperties.getRoutingKeys().put("elasticsearch-index-document-article", ROUTING_KEY);
+
+        SearchService searchService = new SearchService();
+        ReflectionTestUtils.setField(searchService, "elasticsearchProperties", elasticsearchProperties);
+
+        ElasticsearchBulkIndexer elasticsearchBulkIndexer = new ElasticsearchBulkIndexer(this.newClient(),
+                Mockito.mock(AmqpTemplate.class), elasticsearchProperties, rabbitmqProperties, new SimpleMeterRegistry());
+
+        ElasticsearchListener elasticsearchListener = new ElasticsearchListener(rabbitmqProperties, searchService,
+                elasticsearchBulkIndexer, Mockito.mock(SearchReindexJob.class), Mockito.mock(SearchResultCache.class),
+                Mockito.mock(SearchSuggester.class));
+
+        BlockingQueue<Message> queue = this.newQueue(batchSize);
+        CountDownLatch acked = new CountDownLatch(queue.size());
+        ExecutorService consumers = Executors.newFixedThreadPool(concurrency);
+
+        long started = System.nanoTime();
+
+        for (int i = 0; i < concurrency; i++) {
+            consumers.submit(() -> {
+                Semaphore unacked = new Semaphore(prefetch);
+                Channel channel = this.newChannel(unacked, acked);
+                long deliveryTag = 0;
+                Message message;
+
+                while ((message = queue.poll()) != null) {
+                    unacked.acquireUninterruptibly();
+                    elasticsearchListener.receive(message, channel, ++deliveryTag, ROUTING_KEY);
+                }
+            });
+        }
+
+        Assert.assertTrue(acked.await(5, TimeUnit.MINUTES));
+        double elapsedSeconds = (System.nanoTime() - started) / 1_000_000_000D;
+
+        consumers.shutdown();
+        elasticsearchBulkIndexer.shutdown();
+
+        return MESSAGES / elapsedSeconds;
+    }
+
+    private BlockingQueue<Message> newQueue(int batchSize) throws Exception {
+        SimpleBatchingStrategy batchingStrategy = new SimpleBatchingStrategy(batchSize, Integer.MAX_VALUE, 1000);
+        BlockingQueue<Message> queue = new LinkedBlockingQueue<>();
+
+        for (int i = 0; i < MESSAGES; i++) {
+            EsArticle esArticle = new EsArticle();
+            esArticle.setId(String.valueOf(i));
+            esArticle.setSeq(i);
+            esArticle.setSubject("subject " + i);
+            esArticle.setContent("content " + i);
+
+            MessageProperties messageProperties = new MessageProperties();
+            messageProperties.setContentType(MessageProperties.CONTENT_TYPE_JSON);
+            Message message = new Message(ObjectMapperUtils.writeValueAsString(esArticle).getBytes(StandardCharsets.UTF_8),
+                    messageProperties);
+
+            if (batchSize == 1) {
+                queue.add(message);
+                continue;
+            }
+
+            MessageBatch batch = batchingStrategy.addToBatch("jakduk", ROUTING_KEY, message);
+
+            if (batch != null)
+                queue.add(batch.getMessage());
+        }
+
+        batchingStrategy.releaseBatches().forEach(batch -> queue.add(batch.getMessage()));
+
+        return queue;
+    }
+
+    private Client newClient() {
+        Client client = Mockito.mock(Client.class);
+        ShardId shardId = new ShardId("bench_board", "_na_", 0);
+
+        Mockito.doAnswer(invocation -> {
+            BulkRequest bulkRequest = invocation.getArgument(0);
+            ActionListener<BulkResponse> listener = invocation.getArgument(1);
+
+            List<DocWriteRequest<?>> requests = new ArrayList<>();
+            bulkRequest.requests().forEach(requests::add);
+            BulkItemResponse[] items = new BulkItemResponse[requests.size()];
+
+            for (int i = 0; i < items.length; i++) {
+                items[i] = new BulkItemResponse(i, DocWriteRequest.OpType.INDEX,
+                        new IndexResponse(shardId, "article", requests.get(i).id(), 0, 1, 1, true));
+            }
+
+            long latencyMicros = 2000 + 10L * items.length;
+            elasticsearch.schedule(() -> listener.onResponse(new BulkResponse(items, latencyMicros / 1000)),
+                    latencyMicros, TimeUnit.MICROSECONDS);
+
+            return null;
+        }).when(client).bulk(any(BulkRequest.class), any());
+
+        return client;
+    }
+
+    // ack 하면 prefetch 자리를 돌려준다.
+    private Channel newChannel(Semaphore unacked, CountDownLatch acked) {
+        Map<Long, Boolean> ackedTags = new ConcurrentHashMap<>();
+
+        return (Channel) Proxy.newProxyInstance(Channel.class.getClassLoader(), new Class<?>[]{Channel.class},
+                (proxy, method, args) -> {
+                    if ("basicAck".equals(method.getName()) && ackedTags.putIfAbsent((Long) args[0], true) == null) {
+                        unacked.release();
+                        acked.countDown();
+                    }
+
+                    return null;
+                });
+    }
+
+}
@@ -0,0 +1,187 @@
+package com.jakduk.api.search;
+
+import com.jakduk.api.common.elasticsearch.ElasticsearchBulkIndexer;
+import com.jakduk.api.common.elasticsearch.SearchReindexJob;
+import com.jakduk.api.common.elasticsearch.SearchResultCache;
+import com.jakduk.api.common.elasticsearch.SearchSuggester;
+import com.jakduk.api.configuration.JakdukProperties;
+import com.jakduk.api.listener.ElasticsearchListener;
+import com.jakduk.api.model.db.Article;
+import com.jakduk.api.repository.article.ArticleRepository;
+import com.jakduk.api.service.SearchService;
+import com.rabbitmq.client.Channel;
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.delete.DeleteRequest;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.update.UpdateRequest;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.mockito.ArgumentMatchers.*;
+
+public class ElasticsearchListenerTest {
+
+    private ElasticsearchBulkIndexer elasticsearchBulkIndexer;
+    private SearchResultCache searchResultCache;
+    private SearchSuggester searchSuggester;
+    private ArticleRepository articleRepository;
+    private ElasticsearchListener elasticsearchListener;
+    private Channel channel;
+
+    // 메시지 하나로 만든 요청들
+    @Captor
+    private ArgumentCaptor<List<DocWriteRequest<?>>> requests;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+
+        JakdukProperties.Elasticsearch elasticsearchProperties = new JakdukProperties().new Elasticsearch();
+        elasticsearchProperties.setIndexBoard("jakduk_test_board");
+
+        JakdukProperties.Rabbitmq rabbitmqProperties = new JakdukProperties().new Rabbitmq();
+        rabbitmqProperties.getRoutingKeys().put("elasticsearch-index-document-article", "test.elasticsearch.index-document-article");
+        rabbitmqProperties.getRoutingKeys().put("elasticsearch-delete-document-article", "test.elasticsearch.delete-document-article");
+        rabbitmqProperties.getRoutingKeys().put("elasticsearch-update-document-article-comment-parent",
+                "test.elasticsearch.update-document-article-comment-parent");
+
+        articleRepository = Mockito.mock(ArticleRepository.class);
+
+        SearchService searchService = new SearchService();
+        ReflectionTestUtils.setField(searchService, "elasticsearchProperties", elasticsearchProperties);
+        ReflectionTestUtils.setField(searchService, "articleRepository", articleRepository);
+
+        elasticsearchBulkIndexer = Mockito.mock(ElasticsearchBulkIndexer.class);
+        searchResultCache = Mockito.mock(SearchResultCache.class);
+        searchSuggester = Mockito.mock(SearchSuggester.class);
+        channel = Mockito.mock(Channel.class);
+
+        elasticsearchListener = new ElasticsearchListener(rabbitmqProperties, searchService, elasticsearchBulkIndexer,
+                Mockito.mock(SearchReindexJob.class), searchResultCache, searchSuggester);
+    }
+
+    @Test
+    public void routeToTypedRequest() {
+        Message index = this.newMessage("{\"id\":\"article01\",\"seq\":1,\"subject\":\"subject01\"}");
+        Message delete = this.newMessage("\"article02\"");
+
+        elasticsearchListener.receive(index, channel, 1L, "test.elasticsearch.index-document-article");
+        elasticsearchListener.receive(delete, channel, 2L, "test.elasticsearch.delete-document-article");
+
+        Mockito.verify(elasticsearchBulkIndexer, Mockito.times(2)).add(requests.capture(), any(Message.class), any());
+
+        IndexRequest indexRequest = (IndexRequest) requests.getAllValues().get(0).get(0);
+        Assert.assertEquals("jakduk_test_board", indexRequest.index());
+        Assert.assertEquals("article01", indexRequest.id());
+
+        DeleteRequest deleteRequest = (DeleteRequest) requests.getAllValues().get(1).get(0);
+        Assert.assertEquals("article02", deleteRequest.id());
+
+        Mockito.verify(searchResultCache, Mockito.times(2)).invalidate("jakduk_test_board");
+
+        Mockito.verify(searchSuggester).putArticle("article01", "subject01");
+        Mockito.verify(searchSuggester).removeArticle("article02");
+    }
+
+    @Test
+    public void routeCommentParentUpdate() {
+        // 메시지를 보낸 뒤에 글이 지워졌다. 요청에는 Mongo 에 있는 글 정보를 넣는다.
+        Message update = this.newMessage("{\"ids\":[\"comment01\",\"comment02\"],\"article\":{\"id\":\"article01\",\"seq\":1,\"board\":\"FREE\",\"subject\":\"subject01\"}}");
+
+        Article deleted = new Article();
+        deleted.setId("article01");
+        deleted.setSeq(1);
+        deleted.setBoard("FREE");
+        Mockito.when(articleRepository.findParentsByIdIn(Collections.singletonList("article01"))).thenReturn(Collections.singletonList(deleted));
+
+        elasticsearchListener.receive(update, channel, 1L, "test.elasticsearch.update-document-article-comment-parent");
+
+        Mockito.verify(elasticsearchBulkIndexer).add(requests.capture(), eq(update), any());
+        Mockito.verify(elasticsearchBulkIndexer).newDelivery(channel, 1L, 2);
+
+        // 댓글이 여럿이어도 글은 한번만 읽는다.
+        Mockito.verify(articleRepository).findParentsByIdIn(anyList());
+
+        Assert.assertEquals(2, requests.getValue().size());
+
+        for (int i = 0; i < 2; i++) {
+            UpdateRequest updateRequest = (UpdateRequest) requests.getValue().get(i);
+            Assert.assertEquals("comment0" + (i + 1), updateRequest.id());
+            Assert.assertEquals("article01", updateRequest.parent());
+
+            // 부분 문서로 합치지 않고 글 정보를 통째로 바꾼다.
+            Map<?, ?> article = (Map<?, ?>) updateRequest.script().getParams().get("article");
+            Assert.assertEquals("FREE", article.get("board"));
+            Assert.assertFalse(article.containsKey("subject"));
+            Assert.assertNull(updateRequest.doc());
+        }
+    }
+
+    @Test
+    public void routeLegacyCommentParentUpdate() {
+        // 예전 서버는 댓글마다 EsComment 를 보냈다.
+        Message update = this.newMessage("{\"id\":\"comment01\",\"article\":{\"id\":\"article01\",\"seq\":1,\"board\":\"FREE\"}}");
+
+        elasticsearchListener.receive(update, channel, 1L, "test.elasticsearch.update-document-article-comment-parent");
+
+        Mockito.verify(elasticsearchBulkIndexer).add(requests.capture(), eq(update), any());
+
+        UpdateRequest updateRequest = (UpdateRequest) requests.getValue().get(0);
+        Assert.assertEquals("comment01", updateRequest.id());
+        Assert.assertEquals("article01", updateRequest.parent());
+    }
+
+    @Test
+    public void ackEmptyBatch() {
+        // 묶음 헤더는 있는데 본문이 비었다. 기다릴 요청이 없다고 알려 바로 ack 하게 한다.
+        Message batch = this.newMessage("");
+        batch.getMessageProperties().setHeader(MessageProperties.SPRING_BATCH_FORMAT, MessageProperties.BATCH_FORMAT_LENGTH_HEADER4);
+
+        elasticsearchListener.receive(batch, channel, 1L, "test.elasticsearch.index-document-article");
+
+        Mockito.verify(elasticsearchBulkIndexer).newDelivery(channel, 1L, 0);
+        Mockito.verify(elasticsearchBulkIndexer, Mockito.never()).add(anyList(), any(), any());
+    }
+
+    @Test
+    public void deadLetterUnknownRoutingKey() {
+        Message message = this.newMessage("\"article01\"");
+
+        elasticsearchListener.receive(message, channel, 1L, "test.elasticsearch.unknown");
+
+        Mockito.verify(elasticsearchBulkIndexer).deadLetter(eq(message), any(), any(IllegalArgumentException.class));
+        Mockito.verify(elasticsearchBulkIndexer, Mockito.never()).add(anyList(), any(), any());
+        Mockito.verify(searchResultCache, Mockito.never()).invalidate(any());
+    }
+
+    @Test
+    public void deadLetterUnreadableMessage() {
+        Message message = this.newMessage("{not json");
+
+        elasticsearchListener.receive(message, channel, 1L, "test.elasticsearch.index-document-article");
+
+        Mockito.verify(elasticsearchBulkIndexer).deadLetter(eq(message), any(), any());
+        Mockito.verify(elasticsearchBulkIndexer, Mockito.never()).add(anyList(), any(), any());
+    }
+
+    private Message newMessage(String body) {
+        MessageProperties messageProperties = new MessageProperties();
+        messageProperties.setContentType(MessageProperties.CONTENT_TYPE_JSON);
+
+        return new Message(body.getBytes(StandardCharsets.UTF_8), messageProperties);
+    }
+
+}
@@ -0,0 +1,210 @@
+package com.jakduk.api.search;
+
+import com.jakduk.api.common.elasticsearch.PopularSearchWordCounter;
+import com.jakduk.api.common.elasticsearch.SearchWordHistory;
+import com.jakduk.api.configuration.JakdukProperties;
+import com.jakduk.api.model.db.SearchWordCount;
+import com.jakduk.api.model.elasticsearch.EsTermsBucket;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.BsonDocument;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.mockito.ArgumentMatchers.*;
+
+public class PopularSearchWordCounterTest {
+
+    private final LocalDate today = LocalDate.now();
+    private final LocalDate threeWeeksAgo = today.minusWeeks(3);
+
+    private MongoTemplate mongoTemplate;
+    private BulkOperations bulkOperations;
+    private SearchWordHistory searchWordHistory;
+    private SimpleMeterRegistry meterRegistry;
+    private PopularSearchWordCounter counter;
+
+    // 날짜 -> DB 에 있는 검색어별 검색 수
+    private final Map<String, Map<String, Long>> stored = new HashMap<>();
+
+    @Before
+    public void setUp() {
+        mongoTemplate = Mockito.mock(MongoTemplate.class);
+        bulkOperations = Mockito.mock(BulkOperations.class);
+        searchWordHistory = Mockito.mock(SearchWordHistory.class);
+        meterRegistry = new SimpleMeterRegistry();
+
+        Mockito.when(searchWordHistory.countByDay(any(), anyInt())).thenReturn(Collections.emptyMap());
+        Mockito.when(mongoTemplate.bulkOps(any(BulkOperations.BulkMode.class), eq(SearchWordCount.class))).thenReturn(bulkOperations);
+        Mockito.when(mongoTemplate.find(any(Query.class), eq(SearchWordCount.class))).thenAnswer(invocation -> {
+            Query query = invocation.getArgument(0);
+            String day = (String) query.getQueryObject().get("day");
+
+            return stored.getOrDefault(day, Collections.emptyMap()).entrySet().stream()
+                    .map(entry -> {
+                        SearchWordCount searchWordCount = new SearchWordCount();
+                        searchWordCount.setWord(entry.getKey());
+                        searchWordCount.setCount(entry.getValue());
+                        return searchWordCount;
+                    })
+                    .collect(Collectors.toList());
+        });
+
+        stored.put(today.toString(), new HashMap<String, Long>() {{
+            put("손흥민", 5L);
+            put("이강인", 3L);
+        }});
+        stored.put(today.minusDays(10).toString(), new HashMap<String, Long>() {{
+            put("손흥민", 2L);
+            put("기성용", 4L);
+        }});
+        // 기간 밖
+        stored.put(today.minusDays(22).toString(), new HashMap<String, Long>() {{
+            put("박주영", 100L);
+        }});
+
+        counter = new PopularSearchWordCounter(mongoTemplate, searchWordHistory, new JakdukProperties().new PopularSearchWords(), meterRegistry);
+    }
+
+    @Test
+    public void noRankingBeforeFirstSnapshot() {
+        counter.increase("손흥민");
+
+        Assert.assertNull(counter.getPopularWords(threeWeeksAgo, 5));
+    }
+
+    @Test
+    public void rankStoredAndUnflushedCounts() {
+        // DB 에 더하지 못해도 센 것은 순위에 들어간다.
+        Mockito.when(bulkOperations.execute()).thenThrow(new IllegalStateException("mongo is down"));
+
+        counter.increase("이강인");
+        counter.increase("이강인");
+        counter.increase("이강인");
+        counter.increase("박지성");
+
+        counter.snapshot();
+
+        List<EsTermsBucket> popularWords = counter.getPopularWords(threeWeeksAgo, 3);
+
+        Assert.assertEquals(Arrays.asList("손흥민", "이강인", "기성용"),
+                popularWords.stream().map(EsTermsBucket::getKey).collect(Collectors.toList()));
+        Assert.assertEquals(Arrays.asList(7L, 6L, 4L),
+                popularWords.stream().map(EsTermsBucket::getCount).collect(Collectors.toList()));
+
+        Assert.assertEquals(4, counter.getPopularWords(threeWeeksAgo, 10).size());
+        Assert.assertEquals(4D, meterRegistry.get("jakduk.search.words.pending").gauge().value(), 0D);
+
+        // 세는 기간이 다르거나 topK 보다 많이 달라면 ES 로 센다.
+        Assert.assertNull(counter.getPopularWords(today.minusWeeks(1), 3));
+        Assert.assertNull(counter.getPopularWords(threeWeeksAgo, 101));
+    }
+
+    @Test
+    public void keepOnlyFailedCountsWhenFlushPartiallyFailed() {
+        List<String> upserted = new ArrayList<>();
+
+        Mockito.when(bulkOperations.upsert(any(Query.class), any(Update.class))).thenAnswer(invocation -> {
+            upserted.add((String) invocation.<Query>getArgument(0).getQueryObject().get("_id"));
+            return bulkOperations;
+        });
+
+        // 박지성만 더하지 못하고 이강인은 이미 더해졌다.
+        Mockito.when(bulkOperations.execute()).thenAnswer(invocation -> {
+            int index = upserted.indexOf(today + "|박지성");
+
+            throw new DataIntegrityViolationException("partially failed", new MongoBulkWriteException(
+                    BulkWriteResult.acknowledged(0, 0, 0, 0, Collections.emptyList()),
+                    Collections.singletonList(new BulkWriteError(1, "failed", new BsonDocument(), index)), null, new ServerAddress()));
+        });
+
+        counter.increase("이강인");
+        counter.increase("이강인");
+        counter.increase("박지성");
+
+        counter.snapshot();
+
+        Assert.assertEquals(1D, meterRegistry.get("jakduk.search.words.pending").gauge().value(), 0D);
+        Assert.assertEquals(2D, meterRegistry.get("jakduk.search.words.flushed").counter().count(), 0D);
+    }
+
+    @Test
+    public void flushCountsWithUpsert() {
+        counter.increase("이강인");
+        counter.increase("이강인");
+        counter.increase("박지성");
+
+        counter.snapshot();
+
+        Mockito.verify(bulkOperations, Mockito.times(2)).upsert(any(Query.class), any(Update.class));
+        Mockito.verify(bulkOperations).execute();
+        Mockito.verify(mongoTemplate).remove(any(Query.class), eq(SearchWordCount.class));
+
+        Assert.assertEquals(0D, meterRegistry.get("jakduk.search.words.pending").gauge().value(), 0D);
+        Assert.assertEquals(3D, meterRegistry.get("jakduk.search.words.flushed").counter().count(), 0D);
+
+        // 더한 것은 DB 에서 다시 읽으므로 두번 세지 않는다.
+        Assert.assertEquals(Long.valueOf(3L), counter.getPopularWords(threeWeeksAgo, 5).stream()
+                .filter(bucket -> bucket.getKey().equals("이강인"))
+                .findFirst()
+                .map(EsTermsBucket::getCount)
+                .orElse(null));
+    }
+
+    @Test
+    public void seedFromElasticsearchBeforeFirstRanking() {
+        // ES 에서 채우지 못하면 이 서버가 센 것만으로 순위를 매기지 않는다.
+        Mockito.when(searchWordHistory.countByDay(any(), anyInt())).thenThrow(new IllegalStateException("elasticsearch is down"));
+
+        counter.increase("박지성");
+        counter.snapshot();
+
+        Assert.assertNull(counter.getPopularWords(threeWeeksAgo, 5));
+
+        Mockito.reset(searchWordHistory);
+        Mockito.when(searchWordHistory.countByDay(eq(threeWeeksAgo), anyInt())).thenReturn(Collections.singletonMap(
+                today.minusDays(3), Collections.singletonMap("황희찬", 9L)));
+
+        counter.snapshot();
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        Mockito.verify(bulkOperations, Mockito.times(2)).upsert(query.capture(), update.capture());
+
+        // 앞의 것은 이 서버가 센 박지성. 여러 서버가 채워도 두번 세지 않는다.
+        Assert.assertEquals(today.minusDays(3) + "|황희찬", query.getAllValues().get(1).getQueryObject().get("_id"));
+        Assert.assertTrue(update.getAllValues().get(1).getUpdateObject().containsKey("$max"));
+        Assert.assertNotNull(counter.getPopularWords(threeWeeksAgo, 5));
+
+        // 한번 채우면 다시 채우지 않는다.
+        counter.snapshot();
+        Mockito.verify(searchWordHistory).countByDay(any(), anyInt());
+    }
+
+    @Test
+    public void noRankingUntilFirstLoad() {
+        Mockito.when(mongoTemplate.find(any(Query.class), eq(SearchWordCount.class))).thenThrow(new IllegalStateException("mongo is down"));
+
+        counter.increase("박지성");
+        counter.snapshot();
+
+        Assert.assertNull(counter.getPopularWords(threeWeeksAgo, 5));
+        Assert.assertEquals(Collections.emptyList(), counter.getPopularWords());
+    }
+
+}
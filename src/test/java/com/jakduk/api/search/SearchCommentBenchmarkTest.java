@@ -0,0 +1,106 @@
+package com.jakduk.api.search;
+
+import com.jakduk.api.common.elasticsearch.SearchResultCache;
+import com.jakduk.api.configuration.JakdukProperties;
+import com.jakduk.api.restcontroller.vo.search.SearchCommentResult;
+import com.jakduk.api.service.SearchService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.transport.TransportAddress;
+import org.elasticsearch.transport.client.PreBuiltTransportClient;
+import org.junit.Assume;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 댓글 검색의 has_parent + inner hit 방식과, 댓글 문서에 넣어둔 글 정보를 쓰는 방식의 응답 시간.
+ *
+ * parent/child 매핑은 ES 6 에서 새로 만들 수 없어서 이미 있는 게시판 인덱스에 찾기만 한다.
+ * 재색인 전의 댓글에는 글 제목이 없어 넣어둔 글 정보 방식의 결과가 적게 나오니 찾은 수도 같이 본다.
+ *
+ * 오래 걸리고 ES 가 있어야 해서 -Dbenchmark=true 일 때만 돈다.
+ * -Delasticsearch.host=localhost -Delasticsearch.port=9300 -Delasticsearch.cluster-name=jakduk-elasticsearch
+ * -Dbenchmark.index=jakduk_dev_board -Dbenchmark.queries=손흥민,골,경기
+ */
+public class SearchCommentBenchmarkTest {
+
+    private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+    private final int WARMUP = 20;
+    private final int ITERATIONS = 200;
+
+    @Test
+    public void latencyByMode() throws Exception {
+        Assume.assumeTrue(Boolean.getBoolean("benchmark"));
+
+        Settings settings = Settings.builder()
+                .put("cluster.name", System.getProperty("elasticsearch.cluster-name", "jakduk-elasticsearch"))
+                .build();
+
+        try (Client client = new PreBuiltTransportClient(settings)
+                .addTransportAddress(new TransportAddress(InetAddress.getByName(System.getProperty("elasticsearch.host", "localhost")),
+                        Integer.getInteger("elasticsearch.port", 9300)))) {
+
+            JakdukProperties.Elasticsearch elasticsearchProperties = new JakdukProperties().new Elasticsearch();
+            elasticsearchProperties.setIndexBoard(System.getProperty("benchmark.index", "jakduk_dev_board"));
+            elasticsearchProperties.setDefaultSearchTimeoutMillis(10000L);
+
+            // 캐시는 쓰지 않는다.
+            SearchService searchService = new SearchService();
+            ReflectionTestUtils.setField(searchService, "elasticsearchProperties", elasticsearchProperties);
+            ReflectionTestUtils.setField(searchService, "client", client);
+            ReflectionTestUtils.setField(searchService, "meterRegistry", new SimpleMeterRegistry());
+            ReflectionTestUtils.setField(searchService, "searchResultCache", Mockito.mock(SearchResultCache.class));
+
+            List<String> queries = Arrays.asList(System.getProperty("benchmark.queries", "손흥민,골,경기").split(","));
+
+            for (Boolean commentParentJoin : Arrays.asList(true, false)) {
+                elasticsearchProperties.setCommentParentJoin(commentParentJoin);
+
+                for (String query : queries)
+                    this.run(searchService, query, commentParentJoin);
+            }
+        }
+    }
+
+    private void run(SearchService searchService, String query, Boolean commentParentJoin) {
+        for (int i = 0; i < WARMUP; i++)
+            searchService.searchUnified(query, "COMMENT", 0, 10, null, null);
+
+        List<Long> tookMillis = new ArrayList<>(ITERATIONS);
+        List<Long> elapsedMicros = new ArrayList<>(ITERATIONS);
+        Long totalCount = null;
+
+        for (int i = 0; i < ITERATIONS; i++) {
+            long started = System.nanoTime();
+            SearchCommentResult result = searchService.searchUnified(query, "COMMENT", 0, 10, null, null).getCommentResult();
+
+            elapsedMicros.add(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - started));
+            tookMillis.add(result.getTook());
+            totalCount = result.getTotalCount();
+        }
+
+        Collections.sort(tookMillis);
+        Collections.sort(elapsedMicros);
+
+        log.info("commentParentJoin={}, q={}, hits={} : took p50={}ms p95={}ms, elapsed p50={}µs p95={}µs p99={}µs",
+                commentParentJoin, query, totalCount, this.percentile(tookMillis, 50), this.percentile(tookMillis, 95),
+                this.percentile(elapsedMicros, 50), this.percentile(elapsedMicros, 95), this.percentile(elapsedMicros, 99));
+    }
+
+    private Long percentile(List<Long> sorted, int percentile) {
+        return sorted.get(Math.min(sorted.size() - 1, sorted.size() * percentile / 100));
+    }
+
+}
@@ -94,6 +94,8 @@ public class SearchMvcTests {
         SearchArticleResult searchArticleResult = new SearchArticleResult();
         searchArticleResult.setTook(330L);
         searchArticleResult.setTotalCount(9L);
+        searchArticleResult.setTimedOut(false);
+        searchArticleResult.setFailed(false);
         searchArticleResult.setArticles(
                 Arrays.asList(
                         new ArticleSource() {
@@ -117,6 +119,8 @@ public class SearchMvcTests {
         SearchCommentResult searchCommentResult = new SearchCommentResult();
         searchCommentResult.setTook(31L);
         searchCommentResult.setTotalCount(47L);
+        searchCommentResult.setTimedOut(false);
+        searchCommentResult.setFailed(false);
         searchCommentResult.setComments(
                         Arrays.asList(
                                 new EsCommentSource(){{
@@ -143,6 +147,8 @@ public class SearchMvcTests {
         SearchGalleryResult searchGalleryResult = new SearchGalleryResult();
         searchGalleryResult.setTook(16L);
         searchGalleryResult.setTotalCount(5L);
+        searchGalleryResult.setTimedOut(false);
+        searchGalleryResult.setFailed(false);
         searchGalleryResult.setGalleries(
                         Arrays.asList(
                                 new EsGallerySource() {{
@@ -196,6 +202,8 @@ public class SearchMvcTests {
                                         fieldWithPath("articleResult").type(JsonFieldType.OBJECT).description("매칭된 글 객체"),
                                         fieldWithPath("articleResult.took").type(JsonFieldType.NUMBER).description("찾는데 걸린 시간(ms)"),
                                         fieldWithPath("articleResult.totalCount").type(JsonFieldType.NUMBER).description("매칭되는 아이템 수"),
+                                        fieldWithPath("articleResult.timedOut").type(JsonFieldType.BOOLEAN).description("기다리는 시간 안에 다 찾지 못했으면 true. 찾은 만큼만 들어 있다"),
+                                        fieldWithPath("articleResult.failed").type(JsonFieldType.BOOLEAN).description("찾다가 오류가 났으면 true. 목록은 비어 있다"),
                                         fieldWithPath("articleResult.articles").type(JsonFieldType.ARRAY).description("매칭되는 게시물 목록"),
                                         fieldWithPath("articleResult.articles.[].id").type(JsonFieldType.STRING).description("글 ID"),
                                         fieldWithPath("articleResult.articles.[].seq").type(JsonFieldType.NUMBER).description("글번호"),
@@ -208,6 +216,8 @@ public class SearchMvcTests {
                                         fieldWithPath("commentResult").type(JsonFieldType.OBJECT).description("매칭된 댓글 객체"),
                                         fieldWithPath("commentResult.took").type(JsonFieldType.NUMBER).description("찾는데 걸린 시간(ms)"),
                                         fieldWithPath("commentResult.totalCount").type(JsonFieldType.NUMBER).description("매칭되는 아이템 수"),
+                                        fieldWithPath("commentResult.timedOut").type(JsonFieldType.BOOLEAN).description("기다리는 시간 안에 다 찾지 못했으면 true. 찾은 만큼만 들어 있다"),
+                                        fieldWithPath("commentResult.failed").type(JsonFieldType.BOOLEAN).description("찾다가 오류가 났으면 true. 목록은 비어 있다"),
                                         fieldWithPath("commentResult.comments").type(JsonFieldType.ARRAY).description("매칭되는 댓글 목록"),
                                         fieldWithPath("commentResult.comments.[].id").type(JsonFieldType.STRING).description("댓글 ID"),
                                         subsectionWithPath("commentResult.comments.[].article").type(JsonFieldType.OBJECT).description("연관 글 객체"),
@@ -217,6 +227,8 @@ public class SearchMvcTests {
                                         fieldWithPath("galleryResult").type(JsonFieldType.OBJECT).description("매칭된 그림 객체"),
                                         fieldWithPath("galleryResult.took").type(JsonFieldType.NUMBER).description("찾는데 걸린 시간(ms)"),
                                         fieldWithPath("galleryResult.totalCount").type(JsonFieldType.NUMBER).description("매칭되는 아이템 수"),
+                                        fieldWithPath("galleryResult.timedOut").type(JsonFieldType.BOOLEAN).description("기다리는 시간 안에 다 찾지 못했으면 true. 찾은 만큼만 들어 있다"),
+                                        fieldWithPath("galleryResult.failed").type(JsonFieldType.BOOLEAN).description("찾다가 오류가 났으면 true. 목록은 비어 있다"),
                                         subsectionWithPath("galleryResult.galleries").type(JsonFieldType.ARRAY).description("매칭되는 그림 목록"),
                                         fieldWithPath("galleryResult.galleries.[].id").type(JsonFieldType.STRING).description("그림 ID"),
                                         fieldWithPath("galleryResult.galleries.[].writer").type(JsonFieldType.OBJECT).description("글쓴이"),
@@ -239,7 +251,7 @@ public class SearchMvcTests {
                         new EsTermsBucket("축구", 21L)
                 ));
 
-        when(searchService.aggregateSearchWord(any(LocalDate.class), anyInt()))
+        when(searchService.getPopularSearchWords(any(LocalDate.class), anyInt()))
                 .thenReturn(expectResponse);
 
         mvc.perform(
@@ -263,4 +275,36 @@ public class SearchMvcTests {
                         ));
     }
 
+    @Test
+    @WithMockUser
+    public void searchSuggestTest() throws Exception {
+
+        SearchSuggestResult expectResponse = new SearchSuggestResult();
+        expectResponse.setTookMicros(35L);
+        expectResponse.setSuggestions(Arrays.asList("손흥민", "손흥민 골", "손흥민 토트넘"));
+
+        when(searchService.suggest(anyString(), anyInt()))
+                .thenReturn(expectResponse);
+
+        mvc.perform(
+                get("/api/search/suggest")
+                        .param("q", "손흥")
+                        .param("size", "5")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andExpect(content().json(ObjectMapperUtils.writeValueAsString(expectResponse)))
+                .andDo(
+                        document("search-suggest",
+                                requestParameters(
+                                        parameterWithName("q").description("입력 중인 검색어. 음절, 자모 모두 된다"),
+                                        parameterWithName("size").description("(default 5) 반환 개수")
+                                ),
+                                responseFields(
+                                        fieldWithPath("tookMicros").type(JsonFieldType.NUMBER).description("찾는데 걸린 시간(μs)"),
+                                        fieldWithPath("suggestions").type(JsonFieldType.ARRAY).description("자동 완성 검색어 목록")
+                                )
+                        ));
+    }
+
 }
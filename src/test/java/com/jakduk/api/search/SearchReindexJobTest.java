@@ -0,0 +1,353 @@
+package com.jakduk.api.search;
+
+import com.jakduk.api.common.Constants;
+import com.jakduk.api.common.elasticsearch.SearchIndexManager;
+import com.jakduk.api.common.elasticsearch.SearchReindexJob;
+import com.jakduk.api.configuration.JakdukProperties;
+import com.jakduk.api.exception.ServiceError;
+import com.jakduk.api.exception.ServiceException;
+import com.jakduk.api.model.db.Article;
+import com.jakduk.api.model.db.ArticleComment;
+import com.jakduk.api.model.db.Gallery;
+import com.jakduk.api.model.db.JobCheckpoint;
+import com.jakduk.api.model.elasticsearch.EsSearchWord;
+import com.jakduk.api.model.embedded.ArticleItem;
+import com.jakduk.api.model.embedded.LinkedItem;
+import com.jakduk.api.repository.JobCheckpointRepository;
+import com.jakduk.api.repository.article.ArticleCommentRepository;
+import com.jakduk.api.repository.article.ArticleRepository;
+import com.jakduk.api.repository.gallery.GalleryRepository;
+import com.jakduk.api.restcontroller.vo.admin.SearchReindexResponse;
+import com.jakduk.api.service.SearchService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.types.ObjectId;
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.delete.DeleteRequest;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.index.IndexResponse;
+import org.elasticsearch.action.support.PlainActionFuture;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.index.VersionType;
+import org.elasticsearch.index.engine.VersionConflictEngineException;
+import org.elasticsearch.index.shard.ShardId;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.mockito.ArgumentMatchers.*;
+
+public class SearchReindexJobTest {
+
+    private final String BOARD_INDEX = "jakduk_test_board_20190101000000";
+    private final String GALLERY_INDEX = "jakduk_test_gallery_20190101000000";
+
+    private ArticleRepository articleRepository;
+    private ArticleCommentRepository articleCommentRepository;
+    private GalleryRepository galleryRepository;
+    private JobCheckpointRepository jobCheckpointRepository;
+    private SearchIndexManager searchIndexManager;
+    private SearchService searchService;
+    private SearchReindexJob job;
+
+    // bulk 로 받은 요청. 이 ID 는 재색인 중에 들어온 변경이 먼저 쓴 것으로 본다.
+    private final List<DocWriteRequest<?>> indexed = new CopyOnWriteArrayList<>();
+    private final Set<String> conflictIds = new HashSet<>();
+
+    private Article article1;
+    private Article article2;
+    private Article article3;
+    private ArticleComment comment1;
+    private Gallery gallery1;
+
+    @Before
+    public void setUp() {
+        JakdukProperties.Elasticsearch elasticsearchProperties = new JakdukProperties().new Elasticsearch();
+        elasticsearchProperties.setIndexBoard("jakduk_test_board");
+        elasticsearchProperties.setIndexGallery("jakduk_test_gallery");
+
+        JakdukProperties.SearchReindex searchReindexProperties = new JakdukProperties().new SearchReindex();
+        searchReindexProperties.setBatchSize(2);
+        searchReindexProperties.setMaxDocumentsPerSecond(0);
+        searchReindexProperties.setTargetsRefreshMillis(100L);
+
+        articleRepository = Mockito.mock(ArticleRepository.class);
+        articleCommentRepository = Mockito.mock(ArticleCommentRepository.class);
+        galleryRepository = Mockito.mock(GalleryRepository.class);
+        jobCheckpointRepository = Mockito.mock(JobCheckpointRepository.class);
+        searchIndexManager = Mockito.mock(SearchIndexManager.class);
+
+        searchService = new SearchService();
+        ReflectionTestUtils.setField(searchService, "elasticsearchProperties", elasticsearchProperties);
+
+        Mockito.when(searchIndexManager.createVersionedIndex("jakduk_test_board")).thenReturn(BOARD_INDEX);
+        Mockito.when(searchIndexManager.createVersionedIndex("jakduk_test_gallery")).thenReturn(GALLERY_INDEX);
+        Mockito.when(searchIndexManager.exists(anyString())).thenReturn(true);
+
+        job = new SearchReindexJob(this.newClient(), searchIndexManager, searchService, articleRepository, articleCommentRepository,
+                galleryRepository, jobCheckpointRepository, elasticsearchProperties, searchReindexProperties, new SimpleMeterRegistry());
+
+        long now = System.currentTimeMillis();
+        article1 = this.newArticle(new ObjectId(new Date(now - 30000)), true);
+        article2 = this.newArticle(new ObjectId(new Date(now - 20000)), false);
+        article3 = this.newArticle(new ObjectId(new Date(now - 10000)), false);
+
+        comment1 = new ArticleComment();
+        comment1.setId(new ObjectId().toString());
+        comment1.setArticle(new ArticleItem(article1.getId(), 1, "FREE"));
+        comment1.setContent("<p>comment</p>");
+
+        gallery1 = new Gallery();
+        gallery1.setId(new ObjectId().toString());
+        gallery1.setName("gallery");
+        gallery1.setLinkedItems(Collections.singletonList(new LinkedItem(article1.getId(), Constants.GALLERY_FROM_TYPE.ARTICLE)));
+
+        Mockito.when(articleRepository.findPostsGreaterThanId(isNull(), eq(2))).thenReturn(Arrays.asList(article1, article2));
+        Mockito.when(articleRepository.findPostsGreaterThanId(eq(new ObjectId(article2.getId())), eq(2)))
+                .thenReturn(Collections.singletonList(article3));
+        Mockito.when(articleRepository.findPostsGreaterThanId(eq(new ObjectId(article3.getId())), eq(2))).thenReturn(Collections.emptyList());
+
+        Mockito.when(articleCommentRepository.findCommentsGreaterThanId(isNull(), eq(2))).thenReturn(Collections.singletonList(comment1));
+        Mockito.when(articleCommentRepository.findCommentsGreaterThanId(eq(new ObjectId(comment1.getId())), eq(2)))
+                .thenReturn(Collections.emptyList());
+        Mockito.when(articleRepository.findParentsByIdIn(Collections.singletonList(article1.getId())))
+                .thenReturn(Collections.singletonList(article1));
+
+        Mockito.when(galleryRepository.findEnabledByIdGreaterThan(isNull(), eq(2))).thenReturn(Collections.singletonList(gallery1));
+        Mockito.when(galleryRepository.findEnabledByIdGreaterThan(eq(new ObjectId(gallery1.getId())), eq(2)))
+                .thenReturn(Collections.emptyList());
+        Mockito.when(galleryRepository.findByItemIdsAndFromType(anyList(), eq(Constants.GALLERY_FROM_TYPE.ARTICLE)))
+                .thenReturn(Collections.singletonList(gallery1));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        job.shutdown();
+    }
+
+    @Test
+    public void reindexAndSwapAlias() throws Exception {
+        conflictIds.add(article2.getId());
+
+        job.start(false);
+
+        SearchReindexResponse status = this.awaitFinished();
+
+        Assert.assertEquals(Constants.BATCH_JOB_STATUS.COMPLETED, status.getStatus());
+        Assert.assertEquals(5, indexed.size());
+
+        // 새 인덱스에 읽기 전 시각을 external version 으로 넣고, 엮인 사진과 부모 글을 함께 넣는다.
+        IndexRequest article1Request = this.getIndexed(article1.getId());
+        Assert.assertEquals(BOARD_INDEX, article1Request.index());
+        Assert.assertEquals(VersionType.EXTERNAL, article1Request.versionType());
+        Assert.assertTrue(article1Request.version() <= System.currentTimeMillis());
+        Assert.assertTrue(article1Request.source().utf8ToString().contains(gallery1.getId()));
+        Assert.assertEquals(article1.getId(), this.getIndexed(comment1.getId()).parent());
+        Assert.assertTrue(this.getIndexed(comment1.getId()).source().utf8ToString().contains("\"subject\":\"subject\""));
+        Assert.assertEquals(GALLERY_INDEX, this.getIndexed(gallery1.getId()).index());
+
+        SearchReindexResponse.Source articleSource = this.getSource(status, "article");
+        Assert.assertEquals(article3.getId(), articleSource.getLastId());
+        Assert.assertEquals(Long.valueOf(2), articleSource.getProcessed());
+        Assert.assertEquals(Long.valueOf(1), articleSource.getSkipped());
+
+        Mockito.verify(searchIndexManager).finishLoading("jakduk_test_board", BOARD_INDEX);
+        Mockito.verify(searchIndexManager).swapAlias("jakduk_test_board", BOARD_INDEX);
+        Mockito.verify(searchIndexManager).swapAlias("jakduk_test_gallery", GALLERY_INDEX);
+
+        // alias 를 옮긴 뒤에는 새 인덱스에 복사하지 않는다.
+        Assert.assertNull(job.copyToReindexing(searchService.getArticleDeleteRequest(article1.getId())));
+    }
+
+    @Test
+    public void resumeFromCheckpoint() throws Exception {
+        JobCheckpoint jobCheckpoint = this.newCheckpoint(SearchReindexJob.JOB_NAME, null, null, Constants.BATCH_JOB_STATUS.STOPPED);
+        JobCheckpoint article = this.newCheckpoint(SearchReindexJob.JOB_NAME + ".article", BOARD_INDEX, article2.getId(),
+                Constants.BATCH_JOB_STATUS.STOPPED);
+        JobCheckpoint comment = this.newCheckpoint(SearchReindexJob.JOB_NAME + ".comment", BOARD_INDEX, comment1.getId(),
+                Constants.BATCH_JOB_STATUS.COMPLETED);
+        JobCheckpoint gallery = this.newCheckpoint(SearchReindexJob.JOB_NAME + ".gallery", GALLERY_INDEX, null,
+                Constants.BATCH_JOB_STATUS.STOPPED);
+
+        Mockito.when(jobCheckpointRepository.findById(SearchReindexJob.JOB_NAME)).thenReturn(Optional.of(jobCheckpoint));
+        Mockito.when(jobCheckpointRepository.findById(article.getId())).thenReturn(Optional.of(article));
+        Mockito.when(jobCheckpointRepository.findById(comment.getId())).thenReturn(Optional.of(comment));
+        Mockito.when(jobCheckpointRepository.findById(gallery.getId())).thenReturn(Optional.of(gallery));
+
+        job.resume();
+
+        SearchReindexResponse status = this.awaitFinished();
+
+        // 저장된 위치 다음부터 읽고, 다 끝난 원본은 다시 읽지 않는다.
+        Mockito.verify(articleRepository, Mockito.never()).findPostsGreaterThanId(isNull(), anyInt());
+        Mockito.verify(articleCommentRepository, Mockito.never()).findCommentsGreaterThanId(any(), anyInt());
+
+        Assert.assertEquals(Constants.BATCH_JOB_STATUS.COMPLETED, status.getStatus());
+        Assert.assertEquals(2, indexed.size());
+        Assert.assertEquals(Long.valueOf(3), this.getSource(status, "article").getProcessed());
+        Mockito.verify(searchIndexManager, Mockito.never()).createVersionedIndex(anyString());
+    }
+
+    @Test
+    public void migrateIndexOnlyWhenAllowed() throws Exception {
+        // 검색이 쓰는 이름이 아직 alias 가 아니다. 다 채우면 지워지므로 허락 없이는 시작하지 않는다.
+        Mockito.when(searchIndexManager.isIndex("jakduk_test_board")).thenReturn(true);
+
+        try {
+            job.start(false);
+            Assert.fail();
+        } catch (ServiceException e) {
+            Assert.assertEquals(ServiceError.ELASTICSEARCH_INDEX_NOT_ALIAS, e.getServiceError());
+        }
+
+        Mockito.verify(searchIndexManager, Mockito.never()).createVersionedIndex(anyString());
+
+        job.start(true);
+
+        Assert.assertEquals(Constants.BATCH_JOB_STATUS.COMPLETED, this.awaitFinished().getStatus());
+        Mockito.verify(searchIndexManager).swapAlias("jakduk_test_board", BOARD_INDEX);
+    }
+
+    @Test
+    public void copyLiveWritesWhileReindexing() throws Exception {
+        Mockito.when(articleRepository.findPostsGreaterThanId(isNull(), eq(2))).thenAnswer(invocation -> {
+            TimeUnit.MILLISECONDS.sleep(300);
+            return Collections.emptyList();
+        });
+
+        long started = System.currentTimeMillis();
+        job.start(false);
+
+        // 다른 서버가 새 인덱스를 알아챌 때까지 읽지 않는다.
+        Mockito.verify(articleRepository, Mockito.never()).findPostsGreaterThanId(any(), anyInt());
+
+        // 지운 것은 나중에 읽은 재색인보다 큰 version 이라 되살아나지 않는다.
+        DeleteRequest copy = (DeleteRequest) job.copyToReindexing(searchService.getCommentDeleteRequest(comment1.getId()));
+
+        Assert.assertEquals(BOARD_INDEX, copy.index());
+        Assert.assertEquals(comment1.getId(), copy.id());
+        Assert.assertEquals(VersionType.EXTERNAL, copy.versionType());
+        Assert.assertTrue(copy.version() >= started);
+        Assert.assertNull(job.copyToReindexing(searchService.getSearchWordIndexRequest(new EsSearchWord())));
+
+        this.awaitFinished();
+    }
+
+    @Test
+    public void startOnlyOnce() throws Exception {
+        CountDownLatch creating = new CountDownLatch(1);
+        CountDownLatch created = new CountDownLatch(1);
+
+        Mockito.when(searchIndexManager.createVersionedIndex("jakduk_test_board")).thenAnswer(invocation -> {
+            creating.countDown();
+            created.await(5, TimeUnit.SECONDS);
+            return BOARD_INDEX;
+        });
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<SearchReindexResponse> first = executor.submit(() -> job.start(false));
+
+        Assert.assertTrue(creating.await(5, TimeUnit.SECONDS));
+
+        try {
+            job.start(false);
+            Assert.fail();
+        } catch (ServiceException e) {
+            Assert.assertEquals(ServiceError.BATCH_JOB_ALREADY_RUNNING, e.getServiceError());
+        }
+
+        created.countDown();
+        first.get(5, TimeUnit.SECONDS);
+        executor.shutdown();
+
+        this.awaitFinished();
+
+        Mockito.verify(searchIndexManager).createVersionedIndex("jakduk_test_board");
+    }
+
+    private Client newClient() {
+        Client client = Mockito.mock(Client.class);
+
+        Mockito.when(client.bulk(any(BulkRequest.class))).thenAnswer(invocation -> {
+            BulkRequest bulkRequest = invocation.getArgument(0);
+            List<DocWriteRequest<?>> requests = new ArrayList<>();
+            bulkRequest.requests().forEach(requests::add);
+            BulkItemResponse[] items = new BulkItemResponse[requests.size()];
+
+            for (int i = 0; i < items.length; i++) {
+                DocWriteRequest<?> request = requests.get(i);
+                indexed.add(request);
+
+                if (conflictIds.contains(request.id())) {
+                    items[i] = new BulkItemResponse(i, DocWriteRequest.OpType.CREATE, new BulkItemResponse.Failure(request.index(),
+                            request.type(), request.id(), new VersionConflictEngineException(new ShardId(request.index(), "_na_", 0),
+                            request.type(), request.id(), "document already exists")));
+                } else {
+                    items[i] = new BulkItemResponse(i, DocWriteRequest.OpType.CREATE,
+                            new IndexResponse(new ShardId(request.index(), "_na_", 0), request.type(), request.id(), 0, 1, 1, true));
+                }
+            }
+
+            PlainActionFuture<BulkResponse> future = PlainActionFuture.newFuture();
+            future.onResponse(new BulkResponse(items, 1));
+
+            return future;
+        });
+
+        return client;
+    }
+
+    private IndexRequest getIndexed(String id) {
+        return (IndexRequest) indexed.stream().filter(request -> request.id().equals(id)).findFirst().orElse(null);
+    }
+
+    private SearchReindexResponse.Source getSource(SearchReindexResponse status, String name) {
+        return status.getSources().stream().filter(source -> source.getName().equals(name)).findFirst().orElse(null);
+    }
+
+    private SearchReindexResponse awaitFinished() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        SearchReindexResponse status = job.getStatus();
+
+        while (status.getStatus() == Constants.BATCH_JOB_STATUS.RUNNING && System.currentTimeMillis() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(50);
+            status = job.getStatus();
+        }
+
+        return status;
+    }
+
+    private Article newArticle(ObjectId id, Boolean linkedGallery) {
+        Article article = new Article();
+        article.setId(id.toString());
+        article.setSeq(1);
+        article.setBoard("FREE");
+        article.setSubject("subject");
+        article.setContent("<p>content</p>");
+        article.setLinkedGallery(linkedGallery);
+
+        return article;
+    }
+
+    private JobCheckpoint newCheckpoint(String id, String target, String lastId, Constants.BATCH_JOB_STATUS status) {
+        JobCheckpoint jobCheckpoint = new JobCheckpoint();
+        jobCheckpoint.setId(id);
+        jobCheckpoint.setTarget(target);
+        jobCheckpoint.setLastId(lastId);
+        jobCheckpoint.setStatus(status);
+        jobCheckpoint.setProcessed(Objects.nonNull(lastId) ? 2L : 0L);
+        jobCheckpoint.setFailed(0L);
+        jobCheckpoint.setSkipped(0L);
+
+        return jobCheckpoint;
+    }
+
+}
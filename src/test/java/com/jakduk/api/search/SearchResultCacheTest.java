@@ -0,0 +1,162 @@
+package com.jakduk.api.search;
+
+import com.jakduk.api.common.elasticsearch.SearchResultCache;
+import com.jakduk.api.configuration.JakdukProperties;
+import com.jakduk.api.restcontroller.vo.search.SearchArticleResult;
+import com.jakduk.api.restcontroller.vo.search.SearchUnifiedResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.amqp.core.AmqpTemplate;
+
+import java.util.Collections;
+
+public class SearchResultCacheTest {
+
+    private JakdukProperties.SearchCache searchCacheProperties;
+    private SimpleMeterRegistry meterRegistry;
+    private AmqpTemplate amqpTemplate;
+    private SearchResultCache cache;
+
+    @Before
+    public void setUp() {
+        JakdukProperties.Elasticsearch elasticsearchProperties = new JakdukProperties().new Elasticsearch();
+        elasticsearchProperties.setIndexBoard("jakduk_test_board");
+        elasticsearchProperties.setIndexGallery("jakduk_test_gallery");
+        elasticsearchProperties.setIndexSearchWord("jakduk_test_search_word");
+
+        searchCacheProperties = new JakdukProperties().new SearchCache();
+        searchCacheProperties.setInvalidateGraceMillis(0L);
+        meterRegistry = new SimpleMeterRegistry();
+
+        JakdukProperties.Rabbitmq rabbitmqProperties = new JakdukProperties().new Rabbitmq();
+        rabbitmqProperties.setSearchCacheExchangeName("test.search-cache");
+        amqpTemplate = Mockito.mock(AmqpTemplate.class);
+
+        cache = new SearchResultCache(searchCacheProperties, elasticsearchProperties, rabbitmqProperties, amqpTemplate, meterRegistry);
+    }
+
+    @Test
+    public void hitForNormalizedQuery() {
+        cache.put("  손흥민   골 ", "ARTICLE;COMMENT", 0, 10, "<em>", "</em>", cache.getGeneration(), newResponse(1L));
+
+        Assert.assertNotNull(cache.get("손흥민 골", "COMMENT;ARTICLE", 0, 10, "<em>", "</em>"));
+        Assert.assertNull(cache.get("손흥민 골", "ARTICLE;COMMENT;GALLERY", 0, 10, "<em>", "</em>"));
+        Assert.assertNull(cache.get("손흥민 골", "ARTICLE;COMMENT", 10, 10, "<em>", "</em>"));
+
+        cache.put("ＳＯＮ", "ARTICLE", 0, 10, null, "", cache.getGeneration(), newResponse(2L));
+        Assert.assertNotNull(cache.get("son", "ARTICLE", 0, 10, "", null));
+
+        Assert.assertEquals(2D, meterRegistry.get("jakduk.search.cache").tag("result", "hit").counter().count(), 0D);
+        Assert.assertEquals(2D, meterRegistry.get("jakduk.search.cache").tag("result", "miss").counter().count(), 0D);
+        Assert.assertEquals(0.5D, meterRegistry.get("jakduk.search.cache.hit.ratio").gauge().value(), 0.0001D);
+        Assert.assertTrue(meterRegistry.get("jakduk.search.cache.bytes").gauge().value() > 0D);
+    }
+
+    @Test
+    public void invalidateByBoardAndGalleryIndex() {
+        cache.put("test", "ARTICLE", 0, 10, null, null, cache.getGeneration(), newResponse(1L));
+
+        cache.invalidate("jakduk_test_search_word");
+        Assert.assertNotNull(cache.get("test", "ARTICLE", 0, 10, null, null));
+
+        cache.invalidate("jakduk_test_gallery");
+        Assert.assertNull(cache.get("test", "ARTICLE", 0, 10, null, null));
+        Assert.assertEquals(Integer.valueOf(0), cache.size());
+        Assert.assertEquals(Long.valueOf(0L), cache.sizeBytes());
+    }
+
+    @Test
+    public void broadcastInvalidateToOtherServers() {
+        cache.invalidate("jakduk_test_search_word");
+        cache.invalidate("jakduk_test_board");
+
+        Mockito.verify(amqpTemplate).convertAndSend("test.search-cache", "", "jakduk_test_board");
+        Mockito.verify(amqpTemplate, Mockito.never()).convertAndSend("test.search-cache", "", "jakduk_test_search_word");
+    }
+
+    @Test
+    public void dropEntriesInvalidatedByOtherServer() {
+        cache.put("test", "ARTICLE", 0, 10, null, null, cache.getGeneration(), newResponse(1L));
+
+        cache.onInvalidated("jakduk_test_gallery");
+
+        Assert.assertNull(cache.get("test", "ARTICLE", 0, 10, null, null));
+        Mockito.verifyZeroInteractions(amqpTemplate);
+    }
+
+    @Test
+    public void returnCopyOnHit() {
+        cache.put("test", "ARTICLE", 0, 10, null, null, cache.getGeneration(), newResponse(1L));
+
+        SearchUnifiedResponse first = cache.get("test", "ARTICLE", 0, 10, null, null);
+        first.getArticleResult().setTotalCount(100L);
+        first.getArticleResult().setTook(999L);
+
+        SearchUnifiedResponse second = cache.get("test", "ARTICLE", 0, 10, null, null);
+
+        Assert.assertNotSame(first, second);
+        Assert.assertEquals(Long.valueOf(1L), second.getArticleResult().getTotalCount());
+        Assert.assertTrue(second.getArticleResult().getTook() < 999L);
+    }
+
+    @Test
+    public void skipResultSearchedBeforeInvalidate() {
+        Long generation = cache.getGeneration();
+
+        // 찾는 동안 색인됨
+        cache.invalidate("jakduk_test_board");
+        cache.put("test", "ARTICLE", 0, 10, null, null, generation, newResponse(1L));
+
+        Assert.assertNull(cache.get("test", "ARTICLE", 0, 10, null, null));
+    }
+
+    @Test
+    public void skipResultSearchedRightAfterInvalidate() {
+        searchCacheProperties.setInvalidateGraceMillis(60000L);
+
+        cache.invalidate("jakduk_test_board");
+        cache.put("test", "ARTICLE", 0, 10, null, null, cache.getGeneration(), newResponse(1L));
+
+        Assert.assertNull(cache.get("test", "ARTICLE", 0, 10, null, null));
+    }
+
+    @Test
+    public void evictLeastRecentlyUsed() {
+        searchCacheProperties.setMaxEntries(2);
+
+        cache.put("a", "ARTICLE", 0, 10, null, null, cache.getGeneration(), newResponse(1L));
+        cache.put("b", "ARTICLE", 0, 10, null, null, cache.getGeneration(), newResponse(2L));
+        cache.get("a", "ARTICLE", 0, 10, null, null);
+        cache.put("c", "ARTICLE", 0, 10, null, null, cache.getGeneration(), newResponse(3L));
+
+        Assert.assertEquals(Integer.valueOf(2), cache.size());
+        Assert.assertNotNull(cache.get("a", "ARTICLE", 0, 10, null, null));
+        Assert.assertNull(cache.get("b", "ARTICLE", 0, 10, null, null));
+        Assert.assertNotNull(cache.get("c", "ARTICLE", 0, 10, null, null));
+    }
+
+    @Test
+    public void expireAfterTtl() {
+        searchCacheProperties.setTtlSeconds(-1);
+
+        cache.put("test", "ARTICLE", 0, 10, null, null, cache.getGeneration(), newResponse(1L));
+
+        Assert.assertNull(cache.get("test", "ARTICLE", 0, 10, null, null));
+    }
+
+    private SearchUnifiedResponse newResponse(Long totalCount) {
+        SearchArticleResult searchArticleResult = new SearchArticleResult();
+        searchArticleResult.setTook(1L);
+        searchArticleResult.setTotalCount(totalCount);
+        searchArticleResult.setArticles(Collections.emptyList());
+
+        SearchUnifiedResponse response = new SearchUnifiedResponse();
+        response.setArticleResult(searchArticleResult);
+
+        return response;
+    }
+
+}
@@ -0,0 +1,206 @@
+package com.jakduk.api.search;
+
+import com.jakduk.api.common.elasticsearch.PopularSearchWordCounter;
+import com.jakduk.api.common.elasticsearch.SearchSuggester;
+import com.jakduk.api.configuration.JakdukProperties;
+import com.jakduk.api.model.db.Article;
+import com.jakduk.api.model.db.Gallery;
+import com.jakduk.api.model.elasticsearch.EsTermsBucket;
+import com.jakduk.api.repository.article.ArticleRepository;
+import com.jakduk.api.repository.gallery.GalleryRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.types.ObjectId;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.*;
+import java.util.function.Function;
+
+import static org.mockito.ArgumentMatchers.*;
+
+public class SearchSuggesterTest {
+
+    private JakdukProperties.SearchSuggest searchSuggestProperties;
+    private ArticleRepository articleRepository;
+    private GalleryRepository galleryRepository;
+    private PopularSearchWordCounter popularSearchWordCounter;
+    private SimpleMeterRegistry meterRegistry;
+    private SearchSuggester suggester;
+
+    private final List<Article> articles = new ArrayList<>();
+    private final List<Gallery> galleries = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        searchSuggestProperties = new JakdukProperties().new SearchSuggest();
+        articleRepository = Mockito.mock(ArticleRepository.class);
+        galleryRepository = Mockito.mock(GalleryRepository.class);
+        popularSearchWordCounter = Mockito.mock(PopularSearchWordCounter.class);
+        meterRegistry = new SimpleMeterRegistry();
+
+        // 목록은 최신 순이다.
+        Mockito.when(articleRepository.findSubjectsByIdLessThan(any(), anyInt())).thenAnswer(invocation ->
+                this.page(articles, Article::getId, invocation.getArgument(0), invocation.getArgument(1)));
+        Mockito.when(galleryRepository.findEnabledNamesByIdLessThan(any(), anyInt())).thenAnswer(invocation ->
+                this.page(galleries, Gallery::getId, invocation.getArgument(0), invocation.getArgument(1)));
+        Mockito.when(popularSearchWordCounter.getPopularWords()).thenReturn(Collections.emptyList());
+
+        articles.add(this.newArticle("손흥민 골"));
+        articles.add(this.newArticle("손흥민 골"));
+        articles.add(this.newArticle("손흥민"));
+        articles.add(this.newArticle("<b>닭강정</b> 먹방"));
+        galleries.add(this.newGallery("Son Heung-min"));
+        galleries.add(this.newGallery("손님"));
+
+        suggester = new SearchSuggester(articleRepository, galleryRepository, popularSearchWordCounter, searchSuggestProperties,
+                meterRegistry);
+    }
+
+    @Test
+    public void suggestBySyllableAndJamoPrefix() {
+        suggester.refresh();
+
+        Assert.assertEquals(Integer.valueOf(5), suggester.size());
+        Assert.assertEquals(5D, meterRegistry.get("jakduk.search.suggest.terms").gauge().value(), 0D);
+
+        // 같은 제목의 글이 많을수록 앞에. 같으면 짧은 것이 앞에
+        Assert.assertEquals(Arrays.asList("손흥민 골", "손님", "손흥민"), suggester.suggest("손", 5));
+        Assert.assertEquals(Arrays.asList("손흥민 골", "손흥민"), suggester.suggest("손ㅎ", 5));
+        Assert.assertEquals(Arrays.asList("손흥민 골", "손흥민"), suggester.suggest("ㅅㅗㄴㅎ", 5));
+        Assert.assertEquals(Collections.singletonList("손흥민 골"), suggester.suggest("손흥민 ㄱ", 5));
+
+        // 겹받침은 입력하는 중인 받침으로도 찾는다.
+        Assert.assertEquals(Collections.singletonList("닭강정 먹방"), suggester.suggest("달", 5));
+        Assert.assertEquals(Collections.singletonList("Son Heung-min"), suggester.suggest("SON h", 5));
+
+        Assert.assertEquals(Collections.singletonList("손흥민 골"), suggester.suggest("손", 1));
+        Assert.assertEquals(Collections.emptyList(), suggester.suggest("박", 5));
+        Assert.assertEquals(Collections.emptyList(), suggester.suggest(" ", 5));
+    }
+
+    @Test
+    public void rankPopularWords() {
+        Mockito.when(popularSearchWordCounter.getPopularWords()).thenReturn(Arrays.asList(
+                new EsTermsBucket("손흥민 토트넘", 10L),
+                new EsTermsBucket("손흥민", 1L)));
+
+        suggester.refresh();
+
+        Assert.assertEquals(Arrays.asList("손흥민 토트넘", "손흥민", "손흥민 골"), suggester.suggest("손흥", 5));
+
+        // 인기 검색어에서 빠지면 글이 없는 검색어는 사라진다.
+        Mockito.when(popularSearchWordCounter.getPopularWords()).thenReturn(Collections.singletonList(
+                new EsTermsBucket("손님", 5L)));
+
+        suggester.refreshPopularWords();
+
+        Assert.assertEquals(Arrays.asList("손님", "손흥민 골", "손흥민"), suggester.suggest("손", 5));
+        Assert.assertEquals(Integer.valueOf(5), suggester.size());
+    }
+
+    @Test
+    public void applyIndexAndDelete() {
+        suggester.refresh();
+
+        suggester.putArticle("new01", "손흥민 해트트릭");
+        Assert.assertEquals(Arrays.asList("손흥민 골", "손흥민", "손흥민 해트트릭"), suggester.suggest("손흥", 5));
+
+        // 제목을 고치면 예전 제목은 빠진다.
+        suggester.putArticle("new01", "손흥민 멀티골");
+        Assert.assertEquals(Arrays.asList("손흥민 골", "손흥민", "손흥민 멀티골"), suggester.suggest("손흥", 5));
+
+        suggester.removeArticle("new01");
+        suggester.removeArticle(articles.get(2).getId());
+        Assert.assertEquals(Collections.singletonList("손흥민 골"), suggester.suggest("손흥", 5));
+
+        suggester.removeGallery(galleries.get(1).getId());
+        Assert.assertEquals(Collections.singletonList("손흥민 골"), suggester.suggest("손", 5));
+
+        suggester.putGallery("new02", "손님 맞이");
+        Assert.assertEquals(Arrays.asList("손흥민 골", "손님 맞이"), suggester.suggest("손", 5));
+        Assert.assertEquals(Integer.valueOf(4), suggester.size());
+    }
+
+    @Test
+    public void normalizeQueryAndTerms() {
+        Mockito.when(popularSearchWordCounter.getPopularWords()).thenReturn(Arrays.asList(
+                new EsTermsBucket("SON", 3L),
+                new EsTermsBucket(" son ", 2L)));
+
+        suggester.refresh();
+
+        // 공백, 대소문자만 다른 검색어는 같은 검색어다.
+        Assert.assertEquals(Collections.singletonList("손흥민 골"), suggester.suggest("  손흥민   ㄱ ", 5));
+        Assert.assertEquals(Arrays.asList("SON", "Son Heung-min"), suggester.suggest("So", 5));
+        Assert.assertEquals(Arrays.asList("SON", "Son Heung-min"), suggester.suggest("sO", 5));
+        Assert.assertEquals(Integer.valueOf(6), suggester.size());
+
+        // 다시 읽어도 합친 검색 수는 그대로이고, 빠지면 사라진다.
+        suggester.refreshPopularWords();
+        Assert.assertEquals(Arrays.asList("SON", "Son Heung-min"), suggester.suggest("son", 5));
+
+        Mockito.when(popularSearchWordCounter.getPopularWords()).thenReturn(Collections.singletonList(
+                new EsTermsBucket("Son", 1L)));
+
+        suggester.refreshPopularWords();
+        Assert.assertEquals(Arrays.asList("SON", "Son Heung-min"), suggester.suggest("son", 5));
+
+        Mockito.when(popularSearchWordCounter.getPopularWords()).thenReturn(Collections.emptyList());
+
+        suggester.refreshPopularWords();
+        Assert.assertEquals(Collections.singletonList("Son Heung-min"), suggester.suggest("son", 5));
+        Assert.assertEquals(Integer.valueOf(5), suggester.size());
+    }
+
+    @Test
+    public void skipWhenFull() {
+        searchSuggestProperties.setMaxTerms(3);
+        searchSuggestProperties.setMaxTermLength(10);
+        searchSuggestProperties.setLoadBatchSize(2);
+
+        suggester.refresh();
+
+        // 글과 사진을 번갈아 읽는다. Son Heung-min 은 너무 길고, 닭강정 먹방은 자리가 없다.
+        Assert.assertEquals(Integer.valueOf(3), suggester.size());
+        Assert.assertEquals(Arrays.asList("손흥민 골", "손님", "손흥민"), suggester.suggest("손", 5));
+        Assert.assertEquals(Collections.emptyList(), suggester.suggest("닭", 5));
+
+        suggester.putArticle("new01", "손흥민 해트트릭");
+        Assert.assertEquals(Arrays.asList("손흥민 골", "손흥민"), suggester.suggest("손흥", 5));
+
+        // 이미 있는 검색어는 가득 차도 넣는다.
+        suggester.putArticle("new02", "손흥민");
+        suggester.putArticle("new03", "손흥민");
+        Assert.assertEquals(Arrays.asList("손흥민", "손흥민 골"), suggester.suggest("손흥", 5));
+    }
+
+    private <T> List<T> page(List<T> items, Function<T, String> getId, ObjectId lastId, Integer limit) {
+        int from = 0;
+
+        if (Objects.nonNull(lastId)) {
+            while (from < items.size() && ! getId.apply(items.get(from)).equals(lastId.toString()))
+                from++;
+
+            from++;
+        }
+
+        return items.subList(Math.min(from, items.size()), Math.min(from + limit, items.size()));
+    }
+
+    private Article newArticle(String subject) {
+        Article article = new Article();
+        article.setId(new ObjectId().toString());
+        article.setSubject(subject);
+        return article;
+    }
+
+    private Gallery newGallery(String name) {
+        Gallery gallery = new Gallery();
+        gallery.setId(new ObjectId().toString());
+        gallery.setName(name);
+        return gallery;
+    }
+
+}
@@ -0,0 +1,125 @@
+package com.jakduk.api.search;
+
+import com.jakduk.api.common.Constants;
+import com.jakduk.api.common.elasticsearch.SearchResultCache;
+import com.jakduk.api.configuration.JakdukProperties;
+import com.jakduk.api.restcontroller.vo.search.SearchUnifiedResponse;
+import com.jakduk.api.service.SearchService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.search.*;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.search.SearchHits;
+import org.elasticsearch.search.internal.InternalSearchResponse;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.amqp.core.AmqpTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.any;
+
+public class SearchUnifiedTimeoutTest {
+
+    private Client client;
+    private MeterRegistry meterRegistry;
+    private SearchService searchService;
+
+    @Before
+    public void setUp() {
+        JakdukProperties.Elasticsearch elasticsearchProperties = new JakdukProperties().new Elasticsearch();
+        elasticsearchProperties.setIndexBoard("jakduk_test_board");
+        elasticsearchProperties.setIndexGallery("jakduk_test_gallery");
+        elasticsearchProperties.setDefaultSearchTimeoutMillis(100L);
+        elasticsearchProperties.getSearchTimeoutMillis().put("comment", 200L);
+
+        client = Mockito.mock(Client.class);
+        Mockito.when(client.prepareSearch()).thenAnswer(invocation -> new SearchRequestBuilder(client, SearchAction.INSTANCE));
+
+        meterRegistry = new SimpleMeterRegistry();
+        SearchResultCache searchResultCache = new SearchResultCache(new JakdukProperties().new SearchCache(),
+                elasticsearchProperties, new JakdukProperties().new Rabbitmq(), Mockito.mock(AmqpTemplate.class), meterRegistry);
+
+        searchService = new SearchService();
+        ReflectionTestUtils.setField(searchService, "elasticsearchProperties", elasticsearchProperties);
+        ReflectionTestUtils.setField(searchService, "client", client);
+        ReflectionTestUtils.setField(searchService, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(searchService, "searchResultCache", searchResultCache);
+    }
+
+    @Test
+    public void returnCompletedTypesWithinTimeout() {
+        Mockito.doAnswer(invocation -> {
+            SearchRequest searchRequest = invocation.getArgument(0);
+            ActionListener<SearchResponse> listener = invocation.getArgument(1);
+
+            switch (searchRequest.types()[0]) {
+                case Constants.ES_TYPE_ARTICLE:
+                    listener.onResponse(this.newSearchResponse(12L, false));
+                    break;
+                case Constants.ES_TYPE_GALLERY:
+                    listener.onFailure(new IllegalStateException("gallery is down"));
+                    break;
+                default:
+                    // 댓글은 응답이 오지 않는다.
+            }
+
+            return null;
+        }).when(client).search(any(SearchRequest.class), any());
+
+        long started = System.nanoTime();
+        SearchUnifiedResponse response = searchService.searchUnified("test", "ARTICLE;COMMENT;GALLERY", 0, 10, null, null);
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+
+        Assert.assertEquals(Long.valueOf(12L), response.getArticleResult().getTook());
+        Assert.assertFalse(response.getArticleResult().getTimedOut());
+        Assert.assertFalse(response.getArticleResult().getFailed());
+
+        Assert.assertTrue(response.getCommentResult().getTimedOut());
+        Assert.assertTrue(response.getCommentResult().getComments().isEmpty());
+        Assert.assertTrue(response.getCommentResult().getTook() >= 200L);
+
+        Assert.assertTrue(response.getGalleryResult().getFailed());
+        Assert.assertTrue(response.getGalleryResult().getGalleries().isEmpty());
+
+        // 가장 긴 댓글 기다리는 시간만큼만 기다린다.
+        Assert.assertTrue(elapsedMillis < 1000L);
+
+        Assert.assertEquals(1L, meterRegistry.get("jakduk.search.latency").tags("type", "article", "result", "success").timer().count());
+        Assert.assertEquals(1L, meterRegistry.get("jakduk.search.latency").tags("type", "gallery", "result", "failure").timer().count());
+        Assert.assertEquals(1D, meterRegistry.get("jakduk.search.timeout").tags("type", "comment").counter().count(), 0D);
+    }
+
+    @Test
+    public void markPartialShardResultsAsTimedOut() {
+        Mockito.doAnswer(invocation -> {
+            SearchRequest searchRequest = invocation.getArgument(0);
+            ActionListener<SearchResponse> listener = invocation.getArgument(1);
+
+            Assert.assertEquals(100L, searchRequest.source().timeout().millis());
+            listener.onResponse(this.newSearchResponse(100L, true));
+
+            return null;
+        }).when(client).search(any(SearchRequest.class), any());
+
+        SearchUnifiedResponse response = searchService.searchUnified("test", "ARTICLE", 0, 10, null, null);
+
+        Assert.assertTrue(response.getArticleResult().getTimedOut());
+        Assert.assertFalse(response.getArticleResult().getFailed());
+        Assert.assertNull(response.getCommentResult());
+        Assert.assertNull(response.getGalleryResult());
+    }
+
+    private SearchResponse newSearchResponse(Long took, Boolean timedOut) {
+        InternalSearchResponse internalSearchResponse = new InternalSearchResponse(SearchHits.empty(), null, null, null,
+                timedOut, null, 1);
+
+        return new SearchResponse(internalSearchResponse, null, 1, 1, 0, took, ShardSearchFailure.EMPTY_ARRAY,
+                SearchResponse.Clusters.EMPTY);
+    }
+
+}
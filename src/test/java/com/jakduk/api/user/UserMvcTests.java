@@ -454,7 +454,7 @@ public class UserMvcTests {
         expectUserPicture.setStatus(Constants.GALLERY_STATUS_TYPE.TEMP);
         expectUserPicture.setContentType(userPicture.getContentType());
 
-        when(userService.uploadUserPicture(anyString(), anyLong(), anyObject()))
+        when(userService.uploadUserPicture(anyString(), anyObject()))
                 .thenReturn(expectUserPicture);
 
         byte[] ballBytes = new byte[]{
@@ -1,10 +1,18 @@
 package com.jakduk.api.utils;
 
 import com.jakduk.api.common.util.FileUtils;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.junit.Assert;
 import org.junit.Test;
 
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Arrays;
 import java.util.Objects;
 
 /**
@@ -13,10 +21,53 @@ import java.util.Objects;
 public class FileUtilsTest {
 
     @Test
-    public void getBytesByUrl() throws IOException {
-        FileUtils.FileInfo fileInfo = FileUtils.getBytesByUrl("https://avatars1.githubusercontent.com/u/19828371?v=4&s=200");
+    public void getFileByUrl() throws IOException {
+        Path tempDirPath = Files.createTempDirectory("jakduk");
+        FileUtils.FileInfo fileInfo = FileUtils.getFileByUrl("https://avatars1.githubusercontent.com/u/19828371?v=4&s=200", tempDirPath);
 
         Assert.assertTrue(Objects.nonNull(fileInfo));
+
+        Files.deleteIfExists(fileInfo.getPath());
+    }
+
+    @Test
+    public void writeTempFile() throws IOException {
+        byte[] bytes = new byte[100_000];
+        Arrays.fill(bytes, (byte) 7);
+
+        Path tempDirPath = Files.createTempDirectory("jakduk");
+        FileUtils.FileInfo fileInfo = FileUtils.writeTempFile(tempDirPath, new ByteArrayInputStream(bytes), "image/png");
+
+        // 한번 읽으면서 쓴 파일과 해시가 원본과 같다.
+        Assert.assertEquals(DigestUtils.sha256Hex(bytes), fileInfo.getHash());
+        Assert.assertEquals(DigestUtils.md5Hex(bytes), fileInfo.getLegacyHash());
+        Assert.assertEquals(Long.valueOf(bytes.length), fileInfo.getContentLength());
+        Assert.assertArrayEquals(bytes, Files.readAllBytes(fileInfo.getPath()));
+
+        Files.deleteIfExists(fileInfo.getPath());
+    }
+
+    @Test
+    public void writeImageFilesFromSingleDecode() throws IOException {
+        Path sourceFilePath = Files.createTempFile("jakduk", ".png");
+        ImageIO.write(new BufferedImage(400, 200, BufferedImage.TYPE_INT_RGB), "png", sourceFilePath.toFile());
+
+        Path imagePath = Files.createTempDirectory("jakduk");
+        LocalDate localDate = LocalDate.of(2019, 3, 1);
+
+        BufferedImage image = FileUtils.readImage(sourceFilePath);
+
+        FileUtils.writeImageFile(imagePath.toString(), localDate, "large", "image/png", Files.size(sourceFilePath), sourceFilePath, image);
+        FileUtils.writeSmallImageFile(imagePath.toString(), localDate, "small", "image/png", 50, 50, image);
+
+        BufferedImage large = ImageIO.read(imagePath.resolve("2019/3/1/large.png").toFile());
+        BufferedImage small = ImageIO.read(imagePath.resolve("2019/3/1/small.png").toFile());
+
+        Assert.assertEquals(400, large.getWidth());
+        Assert.assertEquals(50, small.getWidth());
+        Assert.assertEquals(50, small.getHeight());
+
+        Files.deleteIfExists(sourceFilePath);
     }
 
 }